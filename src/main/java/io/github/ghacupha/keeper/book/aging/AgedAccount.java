@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.aging;
+
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+
+import java.util.Arrays;
+
+/**
+ * Open amounts of one account as at the date of an {@link AgingReport}, in minor units of the currency of the account
+ *
+ * @author edwin.njeru
+ */
+public final class AgedAccount {
+
+    private final SimpleAccount account;
+
+    private final long[] buckets;
+
+    private final long unapplied;
+
+    AgedAccount(SimpleAccount account, long[] buckets, long unapplied) {
+        this.account = account;
+        this.buckets = buckets;
+        this.unapplied = unapplied;
+    }
+
+    public SimpleAccount getAccount() {
+        return account;
+    }
+
+    /**
+     * @param bucket Index of the bucket, zero being the youngest
+     * @return Amount open in the bucket
+     */
+    public long getBucket(int bucket) {
+        return buckets[bucket];
+    }
+
+    /**
+     * @return Amount open in each bucket, youngest first
+     */
+    public long[] getBuckets() {
+        return buckets.clone();
+    }
+
+    /**
+     * @return Settlements in excess of the open items, which are not part of any bucket
+     */
+    public long getUnapplied() {
+        return unapplied;
+    }
+
+    /**
+     * @return Total amount open in all buckets
+     */
+    public long getOpen() {
+        long open = 0;
+        for (long amount : buckets) {
+            open += amount;
+        }
+        return open;
+    }
+
+    @Override
+    public String toString() {
+        return account.getAccountDetails().getNumber() + " : " + Arrays.toString(buckets) + ", unapplied : " + unapplied;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.aging;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.ExecutionPolicy;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Ages the open amounts of accounts into buckets by the age of their booking dates, for instance 0-30, 31-60, 61-90 and
+ * over 90 days.
+ * <p>Each account is read once, in booking date order, up to the date of the report. Entries on the open side given to
+ * the engine, the debit side for receivables and the credit side for payables, are open items, and entries on the
+ * opposite side settle the oldest open items first. The open side is fixed by the engine rather than read off each
+ * account, whose {@link SimpleAccount#getAccountSide()} can be changed while it is being aged. Whatever remains open
+ * at the end of the pass is put into the bucket for its age, so no bucket needs a balance query of its own. A settlement
+ * larger than the open items is kept as unapplied and settles the items booked after it. Accounts are aged in parallel
+ * following the {@link ExecutionPolicy} of the ledger.</p>
+ *
+ * @author edwin.njeru
+ */
+public final class AgingEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(AgingEngine.class);
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final AccountSide openSide;
+
+    private final int[] boundaries;
+
+    private AgingEngine(AccountSide openSide, int[] boundaries) {
+        this.openSide = openSide;
+        this.boundaries = boundaries;
+    }
+
+    /**
+     * @param openSide   {@link AccountSide} of the entries which are open items, such as the invoices of receivables
+     * @param boundaries Oldest age in days of each bucket but the last, in ascending order. The last bucket takes
+     *                   whatever is older than the last boundary
+     * @return {@link AgingEngine} with a bucket for each boundary and one for older amounts
+     */
+    public static AgingEngine aging(AccountSide openSide, int... boundaries) {
+
+        if (openSide == null) {
+            throw new IllegalArgumentException("The open side is required");
+        }
+        if (boundaries.length == 0) {
+            throw new IllegalArgumentException("At least one bucket boundary is required");
+        }
+        for (int i = 0; i < boundaries.length; i++) {
+            if (boundaries[i] < 0 || (i > 0 && boundaries[i] <= boundaries[i - 1])) {
+                throw new IllegalArgumentException("Bucket boundaries must be ascending and not negative, but were " + Arrays.toString(boundaries));
+            }
+        }
+
+        return new AgingEngine(openSide, boundaries.clone());
+    }
+
+    /**
+     * @param accounts Accounts to be aged, all in the same currency
+     * @param asAt     Date of the report. Entries booked after it are left out and ages are counted up to it
+     * @return {@link AgingReport} of the accounts with the totals of each bucket
+     * @throws MismatchedCurrencyException if the accounts are not all in the same currency
+     */
+    public AgingReport age(Collection<SimpleAccount> accounts, TimePoint asAt) throws MismatchedCurrencyException {
+
+        List<SimpleAccount> aged = new ArrayList<>(accounts);
+
+        Currency currency = aged.isEmpty() ? null : aged.get(0).getCurrency();
+        for (SimpleAccount account : aged) {
+            if (!account.getCurrency().equals(currency)) {
+                throw new MismatchedCurrencyException("Account : " + account + " is in " + account.getCurrency() + " while the report is in " + currency);
+            }
+        }
+
+        int asAtDay = EpochDays.of(asAt);
+
+        log.debug("Aging : {} accounts open on the {} side as at : {} into buckets : {}", aged.size(), openSide, asAt, Arrays.toString(boundaries));
+
+        AgedAccount[] results = new AgedAccount[aged.size()];
+        ExecutionPolicy policy = ExecutionPolicy.ledger();
+        policy.forEach(IntStream.range(0, results.length).boxed().collect(Collectors.toList()), policy.getBatchThreshold(),
+            i -> results[i] = age(aged.get(i), asAtDay));
+
+        return new AgingReport(boundaries, currency, Arrays.asList(results));
+    }
+
+    /**
+     * @param account  Account to be aged
+     * @param asAtDay  Date of the report, in days since 1970-01-01
+     * @return {@link AgedAccount} with the amounts still open as at the date
+     */
+    AgedAccount age(SimpleAccount account, int asAtDay) {
+
+        // Open items in booking date order, as a queue of which the oldest is at head
+        int[] days = new int[INITIAL_CAPACITY];
+        long[] amounts = new long[INITIAL_CAPACITY];
+        int head = 0;
+        int tail = 0;
+        long unapplied = 0;
+
+        for (Entry entry : account.getTimeline().between(Integer.MIN_VALUE, asAtDay).values()) {
+
+            long amount = MinorUnits.of(entry.getAmount());
+
+            if (entry.getAccountSide() == openSide) {
+                long open = amount - Math.min(amount, unapplied);
+                unapplied -= amount - open;
+                if (open == 0) {
+                    continue;
+                }
+                if (tail == days.length) {
+                    // Reclaim the settled items at the head before growing
+                    int count = tail - head;
+                    if (head < days.length >> 1) {
+                        days = Arrays.copyOf(days, days.length << 1);
+                        amounts = Arrays.copyOf(amounts, amounts.length << 1);
+                    }
+                    System.arraycopy(days, head, days, 0, count);
+                    System.arraycopy(amounts, head, amounts, 0, count);
+                    head = 0;
+                    tail = count;
+                }
+                days[tail] = entry.getEpochDay();
+                amounts[tail++] = open;
+            } else {
+                long settling = amount;
+                while (settling > 0 && head < tail) {
+                    long settled = Math.min(settling, amounts[head]);
+                    settling -= settled;
+                    amounts[head] -= settled;
+                    if (amounts[head] == 0) {
+                        head++;
+                    }
+                }
+                unapplied += settling;
+            }
+        }
+
+        long[] buckets = new long[boundaries.length + 1];
+        for (int i = head; i < tail; i++) {
+            buckets[bucket(asAtDay - days[i])] += amounts[i];
+        }
+
+        return new AgedAccount(account, buckets, unapplied);
+    }
+
+    private int bucket(int age) {
+
+        int index = Arrays.binarySearch(boundaries, age);
+
+        return index >= 0 ? index : -index - 1;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.aging;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+
+/**
+ * Outcome of an {@link AgingEngine} run: the {@link AgedAccount} of each account in the order in which the accounts
+ * were given, and the totals of each bucket across all of them, in minor units
+ *
+ * @author edwin.njeru
+ */
+public final class AgingReport {
+
+    private final int[] boundaries;
+
+    private final Currency currency;
+
+    private final List<AgedAccount> accounts;
+
+    private final long[] totals;
+
+    private final long unapplied;
+
+    AgingReport(int[] boundaries, Currency currency, List<AgedAccount> accounts) {
+        this.boundaries = boundaries;
+        this.currency = currency;
+        this.accounts = Collections.unmodifiableList(accounts);
+
+        long[] sums = new long[boundaries.length + 1];
+        long unappliedSum = 0;
+        for (AgedAccount account : accounts) {
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += account.getBucket(i);
+            }
+            unappliedSum += account.getUnapplied();
+        }
+        this.totals = sums;
+        this.unapplied = unappliedSum;
+    }
+
+    /**
+     * @return Currency of the amounts, or null if no account was aged
+     */
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public List<AgedAccount> getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * @return Number of buckets, one more than the number of boundaries
+     */
+    public int getBucketCount() {
+        return totals.length;
+    }
+
+    /**
+     * @param bucket Index of the bucket, zero being the youngest
+     * @return Label of the bucket such as "31-60" or "90+"
+     */
+    public String getLabel(int bucket) {
+        if (bucket == boundaries.length) {
+            return boundaries[bucket - 1] + "+";
+        }
+        return (bucket == 0 ? 0 : boundaries[bucket - 1] + 1) + "-" + boundaries[bucket];
+    }
+
+    /**
+     * @param bucket Index of the bucket, zero being the youngest
+     * @return Total amount open in the bucket across all the accounts
+     */
+    public long getTotal(int bucket) {
+        return totals[bucket];
+    }
+
+    /**
+     * @return Total amount open in each bucket across all the accounts, youngest first
+     */
+    public long[] getTotals() {
+        return totals.clone();
+    }
+
+    /**
+     * @return Total of the settlements in excess of the open items across all the accounts
+     */
+    public long getUnapplied() {
+        return unapplied;
+    }
+
+    @Override
+    public String toString() {
+        return accounts.size() + " accounts aged : " + Arrays.toString(totals) + ", unapplied : " + unapplied;
+    }
+}
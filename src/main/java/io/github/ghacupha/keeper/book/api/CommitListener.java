@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.api;
+
+import io.github.ghacupha.keeper.book.base.Commit;
+import io.github.ghacupha.keeper.book.base.CommitSequence;
+
+/**
+ * Callback through which the {@link CommitSequence} hands over each {@link Commit} once everything before it has been
+ * committed as well. Unlike a {@link PostingListener}, which is told of each {@link Entry} as it goes into its
+ * {@link Account}, this sees whole transactions, one at a time and in the order of their sequence numbers.
+ * Implementations are called on a posting thread while the next commits wait, and therefore need to be quick.
+ *
+ * @author edwin.njeru
+ */
+@FunctionalInterface
+public interface CommitListener {
+
+    /**
+     * @param commit {@link Commit} that has just become visible
+     */
+    void committed(Commit commit);
+}
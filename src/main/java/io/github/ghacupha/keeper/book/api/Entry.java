@@ -18,6 +18,7 @@ package io.github.ghacupha.keeper.book.api;
 import io.github.ghacupha.cash.Cash;
 import io.github.ghacupha.keeper.book.balance.AccountSide;
 import io.github.ghacupha.keeper.book.base.EntryDetails;
+import io.github.ghacupha.keeper.book.util.EpochDays;
 import io.github.ghacupha.time.point.TimePoint;
 
 import java.util.Currency;
@@ -35,6 +36,16 @@ public interface Entry {
      */
     EntryDetails getEntryDetails();
 
+    /**
+     *
+     * @return Id which identifies the {@link Entry} uniquely and on which its equality is based. By default this is
+     * the identity hash code of the {@link Entry}, which is stable but not guaranteed to be unique, so implementations
+     * held in an index by their id should override it.
+     */
+    default long getId() {
+        return System.identityHashCode(this);
+    }
+
     /**
      *
      * @return Currency of the monetary amounts to be save in this
@@ -54,6 +65,14 @@ public interface Entry {
      */
     TimePoint getBookingDate();
 
+    /**
+     *
+     * @return Booking date of the Entry in days since 1970-01-01, for comparisons that need no {@link TimePoint}
+     */
+    default int getEpochDay() {
+        return EpochDays.of(getBookingDate());
+    }
+
     /**
      *
      * @return The amount being posted into the Account and encapsulated
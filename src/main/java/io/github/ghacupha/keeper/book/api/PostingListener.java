@@ -0,0 +1,38 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.api;
+
+/**
+ * Callback through which an {@link Account} announces every {@link Entry} that has been accepted into it. This allows
+ * derived structures like indexes to be maintained incrementally as postings happen instead of rescanning
+ * {@link Account#getEntries()}.
+ * Implementations are called on the posting thread and therefore need to be quick and thread-safe. They are called
+ * after the {@link Entry} has been added, so they must not throw to refuse it; an exception is logged by the
+ * {@link Account} and does not undo the posting nor keep the other listeners from being called.
+ *
+ * @author edwin.njeru
+ */
+@FunctionalInterface
+public interface PostingListener {
+
+    /**
+     * Called once the {@link Entry} has been added into the {@link Account}
+     *
+     * @param account {@link Account} into which the {@link Entry} has been added
+     * @param entry   {@link Entry} that has just been posted
+     */
+    void posted(Account account, Entry entry);
+}
@@ -19,9 +19,11 @@ import io.github.ghacupha.cash.Cash;
 import io.github.ghacupha.keeper.book.balance.AccountSide;
 import io.github.ghacupha.keeper.book.base.EntryDetails;
 import io.github.ghacupha.keeper.book.util.ImmutableEntryException;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
 import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
 import io.github.ghacupha.keeper.book.util.UnableToPostException;
 
+import java.util.Currency;
 import java.util.Set;
 
 /**
@@ -52,6 +54,56 @@ public interface Transaction {
      */
     void post() throws UnableToPostException, ImmutableEntryException;
 
+    /**
+     *
+     * @return Whether the {@link Entry} items on the debit side add up to those on the credit side, which is the
+     * condition for the {@link Transaction} to be posted. By default the {@link Entry} items are added up on each
+     * call, which implementations keeping running totals should override.
+     */
+    default boolean isBalanced() {
+
+        long imbalance = 0;
+        for (Entry entry : getEntries()) {
+            imbalance += entry.getAccountSide() == AccountSide.DEBIT ? MinorUnits.of(entry.getAmount()) : -MinorUnits.of(entry.getAmount());
+        }
+        return imbalance == 0;
+    }
+
+    /**
+     *
+     * @return Amount by which the debits exceed the credits, which is negative when the credits exceed the debits, or
+     * null if the {@link Transaction} has no {@link Entry} items from which to take its currency. By default the
+     * {@link Entry} items are added up on each call.
+     */
+    default Cash imbalance() {
+
+        long imbalance = 0;
+        Currency currency = null;
+        for (Entry entry : getEntries()) {
+            imbalance += entry.getAccountSide() == AccountSide.DEBIT ? MinorUnits.of(entry.getAmount()) : -MinorUnits.of(entry.getAmount());
+            currency = entry.getCurrency();
+        }
+        return currency == null ? null : MinorUnits.toCash(imbalance, currency);
+    }
+
+    /**
+     *
+     * @return Id which identifies the {@link Transaction} uniquely and on which its equality is based. By default this is
+     * the identity hash code of the {@link Transaction}, which is stable but not guaranteed to be unique, so implementations
+     * held in an index by their id should override it.
+     */
+    default long getId() {
+        return System.identityHashCode(this);
+    }
+
+    /**
+     * @return Key by which a redelivery of the same {@link Transaction} is recognised and refused, or null if the
+     * {@link Transaction} has none
+     */
+    default String getIdempotencyKey() {
+        return null;
+    }
+
     /**
      *
      * @return Collection of {@link Entry} items in the Transaction
@@ -0,0 +1,220 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.async;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+
+/**
+ * Non-blocking facade over account queries. Every query runs on the {@link Executor} given at construction and is
+ * answered through a {@link CompletableFuture}, so a request thread never waits on a large scan and the scans stay
+ * off the common fork-join pool.
+ * <p>Identical queries that are in flight at the same time are coalesced: a balance query for an {@link Account} and
+ * date that is already being worked out, or an entries query for an {@link Account} already being read, is given the
+ * result of the query under way instead of starting another. Balances of a {@link SimpleAccount} are summed
+ * sequentially from its primitive columns on the executor thread.</p>
+ *
+ * @author edwin.njeru
+ */
+public final class AsyncAccountQueries {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncAccountQueries.class);
+
+    private final Executor executor;
+
+    private final ConcurrentMap<QueryKey, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param executor {@link Executor} on which the queries are run
+     */
+    public AsyncAccountQueries(Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "An executor is required for asynchronous queries");
+    }
+
+    /**
+     * @param account {@link Account} whose balance is wanted
+     * @param asAt    Date as at which the balance is effective
+     * @return {@link CompletableFuture} of the {@link AccountBalance}
+     */
+    public CompletableFuture<AccountBalance> balanceAsync(Account account, TimePoint asAt) {
+
+        int epochDay = EpochDays.of(asAt);
+
+        return coalesce(new QueryKey(account, epochDay, false), () -> balance(account, asAt, epochDay));
+    }
+
+    /**
+     * @param account {@link Account} whose entries are wanted
+     * @return {@link CompletableFuture} of the {@link Entry} items in the account
+     */
+    public CompletableFuture<List<Entry>> entriesAsync(Account account) {
+
+        return coalesce(new QueryKey(account, 0, true), () -> Collections.unmodifiableList(account.getEntries()));
+    }
+
+    /**
+     * @param accounts {@link Account} items whose balances are wanted
+     * @param asAt     Date as at which the balances are effective
+     * @return {@link CompletableFuture} of the {@link AccountBalance} of each account, in the order of the accounts
+     */
+    public CompletableFuture<Map<Account, AccountBalance>> balancesAsync(Collection<? extends Account> accounts, TimePoint asAt) {
+
+        return batch(accounts, account -> balanceAsync(account, asAt));
+    }
+
+    /**
+     * @param accounts {@link Account} items whose entries are wanted
+     * @return {@link CompletableFuture} of the {@link Entry} items of each account, in the order of the accounts
+     */
+    public CompletableFuture<Map<Account, List<Entry>>> entriesAsync(Collection<? extends Account> accounts) {
+
+        return batch(accounts, this::entriesAsync);
+    }
+
+    /**
+     * @return Number of distinct queries currently in flight
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private static AccountBalance balance(Account account, TimePoint asAt, int epochDay) {
+
+        if (!(account instanceof SimpleAccount)) {
+            return account.balance(asAt);
+        }
+
+        SimpleAccount simpleAccount = (SimpleAccount) account;
+        long balance = simpleAccount.balanceInMinorUnits(epochDay);
+        AccountSide side = balance > 0 ? DEBIT : balance < 0 ? CREDIT : simpleAccount.getAccountSide();
+
+        return new AccountBalance(MinorUnits.toCash(Math.abs(balance), simpleAccount.getCurrency()), side);
+    }
+
+    private static <T> CompletableFuture<Map<Account, T>> batch(Collection<? extends Account> accounts, Function<Account, CompletableFuture<T>> query) {
+
+        List<Account> ordered = new ArrayList<>(accounts);
+        List<CompletableFuture<T>> futures = new ArrayList<>(ordered.size());
+        for (Account account : ordered) {
+            futures.add(query.apply(account));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            Map<Account, T> results = new LinkedHashMap<>();
+            for (int i = 0; i < ordered.size(); i++) {
+                results.put(ordered.get(i), futures.get(i).join());
+            }
+            return results;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> coalesce(QueryKey key, Supplier<T> query) {
+
+        CompletableFuture<T> created = new CompletableFuture<>();
+        CompletableFuture<T> running = (CompletableFuture<T>) inFlight.putIfAbsent(key, created);
+
+        if (running != null) {
+            log.trace("Query : {} joins the one in flight", key);
+            return running.thenApply(Function.identity());
+        }
+
+        try {
+            executor.execute(() -> {
+                T result;
+                try {
+                    result = query.get();
+                } catch (Throwable e) {
+                    inFlight.remove(key, created);
+                    created.completeExceptionally(e);
+                    return;
+                }
+                // Removed before completing so that queries arriving from now on see the completed state afresh
+                inFlight.remove(key, created);
+                created.complete(result);
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+        }
+
+        // Each caller gets a future of its own so that cancelling it does not cancel the query for the others
+        return created.thenApply(Function.identity());
+    }
+
+    /**
+     * Accounts are compared by identity, as they are in the ledger
+     */
+    private static final class QueryKey {
+
+        private final Account account;
+        private final int epochDay;
+        private final boolean entries;
+
+        private QueryKey(Account account, int epochDay, boolean entries) {
+            this.account = account;
+            this.epochDay = epochDay;
+            this.entries = entries;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            QueryKey that = (QueryKey) o;
+            return account == that.account && epochDay == that.epochDay && entries == that.entries;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(account) + epochDay) + (entries ? 1 : 0);
+        }
+
+        @Override
+        public String toString() {
+            return (entries ? "entries of " : "balance of ") + account.getAccountDetails() + (entries ? "" : " as at " + EpochDays.toTimePoint(epochDay));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.balance;
+
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+
+import java.util.Currency;
+
+/**
+ * Holder into which a balance is written by allocation-free balance queries, so that a caller querying balances in a
+ * tight loop can reuse one instance instead of receiving a new {@link AccountBalance} every time. As with any reusable
+ * holder it is not meant to be shared between threads.
+ *
+ * @author edwin.njeru
+ */
+public final class MutableBalance {
+
+    private long amountInMinorUnits;
+
+    private AccountSide accountSide;
+
+    public void set(long amountInMinorUnits, AccountSide accountSide) {
+        this.amountInMinorUnits = amountInMinorUnits;
+        this.accountSide = accountSide;
+    }
+
+    /**
+     * @return Unsigned amount of the balance in minor units of the currency
+     */
+    public long getAmountInMinorUnits() {
+        return amountInMinorUnits;
+    }
+
+    public AccountSide getAccountSide() {
+        return accountSide;
+    }
+
+    /**
+     * @param currency {@link Currency} of the account
+     * @return Copy of this balance as an {@link AccountBalance}
+     */
+    public AccountBalance toAccountBalance(Currency currency) {
+
+        return new AccountBalance(MinorUnits.toCash(amountInMinorUnits, currency), accountSide);
+    }
+
+    @Override
+    public String toString() {
+        return amountInMinorUnits + " " + accountSide;
+    }
+}
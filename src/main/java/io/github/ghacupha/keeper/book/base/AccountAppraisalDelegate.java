@@ -24,9 +24,16 @@ import io.github.ghacupha.keeper.book.balance.AccountSide;
 import io.github.ghacupha.keeper.book.base.state.AccountCreditState;
 import io.github.ghacupha.keeper.book.base.state.AccountDebitState;
 import io.github.ghacupha.keeper.book.base.state.AccountState;
+import io.github.ghacupha.keeper.book.util.EntrySpliterator;
+import io.github.ghacupha.keeper.book.util.EpochDayRange;
+import io.github.ghacupha.keeper.book.util.ExecutionPolicy;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
 import io.github.ghacupha.time.point.DateRange;
 
-import java.util.List;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.StreamSupport;
 
 import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
 import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
@@ -37,6 +44,12 @@ import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
  * for getting the current {@code AccountSide} without gritting your teeth. So uncle Bob please forgive me for I have sinned,
  * but there is just no practical inexpensive way of doing this stuff, and still be able to use this delegate for any
  * {@link Account} implementation. This delegate is designed to serve up a balance for any {@link Account} implementation
+ * <p>The debits and credits are summed in one pass, in exact minor units of the currency. The entries are read through a
+ * {@link Spliterator} supplied by the account, and only if it reports that it is worth splitting are they summed by a
+ * parallel stream in the pool of the ledger's {@link ExecutionPolicy}; otherwise a plain loop is used, which is what
+ * most accounts need. Accounts keeping primitive columns of booking dates and amounts, like the {@link SimpleAccount},
+ * also supply {@link RangeTotals} over them, through which balances within a range of dates are summed without
+ * reading the entries at all.</p>
  *
  * @author edwin.njeru
  */
@@ -49,9 +62,30 @@ public class AccountAppraisalDelegate {
     private final AccountState debitAccountState;
     private final AccountState creditAccountState;
 
+    private final Supplier<Spliterator<Entry>> entries;
+
+    private final RangeTotals rangeTotals;
+
     AccountAppraisalDelegate(Account account) {
 
+        this(account, () -> {
+            Entry[] entries = account.getEntries().toArray(new Entry[0]);
+            return new EntrySpliterator(entries, 0, entries.length, ExecutionPolicy.ledger().getSplitThreshold());
+        }, null);
+    }
+
+    /**
+     * @param account     {@link Account} being appraised
+     * @param entries     Supplies a {@link Spliterator} over the account's entries, read without copying them where the
+     *                    account's storage allows
+     * @param rangeTotals Sums the account's entries within a range of dates from its primitive columns, or null if it
+     *                    keeps none
+     */
+    AccountAppraisalDelegate(Account account, Supplier<Spliterator<Entry>> entries, RangeTotals rangeTotals) {
+
         this.account = account;
+        this.entries = entries;
+        this.rangeTotals = rangeTotals;
         debitAccountState = new AccountDebitState(this.account);
         creditAccountState = new AccountCreditState(this.account);
 
@@ -60,9 +94,42 @@ public class AccountAppraisalDelegate {
 
     public AccountBalance balance(DateRange dateRange){
 
-        Cash debits = getDebits(dateRange,account.getEntries());
+        return toBalance(getTotals(entries.get(), (totals, entry) -> {
+            if (dateRange.includes(entry.getBookingDate())) {
+                totals[entry.getAccountSide().ordinal()] += MinorUnits.of(entry.getAmount());
+            }
+        }));
+    }
+
+    /**
+     * Balance of the entries booked within the range, which are filtered on their cached epoch days rather than by
+     * comparing {@code TimePoint} objects
+     *
+     * @param range {@link EpochDayRange} of the booking dates included
+     * @return {@link AccountBalance} of the entries within the range
+     */
+    public AccountBalance balance(EpochDayRange range) {
+
+        int from = range.getFromEpochDay();
+        int to = range.getToEpochDay();
+
+        if (rangeTotals != null) {
+            return toBalance(rangeTotals.totals(from, to));
+        }
+
+        return toBalance(getTotals(entries.get(), (totals, entry) -> {
+            int epochDay = entry.getEpochDay();
+            if (epochDay >= from && epochDay <= to) {
+                totals[entry.getAccountSide().ordinal()] += MinorUnits.of(entry.getAmount());
+            }
+        }));
+    }
+
+    private AccountBalance toBalance(long[] totals) {
 
-        Cash credits = getCredits(dateRange, account.getEntries());
+        Cash debits = MinorUnits.toCash(totals[DEBIT.ordinal()], account.getCurrency());
+
+        Cash credits = MinorUnits.toCash(totals[CREDIT.ordinal()], account.getCurrency());
 
         if (debits.isZero() || credits.isZero()) {
             if(!debits.isZero() && credits.isZero()){
@@ -78,21 +145,38 @@ public class AccountAppraisalDelegate {
         return new AccountBalance(HardCash.of(0.0,account.getCurrency()),account.getAccountSide());
     }
 
-    private Cash getCredits(DateRange dateRange,List<Entry> accountEntries) {
-        return HardCash.of(accountEntries
-                .parallelStream()
-                .filter(entry -> dateRange.includes(entry.getBookingDate()))
-                .filter(entry -> entry.getAccountSide() == CREDIT)
-                .map(entry -> entry.getAmount().getNumber().doubleValue())
-                .reduce(0.00,(acc,value) -> acc + value), account.getCurrency());
+    /**
+     * @param accumulator Adds an entry, if it is to be counted, into the totals
+     * @return Sums of the entries in minor units, indexed by {@link AccountSide#ordinal()}
+     */
+    private static long[] getTotals(Spliterator<Entry> accountEntries, BiConsumer<long[], Entry> accumulator) {
+
+        boolean parallel = accountEntries instanceof EntrySpliterator && ((EntrySpliterator) accountEntries).isWorthSplitting();
+
+        if (!parallel) {
+            long[] totals = new long[2];
+            accountEntries.forEachRemaining(entry -> accumulator.accept(totals, entry));
+            return totals;
+        }
+
+        return ExecutionPolicy.ledger().invoke(() -> StreamSupport.stream(accountEntries, true)
+            .collect(() -> new long[2], accumulator::accept, (left, right) -> {
+                left[0] += right[0];
+                left[1] += right[1];
+            }));
     }
 
-    private Cash getDebits(DateRange dateRange,List<Entry> accountEntries) {
-        return HardCash.of(accountEntries
-                .parallelStream()
-                .filter(entry -> dateRange.includes(entry.getBookingDate()))
-                .filter(entry -> entry.getAccountSide() == DEBIT)
-                .map(entry -> entry.getAmount().getNumber().doubleValue())
-                .reduce(0.00,(acc,value) -> acc + value), account.getCurrency());
+    /**
+     * Sums the debits and the credits of an account booked within a range of dates
+     */
+    @FunctionalInterface
+    interface RangeTotals {
+
+        /**
+         * @param fromEpochDay First booking date included, in days since 1970-01-01
+         * @param toEpochDay   Last booking date included, in days since 1970-01-01
+         * @return Debits and credits in minor units, indexed by {@link AccountSide#ordinal()}
+         */
+        long[] totals(int fromEpochDay, int toEpochDay);
     }
 }
@@ -42,11 +42,11 @@ public final class AccountDetails {
         return new AccountDetails(name, number, openingDate);
     }
 
-    String getName() {
+    public String getName() {
         return name;
     }
 
-    String getNumber() {
+    public String getNumber() {
         return number;
     }
 
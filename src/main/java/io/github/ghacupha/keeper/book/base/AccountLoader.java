@@ -0,0 +1,37 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+
+import java.io.IOException;
+
+/**
+ * Loads the contents of an {@link Account} from wherever it has been stored
+ *
+ * @author edwin.njeru
+ */
+@FunctionalInterface
+public interface AccountLoader {
+
+    /**
+     * @param accountDetails {@link AccountDetails} of the account being loaded
+     * @param location       Pointer to the stored account, whose meaning is up to the loader, for instance a file path
+     * @return {@link SimpleAccount} holding the stored entries
+     * @throws IOException if the account could not be read
+     */
+    SimpleAccount load(AccountDetails accountDetails, String location) throws IOException;
+}
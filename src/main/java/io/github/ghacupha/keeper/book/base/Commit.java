@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.Transaction;
+
+import java.util.List;
+
+/**
+ * The {@link Entry} items posted together under one number of the {@link CommitSequence}, which for a
+ * {@link Transaction} are all of its entries, and for an entry added on its own just that entry.
+ *
+ * @author edwin.njeru
+ */
+public final class Commit {
+
+    private final long sequence;
+
+    private final List<Entry> entries;
+
+    Commit(long sequence, List<Entry> entries) {
+        this.sequence = sequence;
+        this.entries = entries;
+    }
+
+    /**
+     * @return Number of the {@link CommitSequence} stamped on the entries
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return The {@link Entry} items committed, which cannot be modified
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    @Override
+    public String toString() {
+        return "{#" + sequence + ", entries=" + entries + '}';
+    }
+}
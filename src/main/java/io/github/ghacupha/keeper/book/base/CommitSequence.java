@@ -0,0 +1,191 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.CommitListener;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Ledger-wide, ever increasing sequence of commit numbers. Every {@link Transaction} takes a number when it is posted
+ * and stamps it on all its entries, and releases it once they have all been added into their accounts.
+ * <p>The committed sequence is the highest number below which every number has been released. Everything stamped
+ * with a number up to it is therefore in its accounts, and nothing stamped after it is visible to a
+ * {@link LedgerSnapshot} pinned at it. Taking a number and reading the committed sequence share a lock which is held
+ * just for an increment or a look at the oldest unreleased number, so posting is never held up by reporting.</p>
+ * <p>Each completed number is handed to the registered {@link CommitListener} items as a {@link Commit}, in the order
+ * of the numbers rather than in the order in which they complete, once the committed sequence has passed it. Every
+ * number taken after the first listener was registered is handed over, whether or not listeners come and go before
+ * it completes; numbers whose postings failed leave a gap. The entries are only held on to while there are
+ * listeners. Listeners are called on the posting thread, and one that fails is logged while the others are still
+ * called, so that a posting is never failed by the reporting of another.</p>
+ * There is a single sequence for all accounts, see {@link #ledger()}.
+ *
+ * @author edwin.njeru
+ */
+public final class CommitSequence {
+
+    private static final Logger log = LoggerFactory.getLogger(CommitSequence.class);
+
+    private static final CommitSequence LEDGER = new CommitSequence();
+
+    private final NavigableSet<Long> pending = new ConcurrentSkipListSet<>();
+
+    private final List<CommitListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final NavigableMap<Long, List<Entry>> unpublished = new ConcurrentSkipListMap<>();
+
+    private final Object publishLock = new Object();
+
+    private long allocated;
+
+    // First number whose entries are kept for the listeners, past every number taken while there were none
+    private volatile long firstPublished = Long.MAX_VALUE;
+
+    private CommitSequence() {
+    }
+
+    /**
+     * @return The sequence of the ledger
+     */
+    public static CommitSequence ledger() {
+        return LEDGER;
+    }
+
+    /**
+     * @return The next number, which is pending until {@link #complete(long)} is called with it
+     */
+    long begin() {
+
+        synchronized (this) {
+            long sequence = ++allocated;
+            pending.add(sequence);
+            return sequence;
+        }
+    }
+
+    /**
+     * @param sequence Number whose {@link Entry} items have all been added into their accounts
+     * @param entries  The {@link Entry} items stamped with the number, or null if they could not all be posted
+     */
+    void complete(long sequence, List<Entry> entries) {
+
+        long first = firstPublished;
+
+        if (sequence >= first && entries != null) {
+            unpublished.put(sequence, entries);
+        }
+
+        pending.remove(sequence);
+
+        // Even a number taken before the listeners came may be the one holding back those taken since
+        if (first != Long.MAX_VALUE) {
+            publish();
+        }
+    }
+
+    /**
+     * Hands every completed number up to the committed sequence to the listeners, in order
+     */
+    private void publish() {
+
+        synchronized (publishLock) {
+
+            long committed = committed();
+            long first = firstPublished;
+
+            Map.Entry<Long, List<Entry>> next;
+            while ((next = unpublished.firstEntry()) != null && next.getKey() <= committed) {
+
+                unpublished.remove(next.getKey());
+
+                // Left over from listeners which have all gone since
+                if (next.getKey() < first) {
+                    continue;
+                }
+
+                Commit commit = new Commit(next.getKey(), next.getValue());
+                for (CommitListener listener : listeners) {
+                    try {
+                        listener.committed(commit);
+                    } catch (RuntimeException e) {
+                        // The commit is in its accounts by now, so the posting that published it must not fail
+                        log.error("Commit listener : {} failed on commit : {}", listener, commit.getSequence(), e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers a {@link CommitListener} to be handed every {@link Commit} completed from now on
+     *
+     * @param listener {@link CommitListener} to be notified
+     */
+    public void addCommitListener(CommitListener listener) {
+
+        synchronized (this) {
+            if (listeners.isEmpty()) {
+                firstPublished = allocated + 1;
+            }
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * @param listener {@link CommitListener} that will no longer be notified of commits
+     */
+    public void removeCommitListener(CommitListener listener) {
+
+        synchronized (this) {
+            listeners.remove(listener);
+            if (listeners.isEmpty()) {
+                firstPublished = Long.MAX_VALUE;
+                unpublished.clear();
+            }
+        }
+    }
+
+    /**
+     * @return The highest number up to which every number has completed
+     */
+    public long committed() {
+
+        synchronized (this) {
+            // Numbers are released without the lock, so the oldest may be gone by the time it is looked at
+            Long oldest = pending.ceiling(Long.MIN_VALUE);
+            return oldest == null ? allocated : oldest - 1;
+        }
+    }
+
+    /**
+     * @return {@link LedgerSnapshot} pinned at the committed sequence
+     */
+    public LedgerSnapshot snapshot() {
+
+        return new LedgerSnapshot(committed());
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Idempotency keys of the transactions posted recently, against which redelivered transactions are recognised and
+ * refused instead of being posted twice.
+ * <p>Keys are remembered for at least the window of the store, and at most twice as long: each stripe keeps a current
+ * and a previous generation of keys, and once a window has passed the previous generation is dropped and the current
+ * one takes its place, which bounds the memory to the keys claimed in two windows. Every generation has a Bloom filter
+ * in front of its exact set of keys, so a new key, which is by far the common case, is told apart by a few bit tests
+ * without looking into the sets. Keys are spread by their hash over stripes each with its own lock, so that posting
+ * threads rarely wait on one another.</p>
+ * There is a single store for the ledger, see {@link #ledger()}.
+ *
+ * @author edwin.njeru
+ */
+public final class DedupeStore {
+
+    private static final Logger log = LoggerFactory.getLogger(DedupeStore.class);
+
+    public static final long DEFAULT_WINDOW_HOURS = 24;
+
+    public static final int DEFAULT_EXPECTED_KEYS = 1 << 16;
+
+    private static final int STRIPES = 64;
+
+    private static final int BITS_PER_KEY = 10;
+
+    private static final int HASHES = 7;
+
+    private static volatile DedupeStore ledger = dedupeStore(DEFAULT_WINDOW_HOURS, TimeUnit.HOURS, DEFAULT_EXPECTED_KEYS);
+
+    private final long windowMillis;
+
+    private final LongSupplier clock;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private DedupeStore(long windowMillis, int expectedKeys, LongSupplier clock) {
+        if (windowMillis < 1 || expectedKeys < 1) {
+            throw new IllegalArgumentException(String.format("The window : %s ms and the expected keys : %s must be positive", windowMillis, expectedKeys));
+        }
+        this.windowMillis = windowMillis;
+        this.clock = clock;
+
+        int words = Math.max(1, (int) (((long) expectedKeys * BITS_PER_KEY / STRIPES + 63) >>> 6));
+        long now = clock.getAsLong();
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(words, now + windowMillis);
+        }
+    }
+
+    /**
+     * @param window       Least time for which a key is remembered
+     * @param unit         {@link TimeUnit} of the window
+     * @param expectedKeys Number of keys expected to be claimed in one window, by which the Bloom filters are sized
+     * @return {@link DedupeStore} following the system clock
+     */
+    public static DedupeStore dedupeStore(long window, TimeUnit unit, int expectedKeys) {
+
+        return new DedupeStore(unit.toMillis(window), expectedKeys, System::currentTimeMillis);
+    }
+
+    /**
+     * @param window       Least time for which a key is remembered
+     * @param unit         {@link TimeUnit} of the window
+     * @param expectedKeys Number of keys expected to be claimed in one window, by which the Bloom filters are sized
+     * @param clock        Source of the current time in milliseconds
+     * @return {@link DedupeStore} following the given clock
+     */
+    public static DedupeStore dedupeStore(long window, TimeUnit unit, int expectedKeys, LongSupplier clock) {
+
+        return new DedupeStore(unit.toMillis(window), expectedKeys, clock);
+    }
+
+    /**
+     * @return The store of the ledger, consulted by transactions which carry an idempotency key
+     */
+    public static DedupeStore ledger() {
+        return ledger;
+    }
+
+    /**
+     * Replaces the store of the ledger, for instance to size it for the volume of an import. The keys of the previous
+     * store are not carried over.
+     *
+     * @param store {@link DedupeStore} to be consulted from now on
+     */
+    public static void setLedger(DedupeStore store) {
+
+        ledger = store;
+
+        log.info("Ledger dedupe store set to : {}", store);
+    }
+
+    /**
+     * Claims the key for the transaction about to be posted
+     *
+     * @param key Idempotency key of the transaction
+     * @return True if the key is new and has been claimed, false if it was claimed within the window
+     */
+    public boolean claim(String key) {
+
+        long hash = hash(key);
+        Stripe stripe = stripe(hash);
+
+        synchronized (stripe) {
+            stripe.expire(clock.getAsLong(), windowMillis);
+            if (stripe.contains(key, hash)) {
+                log.debug("Idempotency key : {} has already been claimed", key);
+                return false;
+            }
+            stripe.current.add(key, hash);
+            return true;
+        }
+    }
+
+    /**
+     * Gives up the claim on the key of a transaction which failed to post, so that a redelivery of the transaction is
+     * posted rather than refused. The bits of the key stay set in the Bloom filters, which only costs a redelivery the
+     * look into the exact set of keys.
+     *
+     * @param key Idempotency key claimed with {@link #claim(String)}
+     */
+    public void release(String key) {
+
+        long hash = hash(key);
+        Stripe stripe = stripe(hash);
+
+        synchronized (stripe) {
+            stripe.current.keys.remove(key);
+            stripe.previous.keys.remove(key);
+        }
+
+        log.debug("Idempotency key : {} has been released", key);
+    }
+
+    /**
+     * @param key Idempotency key of a transaction
+     * @return True if the key has been claimed within the window
+     */
+    public boolean contains(String key) {
+
+        long hash = hash(key);
+        Stripe stripe = stripe(hash);
+
+        synchronized (stripe) {
+            stripe.expire(clock.getAsLong(), windowMillis);
+            return stripe.contains(key, hash);
+        }
+    }
+
+    /**
+     * @return Number of keys remembered, some of which may be older than the window
+     */
+    public int size() {
+
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.current.keys.size() + stripe.previous.keys.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripe(long hash) {
+
+        return stripes[(int) (hash >>> 58) & (STRIPES - 1)];
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the characters of the key, from whose halves the bit positions of the Bloom filters are
+     * derived
+     */
+    private static long hash(String key) {
+
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "{window=" + windowMillis + " ms, stripes=" + STRIPES + ", bits per stripe=" + (stripes[0].current.bits.length << 6) + '}';
+    }
+
+    private static final class Stripe {
+
+        private Generation current;
+
+        private Generation previous;
+
+        private long expiresAt;
+
+        private Stripe(int words, long expiresAt) {
+            this.current = new Generation(words);
+            this.previous = new Generation(words);
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * Drops the previous generation once the window of the current one has passed, reusing its memory for the next
+         */
+        private void expire(long now, long windowMillis) {
+
+            if (now < expiresAt) {
+                return;
+            }
+
+            Generation dropped = previous;
+            dropped.clear();
+
+            if (now < expiresAt + windowMillis) {
+                previous = current;
+                current = dropped;
+            } else {
+                // The current generation is a whole window old as well, so both have expired
+                current.clear();
+            }
+            expiresAt = now + windowMillis;
+        }
+
+        private boolean contains(String key, long hash) {
+
+            return (current.mightContain(hash) && current.keys.contains(key)) || (previous.mightContain(hash) && previous.keys.contains(key));
+        }
+    }
+
+    private static final class Generation {
+
+        private final long[] bits;
+
+        private final Set<String> keys = new HashSet<>();
+
+        private Generation(int words) {
+            this.bits = new long[words];
+        }
+
+        private void add(String key, long hash) {
+
+            int h1 = (int) (hash >>> 32);
+            int h2 = (int) hash;
+            int size = bits.length << 6;
+            for (int i = 0; i < HASHES; i++) {
+                int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % size;
+                bits[bit >>> 6] |= 1L << bit;
+            }
+            keys.add(key);
+        }
+
+        private boolean mightContain(long hash) {
+
+            int h1 = (int) (hash >>> 32);
+            int h2 = (int) hash;
+            int size = bits.length << 6;
+            for (int i = 0; i < HASHES; i++) {
+                int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % size;
+                if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void clear() {
+
+            Arrays.fill(bits, 0L);
+            keys.clear();
+        }
+    }
+}
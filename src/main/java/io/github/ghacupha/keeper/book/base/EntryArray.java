@@ -0,0 +1,312 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.util.EntrySpliterator;
+import io.github.ghacupha.keeper.book.util.ExecutionPolicy;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+
+/**
+ * Append-only array of {@link Entry} items backing an account. Writers append under a lock, but readers never lock
+ * nor copy: the size is published after the entry has been written and the array is only ever replaced by a longer
+ * copy of itself, so any reader that reads the size and then the array sees every entry up to that size. This gives
+ * readers the same guarantee as a copy-on-write list, that is they are never disturbed by later additions, without
+ * copying the whole list on every addition.
+ * Alongside the entries are two primitive columns holding the booking date of each entry in epoch days and its amount
+ * in minor units, positive for debits and negative for credits, from which balances are summed without touching the
+ * {@link Entry} objects or allocating anything. A third column holds the {@link CommitSequence} number under which each
+ * entry was stored, which is what lets a {@link LedgerSnapshot} leave out entries committed after it was taken.
+ * The only change other than an append is compaction, which builds a new array and seals this one, so that readers
+ * holding this one are undisturbed and writers are told to append to the new one instead.
+ *
+ * @author edwin.njeru
+ */
+final class EntryArray {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private volatile Entry[] elements = new Entry[INITIAL_CAPACITY];
+
+    private volatile int[] epochDays = new int[INITIAL_CAPACITY];
+
+    private volatile long[] amounts = new long[INITIAL_CAPACITY];
+
+    private volatile long[] sequences = new long[INITIAL_CAPACITY];
+
+    private volatile int size;
+
+    private boolean sealed;
+
+    EntryArray() {
+    }
+
+    private EntryArray(int capacity) {
+        elements = new Entry[capacity];
+        epochDays = new int[capacity];
+        amounts = new long[capacity];
+        sequences = new long[capacity];
+    }
+
+    /**
+     * @param entry    {@link Entry} to be appended
+     * @param epochDay Booking date of the entry in days since 1970-01-01
+     * @param sequence {@link CommitSequence} number under which the entry is stored
+     * @return False if the array has been replaced by a compacted one, into which the entry must be added instead
+     */
+    synchronized boolean add(Entry entry, int epochDay, long sequence) {
+
+        if (sealed) {
+            return false;
+        }
+
+        Entry[] array = elements;
+        int[] days = epochDays;
+        long[] signedAmounts = amounts;
+        long[] commits = sequences;
+        int index = size;
+
+        if (index == array.length) {
+            array = Arrays.copyOf(array, index << 1);
+            days = Arrays.copyOf(days, index << 1);
+            signedAmounts = Arrays.copyOf(signedAmounts, index << 1);
+            commits = Arrays.copyOf(commits, index << 1);
+            elements = array;
+            epochDays = days;
+            amounts = signedAmounts;
+            sequences = commits;
+        }
+        array[index] = entry;
+        days[index] = epochDay;
+        long amount = MinorUnits.of(entry.getAmount());
+        signedAmounts[index] = entry.getAccountSide() == DEBIT ? amount : -amount;
+        commits[index] = sequence;
+
+        size = index + 1;
+
+        return true;
+    }
+
+    /**
+     * Replaces the entries booked before a date with a single entry carrying their balance forward, and seals this
+     * array against further additions
+     *
+     * @param beforeEpochDay First booking date whose entries are kept, in days since 1970-01-01
+     * @param carried        Function making the carried forward {@link Entry} from the balance in minor units, called
+     *                       only if the balance is not zero
+     * @param carriedDay     Booking date of the carried forward entry
+     * @return The new array, whose first entry is the carried forward one
+     */
+    synchronized EntryArray compact(int beforeEpochDay, LongFunction<Entry> carried, int carriedDay) {
+
+        int length = size;
+
+        long balance = 0;
+        long lastSequence = 0;
+        int kept = 0;
+        for (int i = 0; i < length; i++) {
+            if (epochDays[i] < beforeEpochDay) {
+                balance += amounts[i];
+                lastSequence = Math.max(lastSequence, sequences[i]);
+            } else {
+                kept++;
+            }
+        }
+
+        EntryArray compacted = new EntryArray(Math.max(INITIAL_CAPACITY, kept + 1));
+        if (balance != 0) {
+            // Snapshots pinned before the last compacted commit see neither the old entries nor their balance
+            compacted.add(carried.apply(balance), carriedDay, lastSequence);
+        }
+        for (int i = 0; i < length; i++) {
+            if (epochDays[i] >= beforeEpochDay) {
+                compacted.add(elements[i], epochDays[i], sequences[i]);
+            }
+        }
+
+        sealed = true;
+
+        return compacted;
+    }
+
+    /**
+     * Sums the entries booked on or before the date without allocating
+     *
+     * @param asAtEpochDay Last booking date included, in days since 1970-01-01
+     * @return Debits less credits, in minor units
+     */
+    long sum(int asAtEpochDay) {
+
+        int length = size;
+        int[] days = epochDays;
+        long[] signedAmounts = amounts;
+
+        long sum = 0;
+        for (int i = 0; i < length; i++) {
+            if (days[i] <= asAtEpochDay) {
+                sum += signedAmounts[i];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Sums the entries booked on or before the date and committed at or before the sequence without allocating
+     *
+     * @param asAtEpochDay Last booking date included, in days since 1970-01-01
+     * @param maxSequence  Last {@link CommitSequence} number included
+     * @return Debits less credits, in minor units
+     */
+    long sum(int asAtEpochDay, long maxSequence) {
+
+        int length = size;
+        int[] days = epochDays;
+        long[] signedAmounts = amounts;
+        long[] commits = sequences;
+
+        long sum = 0;
+        for (int i = 0; i < length; i++) {
+            if (days[i] <= asAtEpochDay && commits[i] <= maxSequence) {
+                sum += signedAmounts[i];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Sums the debits and the credits booked within the dates apart without touching the {@link Entry} objects
+     *
+     * @param fromEpochDay First booking date included, in days since 1970-01-01
+     * @param toEpochDay   Last booking date included, in days since 1970-01-01
+     * @return Debits and credits in minor units, indexed by {@code AccountSide.ordinal()}
+     */
+    long[] totals(int fromEpochDay, int toEpochDay) {
+
+        int length = size;
+        int[] days = epochDays;
+        long[] signedAmounts = amounts;
+
+        long debits = 0;
+        long credits = 0;
+        for (int i = 0; i < length; i++) {
+            int day = days[i];
+            if (day >= fromEpochDay && day <= toEpochDay) {
+                long amount = signedAmounts[i];
+                if (amount > 0) {
+                    debits += amount;
+                } else {
+                    credits -= amount;
+                }
+            }
+        }
+
+        long[] totals = new long[2];
+        totals[DEBIT.ordinal()] = debits;
+        totals[CREDIT.ordinal()] = credits;
+        return totals;
+    }
+
+    int size() {
+
+        return size;
+    }
+
+    /**
+     * @return {@link EntrySpliterator} over the entries present at the time of the call
+     */
+    EntrySpliterator spliterator() {
+
+        int length = size;
+
+        return new EntrySpliterator(elements, 0, length, ExecutionPolicy.ledger().getSplitThreshold());
+    }
+
+    /**
+     * Scans the primitive columns for the entries within the dates whose signed amounts fall within either of two
+     * bands, touching an {@link Entry} only once it matches
+     *
+     * @param fromEpochDay First booking date, inclusive
+     * @param toEpochDay   Last booking date, inclusive
+     * @param bands        Inclusive bounds of signed amounts in minor units, as {@code [min, max, min, max]}
+     * @return {@link Spliterator} over the matching entries present at the time of the call, in the order of posting
+     */
+    Spliterator<Entry> scan(int fromEpochDay, int toEpochDay, long[] bands) {
+
+        int length = size;
+        Entry[] array = elements;
+        int[] days = epochDays;
+        long[] signedAmounts = amounts;
+
+        return new Spliterators.AbstractSpliterator<Entry>(length, Spliterator.ORDERED | Spliterator.NONNULL) {
+
+            private int index;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Entry> action) {
+
+                while (index < length) {
+                    int i = index++;
+                    int day = days[i];
+                    long amount = signedAmounts[i];
+                    if (day >= fromEpochDay && day <= toEpochDay && ((amount >= bands[0] && amount <= bands[1]) || (amount >= bands[2] && amount <= bands[3]))) {
+                        action.accept(array[i]);
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return Copy of the entries present at the time of the call
+     */
+    Entry[] toArray() {
+
+        int length = size;
+
+        return Arrays.copyOf(elements, length);
+    }
+
+    /**
+     * @param maxSequence Last {@link CommitSequence} number included
+     * @return Copy of the entries committed at or before the sequence
+     */
+    Entry[] toArray(long maxSequence) {
+
+        int length = size;
+        Entry[] array = elements;
+        long[] commits = sequences;
+
+        Entry[] committed = new Entry[length];
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            if (commits[i] <= maxSequence) {
+                committed[count++] = array[i];
+            }
+        }
+        return count == length ? committed : Arrays.copyOf(committed, count);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link Entry} items of an account arranged by booking date, and within the same booking date by the order in
+ * which they were posted. Since entries can be back-dated, the order of posting alone is not enough to produce
+ * statements.
+ * Each {@link Entry} is keyed by a {@code long} whose high 32 bits are the epoch day of the booking date and whose low
+ * 32 bits are a posting sequence, so that the natural order of the keys is the order of the timeline. The views
+ * returned are lazy and do not copy the entries, and being backed by a {@link ConcurrentSkipListMap} they can be
+ * iterated while postings continue.
+ *
+ * @author edwin.njeru
+ */
+public final class EntryTimeline {
+
+    private static final long SEQUENCE_MASK = 0xFFFFFFFFL;
+
+    private final NavigableMap<Long, Entry> timeline = new ConcurrentSkipListMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    EntryTimeline() {
+    }
+
+    /**
+     * @param epochDay Booking date in days since 1970-01-01
+     * @param sequence Order of posting within the same booking date
+     * @return Timeline key
+     */
+    public static long key(int epochDay, long sequence) {
+
+        return ((long) epochDay << 32) | (sequence & SEQUENCE_MASK);
+    }
+
+    /**
+     * @param key Timeline key
+     * @return Booking date, in days since 1970-01-01, of the key
+     */
+    public static int epochDay(long key) {
+
+        return (int) (key >> 32);
+    }
+
+    void add(Entry entry, int epochDay) {
+
+        timeline.put(key(epochDay, sequence.getAndIncrement()), entry);
+    }
+
+    /**
+     * Replaces the entries booked before a date with a single entry
+     *
+     * @param beforeEpochDay First booking date whose entries are kept
+     * @param carried        {@link Entry} to take the place of the others, or null for none
+     * @param carriedDay     Booking date of the carried entry, which must be before the first date kept
+     */
+    void compact(int beforeEpochDay, Entry carried, int carriedDay) {
+
+        timeline.headMap(key(beforeEpochDay, 0), false).clear();
+
+        if (carried != null) {
+            timeline.put(key(carriedDay, 0), carried);
+        }
+    }
+
+    /**
+     * @param fromEpochDay First booking date, inclusive
+     * @param toEpochDay   Last booking date, inclusive
+     * @return Read-only view of the {@link Entry} items booked within the dates
+     */
+    public NavigableMap<Long, Entry> between(int fromEpochDay, int toEpochDay) {
+
+        return Collections.unmodifiableNavigableMap(timeline.subMap(key(fromEpochDay, 0), true, key(toEpochDay, SEQUENCE_MASK), true));
+    }
+
+    /**
+     * @param epochDay Booking date, exclusive
+     * @return Read-only view of the {@link Entry} items booked before the date
+     */
+    public NavigableMap<Long, Entry> before(int epochDay) {
+
+        return Collections.unmodifiableNavigableMap(timeline.headMap(key(epochDay, 0), false));
+    }
+
+    /**
+     * @return Number of {@link Entry} items in the timeline
+     */
+    public int size() {
+
+        return timeline.size();
+    }
+}
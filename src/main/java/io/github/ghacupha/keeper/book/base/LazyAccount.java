@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Currency;
+import java.util.List;
+
+/**
+ * {@link Account} which is registered with nothing more than its {@link AccountDetails} and a pointer to where it is
+ * stored, and which is only loaded, through an {@link AccountLoader}, the first time anything beyond its details is
+ * asked of it. A ledger holding many accounts of which few are used on a given day therefore only pays, in start-up
+ * time and memory, for the accounts that are actually used.
+ * <p>When several threads touch the account for the first time together, only one of them loads it while the others
+ * wait for the result. If loading fails an {@link UncheckedIOException} is thrown, and the next access tries again.</p>
+ *
+ * @author edwin.njeru
+ */
+public final class LazyAccount implements Account {
+
+    private static final Logger log = LoggerFactory.getLogger(LazyAccount.class);
+
+    private final AccountDetails accountDetails;
+
+    private final String location;
+
+    private final AccountLoader loader;
+
+    private volatile SimpleAccount account;
+
+    public LazyAccount(AccountDetails accountDetails, String location, AccountLoader loader) {
+        this.accountDetails = accountDetails;
+        this.location = location;
+        this.loader = loader;
+    }
+
+    public static LazyAccount lazyAccount(AccountDetails accountDetails, String location, AccountLoader loader) {
+        return new LazyAccount(accountDetails, location, loader);
+    }
+
+    /**
+     * @return The loaded {@link SimpleAccount}, loading it if this is the first access
+     */
+    public SimpleAccount hydrate() {
+
+        SimpleAccount loaded = account;
+
+        if (loaded == null) {
+            synchronized (this) {
+                loaded = account;
+                if (loaded == null) {
+                    log.debug("Loading account : {} from : {}", accountDetails, location);
+                    try {
+                        loaded = loader.load(accountDetails, location);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(String.format("The account : %s could not be loaded from : %s", accountDetails, location), e);
+                    }
+                    account = loaded;
+                    log.debug("Account : {} loaded from : {}", accountDetails, location);
+                }
+            }
+        }
+
+        return loaded;
+    }
+
+    /**
+     * @return Whether the account has been loaded yet
+     */
+    public boolean isHydrated() {
+        return account != null;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    @Override
+    public void addEntry(Entry entry) throws MismatchedCurrencyException, UntimelyBookingDateException {
+        hydrate().addEntry(entry);
+    }
+
+    @Override
+    public AccountBalance balance(TimePoint asAt) {
+        return hydrate().balance(asAt);
+    }
+
+    @Override
+    public AccountBalance balance(int... asAt) {
+        return hydrate().balance(asAt);
+    }
+
+    @Override
+    public Currency getCurrency() {
+        return hydrate().getCurrency();
+    }
+
+    @Override
+    public TimePoint getOpeningDate() {
+        return accountDetails.getOpeningDate();
+    }
+
+    @Override
+    public AccountSide getAccountSide() {
+        return hydrate().getAccountSide();
+    }
+
+    @Override
+    public List<Entry> getEntries() {
+        return hydrate().getEntries();
+    }
+
+    @Override
+    public AccountDetails getAccountDetails() {
+        return accountDetails;
+    }
+
+    @Override
+    public void setAccountSide(AccountSide accountSide) {
+        hydrate().setAccountSide(accountSide);
+    }
+
+    @Override
+    public String toString() {
+        return accountDetails.getName() + " " + accountDetails.getNumber();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.time.point.TimePoint;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+
+/**
+ * Consistent view of the whole ledger as at a number of the {@link CommitSequence}. Every account read through the
+ * snapshot shows exactly the transactions committed up to that number, however long the report takes and however
+ * much is posted meanwhile, so a report over many accounts is never torn by a {@link Transaction} that was half way
+ * through posting. Taking and reading a snapshot neither blocks nor is blocked by posting.
+ *
+ * @author edwin.njeru
+ */
+public final class LedgerSnapshot {
+
+    private final long sequence;
+
+    LedgerSnapshot(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * @return {@link LedgerSnapshot} of the ledger as committed now
+     */
+    public static LedgerSnapshot snapshot() {
+        return CommitSequence.ledger().snapshot();
+    }
+
+    /**
+     * @return Number of the {@link CommitSequence} at which the snapshot is pinned
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @param account      {@link SimpleAccount} to be read
+     * @param asAtEpochDay Date as at which the balance is effective, in days since 1970-01-01
+     * @return Debits less credits in the snapshot, in minor units
+     */
+    public long balanceInMinorUnits(SimpleAccount account, int asAtEpochDay) {
+
+        return account.balanceInMinorUnits(asAtEpochDay, sequence);
+    }
+
+    /**
+     * @param account {@link SimpleAccount} to be read
+     * @param asAt    Date as at which the balance is effective
+     * @return {@link AccountBalance} of the account in the snapshot
+     */
+    public AccountBalance balance(SimpleAccount account, TimePoint asAt) {
+
+        long balance = balanceInMinorUnits(account, EpochDays.of(asAt));
+
+        AccountSide side = balance > 0 ? DEBIT : balance < 0 ? CREDIT : account.getAccountSide();
+
+        return new AccountBalance(MinorUnits.toCash(Math.abs(balance), account.getCurrency()), side);
+    }
+
+    /**
+     * @param account {@link SimpleAccount} to be read
+     * @return The {@link Entry} items of the account in the snapshot
+     */
+    public List<Entry> getEntries(SimpleAccount account) {
+
+        return Collections.unmodifiableList(Arrays.asList(account.getEntries(sequence)));
+    }
+
+    @Override
+    public String toString() {
+        return "snapshot at " + sequence;
+    }
+}
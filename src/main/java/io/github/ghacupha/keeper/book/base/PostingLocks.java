@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Takes the posting locks of all the accounts of a posting at once, see {@link SimpleAccount#postingLock()}. The
+ * locks are always taken in the order of {@link SimpleAccount#getOrdinal()}, so that postings spanning the same
+ * accounts in a different order never deadlock, and compaction, which only ever takes the lock of one account, waits
+ * for the postings in flight.
+ *
+ * @author edwin.njeru
+ */
+final class PostingLocks {
+
+    private PostingLocks() {
+    }
+
+    /**
+     * @param account {@link Account} of a leg
+     * @return The {@link SimpleAccount} holding the entries of the account, loading it if need be, or null for an
+     * account whose entries cannot be added alongside others as one posting
+     */
+    static SimpleAccount target(Account account) {
+
+        if (account instanceof SimpleAccount) {
+            return (SimpleAccount) account;
+        }
+        if (account instanceof LazyAccount) {
+            return ((LazyAccount) account).hydrate();
+        }
+        return null;
+    }
+
+    /**
+     * @param accounts Accounts of a posting, possibly repeated, nulls being skipped
+     * @return The distinct accounts whose locks have been taken, to be handed to {@link #unlock(SimpleAccount[])}
+     */
+    static SimpleAccount[] lock(SimpleAccount[] accounts) {
+
+        Map<SimpleAccount, Boolean> distinct = new IdentityHashMap<>();
+        for (SimpleAccount account : accounts) {
+            if (account != null) {
+                distinct.put(account, Boolean.TRUE);
+            }
+        }
+
+        SimpleAccount[] ordered = distinct.keySet().toArray(new SimpleAccount[0]);
+        Arrays.sort(ordered, Comparator.comparingLong(SimpleAccount::getOrdinal));
+
+        int locked = 0;
+        try {
+            for (SimpleAccount account : ordered) {
+                account.postingLock().lock();
+                locked++;
+            }
+        } finally {
+            if (locked < ordered.length) {
+                unlock(Arrays.copyOf(ordered, locked));
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * @param locked Accounts returned by {@link #lock(SimpleAccount[])}
+     */
+    static void unlock(SimpleAccount[] locked) {
+
+        for (int i = locked.length - 1; i >= 0; i--) {
+            locked[i].postingLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.cash.Cash;
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.PostingListener;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.keeper.book.util.PostingError;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.List;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+
+/**
+ * A {@link Transaction} to be validated or posted without exceptions. Instead of throwing, {@link #validate()} and
+ * {@link #post()} return a {@link PostingResult} with a {@link PostingError} code for the request and for each of its
+ * entries, which makes rejecting bad items of an import as cheap as accepting good ones, and tells the caller exactly
+ * which entries are at fault.
+ * <p>{@link #validate()} changes nothing and can be used as a pre-flight check. {@link #post()} posts all the entries
+ * if the request is valid and none of them otherwise. Only accounts held in a {@link SimpleAccount}, including a
+ * {@link LazyAccount} which is loaded for the purpose, can be posted to, since the entries of any other kind of
+ * account could not be checked ahead of posting.</p>
+ * <p>A request given an idempotency key is rejected as a {@link PostingError#DUPLICATE} if a transaction with the same
+ * key was posted within the window of the {@link DedupeStore} of the ledger.</p>
+ *
+ * @author edwin.njeru
+ */
+public final class PostingRequest {
+
+    private static final Logger log = LoggerFactory.getLogger(PostingRequest.class);
+
+    private final String label;
+
+    private final TimePoint date;
+
+    private final Currency currency;
+
+    private final List<Leg> legs = new ArrayList<>();
+
+    private boolean posted;
+
+    private boolean imbalanceAllowed;
+
+    private String idempotencyKey;
+
+    private PostingRequest(String label, TimePoint date, Currency currency) {
+        this.label = label;
+        this.date = date;
+        this.currency = currency;
+    }
+
+    public static PostingRequest postingRequest(String label, TimePoint date, Currency currency) {
+        return new PostingRequest(label, date, currency);
+    }
+
+    /**
+     * Adds an entry into the request, which is only checked when the request is validated or posted
+     *
+     * @param accountSide {@link AccountSide} of the entry
+     * @param amount      {@link Cash} amount of the entry
+     * @param account     {@link Account} into which the entry is to be posted
+     * @param details     {@link EntryDetails} of the entry
+     * @return This request
+     */
+    public synchronized PostingRequest addEntry(AccountSide accountSide, Cash amount, Account account, EntryDetails details) {
+
+        legs.add(new Leg(accountSide, amount, account, details));
+
+        return this;
+    }
+
+    /**
+     * Lets the request be posted although its debits and credits differ, for a request which is only the part of a
+     * transaction that falls in this ledger, whose other parts are posted elsewhere and whose balance as a whole has
+     * been checked by whoever split it
+     *
+     * @return This request
+     */
+    public synchronized PostingRequest allowImbalance() {
+
+        imbalanceAllowed = true;
+
+        return this;
+    }
+
+    /**
+     * @param key Key identifying the request across redeliveries, such as the reference of the upstream message
+     * @return This request
+     */
+    public synchronized PostingRequest idempotencyKey(String key) {
+
+        idempotencyKey = key;
+
+        return this;
+    }
+
+    /**
+     * @return {@link PostingResult} saying whether the request can be posted, leaving everything unchanged
+     */
+    public synchronized PostingResult validate() {
+
+        PostingError[] entryErrors = new PostingError[legs.size()];
+        PostingError error = check(entryErrors, targets());
+
+        if (error == null && idempotencyKey != null && DedupeStore.ledger().contains(idempotencyKey)) {
+            error = PostingError.DUPLICATE;
+        }
+
+        return PostingResult.rejected(error, entryErrors);
+    }
+
+    /**
+     * The legs are checked while the posting locks of their accounts are held, so that nothing can make a leg
+     * unpostable between its check and its posting, and the request is posted whole or not at all
+     *
+     * @return {@link PostingResult} of posting every entry if the request is valid, or of posting none if it is not
+     */
+    public synchronized PostingResult post() {
+
+        PostingError[] entryErrors = new PostingError[legs.size()];
+        SimpleAccount[] targets = targets();
+        SimpleEntry[] entries = new SimpleEntry[legs.size()];
+        PostingListener[][] listeners = new PostingListener[legs.size()][];
+
+        SimpleAccount[] locked = PostingLocks.lock(targets);
+        try {
+            PostingError error = check(entryErrors, targets);
+
+            if (error != null) {
+                log.debug("Posting request : {} rejected : {}", label, error);
+                return PostingResult.rejected(error, entryErrors);
+            }
+
+            DedupeStore dedupeStore = DedupeStore.ledger();
+            if (idempotencyKey != null && !dedupeStore.claim(idempotencyKey)) {
+                log.debug("Posting request : {} rejected as a duplicate of key : {}", label, idempotencyKey);
+                return PostingResult.rejected(PostingError.DUPLICATE, entryErrors);
+            }
+
+            for (int i = 0; i < entries.length; i++) {
+                Leg leg = legs.get(i);
+                entries[i] = new SimpleEntry(leg.accountSide, leg.account, leg.amount, date, leg.details);
+            }
+
+            CommitSequence commits = CommitSequence.ledger();
+            long sequence = commits.begin();
+            List<Entry> committed = null;
+            try {
+                for (int i = 0; i < entries.length; i++) {
+                    entries[i].stamp(sequence);
+                    listeners[i] = targets[i].addValidatedEntry(entries[i]);
+                }
+                committed = Arrays.<Entry>asList(entries);
+            } finally {
+                commits.complete(sequence, committed);
+                if (committed == null && idempotencyKey != null) {
+                    dedupeStore.release(idempotencyKey);
+                }
+            }
+        } finally {
+            PostingLocks.unlock(locked);
+        }
+
+        for (int i = 0; i < entries.length; i++) {
+            targets[i].notifyPosted(entries[i], listeners[i]);
+        }
+
+        posted = true;
+
+        return new PostingResult(true, null, entryErrors, Arrays.<Entry>asList(entries));
+    }
+
+    /**
+     * Posts each of the requests on its own, so that invalid requests do not hold up the valid ones
+     *
+     * @param requests {@link PostingRequest} items to be posted
+     * @return {@link PostingResult} of each request, in the order of the requests
+     */
+    public static List<PostingResult> postAll(Collection<PostingRequest> requests) {
+
+        List<PostingResult> results = new ArrayList<>(requests.size());
+        for (PostingRequest request : requests) {
+            results.add(request.post());
+        }
+        return results;
+    }
+
+    /**
+     * @param requests {@link PostingRequest} items to be checked
+     * @return {@link PostingResult} of validating each request, in the order of the requests
+     */
+    public static List<PostingResult> validateAll(Collection<PostingRequest> requests) {
+
+        List<PostingResult> results = new ArrayList<>(requests.size());
+        for (PostingRequest request : requests) {
+            results.add(request.validate());
+        }
+        return results;
+    }
+
+    /**
+     * @return The {@link SimpleAccount} holding the entries of each leg, or null for a leg whose account is of a kind
+     * that cannot be posted to as part of a request
+     */
+    private SimpleAccount[] targets() {
+
+        SimpleAccount[] targets = new SimpleAccount[legs.size()];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = PostingLocks.target(legs.get(i).account);
+        }
+        return targets;
+    }
+
+    private PostingError check(PostingError[] entryErrors, SimpleAccount[] targets) {
+
+        if (posted) {
+            return PostingError.ALREADY_POSTED;
+        }
+        if (legs.isEmpty()) {
+            return PostingError.NO_ENTRIES;
+        }
+
+        int epochDay = EpochDays.of(date);
+        boolean invalid = false;
+        long imbalance = 0;
+
+        for (int i = 0; i < entryErrors.length; i++) {
+
+            Leg leg = legs.get(i);
+
+            if (targets[i] == null) {
+                entryErrors[i] = PostingError.UNSUPPORTED_ACCOUNT;
+            } else if (!leg.account.getCurrency().equals(currency)) {
+                entryErrors[i] = PostingError.ACCOUNT_CURRENCY_MISMATCH;
+            } else if (!leg.amount.getCurrency().equals(currency)) {
+                entryErrors[i] = PostingError.AMOUNT_CURRENCY_MISMATCH;
+            } else if (date.before(leg.account.getOpeningDate())) {
+                entryErrors[i] = PostingError.BOOKING_DATE_BEFORE_OPENING_DATE;
+            } else if (targets[i].isClosed(epochDay)) {
+                entryErrors[i] = PostingError.PERIOD_CLOSED;
+            } else {
+                long amount = MinorUnits.of(leg.amount);
+                imbalance += leg.accountSide == DEBIT ? amount : -amount;
+                continue;
+            }
+            invalid = true;
+        }
+
+        return invalid ? PostingError.INVALID_ENTRIES : imbalance != 0 && !imbalanceAllowed ? PostingError.UNBALANCED : null;
+    }
+
+    @Override
+    public String toString() {
+        return "{'" + label + "', date=" + date + ", currency=" + currency + ", entries=" + legs.size() + '}';
+    }
+
+    private static final class Leg {
+
+        private final AccountSide accountSide;
+        private final Cash amount;
+        private final Account account;
+        private final EntryDetails details;
+
+        private Leg(AccountSide accountSide, Cash amount, Account account, EntryDetails details) {
+            this.accountSide = accountSide;
+            this.amount = amount;
+            this.account = account;
+            this.details = details;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.util.PostingError;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Outcome of validating or posting a {@link PostingRequest}: whether it was, or can be, posted, the error of the
+ * request as a whole if any, and the error of each entry by its position in the request.
+ *
+ * @author edwin.njeru
+ */
+public final class PostingResult {
+
+    private final boolean posted;
+
+    private final PostingError error;
+
+    private final PostingError[] entryErrors;
+
+    private final List<Entry> entries;
+
+    PostingResult(boolean posted, PostingError error, PostingError[] entryErrors, List<Entry> entries) {
+        this.posted = posted;
+        this.error = error;
+        this.entryErrors = entryErrors;
+        this.entries = entries;
+    }
+
+    /**
+     * @return True if the entries have been added into their accounts
+     */
+    public boolean isPosted() {
+        return posted;
+    }
+
+    /**
+     * @return True if nothing stands in the way of posting the request
+     */
+    public boolean isValid() {
+        return error == null;
+    }
+
+    /**
+     * @return {@link PostingError} of the request as a whole, or null if it is valid
+     */
+    public PostingError getError() {
+        return error;
+    }
+
+    /**
+     * @param index Position of the entry in the request
+     * @return {@link PostingError} of the entry, or null if the entry is valid
+     */
+    public PostingError getEntryError(int index) {
+        return entryErrors[index];
+    }
+
+    /**
+     * @return Positions in the request of the entries that are invalid
+     */
+    public int[] getInvalidEntries() {
+
+        return IntStream.range(0, entryErrors.length).filter(i -> entryErrors[i] != null).toArray();
+    }
+
+    /**
+     * @return {@link Entry} items posted, empty unless the request has been posted
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    static PostingResult rejected(PostingError error, PostingError[] entryErrors) {
+        return new PostingResult(false, error, entryErrors, Collections.emptyList());
+    }
+
+    @Override
+    public String toString() {
+        return (posted ? "posted" : error == null ? "valid" : error.name()) + (error == PostingError.INVALID_ENTRIES ? " " + Arrays.toString(entryErrors) : "");
+    }
+}
@@ -17,23 +17,38 @@ package io.github.ghacupha.keeper.book.base;
 
 import io.github.ghacupha.keeper.book.api.Account;
 import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.PostingListener;
 import io.github.ghacupha.keeper.book.balance.AccountBalance;
 import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.balance.MutableBalance;
 import io.github.ghacupha.keeper.book.base.state.AccountState;
-import io.github.ghacupha.keeper.book.util.ImmutableListCollector;
+import io.github.ghacupha.keeper.book.util.EpochDayRange;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
 import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
 import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
-import io.github.ghacupha.time.point.DateRange;
 import io.github.ghacupha.time.point.SimpleDate;
 import io.github.ghacupha.time.point.TimePoint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Currency;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
 import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
@@ -48,16 +63,17 @@ import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
  * Some non-guaranteed care has been taken to make the Implementation as thread-safe as possible. This may not
  * be obviously evident by the usual use of words like "synchronized" et al. In fact synchronization would probably just
  * slow us down. Instead what has been done is that the {@link Collection} of {@link Entry} items, which is the whole
- * concept of this Account pattern, has been implemented using a {@link List} interface implementation that creates a new
- * copy of itself every time time a mutative process is carried out. It's iterator as a result is guaranteed never to throw
- * {@code ConcurrentModificationException} and it does not reflect additions, removals or changes to the list, once they
- * have been created.
+ * concept of this Account pattern, has been implemented using an append-only array whose readers see a fixed snapshot
+ * of the entries present when they started. Its iterator as a result is guaranteed never to throw
+ * {@code ConcurrentModificationException} and it does not reflect additions to the account, once it has been created.
  */
 public final class SimpleAccount implements Account {
 
     private static final Logger log = LoggerFactory.getLogger(SimpleAccount.class);
 
-    private final AccountAppraisalDelegate appraisalDelegate = new AccountAppraisalDelegate(this);
+    private static final AtomicLong ordinals = new AtomicLong();
+
+    private final AccountAppraisalDelegate appraisalDelegate = new AccountAppraisalDelegate(this, this::entrySpliterator, this::entryTotals);
 
     private final Currency currency;
     private final AccountDetails accountDetails;
@@ -66,7 +82,28 @@ public final class SimpleAccount implements Account {
     @SuppressWarnings("unused")
     private AccountState accountState;
 
-    private volatile List<Entry> entries = new CopyOnWriteArrayList<>();
+    // Only ever replaced by a compacted copy of itself
+    private volatile EntryArray entries;
+
+    private final long ordinal = ordinals.incrementAndGet();
+
+    // Postings hold the read lock while they add entries and compaction holds the write lock, so that a period cannot
+    // close between an entry being checked against it and the entry being added
+    private final ReentrantReadWriteLock postingLock = new ReentrantReadWriteLock();
+
+    private volatile int closedBeforeEpochDay = Integer.MIN_VALUE;
+
+    // Number of holds on each booking date, taken under the read lock and released under the write lock, which
+    // compaction waits on while a date it would close is held
+    private final ConcurrentNavigableMap<Integer, Integer> holds = new ConcurrentSkipListMap<>();
+
+    private final Condition holdReleased = postingLock.writeLock().newCondition();
+
+    private final EntryTimeline timeline = new EntryTimeline();
+
+    // Replaced whole under the write lock of the posting lock, and read by postings under its read lock, so that each
+    // entry is handed to exactly the listeners registered before it was added
+    private volatile PostingListener[] postingListeners = new PostingListener[0];
 
     /**
      * This constructor will one day allow someone to implement the {@link List} interface with anything,
@@ -77,25 +114,54 @@ public final class SimpleAccount implements Account {
      * @param accountDetails {@link AccountDetails} describes the basic nature of this account from business domain's perspective
      * @param entries        {@link List<Entry>} collection allowing assignment of a Collection interface for this account. One day this
      *                       parameter will allow a dev to something like implement the list interface with a back end
-     *                       like a database or some Restful service making changes in this account persistent.
+     *                       like a database or some Restful service making changes in this account persistent. For now
+     *                       the entries are copied into the account's own storage.
      */
     SimpleAccount(AccountSide accountSide, Currency currency, AccountDetails accountDetails, final List<Entry> entries) {
         this.currency = currency;
         this.accountSide = accountSide;
         this.accountDetails = accountDetails;
-        this.entries = entries;
+        this.entries = new EntryArray();
+        entries.forEach(this::store);
     }
 
     public SimpleAccount(final AccountSide accountSide, Currency currency, AccountDetails accountDetails) {
         this.currency = currency;
         this.accountSide = accountSide;
         this.accountDetails = accountDetails;
+        this.entries = new EntryArray();
     }
 
     public static Account makeAccount(final AccountSide accountSide, Currency currency, AccountDetails accountDetails){
         return new SimpleAccount(accountSide, currency, accountDetails);
     }
 
+    /**
+     * Restores an account from storage. The entries read are taken as committed before the ledger started, so they are
+     * stored under the {@link CommitSequence} number zero, which every {@link LedgerSnapshot} sees, without taking
+     * commit numbers of their own or being published to the listeners of the sequence as new commits. They are not
+     * checked against the account either, since they were accepted when they were first posted.
+     *
+     * @param accountSide    {@link AccountSide} to which the account belongs by default
+     * @param currency       {@link Currency} of the account
+     * @param accountDetails {@link AccountDetails} of the account
+     * @param reader         {@link EntryReader} handed the account, before anyone else can see it, to read its entries
+     * @return The restored account
+     * @throws IOException if the entries could not be read
+     */
+    public static SimpleAccount restore(AccountSide accountSide, Currency currency, AccountDetails accountDetails, EntryReader reader) throws IOException {
+
+        SimpleAccount account = new SimpleAccount(accountSide, currency, accountDetails);
+
+        for (Entry entry : reader.read(account)) {
+            int epochDay = entry.getEpochDay();
+            account.append(entry, epochDay, 0);
+            account.timeline.add(entry, epochDay);
+        }
+
+        return account;
+    }
+
     /**
      * @param entry {@link Entry} to be added to this
      */
@@ -114,11 +180,251 @@ public final class SimpleAccount implements Account {
             String message = String.format("Currencies mismatched :Expected getCurrency : %s but found entry denominated in %s", this.currency.toString(), entry.getAmount().getCurrency());
             throw new MismatchedCurrencyException(message);
 
-        } else {
+        }
+
+        PostingListener[] listeners;
+        Lock lock = postingLock();
+        lock.lock();
+        try {
+            if (isClosed(entry.getEpochDay())) {
+                String message = String.format("Closed before : %s . The entry date was %s", EpochDays.toTimePoint(closedBeforeEpochDay), entry.getBookingDate());
+                throw new UntimelyBookingDateException("The booking date cannot fall in a period that has been closed : " + message);
+            }
+            listeners = addValidatedEntry(entry);
+        } finally {
+            lock.unlock();
+        }
+
+        notifyPosted(entry, listeners); // done
+    }
+
+    /**
+     * Adds an {@link Entry} whose currency and booking date have already been checked against this account, as is
+     * done once and for all by a {@link TransactionTemplate}. The caller holds the {@link #postingLock()} from the
+     * check against {@link #isClosed(int)} until the entry has been added, and calls
+     * {@link #notifyPosted(Entry, PostingListener[])} with the listeners returned once it has let go of the lock.
+     *
+     * @param entry {@link Entry} to be added to this
+     * @return The {@link PostingListener} items registered when the entry was added, which are to be notified of it
+     */
+    PostingListener[] addValidatedEntry(Entry entry) {
+
+        store(entry);
+
+        log.debug("Entry : {} has been added into account : {}", entry, this);
+
+        return postingListeners;
+    }
+
+    /**
+     * Hands the {@link Entry} just added to the {@link PostingListener} items. The entry is in the account by now, so
+     * a listener that fails is logged and the others are still called, rather than failing a posting that has happened
+     *
+     * @param entry     {@link Entry} added into this account
+     * @param listeners {@link PostingListener} items registered when the entry was added
+     */
+    void notifyPosted(Entry entry, PostingListener[] listeners) {
+
+        for (PostingListener listener : listeners) {
+            try {
+                listener.posted(this, entry);
+            } catch (RuntimeException e) {
+                log.error("Posting listener : {} failed on entry : {} of account : {}", listener, entry, this, e);
+            }
+        }
+    }
+
+    /**
+     * @return Lock held by postings while they check and add entries, which compaction waits for, see {@link PostingLocks}
+     */
+    Lock postingLock() {
+        return postingLock.readLock();
+    }
+
+    /**
+     * @return Order in which the {@link #postingLock()} of this account is taken among those of other accounts
+     */
+    long getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * @param epochDay Booking date, in days since 1970-01-01
+     * @return True if the date falls in a period that has been closed, see {@link #compact(TimePoint, EntryDetails)}
+     */
+    public boolean isClosed(int epochDay) {
+        return epochDay < closedBeforeEpochDay;
+    }
+
+    /**
+     * Keeps the booking date open until the hold is released, for an entry which has been promised to this account
+     * but is yet to be added, like a leg prepared in the first phase of a two-phase commit. A period covering the date
+     * is not closed meanwhile: {@link #compact(TimePoint, EntryDetails)} waits for the hold to be released.
+     *
+     * @param epochDay Booking date, in days since 1970-01-01
+     * @return False if the date is closed already, in which case no hold is taken
+     */
+    public boolean hold(int epochDay) {
+
+        Lock lock = postingLock();
+        lock.lock();
+        try {
+            if (isClosed(epochDay)) {
+                return false;
+            }
+            holds.merge(epochDay, 1, Integer::sum);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a hold taken by {@link #hold(int)}
+     *
+     * @param epochDay Booking date, in days since 1970-01-01
+     */
+    public void release(int epochDay) {
+
+        Lock lock = postingLock.writeLock();
+        lock.lock();
+        try {
+            holds.computeIfPresent(epochDay, (day, count) -> count == 1 ? null : count - 1);
+            holdReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void store(Entry entry) {
+
+        int epochDay = entry.getEpochDay();
+
+        long sequence = entry instanceof SimpleEntry ? ((SimpleEntry) entry).getCommitSequence() : 0;
+
+        if (sequence != 0) {
+            append(entry, epochDay, sequence);
+            timeline.add(entry, epochDay);
+            return;
+        }
+
+        // An entry added on its own rather than through a transaction is committed on its own
+        CommitSequence commits = CommitSequence.ledger();
+        sequence = commits.begin();
+        List<Entry> committed = null;
+        try {
+            append(entry, epochDay, sequence);
+            timeline.add(entry, epochDay);
+            committed = Collections.singletonList(entry);
+        } finally {
+            commits.complete(sequence, committed);
+        }
+    }
+
+    private void append(Entry entry, int epochDay, long sequence) {
+
+        // The array refuses the entry once it has been compacted, by which time the field holds, or is about to hold,
+        // the compacted array
+        while (!entries.add(entry, epochDay, sequence)) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Replaces the entries booked before the close date with a single entry, booked on the day before it, carrying
+     * their balance forward, so that balance queries and scans only go through the open period. The entries replaced
+     * are returned so that they can be archived, since the account can no longer answer for dates before the close,
+     * and entries booked before the close date are refused from now on.
+     * <p>Compaction waits for the postings in flight into this account, and postings wait for it, so an entry is
+     * either compacted and archived or refused for falling in the closed period. Readers already going through the
+     * entries are undisturbed. A {@link LedgerSnapshot} pinned before the last of
+     * the replaced entries was committed no longer sees them.</p>
+     * <p>Compaction also waits for every {@link #hold(int)} on a date before the close date to be released, so that
+     * an entry promised to the account can always be added.</p>
+     *
+     * @param closeDate First date of the period that remains open
+     * @param details   {@link EntryDetails} of the carried forward entry
+     * @return The {@link Entry} items replaced, in booking date order
+     */
+    public List<Entry> compact(TimePoint closeDate, EntryDetails details) {
+
+        int closeDay = EpochDays.of(closeDate);
+        int carriedDay = closeDay - 1;
+        TimePoint carriedDate = EpochDays.toTimePoint(carriedDay);
+
+        Lock lock = postingLock.writeLock();
+        lock.lock();
+        try {
+
+            while (!holds.headMap(closeDay).isEmpty()) {
+                log.debug("Compaction of account : {} before : {} waits for the booking dates held : {}", this, closeDate, holds.headMap(closeDay).keySet());
+                holdReleased.awaitUninterruptibly();
+            }
+
+            closedBeforeEpochDay = Math.max(closedBeforeEpochDay, closeDay);
 
-            entries.add(entry); // done
+            List<Entry> replaced = new ArrayList<>(timeline.before(closeDay).values());
+
+            Entry[] carried = new Entry[1];
+            entries = entries.compact(closeDay, balance -> carried[0] = new SimpleEntry(balance > 0 ? DEBIT : CREDIT, this, MinorUnits.toCash(Math.abs(balance), currency), carriedDate, details), carriedDay);
+            timeline.compact(closeDay, carried[0], carriedDay);
+
+            log.debug("{} entries of account : {} before : {} compacted into : {}", replaced.size(), this, closeDate, carried[0]);
+
+            return replaced;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registers a {@link PostingListener} to be notified of every {@link Entry} added into this account from now on.
+     * Entries already in the account are not replayed.
+     *
+     * @param listener {@link PostingListener} to be notified
+     */
+    public void addPostingListener(PostingListener listener) {
+
+        listen(listener);
+    }
+
+    /**
+     * Registers a {@link PostingListener} to be notified of every {@link Entry} added into this account from now on,
+     * and returns the entries already in it. No posting is in progress meanwhile, so the entries returned and those
+     * notified to the listener together make up every entry of the account, each appearing once, which lets derived
+     * structures be built from the entries returned and kept current by the listener without counting an entry twice.
+     *
+     * @param listener {@link PostingListener} to be notified
+     * @return {@link Entry} items in the account before the listener was registered, of which it is not notified
+     */
+    public List<Entry> listen(PostingListener listener) {
+
+        Lock lock = postingLock.writeLock();
+        lock.lock();
+        try {
+            PostingListener[] listeners = Arrays.copyOf(postingListeners, postingListeners.length + 1);
+            listeners[listeners.length - 1] = listener;
+            postingListeners = listeners;
+            return getEntries();
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            log.debug("Entry : {} has been added into account : {}", entry, this);
+    /**
+     * @param listener {@link PostingListener} that will no longer be notified of postings
+     */
+    public void removePostingListener(PostingListener listener) {
+
+        Lock lock = postingLock.writeLock();
+        lock.lock();
+        try {
+            List<PostingListener> listeners = new ArrayList<>(Arrays.asList(postingListeners));
+            listeners.remove(listener);
+            postingListeners = listeners.toArray(new PostingListener[0]);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -133,7 +439,7 @@ public final class SimpleAccount implements Account {
 
         log.debug("Account balance enquiry raised as at {}, for account : {}", asAt, this);
 
-        AccountBalance balance = appraisalDelegate.balance(new DateRange(accountDetails.getOpeningDate(), asAt));
+        AccountBalance balance = appraisalDelegate.balance(EpochDayRange.between(accountDetails.getOpeningDate(), asAt));
 
         log.debug("Returning accounting balance for {} as at : {} as : {}", this, asAt, balance);
 
@@ -161,6 +467,51 @@ public final class SimpleAccount implements Account {
         return balance;
     }
 
+    /**
+     * Balance query for hot paths which allocates nothing, unlike {@link #balance(TimePoint)}
+     *
+     * @param asAtEpochDay Date as at which the balance is effective, in days since 1970-01-01
+     * @return Debits less credits up to and including the date, in minor units of the currency. A positive
+     * figure is a {@link AccountSide#DEBIT} balance and a negative figure a {@link AccountSide#CREDIT} balance
+     */
+    public long balanceInMinorUnits(int asAtEpochDay) {
+
+        return entries.sum(asAtEpochDay);
+    }
+
+    /**
+     * @param asAtEpochDay Date as at which the balance is effective, in days since 1970-01-01
+     * @param maxSequence  Last {@link CommitSequence} number whose entries are counted
+     * @return Debits less credits committed at or before the sequence, in minor units
+     */
+    long balanceInMinorUnits(int asAtEpochDay, long maxSequence) {
+
+        return entries.sum(asAtEpochDay, maxSequence);
+    }
+
+    /**
+     * @param maxSequence Last {@link CommitSequence} number whose entries are returned
+     * @return The entries committed at or before the sequence
+     */
+    Entry[] getEntries(long maxSequence) {
+
+        return entries.toArray(maxSequence);
+    }
+
+    /**
+     * Balance query for hot paths which writes the balance into a holder supplied by the caller and allocates nothing.
+     * A zero balance is reported on the account's current {@link AccountSide}.
+     *
+     * @param asAtEpochDay Date as at which the balance is effective, in days since 1970-01-01
+     * @param balance      {@link MutableBalance} into which the amount and side of the balance are written
+     */
+    public void balance(int asAtEpochDay, MutableBalance balance) {
+
+        long sum = entries.sum(asAtEpochDay);
+
+        balance.set(Math.abs(sum), sum > 0 ? DEBIT : sum < 0 ? CREDIT : getAccountSide());
+    }
+
     /**
      * @return Currency of the account
      */
@@ -172,11 +523,60 @@ public final class SimpleAccount implements Account {
     @Override
     public List<Entry> getEntries() {
 
-        return new CopyOnWriteArrayList<>(
-                entries
-                        .parallelStream()
-                        .collect(
-                                ImmutableListCollector.toImmutableList()));
+        return new CopyOnWriteArrayList<>(entries.toArray());
+    }
+
+    /**
+     * @return Sized {@link Spliterator} over the entries in the account at the time of the call, which only splits for
+     * parallel processing when the account is large enough for that to pay off
+     */
+    Spliterator<Entry> entrySpliterator() {
+
+        return entries.spliterator();
+    }
+
+    /**
+     * @return Debits and credits booked within the dates, in minor units, summed from the primitive columns of the
+     * account
+     */
+    long[] entryTotals(int fromEpochDay, int toEpochDay) {
+
+        return entries.totals(fromEpochDay, toEpochDay);
+    }
+
+    /**
+     * Streams the entries matching a filter on the side, booking date and amount by scanning the primitive columns of
+     * the account, so that only the matching {@link Entry} objects are touched. The stream is lazy and sees the entries
+     * present when it was created.
+     *
+     * @param range       {@link EpochDayRange} of the booking dates included
+     * @param accountSide {@link AccountSide} of the entries included, or null for both
+     * @param minAmount   Smallest amount included, in minor units
+     * @param maxAmount   Largest amount included, in minor units
+     * @return Matching entries in the order of posting
+     */
+    public Stream<Entry> scan(EpochDayRange range, AccountSide accountSide, long minAmount, long maxAmount) {
+
+        // Debits are held as positive and credits as negative amounts; an empty band is one whose min exceeds its max
+        long[] bands = {1, 0, 1, 0};
+        if (accountSide != CREDIT) {
+            bands[0] = minAmount;
+            bands[1] = maxAmount;
+        }
+        if (accountSide != DEBIT) {
+            bands[2] = -maxAmount;
+            bands[3] = -minAmount;
+        }
+
+        return StreamSupport.stream(entries.scan(range.getFromEpochDay(), range.getToEpochDay(), bands), false);
+    }
+
+    /**
+     * @return {@link EntryTimeline} of this account's {@link Entry} items in booking date order
+     */
+    public EntryTimeline getTimeline() {
+
+        return timeline;
     }
 
     @Override
@@ -216,4 +616,19 @@ public final class SimpleAccount implements Account {
 
         this.accountSide = accountSide;
     }
+
+    /**
+     * Reads the entries of an account being restored, see
+     * {@link #restore(AccountSide, Currency, AccountDetails, EntryReader)}
+     */
+    @FunctionalInterface
+    public interface EntryReader {
+
+        /**
+         * @param account {@link SimpleAccount} being restored, to which the entries read are to belong
+         * @return {@link Entry} items of the account, in the order in which they were posted
+         * @throws IOException if the entries could not be read
+         */
+        List<Entry> read(SimpleAccount account) throws IOException;
+    }
 }
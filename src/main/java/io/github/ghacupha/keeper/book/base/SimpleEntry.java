@@ -19,6 +19,8 @@ import io.github.ghacupha.cash.Cash;
 import io.github.ghacupha.keeper.book.api.Account;
 import io.github.ghacupha.keeper.book.api.Entry;
 import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.IdGenerator;
 import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
 import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
 import io.github.ghacupha.time.point.TimePoint;
@@ -47,6 +49,10 @@ public final class SimpleEntry implements Entry {
 
     private static final Logger log = LoggerFactory.getLogger(SimpleEntry.class);
 
+    private static final IdGenerator ids = new IdGenerator();
+
+    private final long id = ids.next();
+
     // pointer to the Account
     private final Account forAccount;
 
@@ -59,17 +65,48 @@ public final class SimpleEntry implements Entry {
     // Date when the entry is booked
     private final TimePoint bookingDate;
 
+    // The booking date in days since 1970-01-01, which range checks compare instead of the TimePoint
+    private final int epochDay;
+
     // description of the Entry
     private final EntryDetails entryDetails;
 
+    // commit sequence number of the transaction that posted the Entry, zero until then
+    private volatile long commitSequence;
+
     SimpleEntry(AccountSide accountSide, Account forAccount, Cash amount, TimePoint bookingDate, EntryDetails entryDetails) {
         this.forAccount = forAccount;
         this.accountSide = accountSide;
         this.amount = amount;
         this.bookingDate = bookingDate;
+        this.epochDay = EpochDays.of(bookingDate);
         this.entryDetails = entryDetails;
     }
 
+    /**
+     * Creates an {@link Entry} outside of a {@link io.github.ghacupha.keeper.book.api.Transaction}, as when restoring
+     * entries that had been posted before from storage
+     *
+     * @param accountSide  {@link AccountSide} of the entry
+     * @param forAccount   {@link Account} to which the entry belongs
+     * @param amount       {@link Cash} amount of the entry
+     * @param bookingDate  {@link TimePoint} on which the entry is booked
+     * @param entryDetails {@link EntryDetails} of the entry
+     * @return The {@link Entry}
+     */
+    public static Entry makeEntry(AccountSide accountSide, Account forAccount, Cash amount, TimePoint bookingDate, EntryDetails entryDetails) {
+        return new SimpleEntry(accountSide, forAccount, amount, bookingDate, entryDetails);
+    }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    Account getAccount() {
+        return forAccount;
+    }
+
     @Override
     public EntryDetails getEntryDetails() {
         return entryDetails;
@@ -90,11 +127,28 @@ public final class SimpleEntry implements Entry {
         return bookingDate;
     }
 
+    @Override
+    public int getEpochDay() {
+        return epochDay;
+    }
+
     @Override
     public Cash getAmount() {
         return amount;
     }
 
+    /**
+     * @return {@link CommitSequence} number under which the {@link Entry} was posted, or zero if it has not been
+     * stamped by a transaction
+     */
+    public long getCommitSequence() {
+        return commitSequence;
+    }
+
+    void stamp(long commitSequence) {
+        this.commitSequence = commitSequence;
+    }
+
     @Override
     public void post() {
         try {
@@ -110,6 +164,22 @@ public final class SimpleEntry implements Entry {
         }
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return id == ((SimpleEntry) o).id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(id);
+    }
+
     @Override
     public String toString() {
         return entryDetails.toString();
@@ -18,25 +18,31 @@ package io.github.ghacupha.keeper.book.base;
 import io.github.ghacupha.cash.Cash;
 import io.github.ghacupha.keeper.book.api.Account;
 import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.PostingListener;
 import io.github.ghacupha.keeper.book.api.Transaction;
 import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.ExecutionPolicy;
+import io.github.ghacupha.keeper.book.util.IdGenerator;
 import io.github.ghacupha.keeper.book.util.ImmutableEntryException;
 import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
 import io.github.ghacupha.keeper.book.util.UnableToPostException;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
 import io.github.ghacupha.time.point.TimePoint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Currency;
 import java.util.List;
-import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
 
-import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
 import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
 
 /**
@@ -45,6 +51,16 @@ import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
  * {@link List} whose implementation involved a data structure that copies itself for every mutative procedure that
  * is done, in this case involving addition of {@link Entry} items. There is a boolean that says whether or not the
  * {@link Transaction} has been posted, which is dangerously non final, but is volatile nevertheless.
+ * The debit and credit totals are kept up to date, in exact minor units of the currency, as entries are added, so
+ * that whether the transaction balances is known at any time without going through the entries.
+ * Posting stamps every entry with one number from the {@link CommitSequence} of the ledger, so that a
+ * {@link LedgerSnapshot} sees either all the entries of the transaction or none of them.
+ * Transactions are told apart, and hashed, by an id given at creation, which unlike their contents does not change as
+ * entries are added or the transaction is posted.
+ * A transaction may carry an idempotency key, which is claimed in the {@link DedupeStore} of the ledger when it is
+ * posted, so that a redelivered copy of it is refused rather than posted a second time. The key is only claimed once
+ * every entry has been checked against its account, and is released again if posting fails, so that a transaction
+ * which did not post never keeps its redelivery out.
  *
  * @author edwin.njeru
  */
@@ -52,6 +68,10 @@ public final class SimpleTransaction implements Transaction {
 
     private static final Logger log = LoggerFactory.getLogger(SimpleTransaction.class);
 
+    private static final IdGenerator ids = new IdGenerator();
+
+    private final long id = ids.next();
+
     private final String label;
 
     private final TimePoint date;
@@ -59,13 +79,25 @@ public final class SimpleTransaction implements Transaction {
     private volatile boolean wasPosted;
     private final Currency currency;
 
+    private final String idempotencyKey;
+
     private final List<Entry> entries = new CopyOnWriteArrayList<>();
 
+    private final AtomicLong debits = new AtomicLong();
+
+    private final AtomicLong credits = new AtomicLong();
+
     SimpleTransaction(String label, TimePoint date, Currency currency) {
 
+        this(label, date, currency, null);
+    }
+
+    SimpleTransaction(String label, TimePoint date, Currency currency, String idempotencyKey) {
+
         this.label = label;
         this.date = date;
         this.currency = currency;
+        this.idempotencyKey = idempotencyKey;
 
         log.info("SimpleTransaction created {}", this);
     }
@@ -74,24 +106,17 @@ public final class SimpleTransaction implements Transaction {
         return new SimpleTransaction(label, date, currency);
     }
 
-    private static Double mapCashToDouble(Entry entry) {
-        return entry.getAmount().getNumber().doubleValue();
-    }
-
-    private static boolean predicateCredits(Entry entry) {
-        boolean credit;
-        log.trace("Checking if entry {} is credit ", entry.getEntryDetails());
-        credit = entry.getAccountSide() == CREDIT;
-        log.trace("Entry : {} is credit {}", entry.getEntryDetails(), credit);
-        return credit;
-    }
-
-    private static boolean predicateDebits(Entry entry) {
-        boolean debit;
-        log.trace("Checking if entry {} is debit ", entry.getEntryDetails());
-        debit = entry.getAccountSide() == DEBIT;
-        log.trace("Entry : {} is credit {}", entry.getEntryDetails(), debit);
-        return debit;
+    /**
+     * @param label          Label of the transaction
+     * @param date           Booking date of the entries
+     * @param currency       Currency of the entries
+     * @param idempotencyKey Key identifying the transaction across redeliveries, such as the reference of the upstream
+     *                       message it came from
+     * @return {@link Transaction} which is refused if a transaction with the same key was posted within the window of
+     * the {@link DedupeStore} of the ledger
+     */
+    public static Transaction getTransaction(String label, TimePoint date, Currency currency, String idempotencyKey) {
+        return new SimpleTransaction(label, date, currency, idempotencyKey);
     }
 
     /**
@@ -114,45 +139,148 @@ public final class SimpleTransaction implements Transaction {
             log.debug("Adding entry  : {} into transaction : {}", details, this);
             Entry tempEntry = new SimpleEntry(accountSide, account, amount, date, details);
             entries.add(tempEntry);
+            (accountSide == DEBIT ? debits : credits).addAndGet(MinorUnits.of(amount));
             log.debug("Entry {} has been added to {}", tempEntry, this);
         }
     }
 
     /**
-     * Posts the transactions into respective {@link Account} items
+     * Posts the transactions into respective {@link Account} items.
+     * <p>The entries into accounts held in a {@link SimpleAccount}, including a {@link LazyAccount}, are checked
+     * against the opening date, the currency and the closed periods of their accounts while the posting locks of those
+     * accounts are held, and nothing is posted unless every one of them can be. The entries into any other kind of
+     * account cannot be checked ahead, so they are added first, and should one of them be refused the transaction
+     * fails with the entries added before it left in their accounts.</p>
      *
      * @throws UnableToPostException {@link UnableToPostException} thrown when the transaction is not balanced
-     *                               That is if the items posted on the debit are more than those posted on the credit or vice versa.
+     *                               That is if the items posted on the debit are more than those posted on the credit or vice versa,
+     *                               when a transaction with the same idempotency key has already been posted, or when
+     *                               an entry cannot be posted into its account
      */
     @Override
     public void post() throws UnableToPostException {
 
-        if (balanced() != 0) {
+        long imbalance = imbalanceInMinorUnits();
+
+        if (imbalance != 0) {
 
-            if (balanced() > 0) {
+            if (imbalance > 0) {
 
-                throw new UnableToPostException(String.format("The debits are more than credits by : %s", balanced()));
+                throw new UnableToPostException(String.format("The debits are more than credits by : %s", MinorUnits.toCash(imbalance, currency)));
 
             } else {
 
-                throw new UnableToPostException(String.format("The credits are more than debits by : %s", balanced() * -1));
+                throw new UnableToPostException(String.format("The credits are more than debits by : %s", MinorUnits.toCash(-imbalance, currency)));
             }
 
-        } else {
+        }
+
+        SimpleEntry[] legs = entries.toArray(new SimpleEntry[0]);
+        SimpleAccount[] targets = new SimpleAccount[legs.length];
+        PostingListener[][] listeners = new PostingListener[legs.length][];
+        for (int i = 0; i < legs.length; i++) {
+            targets[i] = PostingLocks.target(legs[i].getAccount());
+        }
+
+        SimpleAccount[] locked = PostingLocks.lock(targets);
+        try {
+            check(legs, targets);
+
+            DedupeStore dedupeStore = DedupeStore.ledger();
+
+            if (idempotencyKey != null && !dedupeStore.claim(idempotencyKey)) {
+
+                throw new UnableToPostException(String.format("A transaction with the idempotency key : %s has already been posted", idempotencyKey));
+            }
+
+            log.debug("Posting : {} entries ...", legs.length);
+
+            // Every entry carries the same commit sequence, which only becomes visible to snapshots once all are in
+            CommitSequence commits = CommitSequence.ledger();
+            long sequence = commits.begin();
+            List<Entry> committed = null;
+            try {
+                List<Integer> validated = new ArrayList<>(legs.length);
+                for (int i = 0; i < legs.length; i++) {
+                    legs[i].stamp(sequence);
+                    if (targets[i] == null) {
+                        addUnchecked(legs[i]);
+                    } else {
+                        validated.add(i);
+                    }
+                }
+                ExecutionPolicy policy = ExecutionPolicy.ledger();
+                policy.forEach(validated, policy.getPostingThreshold(), i -> listeners[i] = targets[i].addValidatedEntry(legs[i]));
+                committed = Collections.unmodifiableList(entries);
+            } finally {
+                commits.complete(sequence, committed);
+                if (committed == null && idempotencyKey != null) {
+                    // the transaction failed, so a redelivery of it must not be refused as a duplicate
+                    dedupeStore.release(idempotencyKey);
+                }
+            }
+        } finally {
+            PostingLocks.unlock(locked);
+        }
+
+        for (int i = 0; i < legs.length; i++) {
+            if (targets[i] != null) {
+                targets[i].notifyPosted(legs[i], listeners[i]);
+            }
+        }
+
+        wasPosted = true;
+    }
+
+    /**
+     * Checks each entry held in a {@link SimpleAccount} against its account, under the posting locks
+     */
+    private void check(SimpleEntry[] legs, SimpleAccount[] targets) throws UnableToPostException {
 
-            log.debug("Posting : {} entries ...", entries.size());
+        int epochDay = EpochDays.of(date);
 
-            entries.parallelStream().forEach(Entry::post);
+        for (int i = 0; i < legs.length; i++) {
 
-            wasPosted = true;
+            SimpleAccount target = targets[i];
+            if (target == null) {
+                continue;
+            }
+            if (!target.getCurrency().equals(legs[i].getAmount().getCurrency())) {
+                throw new UnableToPostException(String.format("The entry : %s is not in the currency of its account : %s", legs[i], target));
+            }
+            if (date.before(target.getOpeningDate())) {
+                throw new UnableToPostException(String.format("The booking date : %s is earlier than the opening date : %s of the account : %s", date, target.getOpeningDate(), target));
+            }
+            if (target.isClosed(epochDay)) {
+                throw new UnableToPostException(String.format("The booking date : %s falls in a closed period of the account : %s", date, target));
+            }
         }
     }
 
-    private double balanced() {
+    private static void addUnchecked(SimpleEntry entry) throws UnableToPostException {
+
+        try {
+            entry.getAccount().addEntry(entry);
+        } catch (UntimelyBookingDateException | MismatchedCurrencyException e) {
+            throw new UnableToPostException(String.format("The entry : %s was refused by its account : %s", entry, entry.getAccount()), e);
+        }
+    }
+
+    @Override
+    public boolean isBalanced() {
+
+        return imbalanceInMinorUnits() == 0;
+    }
+
+    @Override
+    public Cash imbalance() {
+
+        return MinorUnits.toCash(imbalanceInMinorUnits(), currency);
+    }
 
-        double debits = entries.parallelStream().filter(SimpleTransaction::predicateDebits).map(SimpleTransaction::mapCashToDouble).reduce(0.00, (acc, val) -> acc + val);
+    private long imbalanceInMinorUnits() {
 
-        return debits - entries.parallelStream().filter(SimpleTransaction::predicateCredits).map(SimpleTransaction::mapCashToDouble).reduce(0.00, (acc, val) -> acc + val);
+        return debits.get() - credits.get();
     }
 
     @Override
@@ -161,6 +289,35 @@ public final class SimpleTransaction implements Transaction {
         return Collections.unmodifiableSet(new CopyOnWriteArraySet<>(entries));
     }
 
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public TimePoint getDate() {
+        return date;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    /**
+     * @return True once the entries have been posted into their accounts
+     */
+    public boolean isPosted() {
+        return wasPosted;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -169,22 +326,18 @@ public final class SimpleTransaction implements Transaction {
         if (o == null || getClass() != o.getClass()) {
             return false;
         }
-        SimpleTransaction that = (SimpleTransaction) o;
-        return wasPosted == that.wasPosted &&
-                Objects.equals(label, that.label) &&
-                Objects.equals(date, that.date) &&
-                Objects.equals(currency, that.currency) &&
-                Objects.equals(entries, that.entries);
+        return id == ((SimpleTransaction) o).id;
     }
 
     @Override
     public int hashCode() {
 
-        return Objects.hash(label, date, wasPosted, currency, entries);
+        return Long.hashCode(id);
     }
 
     public String toString() {
         final StringBuilder sb = new StringBuilder("{");
+        sb.append('#').append(id).append(' ');
         sb.append('\'').append(label).append('\'');
         sb.append(", date=").append(date);
         sb.append(", currency=").append(currency);
@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.util.ImmutableEntryException;
+import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
+import io.github.ghacupha.keeper.book.util.UnableToPostException;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+
+/**
+ * Index of posted transactions by {@link Transaction#getId()}, from which a transaction can be looked up, and reversed,
+ * in constant time. Transactions are indexed as they are posted through {@link #post(Transaction)}, or can be added
+ * after the fact with {@link #index(Transaction)}. A transaction can be reversed only once; the reversal is itself
+ * indexed and remembers which transaction it reverses.
+ *
+ * @author edwin.njeru
+ */
+public final class TransactionIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionIndex.class);
+
+    private final Map<Long, Transaction> transactions = new ConcurrentHashMap<>();
+
+    // reversed transaction id to the id of its reversal
+    private final Map<Long, Long> reversals = new ConcurrentHashMap<>();
+
+    /**
+     * Posts the {@link Transaction} and indexes it
+     *
+     * @param transaction {@link Transaction} to be posted
+     * @throws UnableToPostException   if the transaction is not balanced
+     * @throws ImmutableEntryException if the transaction has been posted before
+     */
+    public void post(Transaction transaction) throws UnableToPostException, ImmutableEntryException {
+
+        transaction.post();
+
+        index(transaction);
+    }
+
+    /**
+     * @param transaction {@link Transaction} to be found by its id
+     */
+    public void index(Transaction transaction) {
+
+        transactions.put(transaction.getId(), transaction);
+    }
+
+    /**
+     * @param id Id of a {@link Transaction}
+     * @return The {@link Transaction}, or null if none with that id has been indexed
+     */
+    public Transaction find(long id) {
+
+        return transactions.get(id);
+    }
+
+    /**
+     * @param id Id of a {@link Transaction}
+     * @return Id of the transaction which reversed it, or zero if it has not been reversed
+     */
+    public long reversalOf(long id) {
+
+        Long reversal = reversals.get(id);
+
+        return reversal == null ? 0 : reversal;
+    }
+
+    /**
+     * Posts a {@link Transaction} whose entries mirror those of the one with the given id, each on the other side of
+     * the same account
+     *
+     * @param id   Id of the {@link Transaction} to be reversed
+     * @param date Booking date of the reversal
+     * @return The reversal, which is posted and indexed
+     * @throws UnableToPostException       if there is no posted transaction with the id, or if it has already been reversed
+     * @throws MismatchedCurrencyException if the entries could not be reversed into their accounts
+     * @throws ImmutableEntryException     if the reversal could not be built
+     */
+    public Transaction reverse(long id, TimePoint date) throws UnableToPostException, MismatchedCurrencyException, ImmutableEntryException {
+
+        Transaction original = transactions.get(id);
+
+        if (!(original instanceof SimpleTransaction) || !((SimpleTransaction) original).isPosted()) {
+            throw new UnableToPostException("There is no posted transaction with the id : " + id);
+        }
+        if (reversals.putIfAbsent(id, 0L) != null) {
+            throw new UnableToPostException("The transaction with the id : " + id + " has already been reversed");
+        }
+
+        SimpleTransaction transaction = (SimpleTransaction) original;
+        Transaction reversal = new SimpleTransaction("Reversal of " + transaction.getLabel(), date, transaction.getCurrency());
+
+        try {
+            for (Entry entry : transaction.getEntries()) {
+                reversal.addEntry(entry.getAccountSide() == DEBIT ? CREDIT : DEBIT, entry.getAmount(), ((SimpleEntry) entry).getAccount(), entry.getEntryDetails());
+            }
+            post(reversal);
+        } catch (UnableToPostException | MismatchedCurrencyException | ImmutableEntryException | RuntimeException e) {
+            reversals.remove(id);
+            throw e;
+        }
+
+        reversals.put(id, reversal.getId());
+
+        log.debug("Transaction : {} reversed by : {}", id, reversal.getId());
+
+        return reversal;
+    }
+
+    /**
+     * @return Number of transactions in the index
+     */
+    public int size() {
+
+        return transactions.size();
+    }
+}
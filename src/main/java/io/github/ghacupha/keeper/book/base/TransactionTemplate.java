@@ -0,0 +1,272 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.cash.Cash;
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.PostingListener;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+
+/**
+ * The fixed shape of a {@link Transaction} that is posted again and again with different amounts, like paying a
+ * supplier where the expense is debited and the VAT and the bank are credited.
+ * <p>Each leg fixes the {@link Account}, the {@link AccountSide}, the {@link EntryDetails} and a weight. When the
+ * template is posted with an amount, that amount is shared between the legs of each side in proportion to their
+ * weights, in exact minor units with the odd units going to the legs with the largest remainders, so that both sides
+ * always add up to the amount and the posting is balanced by construction.</p>
+ * <p>Currencies are checked when a leg is added, and the latest opening date of the accounts is worked out then too,
+ * so a posting only needs to compare its date with that one date. The {@link EntryDetails} of a leg is shared by every
+ * {@link Entry} the leg creates. Once legs have been added a template can be posted from many threads at once.</p>
+ * <p>Only accounts held in a {@link SimpleAccount}, including a {@link LazyAccount}, can take a leg, so that every leg
+ * is checked against the closed periods of its account before the first {@link Entry} is added and a posting never
+ * stops half way.</p>
+ *
+ * @author edwin.njeru
+ */
+public final class TransactionTemplate {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionTemplate.class);
+
+    private final String label;
+
+    private final Currency currency;
+
+    private Leg[] legs = new Leg[0];
+
+    private long debitWeight;
+
+    private long creditWeight;
+
+    private TimePoint earliestBookingDate;
+
+    private TransactionTemplate(String label, Currency currency) {
+        this.label = label;
+        this.currency = currency;
+    }
+
+    public static TransactionTemplate template(String label, Currency currency) {
+        return new TransactionTemplate(label, currency);
+    }
+
+    /**
+     * Adds a leg into the template
+     *
+     * @param accountSide {@link AccountSide} of the {@link Entry} created by the leg
+     * @param account     {@link Account} into which the leg posts
+     * @param weight      Share of the amount of its side that goes to this leg, relative to the other legs of the side
+     * @param details     {@link EntryDetails} of the {@link Entry} created by the leg
+     * @return This template
+     * @throws MismatchedCurrencyException if the currency of the {@link Account} differs from that of the template
+     * @throws IllegalArgumentException    if the {@link Account} is neither a {@link SimpleAccount} nor a
+     *                                     {@link LazyAccount}, or the weight is not positive
+     */
+    public synchronized TransactionTemplate leg(AccountSide accountSide, Account account, long weight, EntryDetails details) throws MismatchedCurrencyException {
+
+        if (!(account instanceof SimpleAccount || account instanceof LazyAccount)) {
+            throw new IllegalArgumentException(String.format("Cannot add a leg in account : %s whose entries cannot be checked ahead of posting", account));
+        }
+        if (!account.getCurrency().equals(currency)) {
+            throw new MismatchedCurrencyException(String.format("Cannot add a leg in account : %s whose currency differs from that of the template : %s", account, currency));
+        }
+        if (weight <= 0) {
+            throw new IllegalArgumentException("The weight of a leg must be positive, but was " + weight);
+        }
+
+        Leg[] extended = Arrays.copyOf(legs, legs.length + 1);
+        extended[legs.length] = new Leg(accountSide, account, weight, details);
+
+        if (accountSide == DEBIT) {
+            debitWeight = Math.addExact(debitWeight, weight);
+        } else {
+            creditWeight = Math.addExact(creditWeight, weight);
+        }
+        if (earliestBookingDate == null || earliestBookingDate.before(account.getOpeningDate())) {
+            earliestBookingDate = account.getOpeningDate();
+        }
+        legs = extended;
+
+        log.debug("Leg : {} added into template : {}", extended[legs.length - 1], label);
+
+        return this;
+    }
+
+    /**
+     * Posts the amount on either side, shared between the legs of the side
+     *
+     * @param amount Amount of the debits, and of the credits
+     * @param date   Booking date of the entries
+     * @return {@link Entry} items posted, in the order of the legs
+     * @throws MismatchedCurrencyException  if the amount is not in the currency of the template
+     * @throws UntimelyBookingDateException if the date is before the opening date of one of the accounts, or falls in a
+     *                                      closed period of one of them, in which case nothing is posted
+     */
+    public List<Entry> post(Cash amount, TimePoint date) throws MismatchedCurrencyException, UntimelyBookingDateException {
+
+        if (!amount.getCurrency().equals(currency)) {
+            throw new MismatchedCurrencyException(String.format("Cannot post an amount of %s with the template : %s in %s", amount, label, currency));
+        }
+
+        Leg[] current;
+        long debits;
+        long credits;
+        TimePoint earliest;
+        synchronized (this) {
+            current = legs;
+            debits = debitWeight;
+            credits = creditWeight;
+            earliest = earliestBookingDate;
+        }
+
+        if (debits == 0 || credits == 0) {
+            throw new IllegalStateException(String.format("The template : %s needs at least one leg on either side", label));
+        }
+        if (date.before(earliest)) {
+            throw new UntimelyBookingDateException(String.format("The booking date : %s is earlier than the opening date : %s of an account in the template : %s", date, earliest, label));
+        }
+
+        long total = MinorUnits.of(amount);
+        if (total < 0) {
+            throw new IllegalArgumentException(String.format("The template : %s cannot be posted with a negative amount : %s", label, amount));
+        }
+        long[] shares = new long[current.length];
+        allocate(current, DEBIT, total, debits, shares);
+        allocate(current, AccountSide.CREDIT, total, credits, shares);
+
+        SimpleEntry[] entries = new SimpleEntry[current.length];
+        for (int i = 0; i < current.length; i++) {
+            Leg leg = current[i];
+            entries[i] = new SimpleEntry(leg.accountSide, leg.account, MinorUnits.toCash(shares[i], currency), date, leg.details);
+        }
+
+        SimpleAccount[] targets = new SimpleAccount[current.length];
+        PostingListener[][] listeners = new PostingListener[current.length][];
+        for (int i = 0; i < current.length; i++) {
+            targets[i] = PostingLocks.target(current[i].account);
+        }
+
+        CommitSequence commits = CommitSequence.ledger();
+        SimpleAccount[] locked = PostingLocks.lock(targets);
+        try {
+            int epochDay = EpochDays.of(date);
+            for (int i = 0; i < current.length; i++) {
+                if (targets[i].isClosed(epochDay)) {
+                    throw new UntimelyBookingDateException(String.format("The booking date : %s falls in a closed period of the account : %s in the template : %s", date, current[i].account, label));
+                }
+            }
+
+            long sequence = commits.begin();
+            List<Entry> committed = null;
+            try {
+                for (int i = 0; i < current.length; i++) {
+                    entries[i].stamp(sequence);
+                    listeners[i] = targets[i].addValidatedEntry(entries[i]);
+                }
+                committed = Arrays.<Entry>asList(entries);
+            } finally {
+                commits.complete(sequence, committed);
+            }
+        } finally {
+            PostingLocks.unlock(locked);
+        }
+
+        for (int i = 0; i < current.length; i++) {
+            targets[i].notifyPosted(entries[i], listeners[i]);
+        }
+
+        log.debug("Template : {} posted : {} on {}", label, amount, date);
+
+        return Arrays.<Entry>asList(entries);
+    }
+
+    /**
+     * Shares the total between the legs on the side by largest remainder
+     */
+    private static void allocate(Leg[] legs, AccountSide side, long total, long sideWeight, long[] shares) {
+
+        long allocated = 0;
+        long[] remainders = new long[legs.length];
+
+        for (int i = 0; i < legs.length; i++) {
+            if (legs[i].accountSide == side) {
+                long product = Math.multiplyExact(total, legs[i].weight);
+                shares[i] = product / sideWeight;
+                remainders[i] = product % sideWeight;
+                allocated += shares[i];
+            } else {
+                remainders[i] = -1;
+            }
+        }
+
+        for (long left = total - allocated; left > 0; left--) {
+            int largest = 0;
+            for (int i = 1; i < legs.length; i++) {
+                if (remainders[i] > remainders[largest]) {
+                    largest = i;
+                }
+            }
+            shares[largest]++;
+            remainders[largest] = -1;
+        }
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    @Override
+    public String toString() {
+        return "{'" + label + "', currency=" + currency + ", legs=" + Arrays.toString(legs) + '}';
+    }
+
+    private static final class Leg {
+
+        private final AccountSide accountSide;
+        private final Account account;
+        private final long weight;
+        private final EntryDetails details;
+
+        private Leg(AccountSide accountSide, Account account, long weight, EntryDetails details) {
+            this.accountSide = accountSide;
+            this.account = account;
+            this.weight = weight;
+            this.details = details;
+        }
+
+        @Override
+        public String toString() {
+            return accountSide + " " + account.getAccountDetails() + " x" + weight + " " + details;
+        }
+    }
+}
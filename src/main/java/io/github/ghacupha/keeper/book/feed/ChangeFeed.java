@@ -0,0 +1,357 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.feed;
+
+import io.github.ghacupha.keeper.book.api.CommitListener;
+import io.github.ghacupha.keeper.book.base.Commit;
+import io.github.ghacupha.keeper.book.base.CommitSequence;
+import io.github.ghacupha.keeper.book.util.FeedOverflowException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feed of every {@link Commit} of the ledger, in the order of the {@link CommitSequence}, to any number of
+ * {@link Flow.Subscriber} items. Caches, indexes and notifications can follow the postings from it instead of polling
+ * the accounts.
+ * <p>The most recent commits are retained in a ring shared by all subscribers, each of which only keeps its position
+ * in it. Commits are sent to a subscriber only as it requests them, on the {@link Executor} of the feed, so a slow
+ * subscriber holds up neither posting nor the other subscribers. One that falls further behind than the buffer size
+ * is failed with a {@link FeedOverflowException}, and may subscribe again with {@link #subscribe(Flow.Subscriber, long)}
+ * from the last sequence number it has seen for as long as what follows it is still retained.</p>
+ * Publishing a commit into the feed costs a store into the ring and a signal to each subscriber.
+ *
+ * @author edwin.njeru
+ */
+public final class ChangeFeed implements Flow.Publisher<Commit>, CommitListener, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeFeed.class);
+
+    private final CommitSequence commits;
+
+    private final Commit[] retained;
+
+    private final int bufferSize;
+
+    private final Executor executor;
+
+    private final Set<FeedSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    // Number of commits ever published into the ring, only ever written by the commit sequence under its lock
+    private volatile long published;
+
+    // Sequence number of the last commit pushed out of the ring, written before the commit taking its place
+    private volatile long droppedThrough;
+
+    private volatile boolean closed;
+
+    private ChangeFeed(CommitSequence commits, int retention, int bufferSize, Executor executor) {
+
+        if (bufferSize < 1 || retention < bufferSize) {
+            throw new IllegalArgumentException(String.format("The buffer size : %s must be positive and no more than the retention : %s", bufferSize, retention));
+        }
+        this.commits = commits;
+        this.retained = new Commit[retention];
+        this.bufferSize = bufferSize;
+        this.executor = executor;
+    }
+
+    /**
+     * @param retention  Number of the most recent commits kept for subscribers resuming from a sequence number
+     * @param bufferSize Number of commits a subscriber may fall behind before it is failed
+     * @param executor   {@link Executor} on which the subscribers are called
+     * @return {@link ChangeFeed} following the commits of the ledger from now on
+     */
+    public static ChangeFeed changeFeed(int retention, int bufferSize, Executor executor) {
+
+        ChangeFeed feed = new ChangeFeed(CommitSequence.ledger(), retention, bufferSize, executor);
+
+        CommitSequence.ledger().addCommitListener(feed);
+
+        return feed;
+    }
+
+    @Override
+    public void committed(Commit commit) {
+
+        long index = published;
+        if (index >= retained.length) {
+            droppedThrough = retained[slot(index)].getSequence();
+        }
+        retained[slot(index)] = commit;
+        published = index + 1;
+
+        for (FeedSubscription subscription : subscriptions) {
+            subscription.signal();
+        }
+    }
+
+    /**
+     * Subscribes to the commits published from now on
+     *
+     * @param subscriber {@link Flow.Subscriber} to be sent the commits
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super Commit> subscriber) {
+
+        start(new FeedSubscription(subscriber, published));
+    }
+
+    /**
+     * Subscribes to the commits following the given sequence number, starting with those still retained
+     *
+     * @param subscriber    {@link Flow.Subscriber} to be sent the commits
+     * @param afterSequence Last sequence number the subscriber has already seen
+     */
+    public void subscribe(Flow.Subscriber<? super Commit> subscriber, long afterSequence) {
+
+        long position = positionAfter(afterSequence);
+
+        FeedSubscription subscription = new FeedSubscription(subscriber, Math.max(position, 0));
+        if (position < 0) {
+            subscription.fail(new FeedOverflowException(String.format("The commits following sequence : %s are no longer retained", afterSequence)));
+        }
+
+        start(subscription);
+    }
+
+    private void start(FeedSubscription subscription) {
+
+        subscriptions.add(subscription);
+
+        log.debug("Subscriber : {} added to the change feed at position : {}", subscription.subscriber, subscription.cursor);
+
+        subscription.signal();
+    }
+
+    /**
+     * Sequence numbers have gaps, left by postings which failed, so whether commits following the sequence have been
+     * dropped is told by the last commit pushed out of the ring rather than by the first one still in it
+     *
+     * @return Position in the ring of the first commit after the sequence, or -1 if some of them have been dropped
+     */
+    private long positionAfter(long sequence) {
+
+        while (true) {
+
+            long end = published;
+            long dropped = droppedThrough;
+            long start = Math.max(0, end - retained.length);
+
+            // Sequence numbers increase with the position, gaps aside
+            long low = start;
+            long high = end;
+            while (low < high) {
+                long middle = (low + high) >>> 1;
+                if (retained[slot(middle)].getSequence() <= sequence) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            // Retry if the ring moved on while it was being searched
+            if (published - start <= retained.length) {
+                return dropped > sequence ? -1 : low;
+            }
+        }
+    }
+
+    private int slot(long position) {
+
+        return (int) (position % retained.length);
+    }
+
+    /**
+     * @return Sequence number of the most recent commit in the feed, or 0 if there is none
+     */
+    public long getLastSequence() {
+
+        long end = published;
+
+        return end == 0 ? 0 : retained[slot(end - 1)].getSequence();
+    }
+
+    /**
+     * @return Number of subscribers currently following the feed
+     */
+    public int getSubscriberCount() {
+
+        return subscriptions.size();
+    }
+
+    /**
+     * Stops following the ledger. Subscribers are completed once they have been sent what was published before.
+     */
+    @Override
+    public void close() {
+
+        closed = true;
+
+        commits.removeCommitListener(this);
+
+        for (FeedSubscription subscription : subscriptions) {
+            subscription.signal();
+        }
+    }
+
+    /**
+     * Position and demand of one subscriber. Signals to the subscriber are made by whichever thread of the executor
+     * runs {@link #drain()}, which the work-in-progress count admits one at a time.
+     */
+    private final class FeedSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super Commit> subscriber;
+
+        private final AtomicLong demand = new AtomicLong();
+
+        private final AtomicInteger workInProgress = new AtomicInteger();
+
+        private volatile boolean cancelled;
+
+        private volatile Throwable failure;
+
+        // Only used by the draining thread
+        private long cursor;
+        private boolean subscribed;
+
+        FeedSubscription(Flow.Subscriber<? super Commit> subscriber, long cursor) {
+            this.subscriber = subscriber;
+            this.cursor = cursor;
+        }
+
+        @Override
+        public void request(long n) {
+
+            if (n <= 0) {
+                fail(new IllegalArgumentException(String.format("The number of commits requested : %s is not positive", n)));
+            } else {
+                demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+
+            cancelled = true;
+
+            subscriptions.remove(this);
+        }
+
+        void fail(Throwable throwable) {
+
+            if (failure == null) {
+                failure = throwable;
+            }
+        }
+
+        void signal() {
+
+            if (!cancelled && workInProgress.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RuntimeException e) {
+                    // Signals are made from postings, which must not fail for want of a thread to tell the subscriber
+                    log.error("The executor refused to run subscriber : {} of the change feed, which has been cancelled", subscriber, e);
+                    cancel();
+                }
+            }
+        }
+
+        private void drain() {
+
+            int missed = 1;
+
+            do {
+                if (!subscribed) {
+                    subscribed = true;
+                    subscriber.onSubscribe(this);
+                }
+
+                try {
+                    deliver();
+                } catch (RuntimeException e) {
+                    log.warn("Subscriber : {} of the change feed failed and has been cancelled", subscriber, e);
+                    cancel();
+                }
+
+                missed = workInProgress.addAndGet(-missed);
+
+            } while (missed != 0);
+        }
+
+        private void deliver() {
+
+            while (!cancelled) {
+
+                if (failure != null) {
+                    terminate();
+                    subscriber.onError(failure);
+                    return;
+                }
+
+                long end = published;
+
+                if (end - cursor > bufferSize) {
+                    fail(new FeedOverflowException(String.format("The subscriber has fallen behind by : %s commits, more than its buffer of : %s", end - cursor, bufferSize)));
+                    continue;
+                }
+
+                if (cursor == end) {
+                    if (closed) {
+                        terminate();
+                        subscriber.onComplete();
+                    }
+                    return;
+                }
+
+                long requested = demand.get();
+                if (requested == 0) {
+                    return;
+                }
+
+                Commit commit = retained[slot(cursor)];
+
+                // The ring could have been lapped while the commit was read
+                if (published - cursor > retained.length) {
+                    continue;
+                }
+
+                cursor++;
+                if (requested != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+
+                subscriber.onNext(commit);
+            }
+        }
+
+        private void terminate() {
+
+            cancel();
+
+            log.debug("Subscriber : {} of the change feed terminated at position : {}", subscriber, cursor);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.feed;
+
+/**
+ * The reactive streams interfaces, declared exactly as {@code java.util.concurrent.Flow} declares them from Java 9
+ * onwards. The library still targets Java 8, so they are repeated here; moving over to the JDK ones is only a matter of
+ * changing the imports.
+ *
+ * @author edwin.njeru
+ */
+public final class Flow {
+
+    private Flow() {
+    }
+
+    /**
+     * Source of items which are only sent to a {@link Subscriber} as it asks for them
+     *
+     * @param <T> Type of the items published
+     */
+    @FunctionalInterface
+    public interface Publisher<T> {
+
+        /**
+         * @param subscriber {@link Subscriber} to be handed a {@link Subscription} through which it asks for items
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * Receiver of items. The methods are called one at a time for any one subscriber.
+     *
+     * @param <T> Type of the items received
+     */
+    public interface Subscriber<T> {
+
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    /**
+     * Link between a {@link Publisher} and a {@link Subscriber}
+     */
+    public interface Subscription {
+
+        /**
+         * @param n Number of further items the subscriber is ready for, which must be positive
+         */
+        void request(long n);
+
+        void cancel();
+    }
+}
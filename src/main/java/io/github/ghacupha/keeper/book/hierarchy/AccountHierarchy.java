@@ -0,0 +1,187 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.hierarchy;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.PostingListener;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+
+/**
+ * Tree of {@link ControlAccount} groups with the ledger accounts attached beneath them. The hierarchy is a
+ * {@link PostingListener} on each attached account, so every posting into an account is added into the totals of all
+ * the groups above it as it happens, and consolidated figures are read off a group instead of being summed from its
+ * descendants at query time.
+ * <p>Each attached account keeps the array of its ancestors, so a posting costs one lookup and one counter update per
+ * level. An account may be attached after it has been posted to: the entries already in it are added when it is
+ * attached, and postings racing with the attachment are counted exactly once, see {@link SimpleAccount#listen}.</p>
+ *
+ * @author edwin.njeru
+ */
+public final class AccountHierarchy implements PostingListener {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountHierarchy.class);
+
+    private final Currency currency;
+
+    private final Map<String, ControlAccount> groups = new ConcurrentHashMap<>();
+
+    private final Map<Account, ControlAccount[]> ancestors = new ConcurrentHashMap<>();
+
+    private AccountHierarchy(Currency currency) {
+        this.currency = currency;
+    }
+
+    /**
+     * @param currency Currency of the accounts in the hierarchy
+     * @return An empty {@link AccountHierarchy}
+     */
+    public static AccountHierarchy hierarchy(Currency currency) {
+
+        return new AccountHierarchy(currency);
+    }
+
+    /**
+     * Adds a group at the root of the hierarchy
+     *
+     * @param number      Number of the group
+     * @param name        Name of the group
+     * @param accountSide Side on which the group normally stands
+     * @return The new {@link ControlAccount}
+     */
+    public ControlAccount group(String number, String name, AccountSide accountSide) {
+
+        return addGroup(number, name, accountSide, null);
+    }
+
+    /**
+     * Adds a group beneath another one
+     *
+     * @param number       Number of the group
+     * @param name         Name of the group
+     * @param accountSide  Side on which the group normally stands
+     * @param parentNumber Number of the group above the new one
+     * @return The new {@link ControlAccount}
+     */
+    public ControlAccount group(String number, String name, AccountSide accountSide, String parentNumber) {
+
+        return addGroup(number, name, accountSide, getGroup(parentNumber));
+    }
+
+    private ControlAccount addGroup(String number, String name, AccountSide accountSide, ControlAccount parent) {
+
+        ControlAccount group = new ControlAccount(number, name, accountSide, currency, parent);
+
+        if (groups.putIfAbsent(number, group) != null) {
+            throw new IllegalArgumentException("The hierarchy already has a group numbered : " + number);
+        }
+
+        log.debug("Group : {} added beneath : {}", group, parent);
+
+        return group;
+    }
+
+    /**
+     * Attaches the account beneath the group, adding the entries already in it into the totals of the group and of every
+     * group above it, and following further postings into it
+     *
+     * @param parentNumber Number of the group the account belongs to
+     * @param account      {@link SimpleAccount} to be attached
+     * @throws MismatchedCurrencyException if the account is not in the currency of the hierarchy
+     */
+    public void attach(String parentNumber, SimpleAccount account) throws MismatchedCurrencyException {
+
+        if (!currency.equals(account.getCurrency())) {
+            throw new MismatchedCurrencyException("Account : " + account + " is in " + account.getCurrency() + " while the hierarchy is in " + currency);
+        }
+
+        List<ControlAccount> path = new ArrayList<>();
+        for (ControlAccount group = getGroup(parentNumber); group != null; group = group.getParent()) {
+            path.add(group);
+        }
+
+        if (ancestors.putIfAbsent(account, path.toArray(new ControlAccount[0])) != null) {
+            throw new IllegalArgumentException("Account : " + account + " is already attached to the hierarchy");
+        }
+
+        account.listen(this).forEach(entry -> posted(account, entry));
+
+        log.debug("Account : {} attached beneath : {}", account, path);
+    }
+
+    @Override
+    public void posted(Account account, Entry entry) {
+
+        ControlAccount[] path = ancestors.get(account);
+        if (path == null) {
+            return;
+        }
+
+        long amount = MinorUnits.of(entry.getAmount());
+        if (entry.getAccountSide() != DEBIT) {
+            amount = -amount;
+        }
+        int epochDay = entry.getEpochDay();
+
+        for (ControlAccount group : path) {
+            group.add(epochDay, amount);
+        }
+    }
+
+    /**
+     * @param number Number of the group
+     * @return The {@link ControlAccount} with the number
+     */
+    public ControlAccount getGroup(String number) {
+
+        ControlAccount group = groups.get(number);
+
+        if (group == null) {
+            throw new IllegalArgumentException("The hierarchy has no group numbered : " + number);
+        }
+
+        return group;
+    }
+
+    /**
+     * @param number Number of the group
+     * @param asAt   Date as at which the balance is effective
+     * @return {@link AccountBalance} of the accounts beneath the group
+     */
+    public AccountBalance balance(String number, TimePoint asAt) {
+
+        return getGroup(number).balance(asAt);
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+}
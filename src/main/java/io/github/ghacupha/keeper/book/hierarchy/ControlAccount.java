@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.hierarchy;
+
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.time.point.TimePoint;
+
+import java.util.Currency;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+
+/**
+ * Group of accounts in an {@link AccountHierarchy}, such as "all expense accounts", whose totals are kept up to date
+ * as postings are made into the accounts beneath it.
+ * <p>Each posting adds its amount into the movement of its booking date, a {@link LongAdder} counter, so that postings
+ * into sibling accounts on many threads neither contend on the same group nor take any lock. The balance as at a date,
+ * and the total, are added up from the daily movements without visiting the accounts beneath the group. Since each
+ * posting is a single addition into one counter, a balance read while postings are made either includes a posting or
+ * does not, and never part of one. Amounts are debits less credits, in minor units.</p>
+ *
+ * @author edwin.njeru
+ */
+public final class ControlAccount {
+
+    private final String number;
+
+    private final String name;
+
+    private final AccountSide accountSide;
+
+    private final Currency currency;
+
+    private final ControlAccount parent;
+
+    private final ConcurrentNavigableMap<Integer, LongAdder> movements = new ConcurrentSkipListMap<>();
+
+    ControlAccount(String number, String name, AccountSide accountSide, Currency currency, ControlAccount parent) {
+        this.number = number;
+        this.name = name;
+        this.accountSide = accountSide;
+        this.currency = currency;
+        this.parent = parent;
+    }
+
+    /**
+     * Adds the amount of a posting into the movement of its booking date
+     *
+     * @param epochDay Booking date of the posting, in days since 1970-01-01
+     * @param amount   Debits less credits of the posting, in minor units
+     */
+    void add(int epochDay, long amount) {
+
+        movements.computeIfAbsent(epochDay, day -> new LongAdder()).add(amount);
+    }
+
+    /**
+     * @param asAtEpochDay Date as at which the balance is effective, in days since 1970-01-01
+     * @return Debits less credits of the accounts beneath this group booked on or before the date, in minor units
+     */
+    public long balanceInMinorUnits(int asAtEpochDay) {
+
+        return sum(movements.headMap(asAtEpochDay, true));
+    }
+
+    private static long sum(Map<Integer, LongAdder> movements) {
+
+        long balance = 0;
+        for (LongAdder movement : movements.values()) {
+            balance += movement.sum();
+        }
+        return balance;
+    }
+
+    /**
+     * @param asAt Date as at which the balance is effective
+     * @return {@link AccountBalance} of the accounts beneath this group
+     */
+    public AccountBalance balance(TimePoint asAt) {
+
+        long balance = balanceInMinorUnits(EpochDays.of(asAt));
+
+        return new AccountBalance(MinorUnits.toCash(Math.abs(balance), currency), balance > 0 ? DEBIT : balance < 0 ? CREDIT : accountSide);
+    }
+
+    /**
+     * @return Debits less credits of every posting beneath this group, in minor units
+     */
+    public long getTotalInMinorUnits() {
+        return sum(movements);
+    }
+
+    public String getNumber() {
+        return number;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public AccountSide getAccountSide() {
+        return accountSide;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    /**
+     * @return The group above this one, or null if this is a root of the hierarchy
+     */
+    public ControlAccount getParent() {
+        return parent;
+    }
+
+    @Override
+    public String toString() {
+        return number + " " + name;
+    }
+}
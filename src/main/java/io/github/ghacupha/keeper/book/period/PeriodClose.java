@@ -0,0 +1,209 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.period;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.base.EntryDetails;
+import io.github.ghacupha.keeper.book.base.PostingRequest;
+import io.github.ghacupha.keeper.book.base.PostingResult;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.storage.ArchiveReader;
+import io.github.ghacupha.keeper.book.storage.ArchiveWriter;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.ExecutionPolicy;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.keeper.book.util.UnableToPostException;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+
+/**
+ * Closes the books up to a date. The balances of the nominal accounts, income and expenses, are posted into retained
+ * earnings by one closing transaction booked on the last day of the period, after which every account involved has
+ * its entries from before the close replaced by a single carried forward entry, see
+ * {@link SimpleAccount#compact(TimePoint, EntryDetails)}. The entries replaced are
+ * first written into an archive file per account, which an {@link ArchiveReader} can still query, so that the live
+ * accounts are left with only the open period to scan.
+ * <p>The nominal balances are worked out, and the accounts archived and compacted, in parallel as the
+ * {@link ExecutionPolicy} of the ledger allows. Nothing is compacted unless the closing transaction has been posted,
+ * and an account is only compacted once its archive has been written.</p>
+ *
+ * @author edwin.njeru
+ */
+public final class PeriodClose {
+
+    private static final Logger log = LoggerFactory.getLogger(PeriodClose.class);
+
+    private final SimpleAccount retainedEarnings;
+
+    private final Path archiveDirectory;
+
+    private final ArchiveWriter archiveWriter = new ArchiveWriter();
+
+    private final List<SimpleAccount> nominalAccounts = new ArrayList<>();
+
+    private final List<SimpleAccount> carriedAccounts = new ArrayList<>();
+
+    private PeriodClose(SimpleAccount retainedEarnings, Path archiveDirectory) {
+        this.retainedEarnings = retainedEarnings;
+        this.archiveDirectory = archiveDirectory;
+    }
+
+    /**
+     * @param retainedEarnings {@link SimpleAccount} into which the nominal accounts are closed
+     * @param archiveDirectory Directory into which the entries of the closed period are archived
+     * @return {@link PeriodClose} to which the accounts to be closed are then added
+     */
+    public static PeriodClose periodClose(SimpleAccount retainedEarnings, Path archiveDirectory) {
+        return new PeriodClose(retainedEarnings, archiveDirectory);
+    }
+
+    /**
+     * @param accounts Income and expense accounts, whose balances are closed into retained earnings
+     * @return This
+     */
+    public PeriodClose nominal(SimpleAccount... accounts) {
+
+        nominalAccounts.addAll(Arrays.asList(accounts));
+
+        return this;
+    }
+
+    /**
+     * @param accounts Balance sheet accounts, whose balances are carried forward
+     * @return This
+     */
+    public PeriodClose carryForward(SimpleAccount... accounts) {
+
+        carriedAccounts.addAll(Arrays.asList(accounts));
+
+        return this;
+    }
+
+    /**
+     * @param closeDate First date of the period that remains open
+     * @return {@link Path} of the archive of each account, by account number, for the accounts that had entries before
+     * the close date
+     * @throws UnableToPostException if the closing transaction was rejected, in which case nothing has been changed
+     * @throws IOException           if an archive could not be written, in which case the accounts whose archives had
+     *                               been written are compacted and the others are not
+     */
+    public Map<String, Path> close(TimePoint closeDate) throws UnableToPostException, IOException {
+
+        int closeDay = EpochDays.of(closeDate);
+        TimePoint lastDate = EpochDays.toTimePoint(closeDay - 1);
+        ExecutionPolicy policy = ExecutionPolicy.ledger();
+
+        log.debug("Closing : {} nominal accounts into : {} as at : {}", nominalAccounts.size(), retainedEarnings, lastDate);
+
+        long[] balances = new long[nominalAccounts.size()];
+        policy.forEach(IntStream.range(0, balances.length).boxed().collect(Collectors.toList()), policy.getBatchThreshold(),
+            i -> balances[i] = nominalAccounts.get(i).balanceInMinorUnits(closeDay - 1));
+
+        postClosingEntries(balances, lastDate);
+
+        List<SimpleAccount> accounts = new ArrayList<>(nominalAccounts);
+        accounts.addAll(carriedAccounts);
+        accounts.add(retainedEarnings);
+
+        Map<String, Path> archives = new ConcurrentHashMap<>();
+        try {
+            policy.forEach(accounts, policy.getBatchThreshold(), account -> {
+                try {
+                    archiveAndCompact(account, closeDate, closeDay, archives);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        log.debug("Period up to : {} closed, {} accounts archived", lastDate, archives.size());
+
+        return Collections.unmodifiableMap(new TreeMap<>(archives));
+    }
+
+    private void postClosingEntries(long[] balances, TimePoint lastDate) throws UnableToPostException {
+
+        PostingRequest closing = PostingRequest.postingRequest("Period close", lastDate, retainedEarnings.getCurrency());
+
+        long net = 0;
+        boolean closingAnything = false;
+        for (int i = 0; i < balances.length; i++) {
+            long balance = balances[i];
+            if (balance != 0) {
+                SimpleAccount account = nominalAccounts.get(i);
+                closing.addEntry(balance > 0 ? CREDIT : DEBIT, MinorUnits.toCash(Math.abs(balance), account.getCurrency()), account, details("Closing entry"));
+                net += balance;
+                closingAnything = true;
+            }
+        }
+
+        if (!closingAnything) {
+            log.debug("The nominal accounts have nothing to close as at : {}", lastDate);
+            return;
+        }
+
+        if (net != 0) {
+            closing.addEntry(net > 0 ? DEBIT : CREDIT, MinorUnits.toCash(Math.abs(net), retainedEarnings.getCurrency()), retainedEarnings, details("Closing entry"));
+        }
+
+        PostingResult result = closing.post();
+        if (!result.isPosted()) {
+            throw new UnableToPostException(String.format("The closing entries as at : %s were rejected : %s", lastDate, result));
+        }
+    }
+
+    private void archiveAndCompact(SimpleAccount account, TimePoint closeDate, int closeDay, Map<String, Path> archives) throws IOException {
+
+        List<Entry> archived = new ArrayList<>(account.getTimeline().before(closeDay).values());
+        if (archived.isEmpty()) {
+            return;
+        }
+
+        Path file = archiveDirectory.resolve(account.getAccountDetails().getNumber() + "-" + LocalDate.ofEpochDay(closeDay) + ".archive");
+        archiveWriter.write(account.getCurrency(), account.getAccountSide(), archived, file);
+
+        List<Entry> replaced = account.compact(closeDate, details("Balance brought forward"));
+
+        if (replaced.size() != archived.size()) {
+            // Entries were back-dated into the period while it was being archived
+            log.warn("Account : {} changed while being archived, archiving its : {} compacted entries again", account, replaced.size());
+            archiveWriter.write(account.getCurrency(), account.getAccountSide(), replaced, file);
+        }
+
+        archives.put(account.getAccountDetails().getNumber(), file);
+    }
+}
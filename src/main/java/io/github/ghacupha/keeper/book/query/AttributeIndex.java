@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.query;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.PostingListener;
+import io.github.ghacupha.keeper.book.base.EntryDetails;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Index of entries by the value of one {@link EntryDetails} attribute, for instance an invoice or cheque reference,
+ * which an {@link EntryQuery} uses instead of scanning when it filters on that attribute.
+ * <p>Like the {@code NarrationIndex} it is kept current by registering as a {@link PostingListener} on the accounts
+ * it covers, see {@link #watch(SimpleAccount)}. The attribute is read when the entry is posted, so it must be set on the
+ * {@link EntryDetails} before then.</p>
+ * <p>Entries compacted away when a period of their account is closed are dropped from the index the next time it is
+ * searched for that account, so it only ever yields entries which are still in the account.</p>
+ *
+ * @author edwin.njeru
+ */
+public final class AttributeIndex implements PostingListener {
+
+    private static final Logger log = LoggerFactory.getLogger(AttributeIndex.class);
+
+    private final String label;
+
+    private final Map<Object, Map<Account, Collection<Entry>>> entries = new ConcurrentHashMap<>();
+
+    private final Set<Account> watched = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param label Label of the attribute indexed
+     */
+    public AttributeIndex(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Indexes the entries already in the account and registers this index to follow further postings into it
+     *
+     * @param account {@link SimpleAccount} whose entries are to be indexed
+     */
+    public void watch(SimpleAccount account) {
+
+        account.listen(this).forEach(entry -> index(account, entry));
+
+        watched.add(account);
+    }
+
+    /**
+     * @param account {@link Account} whose entries are looked for
+     * @return Whether every entry of the account is in the index, which is only the case for watched accounts
+     */
+    public boolean covers(Account account) {
+
+        return watched.contains(account);
+    }
+
+    @Override
+    public void posted(Account account, Entry entry) {
+
+        index(account, entry);
+    }
+
+    /**
+     * @param account {@link Account} into which the {@link Entry} has been posted
+     * @param entry   {@link Entry} to be indexed, which is left out if it does not carry the attribute
+     */
+    public void index(Account account, Entry entry) {
+
+        EntryDetails details = entry.getEntryDetails();
+        Object value = details == null ? null : details.getEntryMap().get(label);
+
+        if (value == null) {
+            return;
+        }
+
+        entries.computeIfAbsent(value, v -> new ConcurrentHashMap<>())
+            .computeIfAbsent(account, a -> new ConcurrentLinkedQueue<>())
+            .add(entry);
+
+        log.trace("Entry : {} indexed under {} : {}", entry, label, value);
+    }
+
+    /**
+     * @param value   Value of the attribute
+     * @param account {@link SimpleAccount} whose entries are wanted
+     * @return The entries of the account carrying the value, in the order in which they were indexed, leaving out
+     * those booked in a closed period, which have been compacted away
+     */
+    public Collection<Entry> find(Object value, SimpleAccount account) {
+
+        Map<Account, Collection<Entry>> byAccount = entries.get(value);
+        Collection<Entry> found = byAccount == null ? null : byAccount.get(account);
+
+        if (found == null) {
+            return Collections.emptyList();
+        }
+
+        found.removeIf(entry -> account.isClosed(entry.getEpochDay()));
+
+        return Collections.unmodifiableCollection(found);
+    }
+
+    /**
+     * @return Label of the attribute indexed
+     */
+    public String getLabel() {
+        return label;
+    }
+}
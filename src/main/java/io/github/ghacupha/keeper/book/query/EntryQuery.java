@@ -0,0 +1,296 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.query;
+
+import io.github.ghacupha.cash.Cash;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.base.EntryDetails;
+import io.github.ghacupha.keeper.book.base.EntryTimeline;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.EpochDayRange;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Declarative filter over the entries of one or more accounts, by side, booking dates, amount band and attribute
+ * values, for instance
+ * <pre>
+ *     over(advertisement, vat).side(DEBIT).between(on(2017, 1, 1), on(2017, 12, 31)).amountBetween(shilling(100), shilling(500)).stream()
+ * </pre>
+ * <p>The filters are pushed down to the cheapest way of reaching the entries of each account: an
+ * {@link AttributeIndex} given through {@link #using(AttributeIndex)} when the query filters on its attribute and the
+ * index covers the account, the
+ * date ordered {@link EntryTimeline} when the dates cover a small part of the account's history, and otherwise a scan
+ * of the account's primitive columns which only touches the entries that match. Whatever the index cannot decide is
+ * checked on the entries it yields. {@link #explain()} tells which way was chosen for each account, without reaching
+ * any entry.</p>
+ * Entries are streamed lazily, account by account in the order given, each in the order of its chosen access path.
+ *
+ * @author edwin.njeru
+ */
+public final class EntryQuery {
+
+    private static final Logger log = LoggerFactory.getLogger(EntryQuery.class);
+
+    /**
+     * Dates covering at most this part of the days an account has entries on are read through the timeline
+     */
+    private static final double TIMELINE_SELECTIVITY = 0.25;
+
+    private final List<SimpleAccount> accounts;
+
+    private final Map<String, AttributeIndex> indexes = new HashMap<>();
+
+    private final Map<String, Object> attributes = new LinkedHashMap<>();
+
+    private AccountSide accountSide;
+
+    private EpochDayRange range = EpochDayRange.between(Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+    private long minAmount = 0;
+
+    private long maxAmount = Long.MAX_VALUE;
+
+    private EntryQuery(List<SimpleAccount> accounts) {
+        this.accounts = accounts;
+    }
+
+    /**
+     * @param accounts Accounts whose entries are queried
+     * @return {@link EntryQuery} matching every entry of the accounts, until filters are added
+     */
+    public static EntryQuery over(SimpleAccount... accounts) {
+        return new EntryQuery(Arrays.asList(accounts));
+    }
+
+    /**
+     * @param accounts Accounts whose entries are queried, such as all the accounts of a ledger
+     * @return {@link EntryQuery} matching every entry of the accounts, until filters are added
+     */
+    public static EntryQuery over(Collection<SimpleAccount> accounts) {
+        return new EntryQuery(new ArrayList<>(accounts));
+    }
+
+    /**
+     * @param accountSide {@link AccountSide} of the entries wanted
+     * @return This
+     */
+    public EntryQuery side(AccountSide accountSide) {
+
+        this.accountSide = accountSide;
+
+        return this;
+    }
+
+    /**
+     * @param from First booking date, inclusive
+     * @param to   Last booking date, inclusive
+     * @return This
+     */
+    public EntryQuery between(TimePoint from, TimePoint to) {
+
+        return within(EpochDayRange.between(from, to));
+    }
+
+    /**
+     * @param range {@link EpochDayRange} of the booking dates wanted
+     * @return This
+     */
+    public EntryQuery within(EpochDayRange range) {
+
+        this.range = range;
+
+        return this;
+    }
+
+    /**
+     * @param min Smallest amount, inclusive
+     * @param max Largest amount, inclusive
+     * @return This
+     */
+    public EntryQuery amountBetween(Cash min, Cash max) {
+
+        this.minAmount = MinorUnits.of(min);
+        this.maxAmount = MinorUnits.of(max);
+
+        return this;
+    }
+
+    /**
+     * @param label Label of an {@link EntryDetails} attribute
+     * @param value Value the attribute must have
+     * @return This
+     */
+    public EntryQuery attribute(String label, Object value) {
+
+        attributes.put(label, value);
+
+        return this;
+    }
+
+    /**
+     * @param index {@link AttributeIndex} which the query may use for a filter on its attribute
+     * @return This
+     */
+    public EntryQuery using(AttributeIndex index) {
+
+        indexes.put(index.getLabel(), index);
+
+        return this;
+    }
+
+    /**
+     * @return Lazy {@link Stream} of the matching entries
+     */
+    public Stream<Entry> stream() {
+
+        return accounts.stream().flatMap(this::stream);
+    }
+
+    /**
+     * @return How the entries of each account are reached, in the order of the accounts
+     */
+    public List<String> explain() {
+
+        List<String> plans = new ArrayList<>(accounts.size());
+        for (SimpleAccount account : accounts) {
+            plans.add(account.getAccountDetails().getNumber() + ": " + plan(account).description);
+        }
+        return plans;
+    }
+
+    private Stream<Entry> stream(SimpleAccount account) {
+
+        Plan plan = plan(account);
+
+        log.debug("Querying account : {} by {}", account, plan.description);
+
+        return plan.entries.get().filter(plan.residual);
+    }
+
+    private Plan plan(SimpleAccount account) {
+
+        Predicate<Entry> attributeFilter = matchesAttributes();
+        Predicate<Entry> columnFilter = matchesColumns();
+
+        for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            AttributeIndex index = indexes.get(attribute.getKey());
+            if (index != null && index.covers(account)) {
+                Object value = attribute.getValue();
+                return new Plan("attribute index on " + attribute.getKey(), () -> index.find(value, account).stream(), columnFilter.and(attributeFilter));
+            }
+        }
+
+        EpochDayRange dates = range;
+        EntryTimeline timeline = account.getTimeline();
+        if (isSelective(timeline)) {
+            return new Plan("date index", () -> timeline.between(dates.getFromEpochDay(), dates.getToEpochDay()).values().stream(), columnFilter.and(attributeFilter));
+        }
+
+        AccountSide side = accountSide;
+        long min = minAmount;
+        long max = maxAmount;
+        return new Plan("column scan", () -> account.scan(dates, side, min, max), attributeFilter);
+    }
+
+    /**
+     * @return Whether the dates cover a small enough part of the days the timeline has entries on
+     */
+    private boolean isSelective(EntryTimeline timeline) {
+
+        NavigableMap<Long, Entry> all = timeline.between(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        if (all.isEmpty()) {
+            return false;
+        }
+
+        long first = EntryTimeline.epochDay(all.firstKey());
+        long last = EntryTimeline.epochDay(all.lastKey());
+        long from = Math.max(first, range.getFromEpochDay());
+        long to = Math.min(last, range.getToEpochDay());
+
+        return to < from || (double) (to - from + 1) / (last - first + 1) <= TIMELINE_SELECTIVITY;
+    }
+
+    private Predicate<Entry> matchesColumns() {
+
+        AccountSide side = accountSide;
+        EpochDayRange dates = range;
+        long min = minAmount;
+        long max = maxAmount;
+
+        return entry -> {
+            if ((side != null && entry.getAccountSide() != side) || !dates.includes(entry)) {
+                return false;
+            }
+            long amount = MinorUnits.of(entry.getAmount());
+            return amount >= min && amount <= max;
+        };
+    }
+
+    private Predicate<Entry> matchesAttributes() {
+
+        if (attributes.isEmpty()) {
+            return entry -> true;
+        }
+
+        Map<String, Object> wanted = new HashMap<>(attributes);
+
+        return entry -> {
+            EntryDetails details = entry.getEntryDetails();
+            if (details == null) {
+                return false;
+            }
+            for (Map.Entry<String, Object> attribute : wanted.entrySet()) {
+                if (!Objects.equals(details.getEntryMap().get(attribute.getKey()), attribute.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    private static final class Plan {
+
+        private final String description;
+
+        // opened only when the entries are streamed, so that explaining a plan reaches no entry
+        private final Supplier<Stream<Entry>> entries;
+
+        private final Predicate<Entry> residual;
+
+        Plan(String description, Supplier<Stream<Entry>> entries, Predicate<Entry> residual) {
+            this.description = description;
+            this.entries = entries;
+            this.residual = residual;
+        }
+    }
+}
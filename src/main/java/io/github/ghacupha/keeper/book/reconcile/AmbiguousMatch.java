@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.reconcile;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link BankStatementLine} for which more than one {@link Entry} qualifies equally well, and which is therefore
+ * left for someone to resolve by hand
+ *
+ * @author edwin.njeru
+ */
+public final class AmbiguousMatch {
+
+    private final BankStatementLine line;
+
+    private final List<Entry> candidates;
+
+    AmbiguousMatch(BankStatementLine line, List<Entry> candidates) {
+        this.line = line;
+        this.candidates = Collections.unmodifiableList(candidates);
+    }
+
+    public BankStatementLine getLine() {
+        return line;
+    }
+
+    public List<Entry> getCandidates() {
+        return candidates;
+    }
+
+    @Override
+    public String toString() {
+        return line + " <-> " + candidates;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.reconcile;
+
+import io.github.ghacupha.cash.Cash;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.time.point.TimePoint;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+
+/**
+ * A line from an external statement, such as a bank statement, which is to be reconciled against the {@link Entry}
+ * items of an account. The side is the one the matching {@link Entry} is expected to have in the ledger, so a deposit
+ * shown as a credit by the bank is given here as a {@link AccountSide#DEBIT} to the bank account.
+ *
+ * @author edwin.njeru
+ */
+public final class BankStatementLine {
+
+    private final TimePoint date;
+
+    private final AccountSide accountSide;
+
+    private final Cash amount;
+
+    private final String reference;
+
+    private final int epochDay;
+
+    private final long signedAmount;
+
+    /**
+     * @param date        Value date of the line
+     * @param accountSide {@link AccountSide} of the matching {@link Entry}
+     * @param amount      Amount of the line
+     * @param reference   Reference of the line, like a cheque number, or null if the line has none
+     */
+    public BankStatementLine(TimePoint date, AccountSide accountSide, Cash amount, String reference) {
+        this.date = date;
+        this.accountSide = accountSide;
+        this.amount = amount;
+        this.reference = reference;
+        this.epochDay = EpochDays.of(date);
+        long minorUnits = MinorUnits.of(amount);
+        this.signedAmount = accountSide == DEBIT ? minorUnits : -minorUnits;
+    }
+
+    public static BankStatementLine bankLine(TimePoint date, AccountSide accountSide, Cash amount, String reference) {
+        return new BankStatementLine(date, accountSide, amount, reference);
+    }
+
+    public TimePoint getDate() {
+        return date;
+    }
+
+    public AccountSide getAccountSide() {
+        return accountSide;
+    }
+
+    public Cash getAmount() {
+        return amount;
+    }
+
+    public String getReference() {
+        return reference;
+    }
+
+    int getEpochDay() {
+        return epochDay;
+    }
+
+    long getSignedAmount() {
+        return signedAmount;
+    }
+
+    @Override
+    public String toString() {
+        return date + " " + accountSide + " " + amount + (reference == null ? "" : " ref " + reference);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.reconcile;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+
+/**
+ * A {@link BankStatementLine} together with the one {@link Entry} it has been reconciled to
+ *
+ * @author edwin.njeru
+ */
+public final class Match {
+
+    private final BankStatementLine line;
+
+    private final Entry entry;
+
+    Match(BankStatementLine line, Entry entry) {
+        this.line = line;
+        this.entry = entry;
+    }
+
+    public BankStatementLine getLine() {
+        return line;
+    }
+
+    public Entry getEntry() {
+        return entry;
+    }
+
+    @Override
+    public String toString() {
+        return line + " <-> " + entry;
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.reconcile;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.base.EntryDetails;
+import io.github.ghacupha.keeper.book.util.ExecutionPolicy;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+
+/**
+ * Matches the lines of external statements to the {@link Entry} items of the accounts they describe.
+ * <p>The entries of an account are hashed once on their signed amount, and each bucket is kept sorted by booking
+ * date. A line then probes its bucket and binary searches the entries whose booking dates are within the date
+ * tolerance of its own date, so the work is close to linear in the number of lines and entries rather than their
+ * product. Where a reference attribute is configured, a line with a reference only matches entries whose
+ * {@link EntryDetails} carry the same value under that attribute.</p>
+ * <p>A line with a single candidate is matched to it; where there are several, a single candidate booked on the very
+ * date of the line is preferred, otherwise the line is reported as an {@link AmbiguousMatch}. Each {@link Entry}
+ * is matched at most once and lines are considered in the order given. Accounts are reconciled in parallel with each
+ * other, as the ledger's {@link ExecutionPolicy} allows.</p>
+ *
+ * @author edwin.njeru
+ */
+public final class Reconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(Reconciler.class);
+
+    private final int dateToleranceDays;
+
+    private final String referenceAttribute;
+
+    /**
+     * @param dateToleranceDays  Number of days by which the booking date of an {@link Entry} may differ from the date of
+     *                           the line it matches
+     * @param referenceAttribute Label of the {@link EntryDetails} attribute holding the reference, or null if
+     *                           references are not to be compared
+     */
+    public Reconciler(int dateToleranceDays, String referenceAttribute) {
+        if (dateToleranceDays < 0) {
+            throw new IllegalArgumentException("The date tolerance cannot be negative, but was " + dateToleranceDays);
+        }
+        this.dateToleranceDays = dateToleranceDays;
+        this.referenceAttribute = referenceAttribute;
+    }
+
+    /**
+     * @param statements Lines of statement for each account to be reconciled
+     * @return {@link ReconciliationResult} for each account
+     */
+    public Map<Account, ReconciliationResult> reconcile(Map<Account, List<BankStatementLine>> statements) {
+
+        Map<Account, ReconciliationResult> results = new ConcurrentHashMap<>();
+
+        ExecutionPolicy policy = ExecutionPolicy.ledger();
+        policy.forEach(statements.entrySet(), policy.getBatchThreshold(), statement -> results.put(statement.getKey(), reconcile(statement.getKey(), statement.getValue())));
+
+        return results;
+    }
+
+    /**
+     * @param account {@link Account} whose entries are to be reconciled
+     * @param lines   Lines of the statement of the account
+     * @return {@link ReconciliationResult} of the account
+     */
+    public ReconciliationResult reconcile(Account account, List<BankStatementLine> lines) {
+
+        List<Entry> entries = account.getEntries();
+        int size = entries.size();
+
+        int[] epochDays = new int[size];
+        String[] references = new String[size];
+        Map<Long, Bucket> buckets = new HashMap<>();
+
+        for (int i = 0; i < size; i++) {
+
+            Entry entry = entries.get(i);
+            epochDays[i] = entry.getEpochDay();
+            references[i] = referenceOf(entry);
+
+            long minorUnits = MinorUnits.of(entry.getAmount());
+
+            buckets.computeIfAbsent(entry.getAccountSide() == DEBIT ? minorUnits : -minorUnits, amount -> new Bucket()).add(epochDays[i], i);
+        }
+
+        buckets.values().forEach(Bucket::sort);
+
+        boolean[] taken = new boolean[size];
+        boolean[] contested = new boolean[size];
+
+        List<Match> matched = new ArrayList<>();
+        List<AmbiguousMatch> ambiguous = new ArrayList<>();
+        List<BankStatementLine> unmatchedLines = new ArrayList<>();
+        List<Integer> candidates = new ArrayList<>();
+
+        for (BankStatementLine line : lines) {
+
+            candidates.clear();
+            Bucket bucket = buckets.get(line.getSignedAmount());
+
+            if (bucket != null) {
+                long[] items = bucket.items;
+                int last = line.getEpochDay() + dateToleranceDays;
+                for (int position = bucket.first(line.getEpochDay() - dateToleranceDays); position < items.length && Bucket.epochDay(items[position]) <= last; position++) {
+                    int index = Bucket.index(items[position]);
+                    if (!taken[index] && referenceMatches(line, references[index])) {
+                        candidates.add(index);
+                    }
+                }
+            }
+
+            int chosen = choose(candidates, line.getEpochDay(), epochDays);
+
+            if (chosen >= 0) {
+                taken[chosen] = true;
+                matched.add(new Match(line, entries.get(chosen)));
+            } else if (candidates.isEmpty()) {
+                unmatchedLines.add(line);
+            } else {
+                List<Entry> candidateEntries = new ArrayList<>(candidates.size());
+                for (int index : candidates) {
+                    contested[index] = true;
+                    candidateEntries.add(entries.get(index));
+                }
+                ambiguous.add(new AmbiguousMatch(line, candidateEntries));
+            }
+        }
+
+        List<Entry> unmatchedEntries = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (!taken[i] && !contested[i]) {
+                unmatchedEntries.add(entries.get(i));
+            }
+        }
+
+        ReconciliationResult result = new ReconciliationResult(matched, ambiguous, unmatchedLines, unmatchedEntries);
+
+        log.debug("Account : {} reconciled with result {}", account.getAccountDetails(), result);
+
+        return result;
+    }
+
+    private static int choose(List<Integer> candidates, int epochDay, int[] epochDays) {
+
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+
+        int chosen = -1;
+        for (int index : candidates) {
+            if (epochDays[index] == epochDay) {
+                if (chosen >= 0) {
+                    return -1;
+                }
+                chosen = index;
+            }
+        }
+        return chosen;
+    }
+
+    private boolean referenceMatches(BankStatementLine line, String reference) {
+
+        return referenceAttribute == null || line.getReference() == null || Objects.equals(line.getReference(), reference);
+    }
+
+    private String referenceOf(Entry entry) {
+
+        if (referenceAttribute == null) {
+            return null;
+        }
+        EntryDetails details = entry.getEntryDetails();
+        Object reference = details == null ? null : details.getEntryMap().get(referenceAttribute);
+        return reference == null ? null : reference.toString();
+    }
+
+    /**
+     * Entries of one amount, each held as its booking date in the high half of a long and its index in the low half, so
+     * that sorting the longs orders the entries by booking date
+     */
+    private static final class Bucket {
+
+        private long[] items = new long[1];
+
+        private int size;
+
+        private void add(int epochDay, int index) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size << 1);
+            }
+            items[size++] = ((long) epochDay << 32) | index;
+        }
+
+        private void sort() {
+            items = Arrays.copyOf(items, size);
+            Arrays.sort(items);
+        }
+
+        private int first(int fromEpochDay) {
+            int position = Arrays.binarySearch(items, (long) fromEpochDay << 32);
+            return position < 0 ? -position - 1 : position;
+        }
+
+        private static int epochDay(long item) {
+            return (int) (item >> 32);
+        }
+
+        private static int index(long item) {
+            return (int) item;
+        }
+    }
+}
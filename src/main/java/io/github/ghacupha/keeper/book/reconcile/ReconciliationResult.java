@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.reconcile;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of reconciling the lines of a statement against the {@link Entry} items of one account. Every line ends up
+ * in exactly one of the matched, ambiguous or unmatched sets. An {@link Entry} is either matched, a candidate of some
+ * {@link AmbiguousMatch}, or unmatched.
+ *
+ * @author edwin.njeru
+ */
+public final class ReconciliationResult {
+
+    private final List<Match> matched;
+
+    private final List<AmbiguousMatch> ambiguous;
+
+    private final List<BankStatementLine> unmatchedLines;
+
+    private final List<Entry> unmatchedEntries;
+
+    ReconciliationResult(List<Match> matched, List<AmbiguousMatch> ambiguous, List<BankStatementLine> unmatchedLines, List<Entry> unmatchedEntries) {
+        this.matched = Collections.unmodifiableList(matched);
+        this.ambiguous = Collections.unmodifiableList(ambiguous);
+        this.unmatchedLines = Collections.unmodifiableList(unmatchedLines);
+        this.unmatchedEntries = Collections.unmodifiableList(unmatchedEntries);
+    }
+
+    public List<Match> getMatched() {
+        return matched;
+    }
+
+    public List<AmbiguousMatch> getAmbiguous() {
+        return ambiguous;
+    }
+
+    public List<BankStatementLine> getUnmatchedLines() {
+        return unmatchedLines;
+    }
+
+    public List<Entry> getUnmatchedEntries() {
+        return unmatchedEntries;
+    }
+
+    /**
+     * @return True if every line and every {@link Entry} has been matched
+     */
+    public boolean isReconciled() {
+        return ambiguous.isEmpty() && unmatchedLines.isEmpty() && unmatchedEntries.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "matched : " + matched.size() + ", ambiguous : " + ambiguous.size() + ", unmatched lines : " + unmatchedLines.size() + ", unmatched entries : " +
+            unmatchedEntries.size();
+    }
+}
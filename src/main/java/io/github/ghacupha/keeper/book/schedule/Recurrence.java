@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.schedule;
+
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.time.point.TimePoint;
+
+import java.time.LocalDate;
+
+/**
+ * The dates on which a {@link RecurringSchedule} falls due, computed from the first date and the interval whenever
+ * they are asked for rather than kept in a list. Monthly dates are always worked out from the first date, so a
+ * schedule starting on the 31st falls on the last day of shorter months and returns to the 31st afterwards.
+ *
+ * @author edwin.njeru
+ */
+public final class Recurrence {
+
+    /**
+     * Number of occurrences of a recurrence without an end
+     */
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private final int firstEpochDay;
+
+    private final int interval;
+
+    private final boolean months;
+
+    private final int occurrences;
+
+    private Recurrence(int firstEpochDay, int interval, boolean months, int occurrences) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("The interval of a recurrence must be at least 1, but was " + interval);
+        }
+        if (occurrences < 0) {
+            throw new IllegalArgumentException("The number of occurrences cannot be negative, but was " + occurrences);
+        }
+        this.firstEpochDay = firstEpochDay;
+        this.interval = interval;
+        this.months = months;
+        this.occurrences = occurrences;
+    }
+
+    /**
+     * @param first       Date of the first occurrence
+     * @param occurrences Number of occurrences, or {@link #UNBOUNDED}
+     * @return {@link Recurrence} falling on the same day every month
+     */
+    public static Recurrence monthly(TimePoint first, int occurrences) {
+        return new Recurrence(EpochDays.of(first), 1, true, occurrences);
+    }
+
+    /**
+     * @param first       Date of the first occurrence
+     * @param months      Number of months between occurrences
+     * @param occurrences Number of occurrences, or {@link #UNBOUNDED}
+     * @return {@link Recurrence} falling on the same day every so many months
+     */
+    public static Recurrence everyMonths(TimePoint first, int months, int occurrences) {
+        return new Recurrence(EpochDays.of(first), months, true, occurrences);
+    }
+
+    /**
+     * @param first       Date of the first occurrence
+     * @param days        Number of days between occurrences
+     * @param occurrences Number of occurrences, or {@link #UNBOUNDED}
+     * @return {@link Recurrence} falling every so many days
+     */
+    public static Recurrence everyDays(TimePoint first, int days, int occurrences) {
+        return new Recurrence(EpochDays.of(first), days, false, occurrences);
+    }
+
+    /**
+     * @return Number of occurrences, {@link #UNBOUNDED} if the recurrence does not end
+     */
+    public int getOccurrences() {
+        return occurrences;
+    }
+
+    public int getFirstEpochDay() {
+        return firstEpochDay;
+    }
+
+    /**
+     * @param occurrence Zero based occurrence
+     * @return Day of the occurrence, in days since 1970-01-01
+     */
+    public int epochDay(int occurrence) {
+
+        if (months) {
+            return (int) LocalDate.ofEpochDay(firstEpochDay).plusMonths((long) occurrence * interval).toEpochDay();
+        }
+        return (int) (firstEpochDay + (long) occurrence * interval);
+    }
+
+    /**
+     * @param epochDay Day in days since 1970-01-01
+     * @return Number of occurrences falling on or before the day
+     */
+    public int occurrencesUpTo(int epochDay) {
+
+        if (epochDay < firstEpochDay) {
+            return 0;
+        }
+
+        long elapsed = (long) epochDay - firstEpochDay;
+
+        if (!months) {
+            return (int) Math.min(occurrences, elapsed / interval + 1);
+        }
+
+        // A month has at least 28 days, which bounds the search; then find the first occurrence after the day
+        int low = 0;
+        int high = (int) Math.min(occurrences, elapsed / (28L * interval) + 1);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (epochDay(middle) <= epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public String toString() {
+        return "every " + interval + (months ? " months" : " days") + " from " + EpochDays.toTimePoint(firstEpochDay) + (occurrences == UNBOUNDED ? "" : ", " + occurrences + " times");
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.schedule;
+
+import io.github.ghacupha.cash.Cash;
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.base.EntryDetails;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.ImmutableEntryException;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
+import io.github.ghacupha.keeper.book.util.UnableToPostException;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Currency;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.SimpleEntry.makeEntry;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+
+/**
+ * A stream of future postings, each debiting one {@link Account} and crediting another, on the dates of a
+ * {@link Recurrence} and for the amounts of a {@link ScheduledAmount}. Monthly accruals and the amortization of a
+ * prepayment are typical schedules.
+ * <p>Nothing is created ahead of time. Balance queries add the effect of the occurrences that are due but not yet
+ * posted straight from the recurrence and the amount, see {@link #balance(SimpleAccount, TimePoint, Collection)}, and
+ * {@link #entries(TimePoint, TimePoint)} creates the entries for a period only as they are consumed. Occurrences
+ * become real entries in the accounts only when {@link #post(TimePoint)} is called, typically as each period is
+ * closed, after which they are no longer counted by the schedule.</p>
+ * <p>Balances worked out while {@link #post(TimePoint)} is running on another thread may count an occurrence twice
+ * or not at all.</p>
+ *
+ * @author edwin.njeru
+ */
+public final class RecurringSchedule {
+
+    private static final Logger log = LoggerFactory.getLogger(RecurringSchedule.class);
+
+    private final String label;
+
+    private final Recurrence recurrence;
+
+    private final ScheduledAmount amount;
+
+    private final Account debitAccount;
+
+    private final Account creditAccount;
+
+    private final EntryDetails details;
+
+    private final Currency currency;
+
+    private volatile int postedOccurrences;
+
+    private RecurringSchedule(String label, Recurrence recurrence, ScheduledAmount amount, Account debitAccount, Account creditAccount, EntryDetails details) {
+        this.label = label;
+        this.recurrence = recurrence;
+        this.amount = amount;
+        this.debitAccount = debitAccount;
+        this.creditAccount = creditAccount;
+        this.details = details;
+        this.currency = debitAccount.getCurrency();
+    }
+
+    /**
+     * @param label         Label of the transactions created by the schedule
+     * @param recurrence    {@link Recurrence} giving the dates of the occurrences
+     * @param amount        {@link ScheduledAmount} giving the amount of each occurrence
+     * @param debitAccount  {@link Account} debited by every occurrence
+     * @param creditAccount {@link Account} credited by every occurrence
+     * @param details       {@link EntryDetails} shared by the entries created by the schedule
+     * @return {@link RecurringSchedule}
+     * @throws MismatchedCurrencyException  if the accounts are in different currencies
+     * @throws UntimelyBookingDateException if the first occurrence is before the opening date of either account
+     */
+    public static RecurringSchedule schedule(String label, Recurrence recurrence, ScheduledAmount amount, Account debitAccount, Account creditAccount, EntryDetails details)
+        throws MismatchedCurrencyException, UntimelyBookingDateException {
+
+        if (!debitAccount.getCurrency().equals(creditAccount.getCurrency())) {
+            throw new MismatchedCurrencyException(String.format("The schedule : %s cannot debit %s and credit %s", label, debitAccount.getCurrency(), creditAccount.getCurrency()));
+        }
+
+        TimePoint first = EpochDays.toTimePoint(recurrence.getFirstEpochDay());
+        if (first.before(debitAccount.getOpeningDate()) || first.before(creditAccount.getOpeningDate())) {
+            throw new UntimelyBookingDateException(String.format("The schedule : %s starts on %s, before the opening date of one of its accounts", label, first));
+        }
+
+        RecurringSchedule schedule = new RecurringSchedule(label, recurrence, amount, debitAccount, creditAccount, details);
+
+        log.debug("Recurring schedule created : {}", schedule);
+
+        return schedule;
+    }
+
+    /**
+     * @param account  {@link Account} whose balance is wanted
+     * @param epochDay Day in days since 1970-01-01
+     * @return Effect, debit positive, on the account of the occurrences that are due on or before the day but have not
+     * been posted, in minor units
+     */
+    public long pendingInMinorUnits(Account account, int epochDay) {
+
+        if (account != debitAccount && account != creditAccount) {
+            return 0;
+        }
+
+        int posted = postedOccurrences;
+        int due = recurrence.occurrencesUpTo(epochDay);
+        if (due <= posted) {
+            return 0;
+        }
+
+        long pending = amount.totalInMinorUnits(due) - amount.totalInMinorUnits(posted);
+
+        return (account == debitAccount ? pending : 0) - (account == creditAccount ? pending : 0);
+    }
+
+    /**
+     * @param account   {@link SimpleAccount} whose balance is wanted
+     * @param asAt      Date of the balance
+     * @param schedules {@link RecurringSchedule} items whose pending occurrences are to be counted
+     * @return {@link AccountBalance} of the account including the occurrences of the schedules due by the date
+     */
+    public static AccountBalance balance(SimpleAccount account, TimePoint asAt, Collection<RecurringSchedule> schedules) {
+
+        int epochDay = EpochDays.of(asAt);
+
+        long balance = account.balanceInMinorUnits(epochDay);
+        for (RecurringSchedule schedule : schedules) {
+            balance += schedule.pendingInMinorUnits(account, epochDay);
+        }
+
+        AccountSide side = balance > 0 ? DEBIT : balance < 0 ? CREDIT : account.getAccountSide();
+
+        return new AccountBalance(MinorUnits.toCash(Math.abs(balance), account.getCurrency()), side);
+    }
+
+    /**
+     * @param from First date, inclusive
+     * @param to   Last date, inclusive
+     * @return The debit and credit {@link Entry} of each occurrence within the dates, created as the stream is consumed
+     * and not posted anywhere
+     */
+    public Stream<Entry> entries(TimePoint from, TimePoint to) {
+
+        int first = recurrence.occurrencesUpTo(EpochDays.of(from) - 1);
+        int last = recurrence.occurrencesUpTo(EpochDays.of(to));
+
+        return IntStream.range(first, last).boxed().flatMap(occurrence -> {
+            TimePoint date = EpochDays.toTimePoint(recurrence.epochDay(occurrence));
+            Cash cash = MinorUnits.toCash(amount.amountInMinorUnits(occurrence), currency);
+            return Stream.of(makeEntry(DEBIT, debitAccount, cash, date, details), makeEntry(CREDIT, creditAccount, cash, date, details));
+        });
+    }
+
+    /**
+     * Posts every occurrence due on or before the date which has not been posted yet
+     *
+     * @param upTo Last date whose occurrences are to be posted
+     * @return Number of occurrences posted
+     * @throws ImmutableEntryException      if an entry could not be added into its transaction
+     * @throws MismatchedCurrencyException  if an amount is not in the currency of the accounts
+     * @throws UnableToPostException        if a transaction could not be posted
+     */
+    public synchronized int post(TimePoint upTo) throws ImmutableEntryException, MismatchedCurrencyException, UnableToPostException {
+
+        int due = recurrence.occurrencesUpTo(EpochDays.of(upTo));
+        int posted = postedOccurrences;
+
+        for (int occurrence = posted; occurrence < due; occurrence++) {
+
+            Cash cash = MinorUnits.toCash(amount.amountInMinorUnits(occurrence), currency);
+
+            Transaction transaction = getTransaction(label, EpochDays.toTimePoint(recurrence.epochDay(occurrence)), currency);
+            transaction.addEntry(DEBIT, cash, debitAccount, details);
+            transaction.addEntry(CREDIT, cash, creditAccount, details);
+            transaction.post();
+
+            postedOccurrences = occurrence + 1;
+        }
+
+        log.debug("{} occurrences of schedule : {} posted up to {}", due - posted, label, upTo);
+
+        return Math.max(0, due - posted);
+    }
+
+    /**
+     * @return Number of occurrences that have been posted into the accounts
+     */
+    public int getPostedOccurrences() {
+        return postedOccurrences;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public Recurrence getRecurrence() {
+        return recurrence;
+    }
+
+    @Override
+    public String toString() {
+        return "{'" + label + "', " + recurrence + ", debit=" + debitAccount.getAccountDetails() + ", credit=" + creditAccount.getAccountDetails() + '}';
+    }
+}
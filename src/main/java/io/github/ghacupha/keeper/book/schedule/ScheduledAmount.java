@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.schedule;
+
+import io.github.ghacupha.cash.Cash;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+
+/**
+ * The amount of each occurrence of a {@link RecurringSchedule}, in minor units of the schedule's currency.
+ * Implementations that can add up a number of occurrences without going through them one by one should override
+ * {@link #totalInMinorUnits(int)}, which is what balance queries use.
+ *
+ * @author edwin.njeru
+ */
+@FunctionalInterface
+public interface ScheduledAmount {
+
+    /**
+     * @param occurrence Zero based occurrence
+     * @return Amount of the occurrence in minor units
+     */
+    long amountInMinorUnits(int occurrence);
+
+    /**
+     * @param occurrences Number of occurrences from the first
+     * @return Sum of the amounts of the occurrences in minor units
+     */
+    default long totalInMinorUnits(int occurrences) {
+
+        long total = 0;
+        for (int occurrence = 0; occurrence < occurrences; occurrence++) {
+            total += amountInMinorUnits(occurrence);
+        }
+        return total;
+    }
+
+    /**
+     * @param amount Amount of every occurrence
+     * @return {@link ScheduledAmount} which is the same each time, such as a monthly accrual
+     */
+    static ScheduledAmount fixed(Cash amount) {
+
+        long minorUnits = MinorUnits.of(amount);
+
+        return new ScheduledAmount() {
+            @Override
+            public long amountInMinorUnits(int occurrence) {
+                return minorUnits;
+            }
+
+            @Override
+            public long totalInMinorUnits(int occurrences) {
+                return minorUnits * occurrences;
+            }
+        };
+    }
+
+    /**
+     * @param total       Amount to be spread
+     * @param occurrences Number of occurrences over which it is spread
+     * @return {@link ScheduledAmount} spreading the total evenly, with the odd minor units going to the first occurrences,
+     * such as the amortization of a prepayment
+     * @throws IllegalArgumentException if the number of occurrences is less than 1, or is {@link Recurrence#UNBOUNDED}
+     */
+    static ScheduledAmount straightLine(Cash total, int occurrences) {
+
+        if (occurrences < 1 || occurrences == Recurrence.UNBOUNDED) {
+            throw new IllegalArgumentException("A total can only be spread over a bounded number of at least 1 occurrences, but was " + occurrences);
+        }
+
+        long minorUnits = MinorUnits.of(total);
+        long share = minorUnits / occurrences;
+        // odd minor units of a negative total are negative, and go to the first occurrences all the same
+        long odd = Math.abs(minorUnits % occurrences);
+        long oddUnit = Long.signum(minorUnits);
+
+        return new ScheduledAmount() {
+            @Override
+            public long amountInMinorUnits(int occurrence) {
+                return occurrence >= occurrences ? 0 : share + (occurrence < odd ? oddUnit : 0);
+            }
+
+            @Override
+            public long totalInMinorUnits(int count) {
+                int due = Math.min(count, occurrences);
+                return share * due + Math.min(due, odd) * oddUnit;
+            }
+        };
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.search;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.PostingListener;
+import io.github.ghacupha.keeper.book.base.EntryDetails;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.EpochDayRange;
+import io.github.ghacupha.time.point.DateRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Inverted index over the narrations found in {@link EntryDetails#getNarration()}. Each {@link Entry} is given an
+ * ascending document id when it is indexed, and every term in its narration keeps a compact {@link PostingsList} of
+ * those ids.
+ * <p>The index is kept current by registering it as a {@link PostingListener} on the accounts it covers, see
+ * {@link #watch(SimpleAccount)}. Tokenization happens before the index lock is taken, so the posting thread only holds
+ * the lock for the few appends, which keeps the cost to posting throughput small.</p>
+ * <p>Queries are a sequence of terms separated by white space, all of which must match (AND). A term ending with
+ * {@code *} matches any term starting with what comes before it, for instance {@code "chq 0045*"}. Results can be
+ * restricted to a given {@link Account} and {@link DateRange}, and are returned in the order in which the entries were
+ * indexed.</p>
+ *
+ * @author edwin.njeru
+ */
+public final class NarrationIndex implements PostingListener {
+
+    private static final Logger log = LoggerFactory.getLogger(NarrationIndex.class);
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final char PREFIX_WILDCARD = '*';
+
+    private final NavigableMap<String, PostingsList> postings = new ConcurrentSkipListMap<>();
+
+    private final Object lock = new Object();
+
+    private volatile Entry[] entries = new Entry[INITIAL_CAPACITY];
+
+    private volatile Account[] accounts = new Account[INITIAL_CAPACITY];
+
+    private volatile int[] epochDays = new int[INITIAL_CAPACITY];
+
+    private volatile int documentCount;
+
+    /**
+     * Indexes the entries already in the account and registers this index to follow further postings into it
+     *
+     * @param account {@link SimpleAccount} whose entries are to be searchable
+     */
+    public void watch(SimpleAccount account) {
+
+        account.listen(this).forEach(entry -> index(account, entry));
+    }
+
+    @Override
+    public void posted(Account account, Entry entry) {
+
+        index(account, entry);
+    }
+
+    /**
+     * Adds the {@link Entry} into the index
+     *
+     * @param account {@link Account} into which the {@link Entry} has been posted
+     * @param entry   {@link Entry} to be indexed
+     */
+    public void index(Account account, Entry entry) {
+
+        EntryDetails details = entry.getEntryDetails();
+
+        Set<String> terms = NarrationTokenizer.tokenize(details == null ? null : details.getNarration());
+
+        // Resolve the lists ahead of the lock, creating missing ones, so that the lock only covers the appends
+        PostingsList[] lists = new PostingsList[terms.size()];
+        int i = 0;
+        for (String term : terms) {
+            lists[i++] = postings.computeIfAbsent(term, t -> new PostingsList());
+        }
+
+        synchronized (lock) {
+
+            int id = documentCount;
+
+            if (id == entries.length) {
+                entries = Arrays.copyOf(entries, id << 1);
+                accounts = Arrays.copyOf(accounts, id << 1);
+                epochDays = Arrays.copyOf(epochDays, id << 1);
+            }
+            entries[id] = entry;
+            accounts[id] = account;
+            epochDays[id] = entry.getEpochDay();
+
+            for (PostingsList list : lists) {
+                list.append(id);
+            }
+
+            documentCount = id + 1;
+        }
+
+        log.trace("Entry : {} indexed under terms : {}", entry, terms);
+    }
+
+    /**
+     * @param query Terms all of which must appear in the narration
+     * @return Matching {@link Entry} items in the order in which they were indexed
+     */
+    public List<Entry> search(String query) {
+
+        return search(query, null, (DateRange) null);
+    }
+
+    /**
+     * @param query   Terms all of which must appear in the narration
+     * @param account {@link Account} to which the results are restricted, or null for all accounts
+     * @return Matching {@link Entry} items in the order in which they were indexed
+     */
+    public List<Entry> search(String query, Account account) {
+
+        return search(query, account, (DateRange) null);
+    }
+
+    /**
+     * @param query     Terms all of which must appear in the narration
+     * @param account   {@link Account} to which the results are restricted, or null for all accounts
+     * @param dateRange {@link DateRange} within which the booking dates must fall, or null for any date
+     * @return Matching {@link Entry} items in the order in which they were indexed
+     */
+    public List<Entry> search(String query, Account account, DateRange dateRange) {
+
+        log.debug("Searching narrations for : '{}' in account : {} within : {}", query, account, dateRange);
+
+        int[] result = matching(query);
+
+        Entry[] indexedEntries = entries;
+        Account[] indexedAccounts = accounts;
+
+        List<Entry> found = new ArrayList<>(result.length);
+        for (int id : result) {
+            if (account != null && indexedAccounts[id] != account) {
+                continue;
+            }
+            Entry entry = indexedEntries[id];
+            if (dateRange != null && !dateRange.includes(entry.getBookingDate())) {
+                continue;
+            }
+            found.add(entry);
+        }
+
+        log.debug("{} entries found matching : '{}'", found.size(), query);
+
+        return found;
+    }
+
+    /**
+     * Same as {@link #search(String, Account, DateRange)}, except that the booking dates are checked against a column
+     * of epoch days kept in the index, without touching the entries that fall outside the range
+     *
+     * @param query   Terms all of which must appear in the narration
+     * @param account {@link Account} to which the results are restricted, or null for all accounts
+     * @param range   {@link EpochDayRange} within which the booking dates must fall
+     * @return Matching {@link Entry} items in the order in which they were indexed
+     */
+    public List<Entry> search(String query, Account account, EpochDayRange range) {
+
+        log.debug("Searching narrations for : '{}' in account : {} within : {}", query, account, range);
+
+        int[] result = matching(query);
+
+        Entry[] indexedEntries = entries;
+        Account[] indexedAccounts = accounts;
+        int[] indexedDays = epochDays;
+        int from = range.getFromEpochDay();
+        int to = range.getToEpochDay();
+
+        List<Entry> found = new ArrayList<>(result.length);
+        for (int id : result) {
+            int epochDay = indexedDays[id];
+            if (epochDay < from || epochDay > to || (account != null && indexedAccounts[id] != account)) {
+                continue;
+            }
+            found.add(indexedEntries[id]);
+        }
+
+        log.debug("{} entries found matching : '{}'", found.size(), query);
+
+        return found;
+    }
+
+    /**
+     * @return Ids of the entries matching every term of the query, in ascending order
+     */
+    private int[] matching(String query) {
+
+        String[] terms = query == null ? new String[0] : query.trim().split("\\s+");
+
+        List<int[]> matches = new ArrayList<>(terms.length);
+        for (String term : terms) {
+            if (term.isEmpty()) {
+                continue;
+            }
+            int[] ids = lookup(term);
+            if (ids.length == 0) {
+                return ids;
+            }
+            matches.add(ids);
+        }
+
+        if (matches.isEmpty()) {
+            return new int[0];
+        }
+
+        // Intersect starting with the most selective term
+        matches.sort(Comparator.comparingInt(ids -> ids.length));
+        int[] result = matches.get(0);
+        for (int i = 1; i < matches.size() && result.length > 0; i++) {
+            result = intersect(result, matches.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * @return Number of entries in the index
+     */
+    public int size() {
+
+        return documentCount;
+    }
+
+    /**
+     * @return Number of distinct terms in the index
+     */
+    public int termCount() {
+
+        return postings.size();
+    }
+
+    private int[] lookup(String queryTerm) {
+
+        if (queryTerm.charAt(queryTerm.length() - 1) != PREFIX_WILDCARD) {
+            PostingsList list = postings.get(NarrationTokenizer.normalize(queryTerm));
+            return list == null ? new int[0] : list.toArray();
+        }
+
+        String prefix = NarrationTokenizer.normalize(queryTerm.substring(0, queryTerm.length() - 1));
+
+        Map<String, PostingsList> expansion = prefix.isEmpty() ? postings : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+
+        int[] union = new int[0];
+        for (PostingsList list : expansion.values()) {
+            union = union(union, list.toArray());
+        }
+        return union;
+    }
+
+    private static int[] intersect(int[] left, int[] right) {
+
+        int[] result = new int[Math.min(left.length, right.length)];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+
+        while (i < left.length && j < right.length) {
+            if (left[i] < right[j]) {
+                i++;
+            } else if (left[i] > right[j]) {
+                j++;
+            } else {
+                result[count++] = left[i];
+                i++;
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int[] union(int[] left, int[] right) {
+
+        int[] result = new int[left.length + right.length];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+
+        while (i < left.length || j < right.length) {
+            if (j == right.length || (i < left.length && left[i] < right[j])) {
+                result[count++] = left[i++];
+            } else if (i == left.length || right[j] < left[i]) {
+                result[count++] = right[j++];
+            } else {
+                result[count++] = left[i];
+                i++;
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.search;
+
+import io.github.ghacupha.keeper.book.base.EntryDetails;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits the narration of an {@link EntryDetails} into lower-cased search terms. Any character that is neither a letter
+ * nor a digit is a separator, so that "CHQ IFO Billboards Ltd" becomes {@code [chq, ifo, billboards, ltd]} and a cheque
+ * number like "004512" is kept as a term of its own.
+ *
+ * @author edwin.njeru
+ */
+final class NarrationTokenizer {
+
+    private NarrationTokenizer() {
+    }
+
+    /**
+     * @param narration Text to be split into terms, may be null
+     * @return Distinct terms in the order of their first appearance
+     */
+    static Set<String> tokenize(String narration) {
+
+        Set<String> terms = new LinkedHashSet<>();
+
+        if (narration == null) {
+            return terms;
+        }
+
+        int length = narration.length();
+        int start = -1;
+
+        for (int i = 0; i <= length; i++) {
+
+            boolean termCharacter = i < length && Character.isLetterOrDigit(narration.charAt(i));
+
+            if (termCharacter && start < 0) {
+                start = i;
+            } else if (!termCharacter && start >= 0) {
+                terms.add(narration.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+
+        return terms;
+    }
+
+    /**
+     * Normalizes a single query term the same way the narrations are tokenized
+     *
+     * @param term Query term as typed by the user
+     * @return Lower-cased term
+     */
+    static String normalize(String term) {
+
+        return term.toLowerCase(Locale.ROOT);
+    }
+}
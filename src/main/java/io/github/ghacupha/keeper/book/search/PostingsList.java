@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.search;
+
+import java.util.Arrays;
+
+/**
+ * Ascending list of document ids stored as variable length deltas. A term that appears in thousands of narrations
+ * typically costs a single byte per occurrence, which keeps the whole index a fraction of the size of the narrations
+ * themselves.
+ * Appending is done by the {@link NarrationIndex} under its own lock and always in ascending order of id. Readers do
+ * not lock: the length is published after the bytes are written, so whatever length a reader sees is backed by a
+ * fully written array.
+ *
+ * @author edwin.njeru
+ */
+final class PostingsList {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private volatile byte[] data = new byte[INITIAL_CAPACITY];
+
+    private volatile int length;
+
+    private volatile int size;
+
+    private int lastId = -1;
+
+    /**
+     * @param id Document id which must be larger than any id previously appended
+     */
+    void append(int id) {
+
+        int delta = id - lastId;
+        lastId = id;
+
+        byte[] bytes = data;
+        int position = length;
+
+        if (position + 5 > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, position + 5));
+            data = bytes;
+        }
+
+        while ((delta & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+        bytes[position++] = (byte) delta;
+
+        size = size + 1;
+        length = position;
+    }
+
+    /**
+     * @return Number of ids in the list
+     */
+    int size() {
+
+        return size;
+    }
+
+    /**
+     * @return The ids decoded into an ascending array
+     */
+    int[] toArray() {
+
+        int end = length;
+        byte[] bytes = data;
+
+        int[] ids = new int[Math.min(size, end)];
+        int count = 0;
+        int position = 0;
+        int id = -1;
+
+        while (position < end) {
+
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            id += delta;
+
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count + 1);
+            }
+            ids[count++] = id;
+        }
+
+        return count == ids.length ? ids : Arrays.copyOf(ids, count);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.shard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Durable, append-only log of the decisions of the {@link ShardCoordinator}. A decision to commit or abort a
+ * transaction, with the shards taking part, is forced to disk before any shard is told of it, and a completion record
+ * is appended once every shard has acknowledged it. Decisions without a completion are those a restarted coordinator
+ * must deliver again, see {@link #pending()}. A record torn by a crash while it was being written is ignored.
+ *
+ * @author edwin.njeru
+ */
+public final class DecisionLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(DecisionLog.class);
+
+    private static final byte COMMIT = 1;
+    private static final byte ABORT = 2;
+    private static final byte DONE = 3;
+
+    private final FileChannel channel;
+
+    private final Map<Long, Decision> pending;
+
+    private long lastTransactionId;
+
+    private DecisionLog(FileChannel channel, Map<Long, Decision> pending, long lastTransactionId) {
+        this.channel = channel;
+        this.pending = pending;
+        this.lastTransactionId = lastTransactionId;
+    }
+
+    /**
+     * Opens the log, reading the decisions already in it
+     *
+     * @param file {@link Path} of the log, created if it does not exist
+     * @return {@link DecisionLog}
+     * @throws IOException if the log could not be read or opened
+     */
+    public static DecisionLog open(Path file) throws IOException {
+
+        Map<Long, Decision> pending = new LinkedHashMap<>();
+        long lastTransactionId = 0;
+        long validLength = 0;
+
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                while (true) {
+                    long transactionId = in.readLong();
+                    byte type = in.readByte();
+                    int recordLength = Long.BYTES + 1;
+                    if (type == DONE) {
+                        pending.remove(transactionId);
+                    } else {
+                        int count = in.readInt();
+                        int[] shards = new int[count];
+                        for (int i = 0; i < count; i++) {
+                            shards[i] = in.readInt();
+                        }
+                        recordLength += Integer.BYTES * (count + 1);
+                        pending.put(transactionId, new Decision(transactionId, type == COMMIT, shards));
+                    }
+                    lastTransactionId = Math.max(lastTransactionId, transactionId);
+                    validLength += recordLength;
+                }
+            } catch (EOFException e) {
+                // end of the log, or a torn last record which is dropped below
+            }
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(validLength);
+        channel.position(validLength);
+
+        log.info("Decision log : {} opened with {} decisions pending", file, pending.size());
+
+        return new DecisionLog(channel, pending, lastTransactionId);
+    }
+
+    /**
+     * Forces the decision to disk
+     *
+     * @param transactionId Id of the transaction
+     * @param commit        True to commit, false to abort
+     * @param shards        Shards taking part in the transaction
+     * @throws IOException if the decision could not be made durable
+     */
+    public synchronized void decide(long transactionId, boolean commit, int[] shards) throws IOException {
+
+        ByteBuffer record = ByteBuffer.allocate(Long.BYTES + 1 + Integer.BYTES * (shards.length + 1));
+        record.putLong(transactionId).put(commit ? COMMIT : ABORT).putInt(shards.length);
+        for (int shard : shards) {
+            record.putInt(shard);
+        }
+        write(record);
+        channel.force(false);
+
+        pending.put(transactionId, new Decision(transactionId, commit, shards.clone()));
+        lastTransactionId = Math.max(lastTransactionId, transactionId);
+    }
+
+    /**
+     * Records that every shard has acknowledged the decision. This need not be forced, since delivering a decision
+     * again is harmless.
+     *
+     * @param transactionId Id of the transaction
+     * @throws IOException if the record could not be written
+     */
+    public synchronized void complete(long transactionId) throws IOException {
+
+        ByteBuffer record = ByteBuffer.allocate(Long.BYTES + 1);
+        record.putLong(transactionId).put(DONE);
+        write(record);
+
+        pending.remove(transactionId);
+    }
+
+    /**
+     * @return Decisions not yet acknowledged by every shard, in the order they were made
+     */
+    public synchronized Map<Long, Decision> pending() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(pending));
+    }
+
+    /**
+     * @param transactionId Id of a transaction
+     * @return True if a decision on the transaction is in the log and not yet acknowledged by every shard
+     */
+    public synchronized boolean isPending(long transactionId) {
+        return pending.containsKey(transactionId);
+    }
+
+    /**
+     * @return Highest transaction id in the log, from which a restarted coordinator carries on numbering
+     */
+    public synchronized long getLastTransactionId() {
+        return lastTransactionId;
+    }
+
+    private void write(ByteBuffer record) throws IOException {
+
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * A decision of the coordinator
+     */
+    public static final class Decision {
+
+        private final long transactionId;
+        private final boolean commit;
+        private final int[] shards;
+
+        private Decision(long transactionId, boolean commit, int[] shards) {
+            this.transactionId = transactionId;
+            this.commit = commit;
+            this.shards = shards;
+        }
+
+        public long getTransactionId() {
+            return transactionId;
+        }
+
+        public boolean isCommit() {
+            return commit;
+        }
+
+        public int[] getShards() {
+            return shards.clone();
+        }
+    }
+}
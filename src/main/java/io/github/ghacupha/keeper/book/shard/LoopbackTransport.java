@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.shard;
+
+import io.github.ghacupha.keeper.book.util.PostingError;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link ShardTransport} calling shards held in the same JVM directly
+ *
+ * @author edwin.njeru
+ */
+public final class LoopbackTransport implements ShardTransport {
+
+    private final List<ShardEngine> engines;
+
+    /**
+     * @param engines {@link ShardEngine} of each shard, in the order of the shards
+     */
+    public LoopbackTransport(ShardEngine... engines) {
+        this.engines = Arrays.asList(engines);
+    }
+
+    @Override
+    public PostingError prepare(int shard, long transactionId, ShardPosting posting) throws IOException {
+        return engines.get(shard).prepare(transactionId, posting);
+    }
+
+    @Override
+    public boolean commit(int shard, long transactionId) {
+        return engines.get(shard).commit(transactionId);
+    }
+
+    @Override
+    public void abort(int shard, long transactionId) {
+        engines.get(shard).abort(transactionId);
+    }
+
+    @Override
+    public long[] prepared(int shard) {
+        return engines.get(shard).getPreparedTransactions();
+    }
+
+    @Override
+    public PostingError post(int shard, ShardPosting posting) {
+        return engines.get(shard).post(posting);
+    }
+
+    @Override
+    public void close() {
+    }
+}
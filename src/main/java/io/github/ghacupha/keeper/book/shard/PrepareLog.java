@@ -0,0 +1,214 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.shard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Durable, append-only log of the votes of one {@link ShardEngine}. The legs of a transaction the shard votes to
+ * commit are forced to disk before the vote is sent, and a record of its commit or abort is appended once the decision
+ * has been carried out, so that a shard restarted between the two phases still holds the legs it promised, see
+ * {@link #getPrepared()}. Each record is written with its length ahead of it, and a record torn by a crash while it was
+ * being written is ignored.
+ * <p>The log is rewritten when it is opened, keeping only the transactions still prepared and the ids of the most
+ * recent commits, so that it does not grow with the history of the shard.</p>
+ *
+ * @author edwin.njeru
+ */
+public final class PrepareLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(PrepareLog.class);
+
+    private static final byte PREPARED = 1;
+    private static final byte COMMITTED = 2;
+    private static final byte ABORTED = 3;
+
+    private final FileChannel channel;
+
+    private final Map<Long, ShardPosting> prepared;
+
+    private final List<Long> committed;
+
+    private PrepareLog(FileChannel channel, Map<Long, ShardPosting> prepared, List<Long> committed) {
+        this.channel = channel;
+        this.prepared = prepared;
+        this.committed = committed;
+    }
+
+    /**
+     * Opens the log, reading the transactions already in it
+     *
+     * @param file        {@link Path} of the log, created if it does not exist
+     * @param commitsKept Number of the most recent commits whose ids are kept when the log is rewritten
+     * @return {@link PrepareLog}
+     * @throws IOException if the log could not be read or rewritten
+     */
+    public static PrepareLog open(Path file, int commitsKept) throws IOException {
+
+        Map<Long, ShardPosting> prepared = new LinkedHashMap<>();
+        Set<Long> committed = new LinkedHashSet<>();
+
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                while (true) {
+                    byte[] record = new byte[in.readInt()];
+                    in.readFully(record);
+
+                    DataInputStream fields = new DataInputStream(new ByteArrayInputStream(record));
+                    long transactionId = fields.readLong();
+                    byte type = fields.readByte();
+                    if (type == PREPARED) {
+                        prepared.put(transactionId, ShardProtocol.readPosting(fields));
+                    } else {
+                        prepared.remove(transactionId);
+                        if (type == COMMITTED) {
+                            committed.add(transactionId);
+                        }
+                    }
+                }
+            } catch (EOFException e) {
+                // end of the log, or a torn last record which is dropped by the rewrite below
+            }
+        }
+
+        List<Long> all = new ArrayList<>(committed);
+        List<Long> kept = new ArrayList<>(all.subList(Math.max(0, all.size() - commitsKept), all.size()));
+
+        Path rewritten = file.resolveSibling(file.getFileName() + ".new");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(rewritten)))) {
+            for (long transactionId : kept) {
+                out.write(record(transactionId, COMMITTED, null));
+            }
+            for (Map.Entry<Long, ShardPosting> transaction : prepared.entrySet()) {
+                out.write(record(transaction.getKey(), PREPARED, transaction.getValue()));
+            }
+        }
+        Files.move(rewritten, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        channel.force(true);
+
+        log.info("Prepare log : {} opened with {} transactions prepared", file, prepared.size());
+
+        return new PrepareLog(channel, prepared, kept);
+    }
+
+    /**
+     * Forces the legs the shard is about to vote for to disk
+     *
+     * @param transactionId Id given to the transaction by the coordinator
+     * @param posting       Legs of the transaction falling in the shard
+     * @throws IOException if the legs could not be made durable, in which case the shard must not vote for them
+     */
+    public synchronized void prepared(long transactionId, ShardPosting posting) throws IOException {
+
+        write(record(transactionId, PREPARED, posting));
+        channel.force(false);
+    }
+
+    /**
+     * Records that the legs of the transaction have been posted. This is forced, since a shard which lost it would
+     * take the transaction for one still prepared.
+     *
+     * @param transactionId Id given to the transaction by the coordinator
+     * @throws IOException if the record could not be made durable
+     */
+    public synchronized void committed(long transactionId) throws IOException {
+
+        write(record(transactionId, COMMITTED, null));
+        channel.force(false);
+    }
+
+    /**
+     * Records that the legs of the transaction have been forgotten. This need not be forced, since aborting a
+     * transaction again is harmless.
+     *
+     * @param transactionId Id given to the transaction by the coordinator
+     * @throws IOException if the record could not be written
+     */
+    public synchronized void aborted(long transactionId) throws IOException {
+
+        write(record(transactionId, ABORTED, null));
+    }
+
+    /**
+     * @return Legs of the transactions which were prepared but neither committed nor aborted when the log was opened,
+     * in the order they were prepared
+     */
+    public Map<Long, ShardPosting> getPrepared() {
+        return Collections.unmodifiableMap(prepared);
+    }
+
+    /**
+     * @return Ids of the most recent transactions committed when the log was opened, oldest first
+     */
+    public List<Long> getCommitted() {
+        return Collections.unmodifiableList(committed);
+    }
+
+    private static byte[] record(long transactionId, byte type, ShardPosting posting) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream fields = new DataOutputStream(bytes)) {
+            fields.writeLong(transactionId);
+            fields.writeByte(type);
+            if (posting != null) {
+                ShardProtocol.writePosting(fields, posting);
+            }
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + bytes.size());
+        record.putInt(bytes.size()).put(bytes.toByteArray());
+        return record.array();
+    }
+
+    private void write(byte[] record) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.shard;
+
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.util.PostingError;
+import io.github.ghacupha.keeper.book.util.UnableToPostException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Posts transactions into a ledger whose accounts are partitioned between shards by the {@link ShardMap}.
+ * <p>A transaction whose legs all fall in one shard is sent to that shard to be posted in one step. A transaction
+ * spanning shards is committed in two phases: every shard taking part is asked to prepare its legs; if all agree, the
+ * decision to commit is forced to the {@link DecisionLog} and only then sent to the shards, otherwise the transaction
+ * is aborted. Should a shard be unreachable in the second phase, the decision stays pending in the log and is
+ * delivered again by {@link #recover()}. Recovery also aborts the transactions a shard has prepared but on which no
+ * decision was logged, as when the coordinator stopped during the first phase, so that they are not held forever.</p>
+ * <p>A {@link ShardEngine} voting to commit holds the booking dates of its legs open until the decision arrives and,
+ * given a {@link PrepareLog}, forces the legs to it before voting, so a commit it has voted for succeeds even if it
+ * restarts in between. A commit refused all the same, as by a shard running without a log that restarted, is logged
+ * as an error and the decision stays pending, to be delivered again by {@link #recover()}.</p>
+ *
+ * @author edwin.njeru
+ */
+public final class ShardCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardCoordinator.class);
+
+    private final ShardMap shardMap;
+
+    private final ShardTransport transport;
+
+    private final DecisionLog decisionLog;
+
+    private final AtomicLong transactionIds;
+
+    // transactions in their first phase, on which no decision has been logged yet
+    private final Set<Long> undecided = ConcurrentHashMap.newKeySet();
+
+    public ShardCoordinator(ShardMap shardMap, ShardTransport transport, DecisionLog decisionLog) {
+        this.shardMap = shardMap;
+        this.transport = transport;
+        this.decisionLog = decisionLog;
+        this.transactionIds = new AtomicLong(decisionLog.getLastTransactionId());
+    }
+
+    /**
+     * Posts the transaction into the shards holding its accounts
+     *
+     * @param posting {@link Transaction} to be posted
+     * @return Id given to the transaction, zero if it was posted in a single shard
+     * @throws UnableToPostException if the transaction is not balanced or a shard refused its legs, in which case
+     *                               nothing has been posted
+     * @throws IOException           if a shard could not be reached before the decision; after the decision, failures
+     *                               to reach a shard are left to {@link #recover()}
+     */
+    public long post(ShardPosting posting) throws UnableToPostException, IOException {
+
+        long imbalance = posting.imbalanceInMinorUnits();
+        if (imbalance != 0) {
+            throw new UnableToPostException(String.format("The transaction : %s is out of balance by : %s minor units", posting.getLabel(), imbalance));
+        }
+
+        Map<Integer, List<ShardLeg>> byShard = new TreeMap<>();
+        for (ShardLeg leg : posting.getLegs()) {
+            byShard.computeIfAbsent(shardMap.shardOf(leg.getAccountNumber()), shard -> new ArrayList<>()).add(leg);
+        }
+
+        if (byShard.size() == 1) {
+            int shard = byShard.keySet().iterator().next();
+            PostingError error = transport.post(shard, posting);
+            if (error != null) {
+                throw new UnableToPostException(String.format("Shard : %s refused the transaction : %s : %s", shard, posting.getLabel(), error.getDescription()));
+            }
+            return 0;
+        }
+
+        long transactionId = transactionIds.incrementAndGet();
+        int[] shards = byShard.keySet().stream().mapToInt(Integer::intValue).toArray();
+
+        PostingError refusal = null;
+        int refusingShard = -1;
+        IOException failure = null;
+        boolean commit;
+
+        undecided.add(transactionId);
+        try {
+            for (int shard : shards) {
+                try {
+                    PostingError error = transport.prepare(shard, transactionId, posting.withLegs(byShard.get(shard)));
+                    if (error != null) {
+                        refusal = error;
+                        refusingShard = shard;
+                        break;
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                    break;
+                }
+            }
+
+            commit = refusal == null && failure == null;
+
+            decisionLog.decide(transactionId, commit, shards);
+        } finally {
+            undecided.remove(transactionId);
+        }
+
+        // An abort goes to every shard, since one that failed to answer may still have prepared
+        deliver(transactionId, commit, shards);
+
+        if (failure != null) {
+            throw failure;
+        }
+        if (refusal != null) {
+            throw new UnableToPostException(String.format("Shard : %s refused the transaction : %s : %s", refusingShard, posting.getLabel(), refusal.getDescription()));
+        }
+
+        log.debug("Transaction : {} committed across shards : {}", transactionId, shards);
+
+        return transactionId;
+    }
+
+    /**
+     * Delivers again every decision that some shard has not acknowledged, as after a restart of the coordinator, and
+     * aborts the transactions prepared in a shard on which no decision has been logged, since without a decision
+     * logged they can never have been committed anywhere
+     *
+     * @return Number of decisions which are still pending
+     */
+    public int recover() throws IOException {
+
+        for (DecisionLog.Decision decision : decisionLog.pending().values()) {
+            deliver(decision.getTransactionId(), decision.isCommit(), decision.getShards());
+        }
+
+        for (int shard = 0; shard < shardMap.getShards(); shard++) {
+            try {
+                for (long transactionId : transport.prepared(shard)) {
+                    // a transaction still in its first phase is checked first, as it leaves that set once decided
+                    if (!undecided.contains(transactionId) && !decisionLog.isPending(transactionId)) {
+                        log.info("Aborting transaction : {} prepared in shard : {} without a decision", transactionId, shard);
+                        transport.abort(shard, transactionId);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Could not abort the undecided transactions of shard : {}, which are left for the next recovery", shard, e);
+            }
+        }
+
+        return decisionLog.pending().size();
+    }
+
+    private void deliver(long transactionId, boolean commit, int[] shards) throws IOException {
+
+        boolean acknowledged = true;
+
+        for (int shard : shards) {
+            try {
+                if (commit) {
+                    if (!transport.commit(shard, transactionId)) {
+                        log.error("Shard : {} refused to commit transaction : {}, which is half posted until it is resolved", shard, transactionId);
+                        acknowledged = false;
+                    }
+                } else {
+                    transport.abort(shard, transactionId);
+                }
+            } catch (IOException e) {
+                log.warn("Shard : {} did not get the decision on transaction : {}, which is left for recovery", shard, transactionId, e);
+                acknowledged = false;
+            }
+        }
+
+        if (acknowledged) {
+            decisionLog.complete(transactionId);
+        } else {
+            log.warn("Transaction : {} is in doubt until its decision reaches every shard", transactionId);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.shard;
+
+import io.github.ghacupha.keeper.book.base.PostingRequest;
+import io.github.ghacupha.keeper.book.base.PostingResult;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.keeper.book.util.PostingError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.PostingRequest.postingRequest;
+
+/**
+ * The ledger of one shard, holding the accounts whose numbers the {@link ShardMap} assigns to it, and taking part in
+ * the two-phase commit run by the {@link ShardCoordinator}.
+ * <p>Preparing a transaction validates its legs in this shard and holds the booking date open in each of their
+ * accounts, see {@link SimpleAccount#hold(int)}, so that no period covering it can be closed or migrated until the
+ * coordinator's decision arrives. A vote to commit is therefore a promise that the commit will succeed.</p>
+ * <p>A shard given a {@link PrepareLog} forces the legs it votes for to the log before voting, and on restart takes
+ * the transactions left prepared in the log back, holding their dates again as their accounts are opened, so that a
+ * decision arriving after the restart is carried out as if the shard had never stopped. A shard without a log keeps
+ * its prepared legs in memory only, and refuses the commit of a transaction prepared before it restarted.</p>
+ * <p>The ids of the most recent commits are kept so that a commit delivered again is acknowledged rather than
+ * refused, up to {@link #COMMITS_KEPT} of them.</p>
+ *
+ * @author edwin.njeru
+ */
+public final class ShardEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardEngine.class);
+
+    /**
+     * Number of the most recent commits remembered, so that their redelivery is acknowledged
+     */
+    public static final int COMMITS_KEPT = 65_536;
+
+    private final int shard;
+
+    private final PrepareLog prepareLog;
+
+    private final Map<String, SimpleAccount> accounts = new ConcurrentHashMap<>();
+
+    private final Map<Long, Prepared> prepared = new ConcurrentHashMap<>();
+
+    private final Set<Long> committed = Collections.synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<Long, Boolean>() {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > COMMITS_KEPT;
+        }
+    }));
+
+    /**
+     * @param shard Number of the shard
+     */
+    public ShardEngine(int shard) {
+        this.shard = shard;
+        this.prepareLog = null;
+    }
+
+    /**
+     * @param shard      Number of the shard
+     * @param prepareLog {@link PrepareLog} into which the legs voted for are forced, and whose prepared transactions
+     *                   are taken back
+     */
+    public ShardEngine(int shard, PrepareLog prepareLog) {
+        this.shard = shard;
+        this.prepareLog = prepareLog;
+
+        committed.addAll(prepareLog.getCommitted());
+        for (Map.Entry<Long, ShardPosting> transaction : prepareLog.getPrepared().entrySet()) {
+            prepared.put(transaction.getKey(), new Prepared(transaction.getValue()));
+        }
+
+        log.info("Shard : {} took back : {} prepared transactions", shard, prepared.size());
+    }
+
+    /**
+     * Holds the account in this shard, and the booking dates of the transactions taken back prepared with legs in it
+     *
+     * @param account {@link SimpleAccount} to be held in this shard
+     */
+    public void open(SimpleAccount account) {
+
+        String accountNumber = account.getAccountDetails().getNumber();
+        accounts.put(accountNumber, account);
+
+        for (Map.Entry<Long, Prepared> transaction : prepared.entrySet()) {
+            Prepared legs = transaction.getValue();
+            synchronized (legs) {
+                for (ShardLeg leg : legs.posting.getLegs()) {
+                    if (leg.getAccountNumber().equals(accountNumber) && !legs.held.contains(account)) {
+                        if (account.hold(legs.epochDay)) {
+                            legs.held.add(account);
+                        } else {
+                            log.error("Shard : {} cannot hold the date of transaction : {} in account : {} whose period has been closed", shard, transaction.getKey(), accountNumber);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param accountNumber Number of an account
+     * @return The {@link SimpleAccount}, or null if it is not held in this shard
+     */
+    public SimpleAccount account(String accountNumber) {
+
+        return accounts.get(accountNumber);
+    }
+
+    /**
+     * First phase: validates the legs of the transaction that fall in this shard, holds their booking date in their
+     * accounts and, if the shard has a {@link PrepareLog}, forces them to it
+     *
+     * @param transactionId Id given to the transaction by the coordinator
+     * @param posting       Legs of the transaction falling in this shard
+     * @return Null if the legs can be committed, else the reason they cannot
+     * @throws IOException if the legs could not be forced to the log, in which case the shard has not voted
+     */
+    public PostingError prepare(long transactionId, ShardPosting posting) throws IOException {
+
+        PostingRequest request = request(posting);
+        if (request == null) {
+            return PostingError.UNKNOWN_ACCOUNT;
+        }
+
+        PostingResult result = request.allowImbalance().validate();
+        if (!result.isValid()) {
+            log.debug("Shard : {} votes against transaction : {} : {}", shard, transactionId, result);
+            return result.getError();
+        }
+
+        Prepared legs = new Prepared(posting);
+        for (ShardLeg leg : posting.getLegs()) {
+            SimpleAccount account = accounts.get(leg.getAccountNumber());
+            if (!legs.held.contains(account)) {
+                if (!account.hold(legs.epochDay)) {
+                    // closed since the legs were validated
+                    legs.release();
+                    return PostingError.PERIOD_CLOSED;
+                }
+                legs.held.add(account);
+            }
+        }
+
+        if (prepareLog != null) {
+            try {
+                prepareLog.prepared(transactionId, posting);
+            } catch (IOException e) {
+                legs.release();
+                throw e;
+            }
+        }
+
+        prepared.put(transactionId, legs);
+
+        return null;
+    }
+
+    /**
+     * Second phase: posts the legs prepared for the transaction. Committing a transaction again has no effect.
+     *
+     * @param transactionId Id given to the transaction by the coordinator
+     * @return False if the transaction was neither prepared nor recently committed in this shard, or if an account of
+     * its legs has not been opened since the shard restarted, in which case they stay prepared for the commit to be
+     * delivered again
+     */
+    public boolean commit(long transactionId) {
+
+        Prepared legs = prepared.remove(transactionId);
+
+        if (legs == null) {
+            if (committed.contains(transactionId)) {
+                return true;
+            }
+            log.error("Shard : {} cannot commit transaction : {} which it has not prepared, its legs in this shard are lost", shard, transactionId);
+            return false;
+        }
+
+        PostingRequest request = request(legs.posting);
+        PostingResult result = request == null ? null : request.allowImbalance().post();
+        if (result == null || !result.isPosted()) {
+            prepared.put(transactionId, legs);
+            log.error("Shard : {} could not commit the prepared transaction : {} : {}", shard, transactionId, result == null ? PostingError.UNKNOWN_ACCOUNT : result);
+            return false;
+        }
+        legs.release();
+        committed.add(transactionId);
+
+        if (prepareLog != null) {
+            try {
+                prepareLog.committed(transactionId);
+            } catch (IOException e) {
+                log.error("Shard : {} committed transaction : {} but could not log it, and will take it back prepared if it restarts", shard, transactionId, e);
+            }
+        }
+
+        log.debug("Shard : {} committed transaction : {}", shard, transactionId);
+
+        return true;
+    }
+
+    /**
+     * Second phase: forgets the legs prepared for the transaction
+     *
+     * @param transactionId Id given to the transaction by the coordinator
+     */
+    public void abort(long transactionId) {
+
+        Prepared legs = prepared.remove(transactionId);
+        if (legs == null) {
+            return;
+        }
+        legs.release();
+
+        if (prepareLog != null) {
+            try {
+                prepareLog.aborted(transactionId);
+            } catch (IOException e) {
+                log.warn("Shard : {} could not log the abort of transaction : {}, which the coordinator aborts again on recovery", shard, transactionId, e);
+            }
+        }
+    }
+
+    /**
+     * Posts a transaction all of whose legs fall in this shard, in one step
+     *
+     * @param posting The transaction
+     * @return Null if it was posted, else the reason it was not
+     */
+    public PostingError post(ShardPosting posting) {
+
+        PostingRequest request = request(posting);
+        if (request == null) {
+            return PostingError.UNKNOWN_ACCOUNT;
+        }
+
+        return request.post().getError();
+    }
+
+    /**
+     * @return Number of transactions prepared and awaiting a decision
+     */
+    public int getPrepared() {
+        return prepared.size();
+    }
+
+    /**
+     * @return Ids of the transactions prepared and awaiting a decision
+     */
+    public long[] getPreparedTransactions() {
+        return prepared.keySet().stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private PostingRequest request(ShardPosting posting) {
+
+        PostingRequest request = postingRequest(posting.getLabel(), posting.getDate(), posting.getCurrency());
+
+        for (ShardLeg leg : posting.getLegs()) {
+            SimpleAccount account = accounts.get(leg.getAccountNumber());
+            if (account == null) {
+                return null;
+            }
+            request.addEntry(leg.getAccountSide(), MinorUnits.toCash(leg.getAmountInMinorUnits(), posting.getCurrency()), account, details(leg.getNarration()));
+        }
+        return request;
+    }
+
+    /**
+     * Legs of a prepared transaction, with the accounts in which their booking date is held
+     */
+    private static final class Prepared {
+
+        private final ShardPosting posting;
+
+        private final int epochDay;
+
+        private final List<SimpleAccount> held = new ArrayList<>();
+
+        private Prepared(ShardPosting posting) {
+            this.posting = posting;
+            this.epochDay = EpochDays.of(posting.getDate());
+        }
+
+        private synchronized void release() {
+
+            for (SimpleAccount account : held) {
+                account.release(epochDay);
+            }
+            held.clear();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.shard;
+
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+
+/**
+ * One entry of a {@link ShardPosting}, naming its account by number since the account itself may live in another
+ * process. The amount is in minor units of the currency of the posting.
+ *
+ * @author edwin.njeru
+ */
+public final class ShardLeg {
+
+    private final String accountNumber;
+
+    private final AccountSide accountSide;
+
+    private final long amountInMinorUnits;
+
+    private final String narration;
+
+    public ShardLeg(String accountNumber, AccountSide accountSide, long amountInMinorUnits, String narration) {
+        this.accountNumber = accountNumber;
+        this.accountSide = accountSide;
+        this.amountInMinorUnits = amountInMinorUnits;
+        this.narration = narration;
+    }
+
+    public static ShardLeg leg(String accountNumber, AccountSide accountSide, long amountInMinorUnits, String narration) {
+        return new ShardLeg(accountNumber, accountSide, amountInMinorUnits, narration);
+    }
+
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+
+    public AccountSide getAccountSide() {
+        return accountSide;
+    }
+
+    public long getAmountInMinorUnits() {
+        return amountInMinorUnits;
+    }
+
+    public String getNarration() {
+        return narration;
+    }
+
+    @Override
+    public String toString() {
+        return accountSide + " " + accountNumber + " " + amountInMinorUnits + " '" + narration + '\'';
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.shard;
+
+/**
+ * Partitions accounts between a fixed number of shards by their account number
+ *
+ * @author edwin.njeru
+ */
+public final class ShardMap {
+
+    private final int shards;
+
+    public ShardMap(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("There must be at least one shard, but there were " + shards);
+        }
+        this.shards = shards;
+    }
+
+    /**
+     * @param accountNumber Number of an account
+     * @return Shard holding the account, from zero
+     */
+    public int shardOf(String accountNumber) {
+        return Math.floorMod(accountNumber.hashCode(), shards);
+    }
+
+    public int getShards() {
+        return shards;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.shard;
+
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.time.point.TimePoint;
+
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+
+/**
+ * A {@link Transaction} described by value, so that it can be split between shards and sent to other processes
+ *
+ * @author edwin.njeru
+ */
+public final class ShardPosting {
+
+    private final String label;
+
+    private final TimePoint date;
+
+    private final Currency currency;
+
+    private final List<ShardLeg> legs;
+
+    public ShardPosting(String label, TimePoint date, Currency currency, List<ShardLeg> legs) {
+        this.label = label;
+        this.date = date;
+        this.currency = currency;
+        this.legs = Collections.unmodifiableList(legs);
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public TimePoint getDate() {
+        return date;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public List<ShardLeg> getLegs() {
+        return legs;
+    }
+
+    /**
+     * @return Debits less credits of the legs, in minor units
+     */
+    long imbalanceInMinorUnits() {
+
+        long imbalance = 0;
+        for (ShardLeg leg : legs) {
+            imbalance += leg.getAccountSide() == DEBIT ? leg.getAmountInMinorUnits() : -leg.getAmountInMinorUnits();
+        }
+        return imbalance;
+    }
+
+    /**
+     * @param subset Legs of this posting
+     * @return {@link ShardPosting} of the same transaction with only the given legs
+     */
+    ShardPosting withLegs(List<ShardLeg> subset) {
+        return new ShardPosting(label, date, currency, subset);
+    }
+
+    @Override
+    public String toString() {
+        return "{'" + label + "', date=" + date + ", currency=" + currency + ", legs=" + legs + '}';
+    }
+}
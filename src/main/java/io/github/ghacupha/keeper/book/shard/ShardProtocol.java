@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.shard;
+
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.PostingError;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+
+/**
+ * Wire format shared by the {@link SocketTransport} and the {@link ShardServer}. A request is an operation code, a
+ * transaction id and, for prepare and post, the {@link ShardPosting}; a reply is the name of the {@link PostingError},
+ * or an empty string for none, for prepare and post, a boolean for commit and abort, and the count and ids of the
+ * prepared transactions for prepared. Errors go by name so that shards and coordinators built with the constants in a
+ * different order still agree.
+ *
+ * @author edwin.njeru
+ */
+final class ShardProtocol {
+
+    static final byte PREPARE = 1;
+    static final byte COMMIT = 2;
+    static final byte ABORT = 3;
+    static final byte POST = 4;
+    static final byte PREPARED = 5;
+
+    private ShardProtocol() {
+    }
+
+    static void writePosting(DataOutput out, ShardPosting posting) throws IOException {
+
+        out.writeUTF(posting.getLabel());
+        out.writeInt(EpochDays.of(posting.getDate()));
+        out.writeUTF(posting.getCurrency().getCurrencyCode());
+        out.writeInt(posting.getLegs().size());
+
+        for (ShardLeg leg : posting.getLegs()) {
+            out.writeUTF(leg.getAccountNumber());
+            out.writeByte(leg.getAccountSide().ordinal());
+            out.writeLong(leg.getAmountInMinorUnits());
+            out.writeBoolean(leg.getNarration() != null);
+            if (leg.getNarration() != null) {
+                out.writeUTF(leg.getNarration());
+            }
+        }
+    }
+
+    static ShardPosting readPosting(DataInput in) throws IOException {
+
+        String label = in.readUTF();
+        int epochDay = in.readInt();
+        Currency currency = Currency.getInstance(in.readUTF());
+        int count = in.readInt();
+
+        List<ShardLeg> legs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String accountNumber = in.readUTF();
+            AccountSide side = AccountSide.values()[in.readByte()];
+            long amount = in.readLong();
+            String narration = in.readBoolean() ? in.readUTF() : null;
+            legs.add(new ShardLeg(accountNumber, side, amount, narration));
+        }
+
+        return new ShardPosting(label, EpochDays.toTimePoint(epochDay), currency, legs);
+    }
+
+    static void writeError(DataOutput out, PostingError error) throws IOException {
+
+        out.writeUTF(error == null ? "" : error.name());
+    }
+
+    static PostingError readError(DataInput in) throws IOException {
+
+        String name = in.readUTF();
+        if (name.isEmpty()) {
+            return null;
+        }
+        try {
+            return PostingError.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown posting error : " + name, e);
+        }
+    }
+
+    static void writeTransactions(DataOutput out, long[] transactionIds) throws IOException {
+
+        out.writeInt(transactionIds.length);
+        for (long transactionId : transactionIds) {
+            out.writeLong(transactionId);
+        }
+    }
+
+    static long[] readTransactions(DataInput in) throws IOException {
+
+        long[] transactionIds = new long[in.readInt()];
+        for (int i = 0; i < transactionIds.length; i++) {
+            transactionIds[i] = in.readLong();
+        }
+        return transactionIds;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.shard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Serves a {@link ShardEngine} to a {@link SocketTransport}, so that a shard can run in a process of its own. Each
+ * connection is served by a thread of its own, handling its requests one after the other.
+ *
+ * @author edwin.njeru
+ */
+public final class ShardServer implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardServer.class);
+
+    private final ShardEngine engine;
+
+    private final ServerSocket serverSocket;
+
+    /**
+     * Starts serving at once
+     *
+     * @param engine  {@link ShardEngine} to be served
+     * @param address Address to listen on, such as the loopback address
+     * @param port    Port to listen on, zero for any free port
+     * @throws IOException if the port could not be opened
+     */
+    public ShardServer(ShardEngine engine, InetAddress address, int port) throws IOException {
+        this.engine = engine;
+        this.serverSocket = new ServerSocket(port, 50, address);
+
+        Thread acceptor = new Thread(this::accept, "shard-server-" + serverSocket.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        log.info("Shard server listening on : {}", serverSocket.getLocalSocketAddress());
+    }
+
+    /**
+     * @return Port on which the server listens
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread handler = new Thread(() -> serve(socket), "shard-connection-" + socket.getPort());
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.error("Could not accept a connection on : {}", serverSocket.getLocalSocketAddress(), e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+
+        try (Socket connection = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+
+            while (true) {
+                byte operation;
+                try {
+                    operation = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                long transactionId = in.readLong();
+
+                switch (operation) {
+                    case ShardProtocol.PREPARE:
+                        ShardProtocol.writeError(out, engine.prepare(transactionId, ShardProtocol.readPosting(in)));
+                        break;
+                    case ShardProtocol.COMMIT:
+                        out.writeBoolean(engine.commit(transactionId));
+                        break;
+                    case ShardProtocol.ABORT:
+                        engine.abort(transactionId);
+                        out.writeBoolean(true);
+                        break;
+                    case ShardProtocol.POST:
+                        ShardProtocol.writeError(out, engine.post(ShardProtocol.readPosting(in)));
+                        break;
+                    case ShardProtocol.PREPARED:
+                        ShardProtocol.writeTransactions(out, engine.getPreparedTransactions());
+                        break;
+                    default:
+                        throw new IOException("Unknown operation : " + operation);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            log.error("Connection : {} closed on error", socket.getRemoteSocketAddress(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.shard;
+
+import io.github.ghacupha.keeper.book.util.PostingError;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Carries the requests of the {@link ShardCoordinator} to the {@link ShardEngine} of each shard, whether in the same
+ * JVM, see {@link LoopbackTransport}, or in another process, see {@link SocketTransport}
+ *
+ * @author edwin.njeru
+ */
+public interface ShardTransport extends Closeable {
+
+    /**
+     * @see ShardEngine#prepare(long, ShardPosting)
+     */
+    PostingError prepare(int shard, long transactionId, ShardPosting posting) throws IOException;
+
+    /**
+     * @see ShardEngine#commit(long)
+     */
+    boolean commit(int shard, long transactionId) throws IOException;
+
+    /**
+     * @see ShardEngine#abort(long)
+     */
+    void abort(int shard, long transactionId) throws IOException;
+
+    /**
+     * @see ShardEngine#getPreparedTransactions()
+     */
+    long[] prepared(int shard) throws IOException;
+
+    /**
+     * @see ShardEngine#post(ShardPosting)
+     */
+    PostingError post(int shard, ShardPosting posting) throws IOException;
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.shard;
+
+import io.github.ghacupha.keeper.book.util.PostingError;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * {@link ShardTransport} calling each shard's {@link ShardServer} over a connection of its own. Requests to one shard
+ * are sent one at a time over its connection; a connection that fails is dropped and opened again on the next request.
+ * Connecting and waiting for a reply are bounded by a timeout, so that a shard which hangs fails the request like one
+ * which is down; the connection is then dropped, since a late reply would answer the wrong request.
+ *
+ * @author edwin.njeru
+ */
+public final class SocketTransport implements ShardTransport {
+
+    private static final int DEFAULT_TIMEOUT_MILLIS = 30_000;
+
+    private final Connection[] connections;
+
+    /**
+     * @param shards Address of the {@link ShardServer} of each shard, in the order of the shards
+     */
+    public SocketTransport(List<InetSocketAddress> shards) {
+        this(shards, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param shards        Address of the {@link ShardServer} of each shard, in the order of the shards
+     * @param timeoutMillis Longest wait, in milliseconds, to connect to a shard or for one of its replies
+     */
+    public SocketTransport(List<InetSocketAddress> shards, int timeoutMillis) {
+
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("The timeout must be positive, but was " + timeoutMillis);
+        }
+
+        connections = new Connection[shards.size()];
+        for (int shard = 0; shard < connections.length; shard++) {
+            connections[shard] = new Connection(shards.get(shard), timeoutMillis);
+        }
+    }
+
+    @Override
+    public PostingError prepare(int shard, long transactionId, ShardPosting posting) throws IOException {
+
+        Connection connection = connections[shard];
+        synchronized (connection) {
+            try {
+                DataOutputStream out = connection.request(ShardProtocol.PREPARE, transactionId);
+                ShardProtocol.writePosting(out, posting);
+                out.flush();
+                return ShardProtocol.readError(connection.in);
+            } catch (IOException e) {
+                connection.close();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public boolean commit(int shard, long transactionId) throws IOException {
+
+        return decide(shard, ShardProtocol.COMMIT, transactionId);
+    }
+
+    @Override
+    public void abort(int shard, long transactionId) throws IOException {
+
+        decide(shard, ShardProtocol.ABORT, transactionId);
+    }
+
+    @Override
+    public long[] prepared(int shard) throws IOException {
+
+        Connection connection = connections[shard];
+        synchronized (connection) {
+            try {
+                connection.request(ShardProtocol.PREPARED, 0).flush();
+                return ShardProtocol.readTransactions(connection.in);
+            } catch (IOException e) {
+                connection.close();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public PostingError post(int shard, ShardPosting posting) throws IOException {
+
+        Connection connection = connections[shard];
+        synchronized (connection) {
+            try {
+                DataOutputStream out = connection.request(ShardProtocol.POST, 0);
+                ShardProtocol.writePosting(out, posting);
+                out.flush();
+                return ShardProtocol.readError(connection.in);
+            } catch (IOException e) {
+                connection.close();
+                throw e;
+            }
+        }
+    }
+
+    private boolean decide(int shard, byte operation, long transactionId) throws IOException {
+
+        Connection connection = connections[shard];
+        synchronized (connection) {
+            try {
+                connection.request(operation, transactionId).flush();
+                return connection.in.readBoolean();
+            } catch (IOException e) {
+                connection.close();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+
+        for (Connection connection : connections) {
+            synchronized (connection) {
+                connection.close();
+            }
+        }
+    }
+
+    private static final class Connection {
+
+        private final InetSocketAddress address;
+
+        private final int timeoutMillis;
+
+        private Socket socket;
+        private DataInputStream in;
+        private DataOutputStream out;
+
+        private Connection(InetSocketAddress address, int timeoutMillis) {
+            this.address = address;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        private DataOutputStream request(byte operation, long transactionId) throws IOException {
+
+            if (socket == null) {
+                socket = new Socket();
+                socket.connect(address, timeoutMillis);
+                socket.setSoTimeout(timeoutMillis);
+                socket.setTcpNoDelay(true);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            }
+            out.writeByte(operation);
+            out.writeLong(transactionId);
+            return out;
+        }
+
+        private void close() {
+
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // the connection is being dropped either way
+                }
+                socket = null;
+            }
+        }
+    }
+}
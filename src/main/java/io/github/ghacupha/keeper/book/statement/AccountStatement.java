@@ -0,0 +1,200 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.statement;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.base.EntryTimeline;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+
+/**
+ * Statement of an {@link Account} for the period between two dates, both inclusive, as would be covered by a
+ * {@code DateRange} of the same dates. Lines are produced in booking date order, each carrying the running balance
+ * of the account and the side on which it stands.
+ * <p>Lines are read lazily from the account's {@link EntryTimeline}, so neither {@link #lines()} nor
+ * {@link #page(String, int)} hold more than the current line or page in memory, however long the account. A page
+ * hands back a token which carries the position and running balance it stopped at, from which the following page
+ * resumes without re-reading the earlier lines.</p>
+ *
+ * @author edwin.njeru
+ */
+public final class AccountStatement {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountStatement.class);
+
+    private final SimpleAccount account;
+
+    private final int fromEpochDay;
+
+    private final int toEpochDay;
+
+    /**
+     * @param account {@link SimpleAccount} for which the statement is made
+     * @param from    First booking date of the statement
+     * @param to      Last booking date of the statement
+     */
+    public AccountStatement(SimpleAccount account, TimePoint from, TimePoint to) {
+        this.account = account;
+        this.fromEpochDay = EpochDays.of(from);
+        this.toEpochDay = EpochDays.of(to);
+    }
+
+    public static AccountStatement statement(SimpleAccount account, TimePoint from, TimePoint to) {
+
+        return new AccountStatement(account, from, to);
+    }
+
+    /**
+     * @return {@link AccountBalance} brought forward from before the first date of the statement
+     */
+    public AccountBalance getOpeningBalance() {
+
+        return balance(openingBalanceInMinorUnits());
+    }
+
+    /**
+     * @return All lines of the statement, read lazily in booking date order
+     */
+    public Stream<StatementLine> lines() {
+
+        Iterator<StatementLine> iterator = new LineIterator(entriesAfter(null), openingBalanceInMinorUnits());
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * @param pageToken Token from the previous {@link StatementPage}, or null for the first page
+     * @param pageSize  Maximum number of lines in the page
+     * @return The {@link StatementPage}
+     */
+    public StatementPage page(String pageToken, int pageSize) {
+
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("The page size must be at least 1, but was " + pageSize);
+        }
+
+        Long resumeAfter = null;
+        long balance;
+
+        if (pageToken == null) {
+            balance = openingBalanceInMinorUnits();
+        } else {
+            StatementCursor cursor = StatementCursor.fromToken(pageToken);
+            resumeAfter = cursor.getTimelineKey();
+            balance = cursor.getBalanceInMinorUnits();
+        }
+
+        LineIterator lines = new LineIterator(entriesAfter(resumeAfter), balance);
+
+        List<StatementLine> page = new ArrayList<>(pageSize);
+        while (page.size() < pageSize && lines.hasNext()) {
+            page.add(lines.next());
+        }
+
+        String nextPageToken = lines.hasNext() ? new StatementCursor(lines.lastKey, lines.balance).toToken() : null;
+
+        log.debug("Statement page of {} lines for account : {}, more pages : {}", page.size(), account, nextPageToken != null);
+
+        return new StatementPage(page, nextPageToken);
+    }
+
+    private Iterator<Map.Entry<Long, Entry>> entriesAfter(Long resumeAfter) {
+
+        NavigableMap<Long, Entry> period = account.getTimeline().between(fromEpochDay, toEpochDay);
+
+        return (resumeAfter == null ? period : period.tailMap(resumeAfter, false)).entrySet().iterator();
+    }
+
+    private long openingBalanceInMinorUnits() {
+
+        long balance = 0;
+
+        for (Entry entry : account.getTimeline().before(fromEpochDay).values()) {
+            balance = apply(balance, entry);
+        }
+
+        return balance;
+    }
+
+    private static long apply(long balance, Entry entry) {
+
+        long amount = MinorUnits.of(entry.getAmount());
+
+        return entry.getAccountSide() == DEBIT ? balance + amount : balance - amount;
+    }
+
+    private AccountBalance balance(long balanceInMinorUnits) {
+
+        AccountSide side = balanceInMinorUnits > 0 ? DEBIT : balanceInMinorUnits < 0 ? CREDIT : account.getAccountSide();
+
+        return new AccountBalance(MinorUnits.toCash(Math.abs(balanceInMinorUnits), account.getCurrency()), side);
+    }
+
+    private final class LineIterator implements Iterator<StatementLine> {
+
+        private final Iterator<Map.Entry<Long, Entry>> entries;
+
+        private long balance;
+
+        private long lastKey;
+
+        private LineIterator(Iterator<Map.Entry<Long, Entry>> entries, long openingBalance) {
+            this.entries = entries;
+            this.balance = openingBalance;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return entries.hasNext();
+        }
+
+        @Override
+        public StatementLine next() {
+
+            if (!entries.hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Map.Entry<Long, Entry> next = entries.next();
+
+            lastKey = next.getKey();
+            balance = apply(balance, next.getValue());
+
+            return new StatementLine(next.getValue(), balance(balance), balance);
+        }
+    }
+}
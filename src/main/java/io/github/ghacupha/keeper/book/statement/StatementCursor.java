@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.statement;
+
+/**
+ * Position in an {@link AccountStatement} from which a page resumes. The cursor carries the running balance up to its
+ * position so that resuming does not need to re-read the lines before it. It travels to the client as an opaque token.
+ *
+ * @author edwin.njeru
+ */
+final class StatementCursor {
+
+    private static final char SEPARATOR = '.';
+
+    private final long timelineKey;
+
+    private final long balanceInMinorUnits;
+
+    StatementCursor(long timelineKey, long balanceInMinorUnits) {
+        this.timelineKey = timelineKey;
+        this.balanceInMinorUnits = balanceInMinorUnits;
+    }
+
+    /**
+     * @param token Token previously produced by {@link #toToken()}
+     * @return The cursor
+     * @throws IllegalArgumentException if the token is not one produced by {@link #toToken()}
+     */
+    static StatementCursor fromToken(String token) {
+
+        int separator = token.indexOf(SEPARATOR);
+
+        try {
+            return new StatementCursor(Long.parseLong(token.substring(0, separator), Character.MAX_RADIX),
+                Long.parseLong(token.substring(separator + 1), Character.MAX_RADIX));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException(String.format("The statement page token : %s is not valid", token), e);
+        }
+    }
+
+    String toToken() {
+
+        return Long.toString(timelineKey, Character.MAX_RADIX) + SEPARATOR + Long.toString(balanceInMinorUnits, Character.MAX_RADIX);
+    }
+
+    /**
+     * @return Key of the last line returned before this cursor
+     */
+    long getTimelineKey() {
+        return timelineKey;
+    }
+
+    long getBalanceInMinorUnits() {
+        return balanceInMinorUnits;
+    }
+}
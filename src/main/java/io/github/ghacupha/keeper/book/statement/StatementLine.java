@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.statement;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+
+/**
+ * A single line in an {@link AccountStatement}, being the {@link Entry} together with the balance of the account after
+ * it was applied
+ *
+ * @author edwin.njeru
+ */
+public final class StatementLine {
+
+    private final Entry entry;
+
+    private final AccountBalance balance;
+
+    private final long balanceInMinorUnits;
+
+    StatementLine(Entry entry, AccountBalance balance, long balanceInMinorUnits) {
+        this.entry = entry;
+        this.balance = balance;
+        this.balanceInMinorUnits = balanceInMinorUnits;
+    }
+
+    public Entry getEntry() {
+        return entry;
+    }
+
+    /**
+     * @return Running {@link AccountBalance} of the account after this line
+     */
+    public AccountBalance getBalance() {
+        return balance;
+    }
+
+    /**
+     * @return Running balance in minor units of the currency, positive on the {@link AccountSide#DEBIT} side and
+     * negative on the {@link AccountSide#CREDIT} side
+     */
+    public long getBalanceInMinorUnits() {
+        return balanceInMinorUnits;
+    }
+
+    @Override
+    public String toString() {
+        return entry + " " + entry.getAccountSide() + " " + entry.getAmount() + " => " + balance;
+    }
+}
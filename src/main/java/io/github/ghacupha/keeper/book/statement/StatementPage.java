@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.statement;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of {@link StatementLine} items together with the token from which the next page can be resumed
+ *
+ * @author edwin.njeru
+ */
+public final class StatementPage {
+
+    private final List<StatementLine> lines;
+
+    private final String nextPageToken;
+
+    StatementPage(List<StatementLine> lines, String nextPageToken) {
+        this.lines = Collections.unmodifiableList(lines);
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<StatementLine> getLines() {
+        return lines;
+    }
+
+    /**
+     * @return Token to be handed to {@link AccountStatement#page(String, int)} for the next page, or null if this is
+     * the last page
+     */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public boolean hasNextPage() {
+        return nextPageToken != null;
+    }
+}
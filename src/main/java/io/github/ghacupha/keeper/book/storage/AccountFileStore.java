@@ -0,0 +1,239 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.storage;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.base.AccountDetails;
+import io.github.ghacupha.keeper.book.base.AccountLoader;
+import io.github.ghacupha.keeper.book.base.EntryDetails;
+import io.github.ghacupha.keeper.book.base.LazyAccount;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+
+import static io.github.ghacupha.keeper.book.base.SimpleEntry.makeEntry;
+
+/**
+ * Stores each {@link Account} in a file of its own and loads it back, which makes it an {@link AccountLoader} for
+ * {@link LazyAccount} items whose location is the path of the file.
+ * <p>The file holds the currency and default side of the account followed by its entries, each with its booking
+ * date, side, amount in minor units, narration and attributes. Narrations may be missing and of any length. Attribute
+ * values keep their type if it is one of {@link String}, {@link Integer}, {@link Long}, {@link Double},
+ * {@link Boolean} or {@link BigDecimal}, and an account holding an attribute of any other type is refused rather than
+ * stored with the value turned into text.</p>
+ * <p>Loaded entries are restored as committed before the ledger started, see
+ * {@link SimpleAccount#restore(AccountSide, Currency, AccountDetails, SimpleAccount.EntryReader)}, so loading an
+ * account neither takes commit numbers nor publishes its history again as new commits.</p>
+ *
+ * @author edwin.njeru
+ */
+public final class AccountFileStore implements AccountLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountFileStore.class);
+
+    private static final int MAGIC = 0x424B4143;
+
+    private static final int VERSION = 2;
+
+    // Files of the first version hold narrations and attribute values as modified UTF-8
+    private static final int TEXT_VERSION = 1;
+
+    private static final byte STRING = 0;
+    private static final byte INTEGER = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte DECIMAL = 5;
+
+    /**
+     * Writes the account into the file, replacing whatever the file held before
+     *
+     * @param account {@link SimpleAccount} to be stored
+     * @param file    {@link Path} of the file
+     * @throws IOException if the file could not be written, or an entry has an attribute of a type which cannot be
+     *                     stored
+     */
+    public void save(SimpleAccount account, Path file) throws IOException {
+
+        List<Entry> entries = account.getEntries();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeUTF(account.getCurrency().getCurrencyCode());
+            out.writeByte(account.getAccountSide().ordinal());
+            out.writeInt(entries.size());
+
+            for (Entry entry : entries) {
+                out.writeInt(entry.getEpochDay());
+                out.writeByte(entry.getAccountSide().ordinal());
+                out.writeLong(MinorUnits.of(entry.getAmount()));
+
+                EntryDetails details = entry.getEntryDetails();
+                writeText(out, details == null ? null : details.getNarration());
+
+                Map<String, Object> attributes = details == null ? Collections.emptyMap() : details.getEntryMap();
+                out.writeInt(attributes.size());
+                for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+                    writeText(out, attribute.getKey());
+                    writeValue(out, attribute.getValue(), attribute.getKey(), entry);
+                }
+            }
+        }
+
+        log.debug("{} entries of account : {} saved into : {}", entries.size(), account, file);
+    }
+
+    @Override
+    public SimpleAccount load(AccountDetails accountDetails, String location) throws IOException {
+
+        Path file = Paths.get(location);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+
+            int version = in.readInt() == MAGIC ? in.readByte() : -1;
+            if (version != VERSION && version != TEXT_VERSION) {
+                throw new IOException(String.format("The file : %s does not hold a stored account", file));
+            }
+
+            Currency currency = Currency.getInstance(in.readUTF());
+            AccountSide accountSide = AccountSide.values()[in.readByte()];
+
+            SimpleAccount account = SimpleAccount.restore(accountSide, currency, accountDetails, restored -> {
+
+                int count = in.readInt();
+                List<Entry> entries = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+
+                    int epochDay = in.readInt();
+                    AccountSide side = AccountSide.values()[in.readByte()];
+                    long amount = in.readLong();
+                    EntryDetails details = new EntryDetails(version == TEXT_VERSION ? in.readUTF() : readText(in));
+
+                    int attributes = in.readInt();
+                    for (int j = 0; j < attributes; j++) {
+                        if (version == TEXT_VERSION) {
+                            details.setAttribute(in.readUTF(), in.readUTF());
+                        } else {
+                            details.setAttribute(readText(in), readValue(in, file));
+                        }
+                    }
+
+                    entries.add(makeEntry(side, restored, MinorUnits.toCash(amount, currency), EpochDays.toTimePoint(epochDay), details));
+                }
+                return entries;
+            });
+
+            log.debug("{} entries of account : {} loaded from : {}", account.getEntries().size(), account, file);
+
+            return account;
+        }
+    }
+
+    /**
+     * Writes text of any length, or null, as its length in UTF-8 bytes, -1 for null, followed by the bytes
+     */
+    private static void writeText(DataOutputStream out, String text) throws IOException {
+
+        if (text == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeValue(DataOutputStream out, Object value, String key, Entry entry) throws IOException {
+
+        if (value instanceof String) {
+            out.writeByte(STRING);
+            writeText(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(DECIMAL);
+            writeText(out, value.toString());
+        } else {
+            throw new IOException(String.format("The attribute : %s of the entry : %s is a %s, which cannot be stored", key, entry, value.getClass().getName()));
+        }
+    }
+
+    private static Object readValue(DataInputStream in, Path file) throws IOException {
+
+        byte type = in.readByte();
+        switch (type) {
+            case STRING:
+                return readText(in);
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case DECIMAL:
+                return new BigDecimal(readText(in));
+            default:
+                throw new IOException(String.format("The file : %s holds an attribute of an unknown type : %s", file, type));
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.storage;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.base.EntryDetails;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.SimpleEntry.makeEntry;
+
+/**
+ * Answers balance and statement queries from an archive file written by the {@link ArchiveWriter}.
+ * <p>Only the segment directory is held in memory. A query skips every segment whose zone map shows it has no
+ * booking date within the queried dates; a balance query takes the totals of segments that fall wholly within the
+ * dates straight from the directory, and for the remaining segments decompresses only the date, side and amount
+ * columns. Narrations are only decompressed when entries are asked for.</p>
+ * The reader may be shared between threads.
+ *
+ * @author edwin.njeru
+ */
+public final class ArchiveReader implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveReader.class);
+
+    private static final int TRAILER_LENGTH = Long.BYTES + Integer.BYTES;
+
+    private final FileChannel channel;
+
+    private final Currency currency;
+
+    private final AccountSide accountSide;
+
+    private final List<ArchiveSegment> segments;
+
+    private final AtomicInteger segmentsDecompressed = new AtomicInteger();
+
+    private ArchiveReader(FileChannel channel, Currency currency, AccountSide accountSide, List<ArchiveSegment> segments) {
+        this.channel = channel;
+        this.currency = currency;
+        this.accountSide = accountSide;
+        this.segments = segments;
+    }
+
+    /**
+     * @param file {@link Path} of an archive file
+     * @return Reader over the archive, which is to be closed once done with
+     * @throws IOException if the file could not be read or is not an archive
+     */
+    public static ArchiveReader open(Path file) throws IOException {
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+
+        try {
+            long size = channel.size();
+            ByteBuffer trailer = read(channel, size - TRAILER_LENGTH, TRAILER_LENGTH);
+            long directoryOffset = trailer.getLong();
+            if (trailer.getInt() != ArchiveWriter.MAGIC) {
+                throw new IOException(String.format("The file : %s is not an archive", file));
+            }
+
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(read(channel, 0, (int) Math.min(directoryOffset, 64)).array()));
+            if (header.readInt() != ArchiveWriter.MAGIC || header.readByte() != ArchiveWriter.VERSION) {
+                throw new IOException(String.format("The file : %s is not an archive", file));
+            }
+            Currency currency = Currency.getInstance(header.readUTF());
+            AccountSide accountSide = AccountSide.values()[header.readByte()];
+
+            DataInputStream directory = new DataInputStream(new ByteArrayInputStream(read(channel, directoryOffset, (int) (size - TRAILER_LENGTH - directoryOffset)).array()));
+            int count = directory.readInt();
+            List<ArchiveSegment> segments = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                segments.add(ArchiveSegment.read(directory));
+            }
+
+            log.debug("Opened archive : {} of {} segments", file, count);
+
+            return new ArchiveReader(channel, currency, accountSide, Collections.unmodifiableList(segments));
+
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    /**
+     * @return Number of entries in the archive
+     */
+    public long getEntryCount() {
+
+        long count = 0;
+        for (ArchiveSegment segment : segments) {
+            count += segment.count;
+        }
+        return count;
+    }
+
+    /**
+     * @param fromEpochDay First booking date, inclusive, in days since 1970-01-01
+     * @param toEpochDay   Last booking date, inclusive, in days since 1970-01-01
+     * @return Debits less credits booked within the dates, in minor units
+     * @throws IOException if the archive could not be read
+     */
+    public long balanceInMinorUnits(int fromEpochDay, int toEpochDay) throws IOException {
+
+        long balance = 0;
+
+        for (ArchiveSegment segment : segments) {
+
+            if (!segment.overlaps(fromEpochDay, toEpochDay)) {
+                continue;
+            }
+            if (segment.within(fromEpochDay, toEpochDay)) {
+                balance += segment.debits - segment.credits;
+                continue;
+            }
+
+            ColumnBuffer dates = column(segment, ArchiveSegment.DATES);
+            ColumnBuffer sides = column(segment, ArchiveSegment.SIDES);
+            ColumnBuffer amounts = column(segment, ArchiveSegment.AMOUNTS);
+            segmentsDecompressed.incrementAndGet();
+
+            int epochDay = 0;
+            int sideBits = 0;
+            for (int i = 0; i < segment.count; i++) {
+                epochDay = i == 0 ? (int) dates.readSigned() : epochDay + (int) dates.readUnsigned();
+                if ((i & 7) == 0) {
+                    sideBits = sides.readByte();
+                }
+                long amount = amounts.readUnsigned();
+                if (epochDay > toEpochDay) {
+                    break;
+                }
+                if (epochDay >= fromEpochDay) {
+                    balance += (sideBits & (1 << (i & 7))) != 0 ? amount : -amount;
+                }
+            }
+        }
+
+        return balance;
+    }
+
+    /**
+     * @param from First booking date, inclusive
+     * @param to   Last booking date, inclusive
+     * @return {@link AccountBalance} of the entries booked within the dates
+     * @throws IOException if the archive could not be read
+     */
+    public AccountBalance balance(TimePoint from, TimePoint to) throws IOException {
+
+        long balance = balanceInMinorUnits(EpochDays.of(from), EpochDays.of(to));
+
+        return new AccountBalance(MinorUnits.toCash(Math.abs(balance), currency), balance > 0 ? DEBIT : balance < 0 ? CREDIT : accountSide);
+    }
+
+    /**
+     * @param from       First booking date, inclusive
+     * @param to         Last booking date, inclusive
+     * @param forAccount {@link Account} to which the restored entries are to belong
+     * @return {@link Entry} items booked within the dates, in booking date order
+     * @throws IOException if the archive could not be read
+     */
+    public List<Entry> entries(TimePoint from, TimePoint to, Account forAccount) throws IOException {
+
+        int fromEpochDay = EpochDays.of(from);
+        int toEpochDay = EpochDays.of(to);
+
+        List<Entry> entries = new ArrayList<>();
+
+        for (ArchiveSegment segment : segments) {
+
+            if (!segment.overlaps(fromEpochDay, toEpochDay)) {
+                continue;
+            }
+
+            ColumnBuffer dates = column(segment, ArchiveSegment.DATES);
+            ColumnBuffer sides = column(segment, ArchiveSegment.SIDES);
+            ColumnBuffer amounts = column(segment, ArchiveSegment.AMOUNTS);
+            ColumnBuffer narrations = column(segment, ArchiveSegment.NARRATIONS);
+            ColumnBuffer dictionaryColumn = column(segment, ArchiveSegment.DICTIONARY);
+            segmentsDecompressed.incrementAndGet();
+
+            List<String> dictionary = new ArrayList<>();
+            while (dictionary.size() < segment.count && hasMore(dictionaryColumn, segment)) {
+                dictionary.add(dictionaryColumn.readString());
+            }
+
+            int epochDay = 0;
+            int sideBits = 0;
+            for (int i = 0; i < segment.count; i++) {
+                epochDay = i == 0 ? (int) dates.readSigned() : epochDay + (int) dates.readUnsigned();
+                if ((i & 7) == 0) {
+                    sideBits = sides.readByte();
+                }
+                long amount = amounts.readUnsigned();
+                int code = (int) narrations.readUnsigned();
+                if (epochDay > toEpochDay) {
+                    break;
+                }
+                if (epochDay >= fromEpochDay) {
+                    AccountSide side = (sideBits & (1 << (i & 7))) != 0 ? DEBIT : CREDIT;
+                    entries.add(makeEntry(side, forAccount, MinorUnits.toCash(amount, currency), EpochDays.toTimePoint(epochDay), new EntryDetails(dictionary.get(code))));
+                }
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * @return Number of segments whose columns have been decompressed by queries so far
+     */
+    int getSegmentsDecompressed() {
+        return segmentsDecompressed.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static boolean hasMore(ColumnBuffer column, ArchiveSegment segment) {
+        return column.position() < segment.rawLengths[ArchiveSegment.DICTIONARY];
+    }
+
+    private ColumnBuffer column(ArchiveSegment segment, int column) throws IOException {
+
+        return ColumnBuffer.decompress(read(channel, segment.offsets[column], segment.compressedLengths[column]).array(), segment.rawLengths[column]);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of archive file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Directory record of one segment of an archive file: the zone map, that is the first and last booking dates found in
+ * the segment, the totals of its debits and credits, and where each of its compressed columns lies in the file.
+ *
+ * @author edwin.njeru
+ */
+final class ArchiveSegment {
+
+    static final int DATES = 0;
+    static final int SIDES = 1;
+    static final int AMOUNTS = 2;
+    static final int NARRATIONS = 3;
+    static final int DICTIONARY = 4;
+    static final int COLUMNS = 5;
+
+    final int count;
+    final int minEpochDay;
+    final int maxEpochDay;
+    final long debits;
+    final long credits;
+    final long[] offsets = new long[COLUMNS];
+    final int[] compressedLengths = new int[COLUMNS];
+    final int[] rawLengths = new int[COLUMNS];
+
+    ArchiveSegment(int count, int minEpochDay, int maxEpochDay, long debits, long credits) {
+        this.count = count;
+        this.minEpochDay = minEpochDay;
+        this.maxEpochDay = maxEpochDay;
+        this.debits = debits;
+        this.credits = credits;
+    }
+
+    static ArchiveSegment read(DataInput in) throws IOException {
+
+        ArchiveSegment segment = new ArchiveSegment(in.readInt(), in.readInt(), in.readInt(), in.readLong(), in.readLong());
+        for (int column = 0; column < COLUMNS; column++) {
+            segment.offsets[column] = in.readLong();
+            segment.compressedLengths[column] = in.readInt();
+            segment.rawLengths[column] = in.readInt();
+        }
+        return segment;
+    }
+
+    void write(DataOutput out) throws IOException {
+
+        out.writeInt(count);
+        out.writeInt(minEpochDay);
+        out.writeInt(maxEpochDay);
+        out.writeLong(debits);
+        out.writeLong(credits);
+        for (int column = 0; column < COLUMNS; column++) {
+            out.writeLong(offsets[column]);
+            out.writeInt(compressedLengths[column]);
+            out.writeInt(rawLengths[column]);
+        }
+    }
+
+    /**
+     * @return Whether any booking date in the segment may fall within the dates
+     */
+    boolean overlaps(int fromEpochDay, int toEpochDay) {
+        return maxEpochDay >= fromEpochDay && minEpochDay <= toEpochDay;
+    }
+
+    /**
+     * @return Whether every booking date in the segment falls within the dates
+     */
+    boolean within(int fromEpochDay, int toEpochDay) {
+        return minEpochDay >= fromEpochDay && maxEpochDay <= toEpochDay;
+    }
+}
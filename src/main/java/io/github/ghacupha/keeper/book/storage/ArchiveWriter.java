@@ -0,0 +1,227 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.storage;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+
+/**
+ * Writes the entries of an account, in booking date order, into a compressed columnar archive file which can later
+ * be queried through an {@link ArchiveReader} without loading the entries onto the heap.
+ * <p>The entries are cut into segments of a fixed number of entries. Within each segment the booking dates are
+ * stored as deltas from the previous date, the amounts as variable length minor units, the sides as bits and the
+ * narrations as codes into a dictionary of the segment's distinct narrations; each column is then compressed on its
+ * own. A directory at the end of the file records, for every segment, the first and last booking dates (a zone map)
+ * and the totals of its debits and credits, which is what allows readers to skip or sum whole segments. Entry
+ * attributes other than the narration are not archived.</p>
+ *
+ * @author edwin.njeru
+ */
+public final class ArchiveWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveWriter.class);
+
+    static final int MAGIC = 0x424B4152;
+
+    static final int VERSION = 1;
+
+    /**
+     * Default number of entries in a segment
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 4096;
+
+    private final int segmentSize;
+
+    public ArchiveWriter() {
+        this(DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param segmentSize Number of entries in a segment
+     */
+    public ArchiveWriter(int segmentSize) {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("The segment size must be at least 1, but was " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Archives the entries of the account booked between the dates, both inclusive
+     *
+     * @param account {@link SimpleAccount} whose entries are archived
+     * @param from    First booking date archived
+     * @param to      Last booking date archived
+     * @param file    {@link Path} of the archive file, which is replaced if it exists
+     * @throws IOException if the file could not be written
+     */
+    public void write(SimpleAccount account, TimePoint from, TimePoint to, Path file) throws IOException {
+
+        write(account.getCurrency(), account.getAccountSide(), account.getTimeline().between(EpochDays.of(from), EpochDays.of(to)).values(), file);
+    }
+
+    /**
+     * @param currency    {@link Currency} of the entries
+     * @param accountSide Default {@link AccountSide} of the account, reported for zero balances
+     * @param entries     {@link Entry} items in booking date order
+     * @param file        {@link Path} of the archive file, which is replaced if it exists
+     * @throws IOException if the file could not be written
+     */
+    public void write(Currency currency, AccountSide accountSide, Iterable<Entry> entries, Path file) throws IOException {
+
+        List<ArchiveSegment> segments = new ArrayList<>();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeUTF(currency.getCurrencyCode());
+            out.writeByte(accountSide.ordinal());
+
+            long position = out.size();
+            SegmentBuilder segment = new SegmentBuilder();
+            int previousEpochDay = Integer.MIN_VALUE;
+
+            for (Entry entry : entries) {
+
+                int epochDay = entry.getEpochDay();
+                if (epochDay < previousEpochDay) {
+                    throw new IllegalArgumentException(String.format("Entries must be archived in booking date order, but %s came after %s", entry.getBookingDate(),
+                        EpochDays.toTimePoint(previousEpochDay)));
+                }
+                previousEpochDay = epochDay;
+
+                segment.add(entry, epochDay);
+
+                if (segment.count == segmentSize) {
+                    position = segment.writeTo(out, position, segments);
+                    segment = new SegmentBuilder();
+                }
+            }
+            if (segment.count > 0) {
+                position = segment.writeTo(out, position, segments);
+            }
+
+            out.writeInt(segments.size());
+            for (ArchiveSegment written : segments) {
+                written.write(out);
+            }
+            out.writeLong(position);
+            out.writeInt(MAGIC);
+        }
+
+        log.debug("Archived {} segments into : {}", segments.size(), file);
+    }
+
+    private static final class SegmentBuilder {
+
+        private final ColumnBuffer[] columns = new ColumnBuffer[ArchiveSegment.COLUMNS];
+
+        private final Map<String, Integer> dictionary = new HashMap<>();
+
+        private int count;
+        private int minEpochDay;
+        private int lastEpochDay;
+        private long debits;
+        private long credits;
+        private int sideBits;
+
+        private SegmentBuilder() {
+            for (int column = 0; column < columns.length; column++) {
+                columns[column] = new ColumnBuffer();
+            }
+        }
+
+        private void add(Entry entry, int epochDay) {
+
+            if (count == 0) {
+                minEpochDay = epochDay;
+                columns[ArchiveSegment.DATES].writeSigned(epochDay);
+            } else {
+                columns[ArchiveSegment.DATES].writeUnsigned(epochDay - lastEpochDay);
+            }
+            lastEpochDay = epochDay;
+
+            long amount = MinorUnits.of(entry.getAmount());
+            columns[ArchiveSegment.AMOUNTS].writeUnsigned(amount);
+
+            boolean debit = entry.getAccountSide() == DEBIT;
+            if (debit) {
+                debits += amount;
+                sideBits |= 1 << (count & 7);
+            } else {
+                credits += amount;
+            }
+            if ((count & 7) == 7) {
+                columns[ArchiveSegment.SIDES].writeByte(sideBits);
+                sideBits = 0;
+            }
+
+            String narration = entry.getEntryDetails().getNarration();
+            Integer code = dictionary.get(narration);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.put(narration, code);
+                columns[ArchiveSegment.DICTIONARY].writeString(narration);
+            }
+            columns[ArchiveSegment.NARRATIONS].writeUnsigned(code);
+
+            count++;
+        }
+
+        private long writeTo(DataOutputStream out, long position, List<ArchiveSegment> segments) throws IOException {
+
+            if ((count & 7) != 0) {
+                columns[ArchiveSegment.SIDES].writeByte(sideBits);
+            }
+
+            ArchiveSegment segment = new ArchiveSegment(count, minEpochDay, lastEpochDay, debits, credits);
+
+            long offset = position;
+            for (int column = 0; column < columns.length; column++) {
+                byte[] compressed = columns[column].compress();
+                out.write(compressed);
+                segment.offsets[column] = offset;
+                segment.compressedLengths[column] = compressed.length;
+                segment.rawLengths[column] = columns[column].length();
+                offset += compressed.length;
+            }
+
+            segments.add(segment);
+
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Growable byte buffer for a single column of an archive segment, written with variable length integers, together
+ * with the means to compress and decompress whole columns.
+ *
+ * @author edwin.njeru
+ */
+final class ColumnBuffer {
+
+    private byte[] bytes;
+
+    private int length;
+
+    private int position;
+
+    ColumnBuffer() {
+        this.bytes = new byte[256];
+    }
+
+    private ColumnBuffer(byte[] bytes) {
+        this.bytes = bytes;
+        this.length = bytes.length;
+    }
+
+    /**
+     * @param compressed Bytes produced by {@link #compress()}
+     * @param rawLength  Length of the column before it was compressed
+     * @return Buffer positioned at the start of the decompressed column
+     * @throws IOException if the bytes are not a compressed column
+     */
+    static ColumnBuffer decompress(byte[] compressed, int rawLength) throws IOException {
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, read, rawLength - read);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += inflated;
+            }
+            if (read != rawLength) {
+                throw new IOException(String.format("Archive column is truncated, expected %s bytes but found %s", rawLength, read));
+            }
+            return new ColumnBuffer(raw);
+        } catch (DataFormatException e) {
+            throw new IOException("Archive column is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    byte[] compress() {
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes, 0, length);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(length >> 1, 64));
+            byte[] chunk = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    int length() {
+        return length;
+    }
+
+    int position() {
+        return position;
+    }
+
+    void writeByte(int value) {
+
+        if (length == bytes.length) {
+            byte[] grown = new byte[bytes.length << 1];
+            System.arraycopy(bytes, 0, grown, 0, length);
+            bytes = grown;
+        }
+        bytes[length++] = (byte) value;
+    }
+
+    void writeUnsigned(long value) {
+
+        while ((value & ~0x7FL) != 0) {
+            writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    /**
+     * Writes a signed value so that small magnitudes of either sign take few bytes
+     */
+    void writeSigned(long value) {
+
+        writeUnsigned((value << 1) ^ (value >> 63));
+    }
+
+    void writeString(String value) {
+
+        byte[] utf = value.getBytes(StandardCharsets.UTF_8);
+        writeUnsigned(utf.length);
+        for (byte b : utf) {
+            writeByte(b);
+        }
+    }
+
+    int readByte() {
+        return bytes[position++] & 0xFF;
+    }
+
+    long readUnsigned() {
+
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+
+        return value;
+    }
+
+    long readSigned() {
+
+        long value = readUnsigned();
+
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    String readString() {
+
+        int size = (int) readUnsigned();
+        String value = new String(bytes, position, size, StandardCharsets.UTF_8);
+        position += size;
+
+        return value;
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.storage;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.base.EntryDetails;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.SimpleEntry.makeEntry;
+
+/**
+ * Read-only file of entries in booking date order, laid out as fixed width records so that it can be queried through a
+ * memory mapping rather than read onto the heap. Each record holds the booking date in epoch days, a code into the
+ * dictionary of narrations at the end of the file, the amount in minor units, positive for debits and negative for
+ * credits, and the running total of the amounts up to and including the record. The header holds the first and last
+ * booking dates and the totals of the debits and credits.
+ * <p>A balance is taken from the header totals when the whole file falls within the date, and otherwise from the
+ * running total of the last record on or before the date, found by binary search, without allocating or reading the
+ * records in between. The dictionary is only read when entries are asked for. The mapping is released by the garbage collector once the segment is no longer referenced.</p>
+ *
+ * @author edwin.njeru
+ */
+final class MappedSegment {
+
+    private static final int MAGIC = 0x424B5347;
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER_LENGTH = 48;
+
+    private static final int RECORD_LENGTH = 24;
+
+    private static final int AMOUNT_OFFSET = 8;
+
+    private static final int RUNNING_TOTAL_OFFSET = 16;
+
+    private final Path file;
+
+    private final ByteBuffer records;
+
+    private final int count;
+
+    private final int minEpochDay;
+
+    private final int maxEpochDay;
+
+    private final long debits;
+
+    private final long credits;
+
+    private final long dictionaryOffset;
+
+    private volatile List<String> dictionary;
+
+    private MappedSegment(Path file, ByteBuffer records, int count, int minEpochDay, int maxEpochDay, long debits, long credits, long dictionaryOffset) {
+        this.file = file;
+        this.records = records;
+        this.count = count;
+        this.minEpochDay = minEpochDay;
+        this.maxEpochDay = maxEpochDay;
+        this.debits = debits;
+        this.credits = credits;
+        this.dictionaryOffset = dictionaryOffset;
+    }
+
+    /**
+     * @param entries {@link Entry} items in booking date order
+     * @param file    {@link Path} of the segment file, which is replaced if it exists
+     * @throws IOException if the file could not be written
+     */
+    static void write(Collection<Entry> entries, Path file) throws IOException {
+
+        Map<String, Integer> codes = new HashMap<>();
+        List<String> narrations = new ArrayList<>();
+
+        int minEpochDay = Integer.MAX_VALUE;
+        int maxEpochDay = Integer.MIN_VALUE;
+        long debits = 0;
+        long credits = 0;
+        long runningTotal = 0;
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+
+            // The header is written again once the totals are known
+            out.write(new byte[HEADER_LENGTH]);
+
+            for (Entry entry : entries) {
+
+                int epochDay = entry.getEpochDay();
+                if (epochDay < maxEpochDay) {
+                    throw new IllegalArgumentException(String.format("Entries must be written in booking date order, but %s came after %s", entry.getBookingDate(),
+                        EpochDays.toTimePoint(maxEpochDay)));
+                }
+                minEpochDay = Math.min(minEpochDay, epochDay);
+                maxEpochDay = epochDay;
+
+                EntryDetails details = entry.getEntryDetails();
+                String narration = details == null || details.getNarration() == null ? "" : details.getNarration();
+                Integer code = codes.get(narration);
+                if (code == null) {
+                    code = narrations.size();
+                    codes.put(narration, code);
+                    narrations.add(narration);
+                }
+
+                long amount = MinorUnits.of(entry.getAmount());
+                if (entry.getAccountSide() == DEBIT) {
+                    debits += amount;
+                } else {
+                    credits += amount;
+                    amount = -amount;
+                }
+                runningTotal += amount;
+
+                out.writeInt(epochDay);
+                out.writeInt(code);
+                out.writeLong(amount);
+                out.writeLong(runningTotal);
+            }
+
+            out.writeInt(narrations.size());
+            for (String narration : narrations) {
+                out.writeUTF(narration);
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.putInt(MAGIC).putInt(VERSION).putInt(entries.size()).putInt(minEpochDay).putInt(maxEpochDay).putInt(0);
+            header.putLong(debits).putLong(credits).putLong(HEADER_LENGTH + (long) entries.size() * RECORD_LENGTH);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+    }
+
+    /**
+     * @param file {@link Path} of a segment file
+     * @return The segment, mapped into memory
+     * @throws IOException if the file could not be mapped or is not a segment
+     */
+    static MappedSegment map(Path file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (mapping.getInt(0) != MAGIC || mapping.getInt(4) != VERSION) {
+                throw new IOException(String.format("The file : %s is not a segment", file));
+            }
+
+            return new MappedSegment(file, mapping, mapping.getInt(8), mapping.getInt(12), mapping.getInt(16), mapping.getLong(24), mapping.getLong(32), mapping.getLong(40));
+        }
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    int getMinEpochDay() {
+        return minEpochDay;
+    }
+
+    int getMaxEpochDay() {
+        return maxEpochDay;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * @param asAtEpochDay Last booking date included
+     * @return Debits less credits booked on or before the date, in minor units
+     */
+    long sum(int asAtEpochDay) {
+
+        if (count == 0 || asAtEpochDay < minEpochDay) {
+            return 0;
+        }
+        if (asAtEpochDay >= maxEpochDay) {
+            return debits - credits;
+        }
+
+        int end = firstAfter(asAtEpochDay);
+        if (end == 0) {
+            return 0;
+        }
+        return records.getLong(HEADER_LENGTH + (end - 1) * RECORD_LENGTH + RUNNING_TOTAL_OFFSET);
+    }
+
+    /**
+     * @param fromEpochDay First booking date, inclusive
+     * @param toEpochDay   Last booking date, inclusive
+     * @param currency     {@link Currency} of the amounts
+     * @param forAccount   {@link Account} to which the restored entries are to belong
+     * @param into         List into which the entries booked within the dates are added in booking date order
+     * @throws IOException if the dictionary could not be read
+     */
+    void entries(int fromEpochDay, int toEpochDay, Currency currency, Account forAccount, List<Entry> into) throws IOException {
+
+        if (count == 0 || toEpochDay < minEpochDay || fromEpochDay > maxEpochDay) {
+            return;
+        }
+
+        List<String> narrations = dictionary();
+
+        int end = firstAfter(toEpochDay);
+        for (int i = firstAfter(fromEpochDay - 1); i < end; i++) {
+            int position = HEADER_LENGTH + i * RECORD_LENGTH;
+            int epochDay = records.getInt(position);
+            String narration = narrations.get(records.getInt(position + 4));
+            long amount = records.getLong(position + AMOUNT_OFFSET);
+            into.add(makeEntry(amount >= 0 ? DEBIT : CREDIT, forAccount, MinorUnits.toCash(Math.abs(amount), currency), EpochDays.toTimePoint(epochDay), new EntryDetails(narration)));
+        }
+    }
+
+    /**
+     * @return Index of the first record booked after the date
+     */
+    private int firstAfter(int epochDay) {
+
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (records.getInt(HEADER_LENGTH + middle * RECORD_LENGTH) <= epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private List<String> dictionary() throws IOException {
+
+        List<String> narrations = dictionary;
+        if (narrations != null) {
+            return narrations;
+        }
+
+        // Absolute reads on a duplicate, so that concurrent readers do not share a position
+        ByteBuffer tail = records.duplicate();
+        tail.position((int) dictionaryOffset);
+        byte[] bytes = new byte[tail.remaining()];
+        tail.get(bytes);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        int size = in.readInt();
+        narrations = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            narrations.add(in.readUTF());
+        }
+
+        dictionary = narrations;
+        return narrations;
+    }
+}
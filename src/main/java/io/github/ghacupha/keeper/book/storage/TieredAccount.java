@@ -0,0 +1,323 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.storage;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.base.AccountDetails;
+import io.github.ghacupha.keeper.book.base.EntryDetails;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
+import io.github.ghacupha.time.point.SimpleDate;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+
+/**
+ * Keeps the recent entries of a {@link SimpleAccount} on the heap and moves older ones into memory-mapped segment
+ * files. The hot tier is the account itself; each migration writes the entries booked more than the configured number
+ * of days ago into a new segment of the cold tier and then compacts them out of the account, which is left with a
+ * single entry carrying their balance forward, see {@link SimpleAccount#compact(TimePoint, EntryDetails)}.
+ * Entries can no longer be booked on dates that have been migrated.
+ * <p>Balance queries as at a date in the hot tier are answered by the account alone, thanks to the carried forward
+ * entry, and queries as at an earlier date by the cold segments, which keep only their headers on the heap. Statements
+ * are put together from both tiers in booking date order. Heap usage therefore stays flat however long the history
+ * grows, while the recent entries stay as quick to query as before.</p>
+ * <p>Once entries have been migrated the {@link SimpleAccount} on its own only knows their carried forward balance,
+ * so the tiered account is itself an {@link Account} to be used in its place, for posting as well as for queries.
+ * Its {@link #getEntries()} reads the cold segments, and throws an {@link UncheckedIOException} if one of them
+ * cannot be read.</p>
+ *
+ * @author edwin.njeru
+ */
+public final class TieredAccount implements Account {
+
+    private static final Logger log = LoggerFactory.getLogger(TieredAccount.class);
+
+    private static final String CARRIED_FORWARD = "Balance brought forward";
+
+    private final SimpleAccount account;
+
+    private final Path directory;
+
+    private final int hotDays;
+
+    private final List<MappedSegment> cold = new CopyOnWriteArrayList<>();
+
+    // First booking date still held in the hot tier
+    private volatile int hotFromEpochDay = Integer.MIN_VALUE;
+
+    private TieredAccount(SimpleAccount account, Path directory, int hotDays) {
+        this.account = account;
+        this.directory = directory;
+        this.hotDays = hotDays;
+    }
+
+    /**
+     * @param account   {@link SimpleAccount} holding the hot tier
+     * @param directory Directory into which the segments of the cold tier are written
+     * @param hotDays   Age in days after which entries are migrated into the cold tier
+     * @return {@link TieredAccount} over the account
+     */
+    public static TieredAccount tiered(SimpleAccount account, Path directory, int hotDays) {
+        return new TieredAccount(account, directory, hotDays);
+    }
+
+    /**
+     * Migrates the entries older than the configured age as of today
+     *
+     * @return Number of entries migrated
+     * @throws IOException if the segment could not be written, in which case nothing has been migrated
+     */
+    public int migrate() throws IOException {
+
+        return migrate((int) LocalDate.now().toEpochDay());
+    }
+
+    /**
+     * @param todayEpochDay Today, in days since 1970-01-01
+     * @return Number of entries migrated
+     * @throws IOException if the segment could not be written, in which case nothing has been migrated
+     */
+    public synchronized int migrate(int todayEpochDay) throws IOException {
+
+        int cutoff = todayEpochDay - hotDays;
+        if (cutoff <= hotFromEpochDay) {
+            return 0;
+        }
+
+        // The carried forward entry of the previous migration lies before the hot tier and is not migrated again
+        List<Entry> migrating = new ArrayList<>(account.getTimeline().between(hotFromEpochDay, cutoff - 1).values());
+        if (migrating.isEmpty()) {
+            return 0;
+        }
+
+        Path file = directory.resolve(account.getAccountDetails().getNumber() + "-" + cold.size() + ".segment");
+        MappedSegment.write(migrating, file);
+        MappedSegment segment = MappedSegment.map(file);
+
+        // Queries before the cutoff go to the new segment before the account is compacted
+        cold.add(segment);
+        int previousHotFrom = hotFromEpochDay;
+        hotFromEpochDay = cutoff;
+
+        List<Entry> replaced = new ArrayList<>();
+        for (Entry entry : account.compact(EpochDays.toTimePoint(cutoff), details(CARRIED_FORWARD))) {
+            if (entry.getEpochDay() >= previousHotFrom) {
+                replaced.add(entry);
+            }
+        }
+
+        if (replaced.size() != migrating.size()) {
+            // Entries were back-dated into the migrated dates while the segment was being written
+            log.warn("Account : {} changed while being migrated, writing its : {} migrated entries again", account, replaced.size());
+            Path rewritten = directory.resolve(file.getFileName() + ".1");
+            MappedSegment.write(replaced, rewritten);
+            cold.set(cold.size() - 1, MappedSegment.map(rewritten));
+            Files.delete(file);
+        }
+
+        log.debug("{} entries of account : {} booked before : {} migrated into : {}", replaced.size(), account, EpochDays.toTimePoint(cutoff), file);
+
+        return replaced.size();
+    }
+
+    /**
+     * Migrates the entries in the background at a fixed rate
+     *
+     * @param scheduler {@link ScheduledExecutorService} on which the migrations are run
+     * @param period    Time between migrations
+     * @param unit      {@link TimeUnit} of the period
+     * @return {@link ScheduledFuture} through which the migrations are cancelled
+     */
+    public ScheduledFuture<?> migrateEvery(ScheduledExecutorService scheduler, long period, TimeUnit unit) {
+
+        return scheduler.scheduleAtFixedRate(() -> {
+            try {
+                migrate();
+            } catch (IOException e) {
+                log.error("Could not migrate the entries of account : {}, to be tried again in : {} {}", account, period, unit, e);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * @param asAtEpochDay Date as at which the balance is effective, in days since 1970-01-01
+     * @return Debits less credits up to and including the date, in minor units, from whichever tier holds the date
+     */
+    public long balanceInMinorUnits(int asAtEpochDay) {
+
+        if (asAtEpochDay >= hotFromEpochDay - 1) {
+            return account.balanceInMinorUnits(asAtEpochDay);
+        }
+
+        long sum = 0;
+        for (MappedSegment segment : cold) {
+            if (segment.getMinEpochDay() > asAtEpochDay) {
+                break;
+            }
+            sum += segment.sum(asAtEpochDay);
+        }
+        return sum;
+    }
+
+    /**
+     * Adds the entry into the hot tier
+     *
+     * @param entry {@link Entry} to be added
+     * @throws UntimelyBookingDateException if the entry is booked on a date which has been migrated
+     */
+    @Override
+    public void addEntry(Entry entry) throws MismatchedCurrencyException, UntimelyBookingDateException {
+
+        account.addEntry(entry);
+    }
+
+    /**
+     * @param asAt {@link TimePoint} at which the balance is effective
+     * @return {@link AccountBalance} from whichever tier holds the date
+     */
+    @Override
+    public AccountBalance balance(TimePoint asAt) {
+
+        long balance = balanceInMinorUnits(EpochDays.of(asAt));
+
+        return new AccountBalance(MinorUnits.toCash(Math.abs(balance), account.getCurrency()), balance > 0 ? DEBIT : balance < 0 ? CREDIT : account.getAccountSide());
+    }
+
+    @Override
+    public AccountBalance balance(int... asAt) {
+
+        return balance(new SimpleDate(asAt[0], asAt[1], asAt[2]));
+    }
+
+    /**
+     * @param from First booking date, inclusive
+     * @param to   Last booking date, inclusive
+     * @return {@link Entry} items booked within the dates from both tiers, in booking date order, without the carried
+     * forward entries
+     * @throws IOException if a segment could not be read
+     */
+    public List<Entry> entries(TimePoint from, TimePoint to) throws IOException {
+
+        return entries(EpochDays.of(from), EpochDays.of(to));
+    }
+
+    /**
+     * @return {@link Entry} items of both tiers, in booking date order, without the carried forward entries
+     * @throws UncheckedIOException if a segment could not be read
+     */
+    @Override
+    public List<Entry> getEntries() {
+
+        try {
+            return entries(EpochDays.of(account.getOpeningDate()), Integer.MAX_VALUE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("The migrated entries of account : %s could not be read", account), e);
+        }
+    }
+
+    private List<Entry> entries(int fromEpochDay, int toEpochDay) throws IOException {
+
+        int hotFrom = hotFromEpochDay;
+
+        List<Entry> entries = new ArrayList<>();
+
+        if (fromEpochDay < hotFrom) {
+            for (MappedSegment segment : cold) {
+                segment.entries(fromEpochDay, Math.min(toEpochDay, hotFrom - 1), account.getCurrency(), account, entries);
+            }
+        }
+        if (toEpochDay >= hotFrom) {
+            entries.addAll(account.getTimeline().between(Math.max(fromEpochDay, hotFrom), toEpochDay).values());
+        }
+
+        return entries;
+    }
+
+    @Override
+    public Currency getCurrency() {
+        return account.getCurrency();
+    }
+
+    @Override
+    public TimePoint getOpeningDate() {
+        return account.getOpeningDate();
+    }
+
+    @Override
+    public AccountSide getAccountSide() {
+        return account.getAccountSide();
+    }
+
+    @Override
+    public AccountDetails getAccountDetails() {
+        return account.getAccountDetails();
+    }
+
+    @Override
+    public void setAccountSide(AccountSide accountSide) {
+        account.setAccountSide(accountSide);
+    }
+
+    /**
+     * @return {@link SimpleAccount} holding the hot tier
+     */
+    public SimpleAccount getAccount() {
+        return account;
+    }
+
+    /**
+     * @return Number of entries in the cold tier
+     */
+    public long getColdEntryCount() {
+
+        long count = 0;
+        for (MappedSegment segment : cold) {
+            count += segment.getCount();
+        }
+        return count;
+    }
+
+    /**
+     * @return First booking date still held on the heap, in days since 1970-01-01
+     */
+    public int getHotFromEpochDay() {
+        return hotFromEpochDay;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * {@link Spliterator} over a range of an array of {@link Entry} items, which splits into exactly sized halves but stops
+ * splitting once a half would hold fewer than {@link #SEQUENTIAL_THRESHOLD} entries. Below that size the cost of
+ * handing work to another thread is more than the cost of simply reading the entries, so small accounts are never
+ * split at all and are best read sequentially, see {@link #isWorthSplitting()}. The threshold can be given, as the
+ * ledger does from its {@link ExecutionPolicy}.
+ * The array must not be changed within the range while it is being read, which holds for append-only storage.
+ *
+ * @author edwin.njeru
+ */
+public final class EntrySpliterator implements Spliterator<Entry> {
+
+    /**
+     * Default minimum number of entries each thread is given when the spliterator is split
+     */
+    public static final int SEQUENTIAL_THRESHOLD = 4096;
+
+    private static final int CHARACTERISTICS = ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+
+    private final Entry[] entries;
+
+    private int origin;
+
+    private final int fence;
+
+    private final int threshold;
+
+    /**
+     * @param entries Array holding the entries
+     * @param origin  Index of the first entry, inclusive
+     * @param fence   Index of the last entry, exclusive
+     */
+    public EntrySpliterator(Entry[] entries, int origin, int fence) {
+        this(entries, origin, fence, SEQUENTIAL_THRESHOLD);
+    }
+
+    /**
+     * @param entries   Array holding the entries
+     * @param origin    Index of the first entry, inclusive
+     * @param fence     Index of the last entry, exclusive
+     * @param threshold Minimum number of entries each thread is given when the spliterator is split
+     */
+    public EntrySpliterator(Entry[] entries, int origin, int fence, int threshold) {
+        this.entries = entries;
+        this.origin = origin;
+        this.fence = fence;
+        this.threshold = threshold;
+    }
+
+    /**
+     * @return Whether the entries are many enough to be split among threads
+     */
+    public boolean isWorthSplitting() {
+
+        return fence - origin >= (long) threshold << 1;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Entry> action) {
+
+        if (origin < fence) {
+            action.accept(entries[origin++]);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Entry> action) {
+
+        Entry[] array = entries;
+        int end = fence;
+
+        for (int i = origin; i < end; i++) {
+            action.accept(array[i]);
+        }
+        origin = end;
+    }
+
+    @Override
+    public Spliterator<Entry> trySplit() {
+
+        if (!isWorthSplitting()) {
+            return null;
+        }
+
+        int middle = (origin + fence) >>> 1;
+        Spliterator<Entry> prefix = new EntrySpliterator(entries, origin, middle, threshold);
+        origin = middle;
+
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+
+        return fence - origin;
+    }
+
+    @Override
+    public int characteristics() {
+
+        return CHARACTERISTICS;
+    }
+}
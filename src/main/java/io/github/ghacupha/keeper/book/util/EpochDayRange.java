@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.time.point.DateRange;
+import io.github.ghacupha.time.point.TimePoint;
+
+/**
+ * Range of booking dates held as days since 1970-01-01, both ends inclusive. It answers the same question as
+ * {@link DateRange#includes(TimePoint)} with two int comparisons, which is what scans over many entries use together
+ * with {@link Entry#getEpochDay()}.
+ *
+ * @author edwin.njeru
+ */
+public final class EpochDayRange {
+
+    private final int fromEpochDay;
+
+    private final int toEpochDay;
+
+    private EpochDayRange(int fromEpochDay, int toEpochDay) {
+        this.fromEpochDay = fromEpochDay;
+        this.toEpochDay = toEpochDay;
+    }
+
+    /**
+     * @param fromEpochDay First day, inclusive
+     * @param toEpochDay   Last day, inclusive
+     * @return {@link EpochDayRange} of the days
+     */
+    public static EpochDayRange between(int fromEpochDay, int toEpochDay) {
+        return new EpochDayRange(fromEpochDay, toEpochDay);
+    }
+
+    /**
+     * @param from First date, inclusive
+     * @param to   Last date, inclusive
+     * @return {@link EpochDayRange} of the dates
+     */
+    public static EpochDayRange between(TimePoint from, TimePoint to) {
+        return new EpochDayRange(EpochDays.of(from), EpochDays.of(to));
+    }
+
+    /**
+     * @param to Last date, inclusive
+     * @return {@link EpochDayRange} of every date up to the given one
+     */
+    public static EpochDayRange upTo(TimePoint to) {
+        return new EpochDayRange(Integer.MIN_VALUE, EpochDays.of(to));
+    }
+
+    /**
+     * @param epochDay Day to be checked
+     * @return Whether the day falls within the range
+     */
+    public boolean includes(int epochDay) {
+        return epochDay >= fromEpochDay && epochDay <= toEpochDay;
+    }
+
+    /**
+     * @param entry {@link Entry} to be checked
+     * @return Whether the entry is booked within the range
+     */
+    public boolean includes(Entry entry) {
+        return includes(entry.getEpochDay());
+    }
+
+    public int getFromEpochDay() {
+        return fromEpochDay;
+    }
+
+    public int getToEpochDay() {
+        return toEpochDay;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        EpochDayRange that = (EpochDayRange) o;
+        return fromEpochDay == that.fromEpochDay && toEpochDay == that.toEpochDay;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * fromEpochDay + toEpochDay;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + (fromEpochDay == Integer.MIN_VALUE ? "" : EpochDays.toTimePoint(fromEpochDay).toString()) + ", " + EpochDays.toTimePoint(toEpochDay) + "]";
+    }
+}
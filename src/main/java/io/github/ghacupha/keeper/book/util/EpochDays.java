@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import io.github.ghacupha.time.point.SimpleDate;
+import io.github.ghacupha.time.point.TimePoint;
+
+import java.time.LocalDate;
+
+/**
+ * Conversions between {@link TimePoint} and the number of days since 1970-01-01, which is a primitive that can be
+ * compared, stored and range checked cheaply.
+ * Only {@link SimpleDate} is converted, its year, month and day being read from the ISO-8601 form it renders, since
+ * {@link TimePoint} itself does not expose them and other implementations render themselves differently.
+ *
+ * @author edwin.njeru
+ */
+public final class EpochDays {
+
+    private EpochDays() {
+    }
+
+    /**
+     * @param timePoint {@link TimePoint} to be converted
+     * @return Number of days between 1970-01-01 and the timePoint
+     * @throws IllegalArgumentException if the timePoint is not a {@link SimpleDate}
+     */
+    public static int of(TimePoint timePoint) {
+
+        if (!(timePoint instanceof SimpleDate)) {
+            throw new IllegalArgumentException("Only a SimpleDate can be converted into days, but was : " + (timePoint == null ? null : timePoint.getClass().getName()));
+        }
+
+        String date = timePoint.toString();
+        int monthAt = date.indexOf('-', 1) + 1;
+        int dayAt = date.indexOf('-', monthAt) + 1;
+        if (monthAt == 0 || dayAt == 0) {
+            throw new IllegalArgumentException("The date : " + date + " is not of the form yyyy-mm-dd");
+        }
+
+        try {
+            int year = Integer.parseInt(date.substring(0, monthAt - 1));
+            int month = Integer.parseInt(date.substring(monthAt, dayAt - 1));
+            int day = Integer.parseInt(date.substring(dayAt));
+
+            return (int) LocalDate.of(year, month, day).toEpochDay();
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("The date : " + date + " is not of the form yyyy-mm-dd", e);
+        }
+    }
+
+    /**
+     * @param epochDay Number of days since 1970-01-01
+     * @return {@link TimePoint} on that day
+     */
+    public static TimePoint toTimePoint(int epochDay) {
+
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+
+        return new SimpleDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+    }
+}
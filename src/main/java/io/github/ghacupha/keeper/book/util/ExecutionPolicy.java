@@ -0,0 +1,238 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Decides where and when the bulk operations of the ledger run in parallel. A policy owns a dedicated
+ * {@link ForkJoinPool} of the given parallelism, so ledger work never runs on, nor competes for, the JVM-wide common
+ * pool, and it holds the sizes below which the work is done sequentially on the calling thread because forking would
+ * cost more than it saves:
+ * <ul>
+ * <li>the split threshold, the fewest entries a thread is given when the entries of an account are summed;</li>
+ * <li>the posting threshold, the fewest entries a transaction must have for them to be posted in parallel;</li>
+ * <li>the batch threshold, the fewest items, like accounts being reconciled, for them to be handled in parallel.</li>
+ * </ul>
+ * The pool is only started the first time parallel work comes along, and its idle workers, which are daemon threads,
+ * wind down on their own. Work handed to a policy whose pool has been shut down is done sequentially on the calling
+ * thread rather than refused. The policy used throughout the ledger is set with {@link #setLedger(ExecutionPolicy)};
+ * a parallelism of one makes everything sequential.
+ *
+ * @author edwin.njeru
+ */
+public final class ExecutionPolicy {
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionPolicy.class);
+
+    public static final int DEFAULT_SPLIT_THRESHOLD = EntrySpliterator.SEQUENTIAL_THRESHOLD;
+
+    public static final int DEFAULT_POSTING_THRESHOLD = 64;
+
+    public static final int DEFAULT_BATCH_THRESHOLD = 2;
+
+    private static volatile ExecutionPolicy ledger = new ExecutionPolicy(Runtime.getRuntime().availableProcessors(), DEFAULT_SPLIT_THRESHOLD, DEFAULT_POSTING_THRESHOLD,
+        DEFAULT_BATCH_THRESHOLD);
+
+    private final int parallelism;
+
+    private final int splitThreshold;
+
+    private final int postingThreshold;
+
+    private final int batchThreshold;
+
+    private volatile ForkJoinPool pool;
+
+    /**
+     * @param parallelism      Number of threads in the pool, one for no parallelism at all
+     * @param splitThreshold   Fewest entries a thread is given when entries are summed in parallel
+     * @param postingThreshold Fewest entries of a transaction for them to be posted in parallel
+     * @param batchThreshold   Fewest items of a batch for them to be handled in parallel
+     */
+    public ExecutionPolicy(int parallelism, int splitThreshold, int postingThreshold, int batchThreshold) {
+        if (parallelism < 1 || splitThreshold < 1 || postingThreshold < 1 || batchThreshold < 1) {
+            throw new IllegalArgumentException(String.format("The parallelism : %s and thresholds : %s, %s, %s must all be positive", parallelism, splitThreshold,
+                postingThreshold, batchThreshold));
+        }
+        this.parallelism = parallelism;
+        this.splitThreshold = splitThreshold;
+        this.postingThreshold = postingThreshold;
+        this.batchThreshold = batchThreshold;
+    }
+
+    /**
+     * @return {@link ExecutionPolicy} which does everything sequentially on the calling thread
+     */
+    public static ExecutionPolicy sequential() {
+        return new ExecutionPolicy(1, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return {@link ExecutionPolicy} followed by the bulk operations of the ledger
+     */
+    public static ExecutionPolicy ledger() {
+        return ledger;
+    }
+
+    /**
+     * Replaces the policy of the ledger. The previous policy is left running, since callers may still hold it, and its
+     * pool winds down once idle; it can be shut down with {@link #shutdown()} by whoever knows it is no longer used.
+     *
+     * @param policy {@link ExecutionPolicy} to be followed from now on
+     */
+    public static void setLedger(ExecutionPolicy policy) {
+
+        ledger = policy;
+
+        log.info("Ledger execution policy set to : {}", policy);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getSplitThreshold() {
+        return splitThreshold;
+    }
+
+    public int getPostingThreshold() {
+        return postingThreshold;
+    }
+
+    public int getBatchThreshold() {
+        return batchThreshold;
+    }
+
+    /**
+     * @param size      Number of items to be processed
+     * @param threshold Fewest items worth processing in parallel
+     * @return Whether the items are to be processed in parallel, which they never are once the pool is shut down
+     */
+    public boolean isParallel(long size, int threshold) {
+
+        return parallelism > 1 && size >= threshold && !isShutdown();
+    }
+
+    /**
+     * Runs the work in the pool of this policy, so that any parallel stream within it forks into this pool rather than
+     * the common one, and waits for its result. Once the pool has been shut down the work is run on the calling
+     * thread instead.
+     *
+     * @param work Work to be run
+     * @param <T>  Type of the result
+     * @return The result of the work
+     */
+    public <T> T invoke(Supplier<T> work) {
+
+        if (parallelism == 1 || isShutdown()) {
+            return work.get();
+        }
+
+        return submit(work, work);
+    }
+
+    /**
+     * Applies the action to each of the items, in parallel if they are at least as many as the threshold
+     *
+     * @param items     Items to be processed
+     * @param threshold Fewest items worth processing in parallel
+     * @param action    Action applied to each item
+     * @param <T>       Type of the items
+     */
+    public <T> void forEach(Collection<T> items, int threshold, Consumer<? super T> action) {
+
+        if (!isParallel(items.size(), threshold)) {
+            items.forEach(action);
+            return;
+        }
+
+        submit(() -> {
+            items.parallelStream().forEach(action);
+            return null;
+        }, () -> {
+            items.forEach(action);
+            return null;
+        });
+    }
+
+    /**
+     * Shuts the pool down once the work submitted to it has been done
+     */
+    public void shutdown() {
+
+        ForkJoinPool started = pool;
+        if (started != null) {
+            started.shutdown();
+        }
+    }
+
+    private boolean isShutdown() {
+
+        ForkJoinPool started = pool;
+        return started != null && started.isShutdown();
+    }
+
+    /**
+     * Runs the work in the pool, or the fallback on the calling thread if the pool was shut down meanwhile
+     */
+    private <T> T submit(Supplier<T> work, Supplier<T> fallback) {
+
+        try {
+            return pool().submit(work::get).join();
+        } catch (RejectedExecutionException e) {
+            log.debug("Ledger pool has been shut down, running the work on the calling thread");
+            return fallback.get();
+        }
+    }
+
+    private ForkJoinPool pool() {
+
+        ForkJoinPool started = pool;
+        if (started == null) {
+            synchronized (this) {
+                started = pool;
+                if (started == null) {
+                    started = new ForkJoinPool(parallelism, ExecutionPolicy::newWorker, null, false);
+                    pool = started;
+                    log.debug("Ledger pool started with parallelism : {}", parallelism);
+                }
+            }
+        }
+        return started;
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+
+        ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        worker.setName("ledger-worker-" + worker.getPoolIndex());
+        worker.setDaemon(true);
+        return worker;
+    }
+
+    @Override
+    public String toString() {
+        return "{parallelism=" + parallelism + ", splitThreshold=" + splitThreshold + ", postingThreshold=" + postingThreshold + ", batchThreshold=" + batchThreshold + '}';
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+/**
+ * This exception is handed to a subscriber of the change feed which has fallen further behind the postings than its
+ * buffer allows, or which asks to resume from a sequence number that the feed no longer retains. The subscriber may
+ * subscribe again from the last sequence number it has seen, for as long as the feed still retains what follows it.
+ *
+ * @author edwin.njeru
+ */
+public class FeedOverflowException extends Exception {
+
+    private static final long serialVersionUID = -3016502746512350211L;
+
+    /**
+     * Constructs a new throwable with {@code null} as its detail message.
+     */
+    public FeedOverflowException() {
+        super();
+    }
+
+    /**
+     * Constructs a new throwable with the specified detail message.
+     *
+     * @param message the detail message. The detail message is saved for
+     *                later retrieval by the {@link #getMessage()} method.
+     */
+    public FeedOverflowException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out compact, unique, positive ids from a shared counter. Ids follow one another in the order they are handed
+ * out across all threads, without gaps, at the cost of one atomic increment each.
+ *
+ * @author edwin.njeru
+ */
+public final class IdGenerator {
+
+    private final AtomicLong last = new AtomicLong();
+
+    /**
+     * @return The next id, never zero
+     */
+    public long next() {
+
+        return last.incrementAndGet();
+    }
+}
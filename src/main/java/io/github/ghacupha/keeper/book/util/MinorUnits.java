@@ -0,0 +1,67 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import io.github.ghacupha.cash.Cash;
+import io.github.ghacupha.cash.HardCash;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * Conversions between {@link Cash} and a count of the smallest unit of its {@link Currency}, for instance cents. Sums
+ * of such counts are exact, unlike sums of {@code double} amounts.
+ *
+ * @author edwin.njeru
+ */
+public final class MinorUnits {
+
+    private MinorUnits() {
+    }
+
+    /**
+     * @param cash {@link Cash} amount to be converted
+     * @return The amount as a count of the minor unit of its currency
+     */
+    public static long of(Cash cash) {
+
+        Number number = cash.getNumber();
+
+        BigDecimal amount = number instanceof BigDecimal ? (BigDecimal) number : BigDecimal.valueOf(number.doubleValue());
+
+        return amount.movePointRight(fractionDigits(cash.getCurrency())).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    /**
+     * @param minorUnits Count of the minor unit of the currency
+     * @param currency   {@link Currency} of the amount
+     * @return {@link Cash} amount
+     */
+    public static Cash toCash(long minorUnits, Currency currency) {
+
+        return HardCash.of(BigDecimal.valueOf(minorUnits, fractionDigits(currency)).doubleValue(), currency);
+    }
+
+    /**
+     * @param currency {@link Currency} in question
+     * @return Number of digits after the decimal point in the currency's minor unit
+     */
+    public static int fractionDigits(Currency currency) {
+
+        return Math.max(currency.getDefaultFractionDigits(), 0);
+    }
+}
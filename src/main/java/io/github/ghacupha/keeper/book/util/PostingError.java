@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+/**
+ * Reasons for which an entry or a transaction cannot be posted, reported by the result based posting API as codes
+ * rather than as exceptions, so that rejecting an item costs no more than accepting it.
+ *
+ * @author edwin.njeru
+ */
+public enum PostingError {
+
+    /**
+     * The account of the entry is in a currency other than that of the transaction, see {@link MismatchedCurrencyException}
+     */
+    ACCOUNT_CURRENCY_MISMATCH("The account is not in the currency of the transaction"),
+
+    /**
+     * The amount of the entry is in a currency other than that of the transaction, see {@link MismatchedCurrencyException}
+     */
+    AMOUNT_CURRENCY_MISMATCH("The amount is not in the currency of the transaction"),
+
+    /**
+     * The booking date is before the opening date of the account, see {@link UntimelyBookingDateException}
+     */
+    BOOKING_DATE_BEFORE_OPENING_DATE("The booking date is earlier than the opening date of the account"),
+
+    /**
+     * The account of the entry is not held in the ledger to which the entry was sent
+     */
+    UNKNOWN_ACCOUNT("The account is not held in this ledger"),
+
+    /**
+     * The debits and the credits of the transaction differ, see {@link UnableToPostException}
+     */
+    UNBALANCED("The debits and the credits are not equal"),
+
+    /**
+     * The transaction has no entries
+     */
+    NO_ENTRIES("There are no entries to post"),
+
+    /**
+     * The transaction has been posted already, see {@link ImmutableEntryException}
+     */
+    ALREADY_POSTED("The transaction has already been posted"),
+
+    /**
+     * A transaction with the same idempotency key has been posted within the window of the
+     * {@link io.github.ghacupha.keeper.book.base.DedupeStore}
+     */
+    DUPLICATE("A transaction with the same idempotency key has already been posted"),
+
+    /**
+     * The transaction was not posted because some of its entries are invalid
+     */
+    INVALID_ENTRIES("Some of the entries cannot be posted"),
+
+    /**
+     * The booking date falls in a period of the account which has been closed, see {@link UntimelyBookingDateException}
+     */
+    PERIOD_CLOSED("The booking date falls in a closed period of the account"),
+
+    /**
+     * The account is of a kind whose entries cannot be checked ahead of posting, and so cannot be posted to atomically
+     */
+    UNSUPPORTED_ACCOUNT("The account cannot be posted to as part of a request");
+
+    private final String description;
+
+    PostingError(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
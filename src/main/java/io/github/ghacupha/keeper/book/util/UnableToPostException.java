@@ -58,4 +58,14 @@ public class UnableToPostException extends Exception {
     public UnableToPostException(String message) {
         super(message);
     }
+
+    /**
+     * Constructs a new throwable with the specified detail message and cause.
+     *
+     * @param message the detail message, saved for later retrieval by the {@link #getMessage()} method.
+     * @param cause   the cause, saved for later retrieval by the {@link #getCause()} method.
+     */
+    public UnableToPostException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
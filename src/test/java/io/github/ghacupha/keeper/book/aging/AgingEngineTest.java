@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.aging;
+
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
+import io.github.ghacupha.time.point.SimpleDate;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.aging.AgingEngine.aging;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AgingEngineTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private final SimpleAccount sales = new SimpleAccount(CREDIT, KES, accountDetails("Sales", "4000", on(2017, 12, 31)));
+
+    private final SimpleAccount bank = new SimpleAccount(DEBIT, KES, accountDetails("Bank", "1000", on(2017, 12, 31)));
+
+    private final AgingEngine engine = aging(DEBIT, 30, 60, 90);
+
+    @Test
+    public void paymentsSettleTheOldestInvoicesFirst() throws Exception {
+
+        SimpleAccount customer = customer("Edwin Njeru", "1201");
+        invoice(customer, on(2018, 1, 10), 1000);
+        invoice(customer, on(2018, 2, 15), 500);
+        invoice(customer, on(2018, 3, 20), 300);
+        payment(customer, on(2018, 3, 25), 1200);
+        invoice(customer, on(2018, 5, 2), 700);
+
+        AgingReport report = engine.age(Collections.singletonList(customer), on(2018, 4, 30));
+
+        assertArrayEquals(new long[]{0, 30000, 30000, 0}, report.getTotals());
+        assertEquals(60000, report.getAccounts().get(0).getOpen());
+        assertEquals(customer.balanceInMinorUnits(EpochDays.of(on(2018, 4, 30))), report.getAccounts().get(0).getOpen());
+    }
+
+    @Test
+    public void overpaymentIsUnappliedUntilTheNextInvoice() throws Exception {
+
+        SimpleAccount customer = customer("Edwin Njeru", "1201");
+        invoice(customer, on(2018, 4, 1), 100);
+        payment(customer, on(2018, 4, 10), 150);
+
+        AgingReport early = engine.age(Collections.singletonList(customer), on(2018, 4, 20));
+        assertArrayEquals(new long[]{0, 0, 0, 0}, early.getTotals());
+        assertEquals(5000, early.getUnapplied());
+
+        invoice(customer, on(2018, 4, 15), 80);
+
+        AgingReport late = engine.age(Collections.singletonList(customer), on(2018, 4, 20));
+        assertArrayEquals(new long[]{3000, 0, 0, 0}, late.getTotals());
+        assertEquals(0, late.getUnapplied());
+    }
+
+    @Test
+    public void totalsAreAggregatedAcrossAccounts() throws Exception {
+
+        List<SimpleAccount> customers = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            SimpleAccount customer = customer("Customer " + i, String.valueOf(2000 + i));
+            invoice(customer, on(2018, 1, 1), 100);
+            invoice(customer, on(2018, 3, 1), 50);
+            payment(customer, on(2018, 3, 15), 20);
+            customers.add(customer);
+        }
+
+        AgingReport report = engine.age(customers, on(2018, 3, 31));
+
+        assertEquals(40, report.getAccounts().size());
+        assertEquals("2001", report.getAccounts().get(1).getAccount().getAccountDetails().getNumber());
+        assertArrayEquals(new long[]{40 * 5000, 0, 40 * 8000, 0}, report.getTotals());
+        assertEquals(Arrays.asList("0-30", "31-60", "61-90", "90+"),
+            Arrays.asList(report.getLabel(0), report.getLabel(1), report.getLabel(2), report.getLabel(3)));
+    }
+
+    @Test
+    public void theOpenSideIsThatOfTheEngineNotOfTheAccount() throws Exception {
+
+        SimpleAccount customer = customer("Edwin Njeru", "1201");
+        invoice(customer, on(2018, 4, 1), 100);
+        payment(customer, on(2018, 4, 10), 40);
+
+        customer.setAccountSide(CREDIT);
+
+        AgingReport report = engine.age(Collections.singletonList(customer), on(2018, 4, 20));
+        assertArrayEquals(new long[]{6000, 0, 0, 0}, report.getTotals());
+        assertEquals(0, report.getUnapplied());
+    }
+
+    @Test(expected = MismatchedCurrencyException.class)
+    public void accountsMustShareTheCurrency() throws Exception {
+
+        SimpleAccount dollars = new SimpleAccount(DEBIT, Currency.getInstance("USD"), accountDetails("Dollar customer", "1300", on(2017, 12, 31)));
+
+        engine.age(Arrays.asList(customer("Edwin Njeru", "1201"), dollars), on(2018, 4, 30));
+    }
+
+    private SimpleAccount customer(String name, String number) {
+
+        return new SimpleAccount(DEBIT, KES, accountDetails(name, number, on(2017, 12, 31)));
+    }
+
+    private void invoice(SimpleAccount customer, SimpleDate date, double amount) throws Exception {
+
+        Transaction invoice = getTransaction("Invoice", date, KES);
+        invoice.addEntry(DEBIT, shilling(amount), customer, details("Invoice"));
+        invoice.addEntry(CREDIT, shilling(amount), sales, details("Invoice"));
+        invoice.post();
+    }
+
+    private void payment(SimpleAccount customer, SimpleDate date, double amount) throws Exception {
+
+        Transaction payment = getTransaction("Payment", date, KES);
+        payment.addEntry(DEBIT, shilling(amount), bank, details("Payment"));
+        payment.addEntry(CREDIT, shilling(amount), customer, details("Payment"));
+        payment.post();
+    }
+}
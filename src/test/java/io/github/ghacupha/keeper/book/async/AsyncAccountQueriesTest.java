@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.async;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class AsyncAccountQueriesTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private SimpleAccount advertisement = new SimpleAccount(DEBIT, KES, accountDetails("Advertisements", "5280", on(2017, 3, 31)));
+    private SimpleAccount chequeAccount = new SimpleAccount(CREDIT, KES, accountDetails("Cheque", "5282", on(2017, 3, 31)));
+
+    // Holds the tasks until the test runs them, which keeps the queries in flight
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    private final AsyncAccountQueries queries = new AsyncAccountQueries(tasks::add);
+
+    @Before
+    public void setUp() throws Exception {
+
+        Transaction payForBillBoards = getTransaction("BillboardsPayment", on(2017, 11, 2), KES);
+        payForBillBoards.addEntry(DEBIT, shilling(200), advertisement, details("Billboards ltd inv 10"));
+        payForBillBoards.addEntry(CREDIT, shilling(200), chequeAccount, details("CHQ IFO Billboards Ltd"));
+        payForBillBoards.post();
+    }
+
+    private void runTasks() {
+        new ArrayList<>(tasks).forEach(Runnable::run);
+        tasks.clear();
+    }
+
+    @Test
+    public void duplicateQueriesInFlightAreCoalesced() throws Exception {
+
+        CompletableFuture<AccountBalance> first = queries.balanceAsync(advertisement, on(2017, 11, 30));
+        CompletableFuture<AccountBalance> second = queries.balanceAsync(advertisement, on(2017, 11, 30));
+        CompletableFuture<AccountBalance> otherDate = queries.balanceAsync(advertisement, on(2017, 10, 31));
+
+        assertEquals(2, tasks.size());
+        assertFalse(first.isDone());
+
+        runTasks();
+
+        assertEquals(newBalance(shilling(200), DEBIT), first.get());
+        assertEquals(newBalance(shilling(200), DEBIT), second.get());
+        assertEquals(newBalance(shilling(0), DEBIT), otherDate.get());
+        assertEquals(0, queries.inFlight());
+
+        queries.balanceAsync(advertisement, on(2017, 11, 30));
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    public void cancellingOneCallerDoesNotCancelTheOthers() throws Exception {
+
+        CompletableFuture<AccountBalance> first = queries.balanceAsync(chequeAccount, on(2017, 11, 30));
+        CompletableFuture<AccountBalance> second = queries.balanceAsync(chequeAccount, on(2017, 11, 30));
+
+        first.cancel(true);
+        runTasks();
+
+        assertEquals(newBalance(shilling(200), CREDIT), second.get());
+    }
+
+    @Test
+    public void batchQueriesKeepTheOrderOfTheAccounts() throws Exception {
+
+        CompletableFuture<Map<Account, AccountBalance>> balances = queries.balancesAsync(Arrays.asList(chequeAccount, advertisement), on(2017, 11, 30));
+        CompletableFuture<Map<Account, List<Entry>>> entries = queries.entriesAsync(Arrays.asList(chequeAccount, advertisement));
+
+        runTasks();
+
+        assertEquals(Arrays.asList(chequeAccount, advertisement), new ArrayList<>(balances.get().keySet()));
+        assertEquals(newBalance(shilling(200), CREDIT), balances.get().get(chequeAccount));
+        assertEquals(1, entries.get().get(advertisement).size());
+    }
+}
@@ -16,6 +16,7 @@
 package io.github.ghacupha.keeper.book.base;
 
 import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
 import io.github.ghacupha.keeper.book.api.Transaction;
 import io.github.ghacupha.keeper.book.util.ImmutableEntryException;
 import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
@@ -25,7 +26,10 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Currency;
+import java.util.List;
 
 import static io.github.ghacupha.cash.HardCash.shilling;
 import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
@@ -130,5 +134,20 @@ public class AccountTest {
         assertEquals(newBalance(shilling(168), CREDIT), chequeAccount.balance(2018, 4, 25));
     }
 
+    @Test
+    public void aFailingListenerNeitherFailsThePostingNorSilencesTheOthers() throws Exception {
+
+        SimpleAccount cash = new SimpleAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2017, 3, 31)));
+        List<Entry> heard = new ArrayList<>();
+        cash.addPostingListener((account, entry) -> {
+            throw new IllegalStateException("Index unavailable");
+        });
+        cash.addPostingListener((account, entry) -> heard.add(entry));
 
-}
\ No newline at end of file
+        Entry receipt = SimpleEntry.makeEntry(DEBIT, cash, shilling(50), on(2017, 11, 2), details("Receipt"));
+        cash.addEntry(receipt);
+
+        assertEquals(Collections.singletonList(receipt), heard);
+        assertEquals(newBalance(shilling(50), DEBIT), cash.balance(2017, 11, 30));
+    }
+}
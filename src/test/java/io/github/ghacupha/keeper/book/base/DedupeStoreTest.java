@@ -0,0 +1,238 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.util.UnableToPostException;
+import io.github.ghacupha.time.point.TimePoint;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.DedupeStore.dedupeStore;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DedupeStoreTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private final DedupeStore store = dedupeStore(1, TimeUnit.MINUTES, 1024, now::get);
+
+    @Test
+    public void keysCanOnlyBeClaimedOnce() throws Exception {
+
+        assertTrue(store.claim("mpesa-QK71HG2"));
+        assertFalse(store.claim("mpesa-QK71HG2"));
+        assertTrue(store.contains("mpesa-QK71HG2"));
+        assertFalse(store.contains("mpesa-QK71HG3"));
+    }
+
+    @Test
+    public void newKeysAreNeverTakenForDuplicates() throws Exception {
+
+        for (int i = 0; i < 20_000; i++) {
+            assertTrue(store.claim("import-line-" + i));
+        }
+
+        assertEquals(20_000, store.size());
+        assertFalse(store.claim("import-line-19999"));
+    }
+
+    @Test
+    public void keysExpireAfterTheWindow() throws Exception {
+
+        store.claim("mpesa-QK71HG2");
+
+        now.addAndGet(TimeUnit.SECONDS.toMillis(61));
+        store.claim("mpesa-QK71HG3");
+        assertTrue(store.contains("mpesa-QK71HG2"));
+
+        now.addAndGet(TimeUnit.SECONDS.toMillis(61));
+        assertFalse(store.contains("mpesa-QK71HG2"));
+        assertTrue(store.claim("mpesa-QK71HG2"));
+
+        now.addAndGet(TimeUnit.MINUTES.toMillis(5));
+        assertFalse(store.contains("mpesa-QK71HG2"));
+        assertFalse(store.contains("mpesa-QK71HG3"));
+    }
+
+    @Test
+    public void transactionsWithTheSameKeyArePostedOnce() throws Exception {
+
+        SimpleAccount advertisement = new SimpleAccount(DEBIT, KES, accountDetails("Advertisements", "5280", on(2017, 3, 31)));
+        SimpleAccount chequeAccount = new SimpleAccount(CREDIT, KES, accountDetails("Cheque", "5282", on(2017, 3, 31)));
+        String key = "billboards-inv-10-" + System.nanoTime();
+
+        for (int delivery = 0; delivery < 2; delivery++) {
+            Transaction payment = getTransaction("BillboardsPayment", on(2017, 11, 2), KES, key);
+            payment.addEntry(DEBIT, shilling(200), advertisement, details("Billboards ltd inv 10"));
+            payment.addEntry(CREDIT, shilling(200), chequeAccount, details("CHQ IFO Billboards Ltd"));
+            try {
+                payment.post();
+                assertEquals(0, delivery);
+            } catch (UnableToPostException e) {
+                if (delivery == 0) {
+                    fail("The first delivery should have been posted");
+                }
+            }
+        }
+
+        assertEquals(1, advertisement.getEntries().size());
+        assertEquals(key, getTransaction("BillboardsPayment", on(2017, 11, 2), KES, key).getIdempotencyKey());
+    }
+
+    @Test
+    public void releasedKeysCanBeClaimedAgain() throws Exception {
+
+        assertTrue(store.claim("mpesa-QK71HG2"));
+
+        store.release("mpesa-QK71HG2");
+
+        assertFalse(store.contains("mpesa-QK71HG2"));
+        assertTrue(store.claim("mpesa-QK71HG2"));
+    }
+
+    @Test
+    public void theKeyOfATransactionThatFailedToPostIsReleased() throws Exception {
+
+        SimpleAccount advertisement = new SimpleAccount(DEBIT, KES, accountDetails("Advertisements", "5280", on(2017, 3, 31)));
+        SimpleAccount chequeAccount = new SimpleAccount(CREDIT, KES, accountDetails("Cheque", "5282", on(2017, 3, 31)));
+        Account unavailable = new UnavailableAccount(accountDetails("Cheque", "5282", on(2017, 3, 31)));
+        String key = "billboards-inv-11-" + System.nanoTime();
+
+        Transaction failed = getTransaction("BillboardsPayment", on(2017, 11, 2), KES, key);
+        failed.addEntry(DEBIT, shilling(200), advertisement, details("Billboards ltd inv 11"));
+        failed.addEntry(CREDIT, shilling(200), unavailable, details("CHQ IFO Billboards Ltd"));
+        try {
+            failed.post();
+            fail("The transaction should have failed on the unavailable account");
+        } catch (IllegalStateException expected) {
+            assertFalse(DedupeStore.ledger().contains(key));
+        }
+
+        Transaction redelivery = getTransaction("BillboardsPayment", on(2017, 11, 2), KES, key);
+        redelivery.addEntry(DEBIT, shilling(200), advertisement, details("Billboards ltd inv 11"));
+        redelivery.addEntry(CREDIT, shilling(200), chequeAccount, details("CHQ IFO Billboards Ltd"));
+        redelivery.post();
+
+        assertEquals(1, chequeAccount.getEntries().size());
+        assertTrue(DedupeStore.ledger().contains(key));
+    }
+
+    @Test
+    public void theKeyOfATransactionWithARefusedEntryIsLeftFree() throws Exception {
+
+        SimpleAccount advertisement = new SimpleAccount(DEBIT, KES, accountDetails("Advertisements", "5280", on(2017, 3, 31)));
+        SimpleAccount chequeAccount = new SimpleAccount(CREDIT, KES, accountDetails("Cheque", "5282", on(2017, 3, 31)));
+        SimpleAccount newChequeAccount = new SimpleAccount(CREDIT, KES, accountDetails("Cheque", "5283", on(2018, 1, 1)));
+        String key = "billboards-inv-12-" + System.nanoTime();
+
+        Transaction refused = getTransaction("BillboardsPayment", on(2017, 11, 2), KES, key);
+        refused.addEntry(DEBIT, shilling(200), advertisement, details("Billboards ltd inv 12"));
+        refused.addEntry(CREDIT, shilling(200), newChequeAccount, details("CHQ IFO Billboards Ltd"));
+        try {
+            refused.post();
+            fail("The transaction should have been refused for the opening date of the cheque account");
+        } catch (UnableToPostException expected) {
+            assertFalse(DedupeStore.ledger().contains(key));
+        }
+        assertTrue(advertisement.getEntries().isEmpty());
+
+        Transaction redelivery = getTransaction("BillboardsPayment", on(2017, 11, 2), KES, key);
+        redelivery.addEntry(DEBIT, shilling(200), advertisement, details("Billboards ltd inv 12"));
+        redelivery.addEntry(CREDIT, shilling(200), chequeAccount, details("CHQ IFO Billboards Ltd"));
+        redelivery.post();
+
+        assertEquals(1, advertisement.getEntries().size());
+        assertTrue(DedupeStore.ledger().contains(key));
+    }
+
+    /**
+     * Account whose store cannot be reached, so that every entry posted into it fails
+     */
+    private static final class UnavailableAccount implements Account {
+
+        private final AccountDetails accountDetails;
+
+        private UnavailableAccount(AccountDetails accountDetails) {
+            this.accountDetails = accountDetails;
+        }
+
+        @Override
+        public void addEntry(Entry entry) {
+            throw new IllegalStateException("The store of account : " + accountDetails + " cannot be reached");
+        }
+
+        @Override
+        public AccountBalance balance(TimePoint asAt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public AccountBalance balance(int... asAt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Currency getCurrency() {
+            return KES;
+        }
+
+        @Override
+        public TimePoint getOpeningDate() {
+            return accountDetails.getOpeningDate();
+        }
+
+        @Override
+        public AccountSide getAccountSide() {
+            return CREDIT;
+        }
+
+        @Override
+        public List<Entry> getEntries() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public AccountDetails getAccountDetails() {
+            return accountDetails;
+        }
+
+        @Override
+        public void setAccountSide(AccountSide accountSide) {
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import org.junit.Test;
+
+import java.util.Currency;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.LedgerSnapshot.snapshot;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LedgerSnapshotTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private SimpleAccount advertisement = new SimpleAccount(DEBIT, KES, accountDetails("Advertisements", "5280", on(2017, 3, 31)));
+    private SimpleAccount chequeAccount = new SimpleAccount(CREDIT, KES, accountDetails("Cheque", "5282", on(2017, 3, 31)));
+
+    private void pay(double amount) throws Exception {
+
+        Transaction payment = getTransaction("BillboardsPayment", on(2017, 11, 2), KES);
+        payment.addEntry(DEBIT, shilling(amount), advertisement, details("Billboards ltd inv 10"));
+        payment.addEntry(CREDIT, shilling(amount), chequeAccount, details("CHQ IFO Billboards Ltd"));
+        payment.post();
+    }
+
+    @Test
+    public void laterPostingsAreNotSeenBySnapshots() throws Exception {
+
+        pay(200);
+        LedgerSnapshot snapshot = snapshot();
+        pay(50);
+
+        assertEquals(newBalance(shilling(200), CREDIT), snapshot.balance(chequeAccount, on(2017, 11, 30)));
+        assertEquals(1, snapshot.getEntries(advertisement).size());
+        assertEquals(newBalance(shilling(250), CREDIT), snapshot().balance(chequeAccount, on(2017, 11, 30)));
+        assertTrue(snapshot().getSequence() > snapshot.getSequence());
+    }
+
+    @Test
+    public void snapshotsAreNeverTornByPostingsUnderWay() throws Exception {
+
+        AtomicBoolean posting = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread poster = new Thread(() -> {
+            try {
+                for (int i = 0; i < 2000; i++) {
+                    pay(1);
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            } finally {
+                posting.set(false);
+            }
+        });
+        poster.start();
+
+        int epochDay = EpochDays.of(on(2017, 11, 30));
+        while (posting.get()) {
+            LedgerSnapshot snapshot = snapshot();
+            long debits = snapshot.balanceInMinorUnits(advertisement, epochDay);
+            long credits = snapshot.balanceInMinorUnits(chequeAccount, epochDay);
+            assertEquals(debits, -credits);
+        }
+        poster.join();
+
+        assertNull(failure.get());
+        assertEquals(200_000, snapshot().balanceInMinorUnits(advertisement, epochDay));
+    }
+}
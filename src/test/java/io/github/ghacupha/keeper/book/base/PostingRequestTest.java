@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.cash.HardCash;
+import io.github.ghacupha.keeper.book.util.PostingError;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.PostingRequest.postingRequest;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PostingRequestTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private SimpleAccount advertisement = new SimpleAccount(DEBIT, KES, accountDetails("Advertisements", "5280", on(2017, 3, 31)));
+    private SimpleAccount vat = new SimpleAccount(CREDIT, KES, accountDetails("VAT", "5281", on(2017, 12, 31)));
+    private SimpleAccount chequeAccount = new SimpleAccount(CREDIT, KES, accountDetails("Cheque", "5282", on(2017, 3, 31)));
+
+    @Test
+    public void invalidEntriesAreReportedWithoutPostingAnything() throws Exception {
+
+        PostingRequest request = postingRequest("BillboardsPayment", on(2017, 11, 2), KES)
+            .addEntry(DEBIT, shilling(200), advertisement, details("Billboards ltd inv 10"))
+            .addEntry(CREDIT, shilling(32), vat, details("VAT for billBoards"))
+            .addEntry(CREDIT, HardCash.of(168, "USD"), chequeAccount, details("CHQ IFO Billboards Ltd"));
+
+        PostingResult result = request.post();
+
+        assertFalse(result.isPosted());
+        assertEquals(PostingError.INVALID_ENTRIES, result.getError());
+        assertNull(result.getEntryError(0));
+        assertEquals(PostingError.BOOKING_DATE_BEFORE_OPENING_DATE, result.getEntryError(1));
+        assertEquals(PostingError.AMOUNT_CURRENCY_MISMATCH, result.getEntryError(2));
+        assertArrayEquals(new int[]{1, 2}, result.getInvalidEntries());
+        assertTrue(advertisement.getEntries().isEmpty());
+    }
+
+    @Test
+    public void validationIsAPreFlightCheck() throws Exception {
+
+        PostingRequest request = postingRequest("BillboardsPayment", on(2017, 11, 2), KES)
+            .addEntry(DEBIT, shilling(200), advertisement, details("Billboards ltd inv 10"))
+            .addEntry(CREDIT, shilling(168), chequeAccount, details("CHQ IFO Billboards Ltd"));
+
+        assertEquals(PostingError.UNBALANCED, request.validate().getError());
+
+        request.addEntry(CREDIT, shilling(32), chequeAccount, details("VAT withheld"));
+
+        assertTrue(request.validate().isValid());
+        assertTrue(advertisement.getEntries().isEmpty());
+    }
+
+    @Test
+    public void batchesArePostedRequestByRequest() throws Exception {
+
+        PostingRequest good = postingRequest("BillboardsPayment", on(2017, 11, 2), KES)
+            .addEntry(DEBIT, shilling(200), advertisement, details("Billboards ltd inv 10"))
+            .addEntry(CREDIT, shilling(200), chequeAccount, details("CHQ IFO Billboards Ltd"));
+        PostingRequest empty = postingRequest("Nothing", on(2017, 11, 2), KES);
+
+        List<PostingResult> results = PostingRequest.postAll(Arrays.asList(good, empty, good));
+
+        assertTrue(results.get(0).isPosted());
+        assertEquals(2, results.get(0).getEntries().size());
+        assertEquals(PostingError.NO_ENTRIES, results.get(1).getError());
+        assertEquals(PostingError.ALREADY_POSTED, results.get(2).getError());
+        assertEquals(newBalance(shilling(200), CREDIT), chequeAccount.balance(2017, 11, 30));
+    }
+
+    @Test
+    public void redeliveredRequestsAreRejectedAsDuplicates() throws Exception {
+
+        String key = "billboards-inv-10-" + System.nanoTime();
+
+        PostingResult first = postingRequest("BillboardsPayment", on(2017, 11, 2), KES).idempotencyKey(key)
+            .addEntry(DEBIT, shilling(200), advertisement, details("Billboards ltd inv 10"))
+            .addEntry(CREDIT, shilling(200), chequeAccount, details("CHQ IFO Billboards Ltd"))
+            .post();
+
+        PostingRequest redelivery = postingRequest("BillboardsPayment", on(2017, 11, 2), KES).idempotencyKey(key)
+            .addEntry(DEBIT, shilling(200), advertisement, details("Billboards ltd inv 10"))
+            .addEntry(CREDIT, shilling(200), chequeAccount, details("CHQ IFO Billboards Ltd"));
+
+        assertTrue(first.isPosted());
+        assertEquals(PostingError.DUPLICATE, redelivery.validate().getError());
+        assertEquals(PostingError.DUPLICATE, redelivery.post().getError());
+        assertEquals(1, advertisement.getEntries().size());
+    }
+
+    @Test
+    public void legsThatCannotBeCheckedAheadAreRefusedWithoutPostingAnything() throws Exception {
+
+        AssignableCollectionAccount suspense = new AssignableCollectionAccount(CREDIT, KES, accountDetails("Suspense", "5283", on(2017, 3, 31)), new ArrayList<>());
+        chequeAccount.compact(on(2017, 10, 1), details("Carried forward"));
+
+        PostingResult result = postingRequest("BillboardsPayment", on(2017, 9, 2), KES)
+            .addEntry(DEBIT, shilling(200), advertisement, details("Billboards ltd inv 10"))
+            .addEntry(CREDIT, shilling(100), chequeAccount, details("CHQ IFO Billboards Ltd"))
+            .addEntry(CREDIT, shilling(100), suspense, details("Billboards ltd inv 10 balance"))
+            .post();
+
+        assertFalse(result.isPosted());
+        assertEquals(PostingError.INVALID_ENTRIES, result.getError());
+        assertNull(result.getEntryError(0));
+        assertEquals(PostingError.PERIOD_CLOSED, result.getEntryError(1));
+        assertEquals(PostingError.UNSUPPORTED_ACCOUNT, result.getEntryError(2));
+        assertTrue(result.getEntries().isEmpty());
+        assertTrue(advertisement.getEntries().isEmpty());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.balance.MutableBalance;
+import io.github.ghacupha.keeper.book.util.EpochDayRange;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Currency;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.keeper.book.util.EpochDays.of;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+
+public class PrimitiveBalanceTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private SimpleAccount advertisement = new SimpleAccount(DEBIT, KES, accountDetails("Advertisements", "5280", on(2017, 3, 31)));
+    private SimpleAccount vat = new SimpleAccount(CREDIT, KES, accountDetails("VAT", "5281", on(2017, 3, 31)));
+
+    @Before
+    public void setUp() throws Exception {
+
+        Transaction vatOnBillBoards = getTransaction("BillboardsVAT", on(2017, 11, 2), KES);
+        vatOnBillBoards.addEntry(DEBIT, shilling(32), advertisement, details("Billboards ltd inv 10"));
+        vatOnBillBoards.addEntry(CREDIT, shilling(32), vat, details("VAT for billBoards"));
+        vatOnBillBoards.post();
+
+        Transaction taxReversal = getTransaction("Tax reversal", on(2018, 4, 20), KES);
+        taxReversal.addEntry(DEBIT, shilling(45.50), vat, details("Reversal of Excess VAT"));
+        taxReversal.addEntry(CREDIT, shilling(45.50), advertisement, details("Reversal of Excess VAT"));
+        taxReversal.post();
+    }
+
+    @Test
+    public void balanceInMinorUnitsIsSigned() throws Exception {
+
+        assertEquals(0, vat.balanceInMinorUnits(of(on(2017, 11, 1))));
+        assertEquals(-3200, vat.balanceInMinorUnits(of(on(2017, 11, 2))));
+        assertEquals(1350, vat.balanceInMinorUnits(of(on(2018, 4, 20))));
+    }
+
+    @Test
+    public void balanceIsWrittenIntoHolder() throws Exception {
+
+        MutableBalance balance = new MutableBalance();
+
+        vat.balance(of(on(2017, 12, 31)), balance);
+        assertEquals(3200, balance.getAmountInMinorUnits());
+        assertEquals(CREDIT, balance.getAccountSide());
+        assertEquals(vat.balance(2017, 12, 31), balance.toAccountBalance(KES));
+
+        vat.balance(of(on(2018, 12, 31)), balance);
+        assertEquals(vat.balance(2018, 12, 31), balance.toAccountBalance(KES));
+
+        advertisement.balance(of(on(2018, 12, 31)), balance);
+        assertEquals(1350, balance.getAmountInMinorUnits());
+        assertEquals(CREDIT, balance.getAccountSide());
+    }
+
+    @Test
+    public void rangeBalancesFromTheColumnsMatchThoseFromTheEntries() throws Exception {
+
+        AccountAppraisalDelegate fromEntries = new AccountAppraisalDelegate(vat);
+        AccountAppraisalDelegate fromColumns = new AccountAppraisalDelegate(vat, vat::entrySpliterator, vat::entryTotals);
+
+        EpochDayRange[] ranges = {
+            EpochDayRange.between(on(2017, 3, 31), on(2017, 12, 31)),
+            EpochDayRange.between(on(2018, 1, 1), on(2018, 12, 31)),
+            EpochDayRange.between(on(2017, 3, 31), on(2018, 12, 31)),
+            EpochDayRange.between(on(2017, 11, 3), on(2018, 4, 19))
+        };
+        for (EpochDayRange range : ranges) {
+            assertEquals(range.toString(), fromEntries.balance(range), fromColumns.balance(range));
+        }
+
+        assertEquals(vat.balance(2018, 12, 31), fromColumns.balance(ranges[2]));
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.UnableToPostException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Currency;
+import java.util.HashSet;
+import java.util.Set;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionIndexTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private SimpleAccount advertisement = new SimpleAccount(DEBIT, KES, accountDetails("Advertisements", "5280", on(2017, 3, 31)));
+    private SimpleAccount chequeAccount = new SimpleAccount(CREDIT, KES, accountDetails("Cheque", "5282", on(2017, 3, 31)));
+
+    private final TransactionIndex index = new TransactionIndex();
+
+    private Transaction payForBillBoards;
+
+    @Before
+    public void setUp() throws Exception {
+
+        payForBillBoards = getTransaction("BillboardsPayment", on(2017, 11, 2), KES);
+        payForBillBoards.addEntry(DEBIT, shilling(200), advertisement, details("Billboards ltd inv 10"));
+        payForBillBoards.addEntry(CREDIT, shilling(200), chequeAccount, details("CHQ IFO Billboards Ltd"));
+    }
+
+    @Test
+    public void equalityIsByIdAndSurvivesPosting() throws Exception {
+
+        Set<Transaction> transactions = new HashSet<>();
+        transactions.add(payForBillBoards);
+        int hashCode = payForBillBoards.hashCode();
+
+        index.post(payForBillBoards);
+
+        assertEquals(hashCode, payForBillBoards.hashCode());
+        assertTrue(transactions.contains(payForBillBoards));
+        assertNotEquals(payForBillBoards, getTransaction("BillboardsPayment", on(2017, 11, 2), KES));
+        assertNotEquals(payForBillBoards.getId(), getTransaction("BillboardsPayment", on(2017, 11, 2), KES).getId());
+    }
+
+    @Test
+    public void postedTransactionsAreFoundAndReversedById() throws Exception {
+
+        index.post(payForBillBoards);
+        long id = payForBillBoards.getId();
+
+        assertSame(payForBillBoards, index.find(id));
+        assertNull(index.find(-1));
+
+        Transaction reversal = index.reverse(id, on(2017, 11, 15));
+
+        assertEquals(reversal.getId(), index.reversalOf(id));
+        assertSame(reversal, index.find(reversal.getId()));
+        assertEquals(0, chequeAccount.balanceInMinorUnits(EpochDays.of(on(2017, 11, 30))));
+        assertEquals(newBalance(shilling(200), CREDIT), chequeAccount.balance(2017, 11, 10));
+    }
+
+    @Test(expected = UnableToPostException.class)
+    public void transactionsCanOnlyBeReversedOnce() throws Exception {
+
+        index.post(payForBillBoards);
+
+        index.reverse(payForBillBoards.getId(), on(2017, 11, 15));
+        index.reverse(payForBillBoards.getId(), on(2017, 11, 16));
+    }
+}
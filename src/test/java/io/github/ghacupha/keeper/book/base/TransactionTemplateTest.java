@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.TransactionTemplate.template;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TransactionTemplateTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private SimpleAccount advertisement = new SimpleAccount(DEBIT, KES, accountDetails("Advertisements", "5280", on(2017, 3, 31)));
+    private SimpleAccount vat = new SimpleAccount(CREDIT, KES, accountDetails("VAT", "5281", on(2017, 6, 30)));
+    private SimpleAccount chequeAccount = new SimpleAccount(CREDIT, KES, accountDetails("Cheque", "5282", on(2017, 3, 31)));
+
+    private TransactionTemplate payForBillBoards;
+
+    @Before
+    public void setUp() throws Exception {
+
+        payForBillBoards = template("BillboardsPayment", KES)
+            .leg(DEBIT, advertisement, 1, details("Billboards ltd inv"))
+            .leg(CREDIT, vat, 16, details("VAT for billBoards"))
+            .leg(CREDIT, chequeAccount, 100, details("CHQ IFO Billboards Ltd"));
+    }
+
+    @Test
+    public void amountsAreSharedByWeight() throws Exception {
+
+        List<Entry> entries = payForBillBoards.post(shilling(232), on(2017, 11, 2));
+
+        assertEquals(3, entries.size());
+        assertEquals(newBalance(shilling(232), DEBIT), advertisement.balance(2017, 11, 30));
+        assertEquals(newBalance(shilling(32), CREDIT), vat.balance(2017, 11, 30));
+        assertEquals(newBalance(shilling(200), CREDIT), chequeAccount.balance(2017, 11, 30));
+    }
+
+    @Test
+    public void oddCentsGoToTheLargestRemainders() throws Exception {
+
+        payForBillBoards.post(shilling(0.05), on(2017, 11, 2));
+
+        // 0.05 * 16 / 116 = 0.0069 and 0.05 * 100 / 116 = 0.0431, so the cheque gets 4 cents and VAT the odd cent
+        assertEquals(newBalance(shilling(0.01), CREDIT), vat.balance(2017, 11, 30));
+        assertEquals(newBalance(shilling(0.04), CREDIT), chequeAccount.balance(2017, 11, 30));
+        assertEquals(newBalance(shilling(0.05), DEBIT), advertisement.balance(2017, 11, 30));
+    }
+
+    @Test(expected = UntimelyBookingDateException.class)
+    public void datesBeforeTheLatestOpeningDateAreRejected() throws Exception {
+
+        payForBillBoards.post(shilling(116), on(2017, 5, 1));
+    }
+
+    @Test(expected = MismatchedCurrencyException.class)
+    public void legsInOtherCurrenciesAreRejected() throws Exception {
+
+        SimpleAccount dollarAccount = new SimpleAccount(CREDIT, Currency.getInstance("USD"), accountDetails("Dollar Cheque", "5283", on(2017, 3, 31)));
+
+        template("DollarPayment", KES).leg(CREDIT, dollarAccount, 1, details("CHQ"));
+    }
+
+    @Test
+    public void aLegInAClosedPeriodLeavesEveryAccountUntouched() throws Exception {
+
+        chequeAccount.compact(on(2017, 12, 1), details("Carried forward"));
+
+        try {
+            payForBillBoards.post(shilling(116), on(2017, 11, 2));
+            fail("A leg booked in a closed period should refuse the whole posting");
+        } catch (UntimelyBookingDateException expected) {
+            assertTrue(advertisement.getEntries().isEmpty());
+            assertTrue(vat.getEntries().isEmpty());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void legsInAccountsThatCannotBeCheckedAheadAreRejected() throws Exception {
+
+        AssignableCollectionAccount suspense = new AssignableCollectionAccount(CREDIT, KES, accountDetails("Suspense", "5284", on(2017, 3, 31)), new ArrayList<>());
+
+        template("SuspensePayment", KES).leg(CREDIT, suspense, 1, details("Suspense"));
+    }
+}
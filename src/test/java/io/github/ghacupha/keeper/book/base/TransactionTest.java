@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.util.UnableToPostException;
+import org.junit.Test;
+
+import java.util.Currency;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleAccount.makeAccount;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private Account advertisement = makeAccount(DEBIT, KES, accountDetails("Advertisements", "5280", on(2017, 3, 31)));
+    private Account vat = makeAccount(CREDIT, KES, accountDetails("VAT", "5281", on(2017, 3, 31)));
+    private Account chequeAccount = makeAccount(CREDIT, KES, accountDetails("Cheque", "5282", on(2017, 3, 31)));
+
+    @Test
+    public void balanceIsKnownBeforePosting() throws Exception {
+
+        Transaction payForBillBoards = getTransaction("BillboardsPayment", on(2017, 11, 2), KES);
+        assertTrue(payForBillBoards.isBalanced());
+
+        payForBillBoards.addEntry(DEBIT, shilling(200), advertisement, details("Billboards ltd inv 10"));
+        assertFalse(payForBillBoards.isBalanced());
+        assertEquals(shilling(200), payForBillBoards.imbalance());
+
+        payForBillBoards.addEntry(CREDIT, shilling(32.15), vat, details("VAT for billBoards"));
+        assertEquals(shilling(167.85), payForBillBoards.imbalance());
+
+        payForBillBoards.addEntry(CREDIT, shilling(167.86), chequeAccount, details("CHQ IFO Billboards Ltd"));
+        assertEquals(shilling(-0.01), payForBillBoards.imbalance());
+    }
+
+    @Test(expected = UnableToPostException.class)
+    public void unbalancedTransactionsAreNotPosted() throws Exception {
+
+        Transaction payForBillBoards = getTransaction("BillboardsPayment", on(2017, 11, 2), KES);
+        payForBillBoards.addEntry(DEBIT, shilling(200), advertisement, details("Billboards ltd inv 10"));
+        payForBillBoards.addEntry(CREDIT, shilling(32), vat, details("VAT for billBoards"));
+
+        payForBillBoards.post();
+    }
+
+    @Test
+    public void balancedTransactionsArePosted() throws Exception {
+
+        Transaction payForBillBoards = getTransaction("BillboardsPayment", on(2017, 11, 2), KES);
+        payForBillBoards.addEntry(DEBIT, shilling(200), advertisement, details("Billboards ltd inv 10"));
+        payForBillBoards.addEntry(CREDIT, shilling(32.15), vat, details("VAT for billBoards"));
+        payForBillBoards.addEntry(CREDIT, shilling(167.85), chequeAccount, details("CHQ IFO Billboards Ltd"));
+
+        assertTrue(payForBillBoards.isBalanced());
+        payForBillBoards.post();
+
+        assertEquals(newBalance(shilling(200), DEBIT), advertisement.balance(2017, 11, 30));
+        assertEquals(newBalance(shilling(32.15), CREDIT), vat.balance(2017, 11, 30));
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.feed;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.CommitListener;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.base.AccountDetails;
+import io.github.ghacupha.keeper.book.base.Commit;
+import io.github.ghacupha.keeper.book.base.CommitSequence;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.FeedOverflowException;
+import io.github.ghacupha.time.point.TimePoint;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.keeper.book.feed.ChangeFeed.changeFeed;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChangeFeedTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private final SimpleAccount advertisement = new SimpleAccount(DEBIT, KES, accountDetails("Advertisements", "5280", on(2017, 3, 31)));
+    private final SimpleAccount vat = new SimpleAccount(CREDIT, KES, accountDetails("VAT", "5281", on(2017, 3, 31)));
+    private final SimpleAccount chequeAccount = new SimpleAccount(CREDIT, KES, accountDetails("Cheque", "5282", on(2017, 3, 31)));
+
+    // Subscribers are called on the posting thread so that what they have been sent is known as soon as posting returns
+    private final ChangeFeed feed = changeFeed(8, 4, Runnable::run);
+
+    @After
+    public void tearDown() throws Exception {
+        feed.close();
+    }
+
+    private Transaction payForBillBoards(double amount) throws Exception {
+
+        Transaction payForBillBoards = getTransaction("BillboardsPayment", on(2017, 11, 2), KES);
+        payForBillBoards.addEntry(DEBIT, shilling(amount), advertisement, details("Billboards ltd inv 10"));
+        payForBillBoards.addEntry(CREDIT, shilling(amount * 0.16), vat, details("VAT for billBoards"));
+        payForBillBoards.addEntry(CREDIT, shilling(amount * 0.84), chequeAccount, details("CHQ IFO Billboards Ltd"));
+        payForBillBoards.post();
+
+        return payForBillBoards;
+    }
+
+    @Test
+    public void commitsAreSentOnlyAsTheyAreRequested() throws Exception {
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        feed.subscribe(subscriber);
+
+        Transaction first = payForBillBoards(200);
+        payForBillBoards(100);
+
+        assertTrue(subscriber.received.isEmpty());
+
+        subscriber.subscription.request(1);
+        assertEquals(1, subscriber.received.size());
+        assertEquals(first.getEntries(), new HashSet<>(subscriber.received.get(0).getEntries()));
+
+        subscriber.subscription.request(5);
+        payForBillBoards(50);
+
+        assertEquals(3, subscriber.received.size());
+        assertTrue(subscriber.received.get(0).getSequence() < subscriber.received.get(1).getSequence());
+        assertTrue(subscriber.received.get(1).getSequence() < subscriber.received.get(2).getSequence());
+        assertEquals(subscriber.received.get(2).getSequence(), feed.getLastSequence());
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void subscribersFallingBehindTheirBufferAreFailed() throws Exception {
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        feed.subscribe(subscriber);
+
+        for (int i = 1; i <= 5; i++) {
+            payForBillBoards(i * 100);
+        }
+
+        assertTrue(subscriber.error instanceof FeedOverflowException);
+        assertEquals(0, feed.getSubscriberCount());
+    }
+
+    @Test
+    public void subscribersCanResumeFromTheLastSequenceSeen() throws Exception {
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        feed.subscribe(subscriber);
+        subscriber.subscription.request(1);
+
+        payForBillBoards(200);
+        long lastSeen = subscriber.received.get(0).getSequence();
+        subscriber.subscription.cancel();
+
+        payForBillBoards(100);
+        payForBillBoards(50);
+
+        RecordingSubscriber resumed = new RecordingSubscriber();
+        feed.subscribe(resumed, lastSeen);
+        resumed.subscription.request(Long.MAX_VALUE);
+
+        assertEquals(2, resumed.received.size());
+        assertTrue(resumed.received.get(0).getSequence() > lastSeen);
+        assertEquals(feed.getLastSequence(), resumed.received.get(1).getSequence());
+    }
+
+    @Test
+    public void resumingFromADroppedSequenceFails() throws Exception {
+
+        payForBillBoards(1);
+        long first = feed.getLastSequence();
+        for (int i = 0; i < 9; i++) {
+            payForBillBoards(1);
+        }
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        feed.subscribe(subscriber, first - 1);
+
+        assertTrue(subscriber.error instanceof FeedOverflowException);
+    }
+
+    @Test
+    public void resumingAcrossTheGapOfAFailedPostingDoesNotFail() throws Exception {
+
+        ChangeFeed narrowFeed = changeFeed(4, 4, Runnable::run);
+        try {
+            payForBillBoards(200);
+            long lastSeen = narrowFeed.getLastSequence();
+
+            // the failed posting takes the next sequence number without being committed
+            Account unavailable = new UnavailableAccount(accountDetails("Suspense", "9999", on(2017, 3, 31)));
+            Transaction failing = getTransaction("Suspense", on(2017, 11, 2), KES);
+            failing.addEntry(DEBIT, shilling(10), unavailable, details("Suspense"));
+            failing.addEntry(CREDIT, shilling(10), unavailable, details("Suspense"));
+            try {
+                failing.post();
+                fail("The posting into an unavailable account should fail");
+            } catch (IllegalStateException expected) {
+                assertFalse(expected.getMessage().isEmpty());
+            }
+
+            // pushes the last commit seen out of the ring, leaving the gap at its head
+            for (int i = 0; i < 4; i++) {
+                payForBillBoards(1);
+            }
+
+            RecordingSubscriber resumed = new RecordingSubscriber();
+            narrowFeed.subscribe(resumed, lastSeen);
+            resumed.subscription.request(Long.MAX_VALUE);
+
+            assertNull(resumed.error);
+            assertEquals(4, resumed.received.size());
+            assertTrue(resumed.received.get(0).getSequence() > lastSeen + 1);
+        } finally {
+            narrowFeed.close();
+        }
+    }
+
+    @Test
+    public void failingListenersAndExecutorsDoNotFailPostings() throws Exception {
+
+        CommitListener failingListener = commit -> {
+            throw new IllegalStateException("The listener is broken");
+        };
+        AtomicInteger executions = new AtomicInteger();
+        ChangeFeed refusingFeed = changeFeed(8, 4, command -> {
+            if (executions.getAndIncrement() > 1) {
+                throw new RejectedExecutionException("The executor has been shut down");
+            }
+            command.run();
+        });
+
+        CommitSequence.ledger().addCommitListener(failingListener);
+        ChangeFeed laterFeed = changeFeed(8, 4, Runnable::run);
+        try {
+            // the executor runs the subscription and the request, and refuses the signal of the posting
+            RecordingSubscriber refused = new RecordingSubscriber();
+            refusingFeed.subscribe(refused);
+            refused.subscription.request(Long.MAX_VALUE);
+            assertEquals(1, refusingFeed.getSubscriberCount());
+
+            RecordingSubscriber subscriber = new RecordingSubscriber();
+            laterFeed.subscribe(subscriber);
+            subscriber.subscription.request(Long.MAX_VALUE);
+
+            Transaction payment = payForBillBoards(200);
+
+            assertEquals(1, subscriber.received.size());
+            assertEquals(payment.getEntries(), new HashSet<>(subscriber.received.get(0).getEntries()));
+            assertEquals(0, refusingFeed.getSubscriberCount());
+        } finally {
+            CommitSequence.ledger().removeCommitListener(failingListener);
+            laterFeed.close();
+            refusingFeed.close();
+        }
+    }
+
+    @Test
+    public void closingTheFeedCompletesSubscribers() throws Exception {
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        feed.subscribe(subscriber);
+        payForBillBoards(200);
+
+        feed.close();
+        assertFalse(subscriber.completed);
+
+        subscriber.subscription.request(1);
+        assertEquals(1, subscriber.received.size());
+        assertTrue(subscriber.completed);
+    }
+
+    private static final class RecordingSubscriber implements Flow.Subscriber<Commit> {
+
+        private final List<Commit> received = new ArrayList<>();
+
+        private Flow.Subscription subscription;
+
+        private Throwable error;
+
+        private boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Commit item) {
+            received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private static final class UnavailableAccount implements Account {
+
+        private final AccountDetails accountDetails;
+
+        private UnavailableAccount(AccountDetails accountDetails) {
+            this.accountDetails = accountDetails;
+        }
+
+        @Override
+        public void addEntry(Entry entry) {
+            throw new IllegalStateException("The store of account : " + accountDetails + " cannot be reached");
+        }
+
+        @Override
+        public AccountBalance balance(TimePoint asAt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public AccountBalance balance(int... asAt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Currency getCurrency() {
+            return KES;
+        }
+
+        @Override
+        public TimePoint getOpeningDate() {
+            return on(2017, 3, 31);
+        }
+
+        @Override
+        public AccountSide getAccountSide() {
+            return CREDIT;
+        }
+
+        @Override
+        public List<Entry> getEntries() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public AccountDetails getAccountDetails() {
+            return accountDetails;
+        }
+
+        @Override
+        public void setAccountSide(AccountSide accountSide) {
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.hierarchy;
+
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Currency;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.keeper.book.hierarchy.AccountHierarchy.hierarchy;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+
+public class AccountHierarchyTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private final SimpleAccount advertisement = new SimpleAccount(DEBIT, KES, accountDetails("Advertisements", "5280", on(2017, 3, 31)));
+    private final SimpleAccount sponsorships = new SimpleAccount(DEBIT, KES, accountDetails("Sponsorships", "5281", on(2017, 3, 31)));
+    private final SimpleAccount electricity = new SimpleAccount(DEBIT, KES, accountDetails("Electricity", "5310", on(2017, 3, 31)));
+    private final SimpleAccount chequeAccount = new SimpleAccount(CREDIT, KES, accountDetails("Cheque", "1020", on(2017, 3, 31)));
+
+    private final AccountHierarchy hierarchy = hierarchy(KES);
+
+    @Before
+    public void setUp() throws Exception {
+
+        hierarchy.group("5000", "Expenses", DEBIT);
+        hierarchy.group("5200", "Marketing", DEBIT, "5000");
+        hierarchy.group("5300", "Utilities", DEBIT, "5000");
+    }
+
+    @Test
+    public void postingsRollUpIntoEveryAncestor() throws Exception {
+
+        hierarchy.attach("5200", advertisement);
+        hierarchy.attach("5200", sponsorships);
+        hierarchy.attach("5300", electricity);
+
+        pay(advertisement, 200, 2017, 11, 2);
+        pay(sponsorships, 150, 2017, 12, 5);
+        pay(electricity, 80, 2018, 1, 10);
+
+        assertEquals(newBalance(shilling(350), DEBIT), hierarchy.balance("5200", on(2018, 1, 31)));
+        assertEquals(newBalance(shilling(80), DEBIT), hierarchy.balance("5300", on(2018, 1, 31)));
+        assertEquals(newBalance(shilling(430), DEBIT), hierarchy.balance("5000", on(2018, 1, 31)));
+        assertEquals(newBalance(shilling(200), DEBIT), hierarchy.balance("5000", on(2017, 11, 30)));
+        assertEquals(0, hierarchy.getGroup("5000").balanceInMinorUnits(EpochDays.of(on(2017, 11, 1))));
+    }
+
+    @Test
+    public void balancesAsAtDatesAreReadFromEitherEnd() throws Exception {
+
+        hierarchy.attach("5200", advertisement);
+
+        for (int day = 1; day <= 28; day++) {
+            pay(advertisement, day, 2018, 2, day);
+        }
+
+        ControlAccount marketing = hierarchy.getGroup("5200");
+        assertEquals(600, marketing.balanceInMinorUnits(EpochDays.of(on(2018, 2, 3))));
+        assertEquals(35100, marketing.balanceInMinorUnits(EpochDays.of(on(2018, 2, 26))));
+        assertEquals(40600, marketing.getTotalInMinorUnits());
+    }
+
+    @Test
+    public void existingEntriesAreAddedOnAttachment() throws Exception {
+
+        pay(advertisement, 200, 2017, 11, 2);
+
+        hierarchy.attach("5200", advertisement);
+        pay(advertisement, 50, 2017, 11, 3);
+
+        assertEquals(25000, hierarchy.getGroup("5000").getTotalInMinorUnits());
+    }
+
+    @Test
+    public void concurrentPostingsAreAllCounted() throws Exception {
+
+        hierarchy.attach("5200", advertisement);
+        hierarchy.attach("5200", sponsorships);
+        hierarchy.attach("5300", electricity);
+
+        SimpleAccount[] accounts = {advertisement, sponsorships, electricity};
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        for (int i = 0; i < 300; i++) {
+            SimpleAccount account = accounts[i % accounts.length];
+            int day = 1 + i % 28;
+            executor.execute(() -> {
+                try {
+                    pay(account, 10, 2018, 3, day);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+
+        assertEquals(300 * 1000, hierarchy.getGroup("5000").balanceInMinorUnits(EpochDays.of(on(2018, 3, 31))));
+        assertEquals(200 * 1000, hierarchy.getGroup("5200").getTotalInMinorUnits());
+    }
+
+    @Test
+    public void postingsRacingTheAttachmentAreCountedOnce() throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 400; i++) {
+            int day = 1 + i % 28;
+            executor.execute(() -> {
+                try {
+                    pay(advertisement, 10, 2018, 3, day);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+
+        hierarchy.attach("5200", advertisement);
+
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+
+        assertEquals(400 * 1000, hierarchy.getGroup("5200").getTotalInMinorUnits());
+        assertEquals(400 * 1000, hierarchy.getGroup("5000").balanceInMinorUnits(EpochDays.of(on(2018, 3, 31))));
+    }
+
+    @Test(expected = MismatchedCurrencyException.class)
+    public void accountsMustBeInTheCurrencyOfTheHierarchy() throws Exception {
+
+        hierarchy.attach("5200", new SimpleAccount(DEBIT, Currency.getInstance("USD"), accountDetails("Dollar adverts", "5282", on(2017, 3, 31))));
+    }
+
+    private void pay(SimpleAccount expense, double amount, int year, int month, int day) throws Exception {
+
+        Transaction payment = getTransaction("Payment", on(year, month, day), KES);
+        payment.addEntry(DEBIT, shilling(amount), expense, details("Payment"));
+        payment.addEntry(CREDIT, shilling(amount), chequeAccount, details("Payment"));
+        payment.post();
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.period;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.storage.ArchiveReader;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.UnableToPostException;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
+import io.github.ghacupha.time.point.TimePoint;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleEntry.makeEntry;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.keeper.book.period.PeriodClose.periodClose;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PeriodCloseTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private static final int END_OF_2018 = EpochDays.of(on(2018, 12, 31));
+
+    private final SimpleAccount sales = new SimpleAccount(CREDIT, KES, accountDetails("Sales", "4000", on(2017, 1, 1)));
+    private final SimpleAccount advertisement = new SimpleAccount(DEBIT, KES, accountDetails("Advertisements", "5280", on(2017, 1, 1)));
+    private final SimpleAccount cash = new SimpleAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2017, 1, 1)));
+    private final SimpleAccount retainedEarnings = new SimpleAccount(CREDIT, KES, accountDetails("Retained Earnings", "3000", on(2017, 1, 1)));
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path archiveDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+
+        archiveDirectory = temporaryFolder.newFolder("archives").toPath();
+
+        transfer("Sales", on(2017, 3, 12), cash, sales, 1000);
+        transfer("Billboards", on(2017, 11, 2), advertisement, cash, 300);
+        transfer("Sales", on(2018, 2, 5), cash, sales, 200);
+    }
+
+    private void transfer(String label, TimePoint date, SimpleAccount debit, SimpleAccount credit, double amount) throws Exception {
+
+        Transaction transaction = getTransaction(label, date, KES);
+        transaction.addEntry(DEBIT, shilling(amount), debit, details(label));
+        transaction.addEntry(CREDIT, shilling(amount), credit, details(label));
+        transaction.post();
+    }
+
+    @Test
+    public void nominalAccountsAreClosedIntoRetainedEarnings() throws Exception {
+
+        periodClose(retainedEarnings, archiveDirectory).nominal(sales, advertisement).carryForward(cash).close(on(2018, 1, 1));
+
+        assertEquals(-70000, retainedEarnings.balanceInMinorUnits(END_OF_2018));
+        assertEquals(-20000, sales.balanceInMinorUnits(END_OF_2018));
+        assertEquals(0, advertisement.balanceInMinorUnits(END_OF_2018));
+        assertEquals(90000, cash.balanceInMinorUnits(END_OF_2018));
+    }
+
+    @Test
+    public void closedEntriesAreCompactedIntoOneCarriedForwardEntry() throws Exception {
+
+        periodClose(retainedEarnings, archiveDirectory).nominal(sales, advertisement).carryForward(cash).close(on(2018, 1, 1));
+
+        // nominal accounts are left with the open period alone, the others with their balance brought forward
+        assertEquals(1, sales.getEntries().size());
+        assertEquals(0, advertisement.getEntries().size());
+        assertEquals(2, cash.getEntries().size());
+        assertEquals(1, retainedEarnings.getEntries().size());
+
+        assertEquals(on(2017, 12, 31), cash.getEntries().get(0).getBookingDate());
+        assertEquals("Balance brought forward", cash.getEntries().get(0).getEntryDetails().getNarration());
+        assertEquals(70000, cash.balanceInMinorUnits(EpochDays.of(on(2017, 12, 31))));
+    }
+
+    @Test
+    public void closedEntriesRemainQueryableInTheArchive() throws Exception {
+
+        Map<String, Path> archives = periodClose(retainedEarnings, archiveDirectory).nominal(sales, advertisement).carryForward(cash).close(on(2018, 1, 1));
+
+        assertEquals(4, archives.size());
+
+        try (ArchiveReader reader = ArchiveReader.open(archives.get("1000"))) {
+            assertEquals(2, reader.getEntryCount());
+            assertEquals(100000, reader.balanceInMinorUnits(EpochDays.of(on(2017, 1, 1)), EpochDays.of(on(2017, 6, 30))));
+            assertEquals(70000, reader.balanceInMinorUnits(EpochDays.of(on(2017, 1, 1)), EpochDays.of(on(2017, 12, 31))));
+        }
+
+        try (ArchiveReader reader = ArchiveReader.open(archives.get("4000"))) {
+            // the sale and the closing entry
+            assertEquals(2, reader.getEntryCount());
+            assertEquals(0, reader.balanceInMinorUnits(EpochDays.of(on(2017, 1, 1)), EpochDays.of(on(2017, 12, 31))));
+        }
+    }
+
+    @Test
+    public void closedPeriodsRefuseNewEntries() throws Exception {
+
+        periodClose(retainedEarnings, archiveDirectory).nominal(sales, advertisement).carryForward(cash).close(on(2018, 1, 1));
+
+        try {
+            cash.addEntry(makeEntry(DEBIT, cash, shilling(10), on(2017, 12, 15), details("Late receipt")));
+            fail("An entry booked in a closed period should be refused");
+        } catch (UntimelyBookingDateException expected) {
+            assertFalse(expected.getMessage().isEmpty());
+        }
+
+        assertEquals(90000, cash.balanceInMinorUnits(END_OF_2018));
+    }
+
+    @Test
+    public void transactionsBackdatedIntoAClosedPeriodPostNothing() throws Exception {
+
+        periodClose(retainedEarnings, archiveDirectory).nominal(sales, advertisement).carryForward(cash).close(on(2018, 1, 1));
+
+        SimpleAccount suspense = new SimpleAccount(DEBIT, KES, accountDetails("Suspense", "1900", on(2017, 1, 1)));
+        Transaction transaction = getTransaction("Late payment", on(2017, 12, 15), KES);
+        transaction.addEntry(DEBIT, shilling(10), suspense, details("Late payment"));
+        transaction.addEntry(CREDIT, shilling(10), cash, details("Late payment"));
+
+        try {
+            transaction.post();
+            fail("A transaction booked in a closed period should be refused");
+        } catch (UnableToPostException expected) {
+            assertFalse(expected.getMessage().isEmpty());
+        }
+
+        assertTrue(suspense.getEntries().isEmpty());
+        assertEquals(90000, cash.balanceInMinorUnits(END_OF_2018));
+    }
+
+    @Test
+    public void entriesRacingTheCloseAreEitherArchivedOrRefused() throws Exception {
+
+        List<Entry> accepted = new CopyOnWriteArrayList<>();
+        AtomicBoolean closing = new AtomicBoolean(true);
+
+        Thread poster = new Thread(() -> {
+            for (int i = 0; closing.get() || i < 100; i++) {
+                Entry entry = makeEntry(DEBIT, cash, shilling(1), on(2017, 12, 1 + i % 28), details("Late receipt " + i));
+                try {
+                    cash.addEntry(entry);
+                    accepted.add(entry);
+                } catch (Exception refused) {
+                    // booked in the period closed meanwhile
+                }
+            }
+        });
+        poster.start();
+
+        List<Entry> replaced = cash.compact(on(2018, 1, 1), details("Carried forward"));
+        closing.set(false);
+        poster.join();
+
+        for (Entry entry : accepted) {
+            assertTrue(entry + " should have been compacted", replaced.contains(entry));
+        }
+        assertEquals(90000 + 100 * accepted.size(), cash.balanceInMinorUnits(END_OF_2018));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.query;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.base.EntryDetails;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.time.point.TimePoint;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.keeper.book.query.EntryQuery.over;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+
+public class EntryQueryTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private static final String INVOICE = "invoice";
+
+    private final SimpleAccount advertisement = new SimpleAccount(DEBIT, KES, accountDetails("Advertisements", "5280", on(2017, 1, 1)));
+    private final SimpleAccount chequeAccount = new SimpleAccount(CREDIT, KES, accountDetails("Cheque", "5282", on(2017, 1, 1)));
+
+    private final AttributeIndex invoices = new AttributeIndex(INVOICE);
+
+    @Before
+    public void setUp() throws Exception {
+
+        invoices.watch(advertisement);
+
+        // a payment on every day of 2017, of 10 to 1000 shillings, and a refund of every tenth
+        for (int day = 0; day < 365; day++) {
+            TimePoint date = on(2017, 1 + day / 31 % 12, 1 + day % 28);
+            double amount = 10 + (day * 37) % 991;
+            pay(date, advertisement, chequeAccount, amount, "INV-" + day);
+            if (day % 10 == 0) {
+                pay(date, chequeAccount, advertisement, amount, "INV-" + day);
+            }
+        }
+    }
+
+    private void pay(TimePoint date, SimpleAccount debit, SimpleAccount credit, double amount, String invoice) throws Exception {
+
+        EntryDetails details = details("Payment of " + invoice);
+        details.setAttribute(INVOICE, invoice);
+
+        Transaction transaction = getTransaction("Payment", date, KES);
+        transaction.addEntry(DEBIT, shilling(amount), debit, details);
+        transaction.addEntry(CREDIT, shilling(amount), credit, details);
+        transaction.post();
+    }
+
+    private static List<Entry> bruteForce(Predicate<Entry> filter, SimpleAccount... accounts) {
+
+        return Stream.of(accounts).flatMap(account -> account.getEntries().stream()).filter(filter).collect(Collectors.toList());
+    }
+
+    private static List<Long> ids(Stream<Entry> entries) {
+
+        return entries.map(Entry::getId).sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    public void wideQueriesScanTheColumns() throws Exception {
+
+        EntryQuery query = over(advertisement, chequeAccount).side(DEBIT).amountBetween(shilling(100), shilling(500));
+
+        assertEquals(Arrays.asList("5280: column scan", "5282: column scan"), query.explain());
+
+        List<Entry> expected = bruteForce(entry -> entry.getAccountSide() == DEBIT && MinorUnits.of(entry.getAmount()) >= 10000 && MinorUnits.of(entry.getAmount()) <= 50000,
+            advertisement, chequeAccount);
+        assertEquals(ids(expected.stream()), ids(query.stream()));
+    }
+
+    @Test
+    public void narrowDateRangesUseTheTimeline() throws Exception {
+
+        EntryQuery query = over(advertisement).side(CREDIT).between(on(2017, 3, 1), on(2017, 3, 31));
+
+        assertEquals(Arrays.asList("5280: date index"), query.explain());
+
+        List<Entry> expected = bruteForce(entry -> entry.getAccountSide() == CREDIT && entry.getBookingDate().toString().startsWith("2017-03"), advertisement);
+        assertEquals(ids(expected.stream()), ids(query.stream()));
+        assertEquals(expected.size(), query.stream().count());
+    }
+
+    @Test
+    public void attributeFiltersUseTheIndex() throws Exception {
+
+        EntryQuery query = over(advertisement, chequeAccount).attribute(INVOICE, "INV-120").using(invoices);
+
+        // only the advertisements account is indexed, so the cheque account is scanned
+        assertEquals(Arrays.asList("5280: attribute index on invoice", "5282: column scan"), query.explain());
+        assertEquals(2, query.stream().filter(entry -> entry.getAccountSide() == DEBIT).count());
+        assertEquals(4, query.stream().count());
+
+        EntryQuery unindexed = over(advertisement, chequeAccount).attribute(INVOICE, "INV-120");
+        assertEquals(Arrays.asList("5280: column scan", "5282: column scan"), unindexed.explain());
+        assertEquals(4, unindexed.stream().count());
+    }
+
+    @Test
+    public void filtersTheIndexCannotDecideAreCheckedOnTheEntries() throws Exception {
+
+        List<Entry> found = over(advertisement).attribute(INVOICE, "INV-120").side(CREDIT).using(invoices).stream().collect(Collectors.toList());
+
+        assertEquals(1, found.size());
+        assertEquals(CREDIT, found.get(0).getAccountSide());
+    }
+
+    @Test
+    public void theIndexOnlyYieldsEntriesStillInTheAccount() throws Exception {
+
+        advertisement.compact(on(2017, 7, 1), details("Carried forward"));
+
+        // INV-120 was paid in April, which has been closed, while INV-300 was paid in October
+        EntryQuery closed = over(advertisement).attribute(INVOICE, "INV-120").using(invoices);
+        assertEquals(Arrays.asList("5280: attribute index on invoice"), closed.explain());
+        assertEquals(0, closed.stream().count());
+        assertEquals(2, over(advertisement).attribute(INVOICE, "INV-300").using(invoices).stream().count());
+    }
+}
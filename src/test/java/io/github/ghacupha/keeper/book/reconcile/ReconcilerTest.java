@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.reconcile;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.base.EntryDetails;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.keeper.book.reconcile.BankStatementLine.bankLine;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReconcilerTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private SimpleAccount chequeAccount = new SimpleAccount(CREDIT, KES, accountDetails("Cheque", "5282", on(2017, 3, 31)));
+    private SimpleAccount expenses = new SimpleAccount(DEBIT, KES, accountDetails("Expenses", "5280", on(2017, 3, 31)));
+
+    @Before
+    public void setUp() throws Exception {
+
+        pay(200, 2, "004512");
+        pay(200, 3, "004513");
+        pay(350, 10, "004514");
+        pay(75, 20, "004515");
+    }
+
+    private void pay(double amount, int day, String cheque) throws Exception {
+
+        EntryDetails details = details("CHQ " + cheque);
+        details.setAttribute("cheque", cheque);
+
+        Transaction payment = getTransaction("Payment " + cheque, on(2017, 11, day), KES);
+        payment.addEntry(DEBIT, shilling(amount), expenses, details("Payment " + cheque));
+        payment.addEntry(CREDIT, shilling(amount), chequeAccount, details);
+        payment.post();
+    }
+
+    @Test
+    public void linesAreMatchedWithinTheDateTolerance() throws Exception {
+
+        List<BankStatementLine> lines = Arrays.asList(
+            bankLine(on(2017, 11, 12), CREDIT, shilling(350), null),
+            bankLine(on(2017, 11, 25), CREDIT, shilling(75), null),
+            bankLine(on(2017, 11, 28), CREDIT, shilling(90), null));
+
+        ReconciliationResult result = new Reconciler(3, null).reconcile(chequeAccount, lines);
+
+        assertEquals(1, result.getMatched().size());
+        assertEquals(shilling(350), result.getMatched().get(0).getEntry().getAmount());
+        assertEquals(2, result.getUnmatchedLines().size());
+        assertTrue(result.getAmbiguous().isEmpty());
+        assertEquals(3, result.getUnmatchedEntries().size());
+    }
+
+    @Test
+    public void equalAmountsAreAmbiguousUnlessTheDateOrReferenceDecides() throws Exception {
+
+        List<BankStatementLine> lines = Collections.singletonList(bankLine(on(2017, 11, 4), CREDIT, shilling(200), null));
+
+        ReconciliationResult withoutReferences = new Reconciler(5, null).reconcile(chequeAccount, lines);
+        assertEquals(1, withoutReferences.getAmbiguous().size());
+        assertEquals(2, withoutReferences.getAmbiguous().get(0).getCandidates().size());
+        assertEquals(2, withoutReferences.getUnmatchedEntries().size());
+
+        ReconciliationResult onTheDay = new Reconciler(5, null).reconcile(chequeAccount, Collections.singletonList(bankLine(on(2017, 11, 3), CREDIT, shilling(200), null)));
+        assertEquals(1, onTheDay.getMatched().size());
+        assertEquals(on(2017, 11, 3), onTheDay.getMatched().get(0).getEntry().getBookingDate());
+
+        ReconciliationResult byReference = new Reconciler(5, "cheque").reconcile(chequeAccount, Collections.singletonList(bankLine(on(2017, 11, 4), CREDIT, shilling(200), "004512")));
+        assertEquals(1, byReference.getMatched().size());
+        assertEquals(on(2017, 11, 2), byReference.getMatched().get(0).getEntry().getBookingDate());
+    }
+
+    @Test
+    public void accountsAreReconciledTogether() throws Exception {
+
+        Map<Account, List<BankStatementLine>> statements = new HashMap<>();
+        statements.put(chequeAccount, Arrays.asList(
+            bankLine(on(2017, 11, 2), CREDIT, shilling(200), "004512"),
+            bankLine(on(2017, 11, 3), CREDIT, shilling(200), "004513"),
+            bankLine(on(2017, 11, 10), CREDIT, shilling(350), "004514"),
+            bankLine(on(2017, 11, 21), CREDIT, shilling(75), "004515")));
+        statements.put(expenses, Collections.singletonList(bankLine(on(2017, 11, 10), DEBIT, shilling(350), null)));
+
+        Map<Account, ReconciliationResult> results = new Reconciler(1, "cheque").reconcile(statements);
+
+        assertTrue(results.get(chequeAccount).isReconciled());
+        assertEquals(1, results.get(expenses).getMatched().size());
+        assertEquals(3, results.get(expenses).getUnmatchedEntries().size());
+    }
+}
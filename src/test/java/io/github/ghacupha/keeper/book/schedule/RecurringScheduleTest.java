@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.schedule;
+
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.schedule.RecurringSchedule.balance;
+import static io.github.ghacupha.keeper.book.schedule.RecurringSchedule.schedule;
+import static io.github.ghacupha.keeper.book.schedule.ScheduledAmount.fixed;
+import static io.github.ghacupha.keeper.book.schedule.ScheduledAmount.straightLine;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class RecurringScheduleTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private SimpleAccount rent = new SimpleAccount(DEBIT, KES, accountDetails("Rent", "5290", on(2017, 1, 1)));
+    private SimpleAccount accruals = new SimpleAccount(CREDIT, KES, accountDetails("Accruals", "2100", on(2017, 1, 1)));
+
+    private List<RecurringSchedule> schedules;
+
+    private RecurringSchedule rentAccrual;
+
+    @Before
+    public void setUp() throws Exception {
+
+        rentAccrual = schedule("Rent accrual", Recurrence.monthly(on(2017, 1, 31), Recurrence.UNBOUNDED), fixed(shilling(1000)), rent, accruals, details("Monthly rent accrual"));
+        schedules = Collections.singletonList(rentAccrual);
+    }
+
+    @Test
+    public void balancesIncludeDueOccurrencesWithoutPostingThem() throws Exception {
+
+        assertEquals(newBalance(shilling(0), DEBIT), balance(rent, on(2017, 1, 30), schedules));
+        assertEquals(newBalance(shilling(2000), DEBIT), balance(rent, on(2017, 2, 28), schedules));
+        assertEquals(newBalance(shilling(12000), CREDIT), balance(accruals, on(2017, 12, 31), schedules));
+        assertEquals(newBalance(shilling(1_000_000), DEBIT), balance(rent, on(2100, 4, 30), schedules));
+        assertEquals(0, rent.getEntries().size());
+    }
+
+    @Test
+    public void postedOccurrencesAreNotCountedTwice() throws Exception {
+
+        assertEquals(3, rentAccrual.post(on(2017, 3, 31)));
+        assertEquals(3, rent.getEntries().size());
+
+        assertEquals(newBalance(shilling(3000), DEBIT), rent.balance(2017, 3, 31));
+        assertEquals(newBalance(shilling(5000), DEBIT), balance(rent, on(2017, 5, 31), schedules));
+        assertEquals(0, rentAccrual.post(on(2017, 3, 31)));
+    }
+
+    @Test
+    public void entriesAreCreatedForThePeriodOnly() throws Exception {
+
+        RecurringSchedule prepayment = schedule("Insurance", Recurrence.monthly(on(2017, 1, 1), 12), straightLine(shilling(1000), 12), rent, accruals, details("Insurance"));
+
+        assertEquals(6, prepayment.entries(on(2017, 4, 1), on(2017, 6, 30)).count());
+        assertEquals(shilling(83.34), prepayment.entries(on(2017, 1, 1), on(2017, 1, 31)).findFirst().get().getAmount());
+        assertEquals(shilling(83.33), prepayment.entries(on(2017, 12, 1), on(2017, 12, 31)).findFirst().get().getAmount());
+        assertEquals(newBalance(shilling(1000), DEBIT), balance(rent, on(2018, 12, 31), Collections.singletonList(prepayment)));
+    }
+
+    @Test
+    public void totalsAreSpreadOnlyOverABoundedNumberOfOccurrences() throws Exception {
+
+        ScheduledAmount refund = straightLine(shilling(-0.07), 3);
+        assertEquals(-3, refund.amountInMinorUnits(0));
+        assertEquals(-2, refund.amountInMinorUnits(2));
+        assertEquals(-7, refund.totalInMinorUnits(3));
+
+        for (int occurrences : new int[]{0, -1, Recurrence.UNBOUNDED}) {
+            try {
+                straightLine(shilling(1000), occurrences);
+                fail("A total cannot be spread over " + occurrences + " occurrences");
+            } catch (IllegalArgumentException expected) {
+                // refused
+            }
+        }
+    }
+}
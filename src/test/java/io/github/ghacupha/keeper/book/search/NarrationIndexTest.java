@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.search;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.time.point.DateRange;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Currency;
+import java.util.List;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.keeper.book.util.EpochDayRange.between;
+import static io.github.ghacupha.keeper.book.util.EpochDayRange.upTo;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NarrationIndexTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private SimpleAccount advertisement = new SimpleAccount(DEBIT, KES, accountDetails("Advertisements", "5280", on(2017, 3, 31)));
+    private SimpleAccount vat = new SimpleAccount(CREDIT, KES, accountDetails("VAT", "5281", on(2017, 3, 31)));
+    private SimpleAccount chequeAccount = new SimpleAccount(CREDIT, KES, accountDetails("Cheque", "5282", on(2017, 3, 31)));
+
+    private NarrationIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+
+        Transaction payForBillBoards = getTransaction("BillboardsPayment", on(2017, 11, 2), KES);
+        payForBillBoards.addEntry(DEBIT, shilling(200), advertisement, details("Billboards ltd inv 10"));
+        payForBillBoards.addEntry(CREDIT, shilling(32), vat, details("VAT for billBoards"));
+        payForBillBoards.addEntry(CREDIT, shilling(168), chequeAccount, details("CHQ 004512 IFO Billboards Ltd"));
+        payForBillBoards.post();
+
+        index = new NarrationIndex();
+        index.watch(advertisement);
+        index.watch(vat);
+        index.watch(chequeAccount);
+    }
+
+    @Test
+    public void existingEntriesAreIndexed() throws Exception {
+
+        assertEquals(3, index.size());
+        assertEquals(3, index.search("billboards").size());
+        assertEquals(3, index.search("BILLBOARDS").size());
+        assertTrue(index.search("radio").isEmpty());
+    }
+
+    @Test
+    public void termsAreCombinedWithAnd() throws Exception {
+
+        List<Entry> found = index.search("chq billboards");
+
+        assertEquals(1, found.size());
+        assertEquals("CHQ 004512 IFO Billboards Ltd", found.get(0).getEntryDetails().getNarration());
+        assertTrue(index.search("chq vat").isEmpty());
+    }
+
+    @Test
+    public void prefixQueries() throws Exception {
+
+        assertEquals(1, index.search("0045*").size());
+        assertEquals(3, index.search("bill*").size());
+        assertEquals(1, index.search("bill* inv").size());
+    }
+
+    @Test
+    public void newPostingsAreIndexedIncrementally() throws Exception {
+
+        Transaction reversal = getTransaction("Tax reversal", on(2018, 4, 20), KES);
+        reversal.addEntry(DEBIT, shilling(45), vat, details("Reversal of Excess VAT"));
+        reversal.addEntry(CREDIT, shilling(45), advertisement, details("Reversal of Excess VAT"));
+        reversal.post();
+
+        assertEquals(5, index.size());
+        assertEquals(2, index.search("reversal").size());
+        assertEquals(3, index.search("vat").size());
+    }
+
+    @Test
+    public void searchIsFilteredByAccountAndDateRange() throws Exception {
+
+        Transaction reversal = getTransaction("Tax reversal", on(2018, 4, 20), KES);
+        reversal.addEntry(DEBIT, shilling(45), vat, details("Reversal of Excess VAT"));
+        reversal.addEntry(CREDIT, shilling(45), advertisement, details("Reversal of Excess VAT"));
+        reversal.post();
+
+        assertEquals(2, index.search("vat", vat).size());
+        assertEquals(1, index.search("vat", vat, new DateRange(on(2018, 1, 1), on(2018, 12, 31))).size());
+        assertEquals(1, index.search("vat", null, new DateRange(on(2017, 1, 1), on(2017, 12, 31))).size());
+    }
+
+    @Test
+    public void searchIsFilteredByEpochDayRange() throws Exception {
+
+        Transaction reversal = getTransaction("Tax reversal", on(2018, 4, 20), KES);
+        reversal.addEntry(DEBIT, shilling(45), vat, details("Reversal of Excess VAT"));
+        reversal.addEntry(CREDIT, shilling(45), advertisement, details("Reversal of Excess VAT"));
+        reversal.post();
+
+        assertEquals(1, index.search("vat", vat, between(on(2018, 1, 1), on(2018, 12, 31))).size());
+        assertEquals(1, index.search("vat", null, between(on(2017, 11, 2), on(2018, 4, 19))).size());
+        assertEquals(3, index.search("vat", null, upTo(on(2018, 4, 20))).size());
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.shard;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.PostingError;
+import io.github.ghacupha.keeper.book.util.UnableToPostException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.shard.ShardLeg.leg;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ShardCoordinatorTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private static final int NOVEMBER = EpochDays.of(on(2017, 11, 30));
+
+    private final ShardMap shardMap = new ShardMap(3);
+
+    private final ShardEngine[] engines = {new ShardEngine(0), new ShardEngine(1), new ShardEngine(2)};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path logFile;
+
+    private DecisionLog decisionLog;
+
+    // account numbers chosen to fall in different shards
+    private String advertisement;
+    private String vat;
+    private String cheque;
+
+    @Before
+    public void setUp() throws Exception {
+
+        logFile = temporaryFolder.getRoot().toPath().resolve("decisions.log");
+        decisionLog = DecisionLog.open(logFile);
+
+        String[] numbers = new String[3];
+        for (int i = 5000; numbers[0] == null || numbers[1] == null || numbers[2] == null; i++) {
+            String number = String.valueOf(i);
+            numbers[shardMap.shardOf(number)] = numbers[shardMap.shardOf(number)] == null ? number : numbers[shardMap.shardOf(number)];
+        }
+        advertisement = numbers[0];
+        vat = numbers[1];
+        cheque = numbers[2];
+
+        open(advertisement, "Advertisements", DEBIT);
+        open(vat, "VAT", CREDIT);
+        open(cheque, "Cheque", CREDIT);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        decisionLog.close();
+    }
+
+    private void open(String number, String name, AccountSide side) {
+        engines[shardMap.shardOf(number)].open(new SimpleAccount(side, KES, accountDetails(name, number, on(2017, 3, 31))));
+    }
+
+    private long balance(String number) {
+        return engines[shardMap.shardOf(number)].account(number).balanceInMinorUnits(NOVEMBER);
+    }
+
+    private ShardPosting payForBillBoards(String chequeAccount) {
+        return new ShardPosting("BillboardsPayment", on(2017, 11, 2), KES, Arrays.asList(
+            leg(advertisement, DEBIT, 20000, "Billboards ltd inv 10"),
+            leg(vat, CREDIT, 3200, "VAT for billBoards"),
+            leg(chequeAccount, CREDIT, 16800, "CHQ IFO Billboards Ltd")));
+    }
+
+    @Test
+    public void transactionsSpanningShardsAreCommittedEverywhere() throws Exception {
+
+        ShardCoordinator coordinator = new ShardCoordinator(shardMap, new LoopbackTransport(engines), decisionLog);
+
+        assertTrue(coordinator.post(payForBillBoards(cheque)) > 0);
+
+        assertEquals(20000, balance(advertisement));
+        assertEquals(-3200, balance(vat));
+        assertEquals(-16800, balance(cheque));
+        assertTrue(decisionLog.pending().isEmpty());
+    }
+
+    @Test
+    public void aRefusingShardAbortsTheWholeTransaction() throws Exception {
+
+        ShardCoordinator coordinator = new ShardCoordinator(shardMap, new LoopbackTransport(engines), decisionLog);
+
+        try {
+            coordinator.post(payForBillBoards("no-such-account"));
+            fail("The transaction should have been refused");
+        } catch (UnableToPostException expected) {
+            assertTrue(expected.getMessage().contains(PostingError.UNKNOWN_ACCOUNT.getDescription()));
+        }
+
+        assertEquals(0, balance(advertisement));
+        assertEquals(0, balance(vat));
+        for (ShardEngine engine : engines) {
+            assertEquals(0, engine.getPrepared());
+        }
+    }
+
+    @Test
+    public void decisionsThatDidNotArriveAreDeliveredOnRecovery() throws Exception {
+
+        LoopbackTransport loopback = new LoopbackTransport(engines);
+        int unreachable = shardMap.shardOf(cheque);
+
+        ShardTransport flaky = new ForwardingTransport(loopback) {
+            @Override
+            public boolean commit(int shard, long transactionId) throws IOException {
+                if (shard == unreachable) {
+                    throw new IOException("Connection refused");
+                }
+                return super.commit(shard, transactionId);
+            }
+        };
+
+        new ShardCoordinator(shardMap, flaky, decisionLog).post(payForBillBoards(cheque));
+
+        assertEquals(20000, balance(advertisement));
+        assertEquals(0, balance(cheque));
+        decisionLog.close();
+
+        // A new coordinator reads the decision back from the log
+        decisionLog = DecisionLog.open(logFile);
+        assertEquals(1, decisionLog.pending().size());
+
+        assertEquals(0, new ShardCoordinator(shardMap, loopback, decisionLog).recover());
+        assertEquals(-16800, balance(cheque));
+        assertEquals(20000, balance(advertisement));
+    }
+
+    @Test
+    public void periodsCannotCloseUnderAPreparedLeg() throws Exception {
+
+        int closing = shardMap.shardOf(cheque);
+        SimpleAccount chequeAccount = engines[closing].account(cheque);
+        List<Entry> compacted = new CopyOnWriteArrayList<>();
+        Thread[] compaction = new Thread[1];
+
+        // the period of the cheque account is closed between its vote and the decision
+        ShardTransport transport = new ForwardingTransport(new LoopbackTransport(engines)) {
+            @Override
+            public PostingError prepare(int shard, long transactionId, ShardPosting posting) throws IOException {
+                PostingError error = super.prepare(shard, transactionId, posting);
+                if (shard == closing) {
+                    compaction[0] = new Thread(() -> compacted.addAll(chequeAccount.compact(on(2017, 12, 1), details("Carried forward"))));
+                    compaction[0].start();
+                    try {
+                        compaction[0].join(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    assertTrue("The close should wait for the decision", compaction[0].isAlive());
+                }
+                return error;
+            }
+        };
+
+        ShardCoordinator coordinator = new ShardCoordinator(shardMap, transport, decisionLog);
+        coordinator.post(payForBillBoards(cheque));
+        compaction[0].join();
+
+        assertEquals(1, compacted.size());
+        assertEquals(-16800, balance(cheque));
+        assertEquals(0, engines[closing].getPrepared());
+        assertTrue(decisionLog.pending().isEmpty());
+    }
+
+    @Test
+    public void preparedLegsSurviveARestartOfTheShard() throws Exception {
+
+        int restarting = shardMap.shardOf(cheque);
+        SimpleAccount chequeAccount = engines[restarting].account(cheque);
+        Path prepareLogFile = temporaryFolder.getRoot().toPath().resolve("shard-" + restarting + ".log");
+        PrepareLog prepareLog = PrepareLog.open(prepareLogFile, ShardEngine.COMMITS_KEPT);
+        engines[restarting] = new ShardEngine(restarting, prepareLog);
+        engines[restarting].open(chequeAccount);
+
+        // the shard restarts between its vote and the decision, which does not reach it
+        ShardTransport transport = new ForwardingTransport(new LoopbackTransport(engines)) {
+            @Override
+            public boolean commit(int shard, long transactionId) throws IOException {
+                if (shard == restarting) {
+                    throw new IOException("Connection reset");
+                }
+                return super.commit(shard, transactionId);
+            }
+        };
+        long transactionId = new ShardCoordinator(shardMap, transport, decisionLog).post(payForBillBoards(cheque));
+
+        prepareLog.close();
+        prepareLog = PrepareLog.open(prepareLogFile, ShardEngine.COMMITS_KEPT);
+        engines[restarting] = new ShardEngine(restarting, prepareLog);
+        engines[restarting].open(chequeAccount);
+        assertEquals(1, engines[restarting].getPrepared());
+
+        assertEquals(0, new ShardCoordinator(shardMap, new LoopbackTransport(engines), decisionLog).recover());
+        assertEquals(-16800, balance(cheque));
+
+        // a commit delivered again after a further restart is acknowledged without posting twice
+        prepareLog.close();
+        prepareLog = PrepareLog.open(prepareLogFile, ShardEngine.COMMITS_KEPT);
+        engines[restarting] = new ShardEngine(restarting, prepareLog);
+        engines[restarting].open(chequeAccount);
+        assertEquals(0, engines[restarting].getPrepared());
+        assertTrue(engines[restarting].commit(transactionId));
+        assertEquals(-16800, balance(cheque));
+        prepareLog.close();
+    }
+
+    @Test
+    public void preparesWithoutADecisionAreAbortedOnRecovery() throws Exception {
+
+        ShardEngine engine = engines[shardMap.shardOf(advertisement)];
+        engine.prepare(42, new ShardPosting("BillboardsPayment", on(2017, 11, 2), KES, Arrays.asList(leg(advertisement, DEBIT, 20000, "Billboards ltd inv 10"))));
+        assertEquals(1, engine.getPrepared());
+
+        // the coordinator stopped before logging a decision on transaction 42
+        assertEquals(0, new ShardCoordinator(shardMap, new LoopbackTransport(engines), decisionLog).recover());
+
+        assertEquals(0, engine.getPrepared());
+        assertEquals(0, balance(advertisement));
+    }
+
+    @Test
+    public void shardsCanBeServedOverLoopbackSockets() throws Exception {
+
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        ShardServer[] servers = new ShardServer[engines.length];
+        InetSocketAddress[] addresses = new InetSocketAddress[engines.length];
+        for (int shard = 0; shard < engines.length; shard++) {
+            servers[shard] = new ShardServer(engines[shard], loopback, 0);
+            addresses[shard] = new InetSocketAddress(loopback, servers[shard].getPort());
+        }
+
+        try (SocketTransport transport = new SocketTransport(Arrays.asList(addresses))) {
+
+            ShardCoordinator coordinator = new ShardCoordinator(shardMap, transport, decisionLog);
+            coordinator.post(payForBillBoards(cheque));
+
+            // single shard fast path
+            coordinator.post(new ShardPosting("Contra", on(2017, 11, 3), KES, Arrays.asList(leg(vat, DEBIT, 100, "Contra"), leg(vat, CREDIT, 100, "Contra"))));
+
+        } finally {
+            for (ShardServer server : servers) {
+                server.close();
+            }
+        }
+
+        assertEquals(20000, balance(advertisement));
+        assertEquals(-3200, balance(vat));
+        assertEquals(3, engines[shardMap.shardOf(vat)].account(vat).getEntries().size());
+    }
+
+    private static class ForwardingTransport implements ShardTransport {
+
+        private final ShardTransport delegate;
+
+        private ForwardingTransport(ShardTransport delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public PostingError prepare(int shard, long transactionId, ShardPosting posting) throws IOException {
+            return delegate.prepare(shard, transactionId, posting);
+        }
+
+        @Override
+        public boolean commit(int shard, long transactionId) throws IOException {
+            return delegate.commit(shard, transactionId);
+        }
+
+        @Override
+        public void abort(int shard, long transactionId) throws IOException {
+            delegate.abort(shard, transactionId);
+        }
+
+        @Override
+        public long[] prepared(int shard) throws IOException {
+            return delegate.prepared(shard);
+        }
+
+        @Override
+        public PostingError post(int shard, ShardPosting posting) throws IOException {
+            return delegate.post(shard, posting);
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
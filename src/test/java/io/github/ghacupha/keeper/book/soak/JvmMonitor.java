@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.soak;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+
+/**
+ * Reads the collections, the time spent collecting and the heap occupancy of the JVM from its management beans, so
+ * that the {@link LoadGenerator} can report how they change over each interval of a run.
+ * The heap left after the last collection of each pool is the figure to watch for growth, the heap in use at any
+ * moment being mostly garbage not yet collected.
+ *
+ * @author edwin.njeru
+ */
+final class JvmMonitor {
+
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private final List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    /**
+     * @return The figures as they stand now
+     */
+    Sample sample() {
+
+        long collections = 0;
+        long collectionMillis = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            collections += Math.max(0, collector.getCollectionCount());
+            collectionMillis += Math.max(0, collector.getCollectionTime());
+        }
+
+        long heapAfterCollection = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (usage != null) {
+                heapAfterCollection += usage.getUsed();
+            }
+        }
+
+        return new Sample(System.nanoTime(), collections, collectionMillis, memory.getHeapMemoryUsage().getUsed(), heapAfterCollection);
+    }
+
+    static final class Sample {
+
+        final long nanoTime;
+
+        final long collections;
+
+        final long collectionMillis;
+
+        final long heapUsed;
+
+        final long heapAfterCollection;
+
+        private Sample(long nanoTime, long collections, long collectionMillis, long heapUsed, long heapAfterCollection) {
+            this.nanoTime = nanoTime;
+            this.collections = collections;
+            this.collectionMillis = collectionMillis;
+            this.heapUsed = heapUsed;
+            this.heapAfterCollection = heapAfterCollection;
+        }
+    }
+}
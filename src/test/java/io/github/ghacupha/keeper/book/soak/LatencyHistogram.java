@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.soak;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of latencies in nanoseconds with a fixed relative precision of better than one percent, from one
+ * nanosecond to the largest {@code long}. Values below 128 have a bucket each; above that every power of two is split
+ * into 64 buckets, so the histogram takes a few kilobytes however many values it records.
+ * The histogram is not thread-safe; each thread of the {@link LoadGenerator} records into its own, and they are added
+ * together for reporting.
+ *
+ * @author edwin.njeru
+ */
+final class LatencyHistogram {
+
+    private static final int LINEAR = 128;
+
+    private static final int SUB_BUCKETS = 64;
+
+    private static final int SUB_BUCKET_BITS = 6;
+
+    private final long[] counts = new long[LINEAR + (Long.SIZE - SUB_BUCKET_BITS - 1) * SUB_BUCKETS];
+
+    private long count;
+
+    private long max;
+
+    private long sum;
+
+    /**
+     * @param nanos Latency to be recorded, negative values being recorded as zero
+     */
+    void record(long nanos) {
+
+        long value = Math.max(0, nanos);
+
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * @param other Histogram whose counts are added into this one
+     */
+    void add(LatencyHistogram other) {
+
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    void reset() {
+
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    LatencyHistogram copy() {
+
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.add(this);
+        return copy;
+    }
+
+    /**
+     * @param percentile Percentile between 0 and 100
+     * @return Highest value equivalent to the recorded values at the percentile, or zero if nothing was recorded
+     */
+    long valueAtPercentile(double percentile) {
+
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, highestEquivalent(i));
+            }
+        }
+        return max;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    static int index(long value) {
+
+        if (value < LINEAR) {
+            return (int) value;
+        }
+
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - 1 - SUB_BUCKET_BITS;
+
+        return LINEAR + (shift - 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    static long highestEquivalent(int index) {
+
+        if (index < LINEAR) {
+            return index;
+        }
+
+        int shift = (index - LINEAR) / SUB_BUCKETS + 1;
+        long subBucket = (index - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
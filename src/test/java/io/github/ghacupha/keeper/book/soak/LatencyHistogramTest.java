@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.soak;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesAreWithinOnePercent() throws Exception {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 1_000_000; nanos++) {
+            histogram.record(nanos * 1000);
+        }
+
+        assertEquals(1_000_000, histogram.getCount());
+        assertEquals(1_000_000_000L, histogram.getMax());
+        assertWithinOnePercent(500_000_000L, histogram.valueAtPercentile(50));
+        assertWithinOnePercent(990_000_000L, histogram.valueAtPercentile(99));
+        assertWithinOnePercent(999_900_000L, histogram.valueAtPercentile(99.99));
+        assertEquals(1_000_000_000L, histogram.valueAtPercentile(100));
+    }
+
+    @Test
+    public void bucketsCoverTheWholeRange() throws Exception {
+
+        for (long value : new long[]{0, 1, 127, 128, 255, 256, 1_000_003, Long.MAX_VALUE}) {
+            long highest = LatencyHistogram.highestEquivalent(LatencyHistogram.index(value));
+            assertTrue(value + " should not exceed " + highest, value <= highest);
+            assertTrue(highest - value <= value / 64);
+        }
+    }
+
+    @Test
+    public void histogramsAreAddedTogether() throws Exception {
+
+        LatencyHistogram fast = new LatencyHistogram();
+        LatencyHistogram slow = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            fast.record(100);
+        }
+        slow.record(5_000_000);
+
+        fast.add(slow);
+
+        assertEquals(100, fast.getCount());
+        assertEquals(100, fast.valueAtPercentile(99));
+        assertWithinOnePercent(5_000_000, fast.valueAtPercentile(99.5));
+    }
+
+    private static void assertWithinOnePercent(long expected, long actual) {
+
+        assertTrue("Expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 100);
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.soak;
+
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.time.point.TimePoint;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+
+/**
+ * Soak test of the posting engine. A synthetic chart of expense and bank accounts is posted to and queried by many
+ * threads at a fixed target rate for as long as the run lasts, with a report of throughput, latency percentiles,
+ * collections and heap after every interval, and a summary by operation at the end.
+ * <p>Each thread is given its share of the target rate as a schedule of start times. Latencies are measured from the
+ * time at which an operation was due to start rather than from the time at which it did, so that a stall which holds
+ * up the following operations counts against each of them, as it would against the requests of real clients, instead
+ * of being hidden by the thread not issuing them (coordinated omission). The service time, measured from the actual
+ * start, is reported alongside for comparison.</p>
+ * <p>The run is set up through system properties:</p>
+ * <ul>
+ * <li>{@code soak.seconds} length of the run, 60 by default</li>
+ * <li>{@code soak.rate} target operations per second across all threads, 5000 by default</li>
+ * <li>{@code soak.threads} number of threads, the number of processors by default</li>
+ * <li>{@code soak.accounts} number of expense accounts, 1000 by default, with one bank account for every 100</li>
+ * <li>{@code soak.mix} weights of the operations, {@code post:70,backdated:10,balance:20} by default</li>
+ * <li>{@code soak.backdate.days} furthest a backdated posting goes back, 365 by default</li>
+ * <li>{@code soak.report.seconds} length of a reporting interval, 10 by default</li>
+ * </ul>
+ * It is run from the build with {@code mvn -Psoak test-compile exec:exec -Dsoak.seconds=3600}.
+ *
+ * @author edwin.njeru
+ */
+public final class LoadGenerator {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    enum Operation {
+
+        /**
+         * {@link Transaction#post()} of a payment booked on the current day of the run
+         */
+        POST,
+
+        /**
+         * {@link Transaction#post()} of a payment booked on an earlier day, which lands in the middle of the timelines
+         */
+        BACKDATED,
+
+        /**
+         * {@link SimpleAccount#balance(TimePoint)} as at a day of the run
+         */
+        BALANCE
+    }
+
+    private final int seconds;
+
+    private final int rate;
+
+    private final int threads;
+
+    private final int backdateDays;
+
+    private final int reportSeconds;
+
+    private final Operation[] mix;
+
+    private final SimpleAccount[] expenses;
+
+    private final SimpleAccount[] banks;
+
+    private final int firstDay;
+
+    private final Worker[] workers;
+
+    private volatile boolean running = true;
+
+    private LoadGenerator(int seconds, int rate, int threads, int accounts, Map<Operation, Integer> weights, int backdateDays, int reportSeconds) {
+        this.seconds = seconds;
+        this.rate = rate;
+        this.threads = threads;
+        this.backdateDays = backdateDays;
+        this.reportSeconds = reportSeconds;
+        this.mix = mix(weights);
+
+        // Postings are booked from the furthest backdated day onwards, so every account is open for all of them
+        this.firstDay = (int) LocalDate.now().toEpochDay() - backdateDays;
+        TimePoint openingDate = EpochDays.toTimePoint(firstDay - 1);
+
+        this.expenses = new SimpleAccount[accounts];
+        for (int i = 0; i < accounts; i++) {
+            expenses[i] = new SimpleAccount(DEBIT, KES, accountDetails("Expense " + i, String.valueOf(500000 + i), openingDate));
+        }
+        this.banks = new SimpleAccount[Math.max(1, accounts / 100)];
+        for (int i = 0; i < banks.length; i++) {
+            banks[i] = new SimpleAccount(CREDIT, KES, accountDetails("Bank " + i, String.valueOf(100000 + i), openingDate));
+        }
+
+        this.workers = new Worker[threads];
+        long periodNanos = TimeUnit.SECONDS.toNanos(threads) / rate;
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(periodNanos);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        Map<Operation, Integer> weights = weights(System.getProperty("soak.mix", "post:70,backdated:10,balance:20"));
+
+        LoadGenerator generator = new LoadGenerator(Integer.getInteger("soak.seconds", 60), Integer.getInteger("soak.rate", 5000),
+            Integer.getInteger("soak.threads", Runtime.getRuntime().availableProcessors()), Integer.getInteger("soak.accounts", 1000), weights,
+            Integer.getInteger("soak.backdate.days", 365), Integer.getInteger("soak.report.seconds", 10));
+
+        generator.run();
+    }
+
+    private void run() throws InterruptedException {
+
+        System.out.printf("Soak test of %d s at %d ops/s on %d threads over %d expense and %d bank accounts%n", seconds, rate, threads, expenses.length,
+            banks.length);
+
+        JvmMonitor monitor = new JvmMonitor();
+        JvmMonitor.Sample start = monitor.sample();
+        JvmMonitor.Sample previous = start;
+
+        CountDownLatch finished = new CountDownLatch(threads);
+        long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        for (int i = 0; i < threads; i++) {
+            Worker worker = workers[i];
+            // Stagger the schedules so that the threads do not all fire at the same instant
+            long firstStart = startNanos + worker.periodNanos * i / threads;
+            Thread thread = new Thread(() -> {
+                try {
+                    worker.run(firstStart);
+                } finally {
+                    finished.countDown();
+                }
+            }, "soak-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        long endNanos = startNanos + TimeUnit.SECONDS.toNanos(seconds);
+        while (System.nanoTime() < endNanos) {
+
+            long remaining = endNanos - System.nanoTime();
+            finished.await(Math.min(remaining, TimeUnit.SECONDS.toNanos(reportSeconds)), TimeUnit.NANOSECONDS);
+
+            JvmMonitor.Sample sample = monitor.sample();
+            report(sample, previous, start);
+            previous = sample;
+        }
+
+        running = false;
+        finished.await();
+
+        summarise(monitor.sample(), start);
+    }
+
+    private void report(JvmMonitor.Sample sample, JvmMonitor.Sample previous, JvmMonitor.Sample start) {
+
+        LatencyHistogram interval = new LatencyHistogram();
+        for (Worker worker : workers) {
+            synchronized (worker) {
+                interval.add(worker.interval);
+                worker.interval.reset();
+            }
+        }
+
+        double elapsed = (sample.nanoTime - previous.nanoTime) / 1e9;
+
+        System.out.printf(Locale.ROOT, "%6.0f s %9.0f ops/s  latency ms p50 %8.3f p99 %8.3f p99.9 %8.3f max %8.3f  gc %3d in %5d ms  heap %6.1f MB, after gc %6.1f MB (%+.1f)%n",
+            (sample.nanoTime - start.nanoTime) / 1e9, interval.getCount() / elapsed, millis(interval.valueAtPercentile(50)), millis(interval.valueAtPercentile(99)),
+            millis(interval.valueAtPercentile(99.9)), millis(interval.getMax()), sample.collections - previous.collections,
+            sample.collectionMillis - previous.collectionMillis, megabytes(sample.heapUsed), megabytes(sample.heapAfterCollection),
+            megabytes(sample.heapAfterCollection - start.heapAfterCollection));
+    }
+
+    private void summarise(JvmMonitor.Sample end, JvmMonitor.Sample start) {
+
+        double elapsed = (end.nanoTime - start.nanoTime) / 1e9;
+
+        Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+        Map<Operation, LatencyHistogram> serviceTimes = new EnumMap<>(Operation.class);
+        long operations = 0;
+        long failures = 0;
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+            serviceTimes.put(operation, new LatencyHistogram());
+        }
+        for (Worker worker : workers) {
+            synchronized (worker) {
+                for (Operation operation : Operation.values()) {
+                    latencies.get(operation).add(worker.latencies[operation.ordinal()]);
+                    serviceTimes.get(operation).add(worker.serviceTimes[operation.ordinal()]);
+                    operations += worker.latencies[operation.ordinal()].getCount();
+                }
+                failures += worker.failures;
+            }
+        }
+
+        System.out.printf(Locale.ROOT, "%nCompleted %d operations in %.0f s, %.0f ops/s against a target of %d, %d failed%n", operations, elapsed, operations / elapsed, rate,
+            failures);
+        System.out.printf(Locale.ROOT, "%d collections taking %d ms, heap after gc %.1f MB to %.1f MB%n", end.collections - start.collections,
+            end.collectionMillis - start.collectionMillis, megabytes(start.heapAfterCollection), megabytes(end.heapAfterCollection));
+
+        for (Operation operation : Operation.values()) {
+            print(operation + " latency", latencies.get(operation));
+            print(operation + " service time", serviceTimes.get(operation));
+        }
+    }
+
+    private static void print(String name, LatencyHistogram histogram) {
+
+        StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%-24s %9d ops  mean %8.3f ms", name, histogram.getCount(), histogram.getMean() / 1e6));
+        for (double percentile : PERCENTILES) {
+            line.append(String.format(Locale.ROOT, "  p%s %8.3f", percentile == (long) percentile ? String.valueOf((long) percentile) : String.valueOf(percentile),
+                millis(histogram.valueAtPercentile(percentile))));
+        }
+        line.append(String.format(Locale.ROOT, "  max %8.3f", millis(histogram.getMax())));
+
+        System.out.println(line);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static double megabytes(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+
+    /**
+     * @param mix Weights such as {@code post:70,backdated:10,balance:20}
+     * @return Weight of each operation named
+     */
+    static Map<Operation, Integer> weights(String mix) {
+
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] weight = part.trim().split(":");
+            if (weight.length != 2) {
+                throw new IllegalArgumentException("The operation mix : " + mix + " should be made of name:weight pairs");
+            }
+            weights.put(Operation.valueOf(weight[0].trim().toUpperCase(Locale.ROOT)), Integer.valueOf(weight[1].trim()));
+        }
+        return weights;
+    }
+
+    /**
+     * @return Table of 100 slots filled in proportion to the weights, from which an operation is drawn at random
+     */
+    private static Operation[] mix(Map<Operation, Integer> weights) {
+
+        int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+        if (total <= 0) {
+            throw new IllegalArgumentException("The operation mix : " + weights + " has no weight");
+        }
+
+        List<Operation> slots = new ArrayList<>();
+        int cumulative = 0;
+        for (Map.Entry<Operation, Integer> weight : weights.entrySet()) {
+            cumulative += weight.getValue();
+            while (slots.size() < Math.round(cumulative * 100.0 / total)) {
+                slots.add(weight.getKey());
+            }
+        }
+        return slots.toArray(new Operation[0]);
+    }
+
+    private final class Worker {
+
+        private final long periodNanos;
+
+        private final LatencyHistogram interval = new LatencyHistogram();
+
+        private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+
+        private final LatencyHistogram[] serviceTimes = new LatencyHistogram[Operation.values().length];
+
+        private long failures;
+
+        private Worker(long periodNanos) {
+            this.periodNanos = Math.max(1, periodNanos);
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = new LatencyHistogram();
+                serviceTimes[i] = new LatencyHistogram();
+            }
+        }
+
+        private void run(long firstStart) {
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long startNanos = firstStart;
+            long runNanos = TimeUnit.SECONDS.toNanos(seconds);
+
+            for (long intendedStart = firstStart; running; intendedStart += periodNanos) {
+
+                long now = System.nanoTime();
+                while (now < intendedStart) {
+                    LockSupport.parkNanos(intendedStart - now);
+                    now = System.nanoTime();
+                }
+
+                // The day of the run advances over the length of the run from the furthest backdated day to today
+                int today = firstDay + (int) ((now - startNanos) * backdateDays / runNanos);
+                Operation operation = mix[random.nextInt(mix.length)];
+
+                boolean failed = false;
+                try {
+                    perform(operation, today, random);
+                } catch (Exception e) {
+                    failed = true;
+                }
+                long end = System.nanoTime();
+
+                synchronized (this) {
+                    interval.record(end - intendedStart);
+                    latencies[operation.ordinal()].record(end - intendedStart);
+                    serviceTimes[operation.ordinal()].record(end - now);
+                    if (failed) {
+                        failures++;
+                    }
+                }
+            }
+        }
+
+        private void perform(Operation operation, int today, ThreadLocalRandom random) throws Exception {
+
+            SimpleAccount expense = expenses[random.nextInt(expenses.length)];
+
+            switch (operation) {
+                case POST:
+                case BACKDATED:
+                    int day = operation == Operation.POST ? today : firstDay + random.nextInt(Math.max(1, today - firstDay + 1));
+                    Transaction payment = getTransaction("Soak payment", EpochDays.toTimePoint(day), KES);
+                    long amount = 1 + random.nextInt(1_000_000);
+                    payment.addEntry(DEBIT, MinorUnits.toCash(amount, KES), expense, details("Soak payment"));
+                    payment.addEntry(CREDIT, MinorUnits.toCash(amount, KES), banks[random.nextInt(banks.length)], details("Soak payment"));
+                    payment.post();
+                    break;
+                case BALANCE:
+                    expense.balance(EpochDays.toTimePoint(firstDay + random.nextInt(Math.max(1, today - firstDay + 1))));
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation : " + operation);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.statement;
+
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.keeper.book.statement.AccountStatement.statement;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AccountStatementTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private SimpleAccount advertisement = new SimpleAccount(DEBIT, KES, accountDetails("Advertisements", "5280", on(2017, 3, 31)));
+    private SimpleAccount vat = new SimpleAccount(CREDIT, KES, accountDetails("VAT", "5281", on(2017, 3, 31)));
+    private SimpleAccount chequeAccount = new SimpleAccount(CREDIT, KES, accountDetails("Cheque", "5282", on(2017, 3, 31)));
+
+    @Before
+    public void setUp() throws Exception {
+
+        Transaction payForBillBoards = getTransaction("BillboardsPayment", on(2017, 11, 2), KES);
+        payForBillBoards.addEntry(DEBIT, shilling(200), advertisement, details("Billboards ltd inv 10"));
+        payForBillBoards.addEntry(CREDIT, shilling(32), vat, details("VAT for billBoards"));
+        payForBillBoards.addEntry(CREDIT, shilling(168), chequeAccount, details("CHQ IFO Billboards Ltd"));
+        payForBillBoards.post();
+
+        Transaction taxReversal = getTransaction("Tax reversal", on(2018, 4, 20), KES);
+        taxReversal.addEntry(DEBIT, shilling(45), vat, details("Reversal of Excess VAT"));
+        taxReversal.addEntry(CREDIT, shilling(45), advertisement, details("Reversal of Excess VAT"));
+        taxReversal.post();
+
+        // back-dated, posted last but belongs between the two above
+        Transaction reimbursement = getTransaction("Edwin's reimbursement", on(2017, 12, 20), KES);
+        reimbursement.addEntry(DEBIT, shilling(150), advertisement, details("Reimburse Edwin For Meeting expenses"));
+        reimbursement.addEntry(CREDIT, shilling(150), chequeAccount, details("Reimbursement for meeting expenses"));
+        reimbursement.post();
+    }
+
+    @Test
+    public void linesAreInBookingDateOrderWithRunningBalances() throws Exception {
+
+        List<StatementLine> lines = statement(advertisement, on(2017, 1, 1), on(2018, 12, 31)).lines().collect(Collectors.toList());
+
+        assertEquals(3, lines.size());
+        assertEquals(newBalance(shilling(200), DEBIT), lines.get(0).getBalance());
+        assertEquals(newBalance(shilling(350), DEBIT), lines.get(1).getBalance());
+        assertEquals(newBalance(shilling(305), DEBIT), lines.get(2).getBalance());
+        assertEquals(30500, lines.get(2).getBalanceInMinorUnits());
+    }
+
+    @Test
+    public void balanceSwitchesSides() throws Exception {
+
+        List<StatementLine> lines = statement(vat, on(2017, 1, 1), on(2018, 12, 31)).lines().collect(Collectors.toList());
+
+        assertEquals(newBalance(shilling(32), CREDIT), lines.get(0).getBalance());
+        assertEquals(newBalance(shilling(13), DEBIT), lines.get(1).getBalance());
+    }
+
+    @Test
+    public void openingBalanceIsBroughtForward() throws Exception {
+
+        AccountStatement statement = statement(advertisement, on(2018, 1, 1), on(2018, 12, 31));
+
+        assertEquals(newBalance(shilling(350), DEBIT), statement.getOpeningBalance());
+        assertEquals(newBalance(shilling(305), DEBIT), statement.lines().findFirst().get().getBalance());
+    }
+
+    @Test
+    public void pagesResumeFromToken() throws Exception {
+
+        AccountStatement statement = statement(advertisement, on(2017, 1, 1), on(2018, 12, 31));
+
+        List<StatementLine> lines = new ArrayList<>();
+        StatementPage page = statement.page(null, 2);
+        lines.addAll(page.getLines());
+        assertTrue(page.hasNextPage());
+
+        page = statement.page(page.getNextPageToken(), 2);
+        lines.addAll(page.getLines());
+        assertFalse(page.hasNextPage());
+
+        assertEquals(statement.lines().map(StatementLine::getBalance).collect(Collectors.toList()),
+            lines.stream().map(StatementLine::getBalance).collect(Collectors.toList()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidTokensAreRejected() throws Exception {
+
+        statement(advertisement, on(2017, 1, 1), on(2018, 12, 31)).page("not-a-token", 2);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.storage;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Currency;
+import java.util.List;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+
+public class ArchiveTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private SimpleAccount advertisement;
+
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+
+        advertisement = new SimpleAccount(DEBIT, KES, accountDetails("Advertisements", "5280", on(2017, 1, 1)));
+        SimpleAccount chequeAccount = new SimpleAccount(CREDIT, KES, accountDetails("Cheque", "5282", on(2017, 1, 1)));
+
+        // One payment of 100.50 on the first of every month, and a refund of 20 in June
+        for (int month = 1; month <= 12; month++) {
+            Transaction payment = getTransaction("Billboards " + month, on(2017, month, 1), KES);
+            payment.addEntry(DEBIT, shilling(100.50), advertisement, details("Billboards ltd inv " + month));
+            payment.addEntry(CREDIT, shilling(100.50), chequeAccount, details("CHQ IFO Billboards Ltd"));
+            payment.post();
+        }
+        Transaction refund = getTransaction("Refund", on(2017, 6, 15), KES);
+        refund.addEntry(DEBIT, shilling(20), chequeAccount, details("Refund"));
+        refund.addEntry(CREDIT, shilling(20), advertisement, details("Refund"));
+        refund.post();
+
+        file = Files.createTempFile("advertisements", ".archive");
+        file.toFile().deleteOnExit();
+        new ArchiveWriter(3).write(advertisement, on(2017, 1, 1), on(2017, 12, 31), file);
+    }
+
+    @Test
+    public void balancesMatchTheAccount() throws Exception {
+
+        try (ArchiveReader archive = ArchiveReader.open(file)) {
+
+            assertEquals(13, archive.getEntryCount());
+            assertEquals(newBalance(shilling(1186), DEBIT), archive.balance(on(2017, 1, 1), on(2017, 12, 31)));
+            assertEquals(newBalance(shilling(583), DEBIT), archive.balance(on(2017, 1, 1), on(2017, 6, 30)));
+            assertEquals(advertisement.balanceInMinorUnits(EpochDays.of(on(2017, 6, 15))), archive.balanceInMinorUnits(Integer.MIN_VALUE, EpochDays.of(on(2017, 6, 15))));
+            assertEquals(newBalance(shilling(0), DEBIT), archive.balance(on(2018, 1, 1), on(2018, 12, 31)));
+        }
+    }
+
+    @Test
+    public void segmentsOutsideOrWithinTheDatesAreNotDecompressed() throws Exception {
+
+        try (ArchiveReader archive = ArchiveReader.open(file)) {
+
+            // Segments of three entries : Jan-Mar, Apr-Jun 1, Jun 15-Aug, Sep-Nov, Dec
+            archive.balance(on(2017, 1, 1), on(2017, 12, 31));
+            assertEquals(0, archive.getSegmentsDecompressed());
+
+            archive.balance(on(2017, 9, 1), on(2017, 10, 31));
+            assertEquals(1, archive.getSegmentsDecompressed());
+        }
+    }
+
+    @Test
+    public void entriesAreRestoredInDateOrder() throws Exception {
+
+        try (ArchiveReader archive = ArchiveReader.open(file)) {
+
+            List<Entry> entries = archive.entries(on(2017, 6, 1), on(2017, 7, 31), advertisement);
+
+            assertEquals(3, entries.size());
+            assertEquals(on(2017, 6, 1), entries.get(0).getBookingDate());
+            assertEquals("Billboards ltd inv 6", entries.get(0).getEntryDetails().getNarration());
+            assertEquals(CREDIT, entries.get(1).getAccountSide());
+            assertEquals(shilling(20), entries.get(1).getAmount());
+            assertEquals("Refund", entries.get(1).getEntryDetails().getNarration());
+            assertEquals(on(2017, 7, 1), entries.get(2).getBookingDate());
+        }
+    }
+}
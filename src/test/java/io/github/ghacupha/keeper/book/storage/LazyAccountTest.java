@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.storage;
+
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.base.AccountLoader;
+import io.github.ghacupha.keeper.book.base.CommitSequence;
+import io.github.ghacupha.keeper.book.base.EntryDetails;
+import io.github.ghacupha.keeper.book.base.LazyAccount;
+import io.github.ghacupha.keeper.book.base.LedgerSnapshot;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Currency;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.LazyAccount.lazyAccount;
+import static io.github.ghacupha.keeper.book.base.SimpleEntry.makeEntry;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LazyAccountTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private final AccountFileStore store = new AccountFileStore();
+
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+
+        SimpleAccount advertisement = new SimpleAccount(DEBIT, KES, accountDetails("Advertisements", "5280", on(2017, 3, 31)));
+        SimpleAccount chequeAccount = new SimpleAccount(CREDIT, KES, accountDetails("Cheque", "5282", on(2017, 3, 31)));
+
+        Transaction payForBillBoards = getTransaction("BillboardsPayment", on(2017, 11, 2), KES);
+        payForBillBoards.addEntry(DEBIT, shilling(200.25), advertisement, details("Billboards ltd inv 10"));
+        payForBillBoards.addEntry(CREDIT, shilling(200.25), chequeAccount, details("CHQ IFO Billboards Ltd"));
+        payForBillBoards.post();
+
+        file = Files.createTempFile("advertisements", ".account");
+        file.toFile().deleteOnExit();
+        store.save(advertisement, file);
+    }
+
+    @Test
+    public void accountIsLoadedOnFirstUse() throws Exception {
+
+        LazyAccount advertisement = lazyAccount(accountDetails("Advertisements", "5280", on(2017, 3, 31)), file.toString(), store);
+
+        assertEquals(on(2017, 3, 31), advertisement.getOpeningDate());
+        assertFalse(advertisement.isHydrated());
+
+        assertEquals(newBalance(shilling(200.25), DEBIT), advertisement.balance(2017, 11, 30));
+        assertTrue(advertisement.isHydrated());
+        assertEquals("Billboards ltd inv 10", advertisement.getEntries().get(0).getEntryDetails().getNarration());
+    }
+
+    @Test
+    public void concurrentFirstAccessLoadsOnce() throws Exception {
+
+        AtomicInteger loads = new AtomicInteger();
+        AccountLoader countingLoader = (details, location) -> {
+            loads.incrementAndGet();
+            return store.load(details, location);
+        };
+        LazyAccount advertisement = lazyAccount(accountDetails("Advertisements", "5280", on(2017, 3, 31)), file.toString(), countingLoader);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < 8; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    advertisement.balance(2017, 11, 30);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void loadedEntriesAreSeenBySnapshotsTakenBeforeTheLoad() throws Exception {
+
+        LedgerSnapshot snapshot = LedgerSnapshot.snapshot();
+        long committed = CommitSequence.ledger().committed();
+
+        SimpleAccount advertisement = store.load(accountDetails("Advertisements", "5280", on(2017, 3, 31)), file.toString());
+
+        assertEquals(20025, snapshot.balanceInMinorUnits(advertisement, EpochDays.of(on(2017, 11, 30))));
+        assertEquals(committed, CommitSequence.ledger().committed());
+    }
+
+    @Test
+    public void narrationsAndAttributesAreStoredAsTheyAre() throws Exception {
+
+        SimpleAccount suspense = new SimpleAccount(DEBIT, KES, accountDetails("Suspense", "1900", on(2017, 3, 31)));
+        EntryDetails details = details(null);
+        details.setAttribute("invoice", 10L);
+        details.setAttribute("rate", new BigDecimal("0.16"));
+        details.setAttribute("reconciled", Boolean.TRUE);
+        details.setAttribute("note", new String(new char[70_000]).replace('\0', 'x'));
+        suspense.addEntry(makeEntry(DEBIT, suspense, shilling(10), on(2017, 11, 2), details));
+
+        Path suspenseFile = Files.createTempFile("suspense", ".account");
+        suspenseFile.toFile().deleteOnExit();
+        store.save(suspense, suspenseFile);
+
+        EntryDetails loaded = store.load(suspense.getAccountDetails(), suspenseFile.toString()).getEntries().get(0).getEntryDetails();
+
+        assertNull(loaded.getNarration());
+        assertEquals(details.getEntryMap(), loaded.getEntryMap());
+    }
+}
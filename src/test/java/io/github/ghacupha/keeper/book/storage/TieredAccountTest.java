@@ -0,0 +1,178 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.storage;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
+import io.github.ghacupha.time.point.TimePoint;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Currency;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleEntry.makeEntry;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.keeper.book.storage.TieredAccount.tiered;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class TieredAccountTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private final SimpleAccount cash = new SimpleAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2017, 1, 1)));
+    private final SimpleAccount sales = new SimpleAccount(CREDIT, KES, accountDetails("Sales", "4000", on(2017, 1, 1)));
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private TieredAccount tieredCash;
+
+    private long[] balancesBefore;
+
+    private List<String> statementBefore;
+
+    @Before
+    public void setUp() throws Exception {
+
+        Path directory = temporaryFolder.newFolder("segments").toPath();
+
+        // a receipt on the 10th and a payment on the 20th of every month through 2017 and the first half of 2018
+        for (int month = 0; month < 18; month++) {
+            int year = 2017 + month / 12;
+            transfer("Receipt " + month, on(year, month % 12 + 1, 10), cash, sales, 100 + month);
+            transfer("Payment " + month, on(year, month % 12 + 1, 20), sales, cash, 50);
+        }
+
+        balancesBefore = balances();
+        statementBefore = narrations(cash.getEntries());
+
+        tieredCash = tiered(cash, directory, 90);
+        directory.resolve("1000-0.segment").toFile().deleteOnExit();
+        directory.resolve("1000-1.segment").toFile().deleteOnExit();
+    }
+
+    private void transfer(String label, TimePoint date, SimpleAccount debit, SimpleAccount credit, double amount) throws Exception {
+
+        Transaction transaction = getTransaction(label, date, KES);
+        transaction.addEntry(DEBIT, shilling(amount), debit, details(label));
+        transaction.addEntry(CREDIT, shilling(amount), credit, details(label));
+        transaction.post();
+    }
+
+    private long[] balances() {
+
+        int first = EpochDays.of(on(2016, 12, 31));
+        long[] balances = new long[EpochDays.of(on(2018, 7, 31)) - first + 1];
+        for (int i = 0; i < balances.length; i++) {
+            balances[i] = tieredCash == null ? cash.balanceInMinorUnits(first + i) : tieredCash.balanceInMinorUnits(first + i);
+        }
+        return balances;
+    }
+
+    private static List<String> narrations(List<Entry> entries) {
+
+        return entries.stream().map(entry -> entry.getEntryDetails().getNarration() + " " + entry.getBookingDate() + " " + entry.getAmount()).collect(Collectors.toList());
+    }
+
+    @Test
+    public void oldEntriesMoveIntoTheColdTier() throws Exception {
+
+        assertEquals(30, tieredCash.migrate(EpochDays.of(on(2018, 6, 30))));
+
+        assertEquals(EpochDays.of(on(2018, 4, 1)), tieredCash.getHotFromEpochDay());
+        assertEquals(30, tieredCash.getColdEntryCount());
+        // the carried forward entry and April to June
+        assertEquals(7, cash.getEntries().size());
+    }
+
+    @Test
+    public void balancesReadAcrossBothTiers() throws Exception {
+
+        tieredCash.migrate(EpochDays.of(on(2018, 6, 30)));
+
+        assertEquals(balancesBefore.length, balances().length);
+        long[] balancesAfter = balances();
+        for (int i = 0; i < balancesBefore.length; i++) {
+            assertEquals("day " + i, balancesBefore[i], balancesAfter[i]);
+        }
+    }
+
+    @Test
+    public void statementsReadAcrossBothTiers() throws Exception {
+
+        tieredCash.migrate(EpochDays.of(on(2018, 6, 30)));
+
+        assertEquals(statementBefore, narrations(tieredCash.entries(on(2017, 1, 1), on(2018, 12, 31))));
+        assertEquals(statementBefore.subList(28, 32), narrations(tieredCash.entries(on(2018, 3, 1), on(2018, 4, 30))));
+    }
+
+    @Test
+    public void laterMigrationsAddSegments() throws Exception {
+
+        tieredCash.migrate(EpochDays.of(on(2018, 3, 31)));
+        assertEquals(0, tieredCash.migrate(EpochDays.of(on(2018, 3, 31))));
+        tieredCash.migrate(EpochDays.of(on(2018, 6, 30)));
+
+        assertEquals(30, tieredCash.getColdEntryCount());
+        assertEquals(statementBefore, narrations(tieredCash.entries(on(2017, 1, 1), on(2018, 12, 31))));
+
+        long[] balancesAfter = balances();
+        for (int i = 0; i < balancesBefore.length; i++) {
+            assertEquals("day " + i, balancesBefore[i], balancesAfter[i]);
+        }
+    }
+
+    @Test
+    public void theTieredAccountAnswersForTheMigratedHistory() throws Exception {
+
+        AccountBalance midYearBefore = cash.balance(on(2017, 6, 15));
+        tieredCash.migrate(EpochDays.of(on(2018, 6, 30)));
+        Account account = tieredCash;
+
+        // the hot tier alone only knows the balance carried forward
+        assertEquals(statementBefore, narrations(account.getEntries()));
+        assertEquals(midYearBefore, account.balance(2017, 6, 15));
+        assertEquals(cash.balance(on(2018, 6, 30)), account.balance(2018, 6, 30));
+
+        try {
+            account.addEntry(makeEntry(DEBIT, account, shilling(10), on(2018, 3, 15), details("Late receipt")));
+            fail("An entry booked on a migrated date should be refused");
+        } catch (UntimelyBookingDateException expected) {
+            assertFalse(expected.getMessage().isEmpty());
+        }
+
+        account.addEntry(makeEntry(DEBIT, account, shilling(10), on(2018, 7, 15), details("Receipt")));
+        assertEquals(statementBefore.size() + 1, account.getEntries().size());
+    }
+}
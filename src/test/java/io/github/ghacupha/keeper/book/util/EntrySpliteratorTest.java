@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import org.junit.Test;
+
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.github.ghacupha.keeper.book.util.EntrySpliterator.SEQUENTIAL_THRESHOLD;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EntrySpliteratorTest {
+
+    private static final Entry[] ENTRIES = new Entry[SEQUENTIAL_THRESHOLD * 4 + 3];
+
+    @Test
+    public void smallRangesAreNotSplit() throws Exception {
+
+        EntrySpliterator spliterator = new EntrySpliterator(ENTRIES, 0, SEQUENTIAL_THRESHOLD * 2 - 1);
+
+        assertFalse(spliterator.isWorthSplitting());
+        assertNull(spliterator.trySplit());
+    }
+
+    @Test
+    public void splitsAreExactlySized() throws Exception {
+
+        EntrySpliterator spliterator = new EntrySpliterator(ENTRIES, 0, ENTRIES.length);
+
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+
+        Spliterator<Entry> prefix = spliterator.trySplit();
+
+        assertEquals(ENTRIES.length / 2, prefix.estimateSize());
+        assertEquals(ENTRIES.length - ENTRIES.length / 2, spliterator.estimateSize());
+    }
+
+    @Test
+    public void everyEntryIsVisitedOnce() throws Exception {
+
+        EntrySpliterator spliterator = new EntrySpliterator(ENTRIES, 0, ENTRIES.length);
+        AtomicInteger visited = new AtomicInteger();
+
+        Spliterator<Entry> prefix = spliterator.trySplit();
+        prefix.forEachRemaining(entry -> visited.incrementAndGet());
+        while (spliterator.tryAdvance(entry -> visited.incrementAndGet())) {
+            // advancing one at a time
+        }
+
+        assertEquals(ENTRIES.length, visited.get());
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import org.junit.Test;
+
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleEntry.makeEntry;
+import static io.github.ghacupha.keeper.book.util.EpochDayRange.between;
+import static io.github.ghacupha.keeper.book.util.EpochDayRange.upTo;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EpochDayRangeTest {
+
+    @Test
+    public void entriesCarryTheirBookingDateInEpochDays() throws Exception {
+
+        Entry entry = makeEntry(DEBIT, null, shilling(200), on(2017, 11, 2), details("Billboards ltd inv 10"));
+
+        assertEquals(EpochDays.of(on(2017, 11, 2)), entry.getEpochDay());
+        assertEquals(17472, entry.getEpochDay());
+    }
+
+    @Test
+    public void bothEndsAreIncluded() throws Exception {
+
+        EpochDayRange november = between(on(2017, 11, 1), on(2017, 11, 30));
+
+        assertTrue(november.includes(makeEntry(DEBIT, null, shilling(200), on(2017, 11, 1), details("first"))));
+        assertTrue(november.includes(makeEntry(DEBIT, null, shilling(200), on(2017, 11, 30), details("last"))));
+        assertFalse(november.includes(makeEntry(DEBIT, null, shilling(200), on(2017, 10, 31), details("before"))));
+        assertFalse(november.includes(makeEntry(DEBIT, null, shilling(200), on(2017, 12, 1), details("after"))));
+    }
+
+    @Test
+    public void openStartedRanges() throws Exception {
+
+        assertTrue(upTo(on(2017, 11, 30)).includes(Integer.MIN_VALUE));
+        assertTrue(upTo(on(2017, 11, 30)).includes(EpochDays.of(on(1900, 1, 1))));
+        assertFalse(upTo(on(2017, 11, 30)).includes(EpochDays.of(on(2017, 12, 1))));
+        assertEquals(between(EpochDays.of(on(2017, 11, 1)), EpochDays.of(on(2017, 11, 30))), between(on(2017, 11, 1), on(2017, 11, 30)));
+    }
+
+    @Test
+    public void datesAreConvertedFromTheirFields() throws Exception {
+
+        assertEquals(0, EpochDays.of(on(1970, 1, 1)));
+        assertEquals(-1, EpochDays.of(on(1969, 12, 31)));
+        assertEquals(17472, EpochDays.of(on(2017, 11, 2)));
+        assertEquals(on(2017, 11, 2), EpochDays.toTimePoint(17472));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void onlySimpleDatesAreConverted() throws Exception {
+
+        EpochDays.of(null);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExecutionPolicyTest {
+
+    private final ExecutionPolicy policy = new ExecutionPolicy(2, 16, 16, 16);
+
+    @After
+    public void tearDown() throws Exception {
+        policy.shutdown();
+    }
+
+    private static List<Integer> items(int count) {
+        List<Integer> items = new ArrayList<>();
+        IntStream.range(0, count).forEach(items::add);
+        return items;
+    }
+
+    @Test
+    public void smallBatchesRunOnTheCallingThread() throws Exception {
+
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        policy.forEach(items(15), policy.getBatchThreshold(), item -> threads.add(Thread.currentThread().getName()));
+
+        assertEquals(1, threads.size());
+        assertTrue(threads.contains(Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void largeBatchesRunInTheDedicatedPool() throws Exception {
+
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        policy.forEach(items(10_000), policy.getBatchThreshold(), item -> threads.add(Thread.currentThread().getName()));
+
+        assertFalse(threads.isEmpty());
+        for (String thread : threads) {
+            assertTrue(thread, thread.startsWith("ledger-worker-"));
+        }
+    }
+
+    @Test
+    public void sequentialPolicyNeverForks() throws Exception {
+
+        ExecutionPolicy sequential = ExecutionPolicy.sequential();
+
+        assertFalse(sequential.isParallel(Integer.MAX_VALUE, sequential.getPostingThreshold()));
+        assertEquals(Thread.currentThread().getName(), sequential.invoke(() -> Thread.currentThread().getName()));
+        assertFalse(new EntrySpliterator(new Entry[100_000], 0, 100_000, sequential.getSplitThreshold()).isWorthSplitting());
+    }
+
+    @Test
+    public void aPolicyStillHeldAfterItsPoolIsShutDownRunsSequentially() throws Exception {
+
+        List<Integer> items = items(10_000);
+        policy.forEach(items, policy.getBatchThreshold(), item -> { });
+        policy.shutdown();
+
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        policy.forEach(items, policy.getBatchThreshold(), item -> threads.add(Thread.currentThread().getName()));
+
+        assertEquals(1, threads.size());
+        assertTrue(threads.contains(Thread.currentThread().getName()));
+    }
+}